@@ -0,0 +1,380 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import connect4.bench.Targets;
+
+/**
+ * Default-package bridge that hands server classes to the JMH benchmarks.
+ */
+public class BenchTargets implements Targets {
+
+    @Override
+    public Engine engine(String kind) {
+        switch (kind) {
+            case "array":
+                return new Engine() {
+                    private GameBoard board = new GameBoard();
+
+                    public boolean makeMove(int column) {
+                        return board.makeMove(column);
+                    }
+
+                    public boolean isGameOver() {
+                        return board.isGameOver();
+                    }
+
+                    public int getWinner() {
+                        return board.getWinner();
+                    }
+
+                    public void reset() {
+                        board.resetGame();
+                    }
+                };
+            case "bitboard":
+                return new Engine() {
+                    private final BitboardGameBoard board = new BitboardGameBoard();
+
+                    public boolean makeMove(int column) {
+                        return board.makeMove(column);
+                    }
+
+                    public boolean isGameOver() {
+                        return board.isGameOver();
+                    }
+
+                    public int getWinner() {
+                        return board.getWinner();
+                    }
+
+                    public void reset() {
+                        board.resetGame();
+                    }
+                };
+            default:
+                throw new IllegalArgumentException("Unknown engine: " + kind);
+        }
+    }
+
+    @Override
+    public Codec codec(String kind) {
+        MessageCodec codec;
+        switch (kind) {
+            case "serialized":
+                codec = WireProtocol.codecFor(WireProtocol.VERSION_SERIALIZED);
+                break;
+            case "binary":
+                codec = WireProtocol.codecFor(WireProtocol.VERSION_MOVE_EVENTS);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown codec: " + kind);
+        }
+        return new Codec() {
+            public byte[] encode(Object message) throws IOException {
+                return codec.encode((Message) message);
+            }
+
+            public Object decode(byte[] payload) throws IOException {
+                return codec.decode(payload, 0, payload.length);
+            }
+        };
+    }
+
+    @Override
+    public Object sampleMessage(String type) {
+        switch (Message.MessageType.valueOf(type)) {
+            case GAME_MOVE:
+                return new Message(Message.MessageType.GAME_MOVE, "alice", "Move", 3);
+            case GAME_STATE:
+                return snapshot(midGameBoard());
+            case GAME_MOVE_APPLIED:
+                return new Message(Message.MessageType.GAME_MOVE_APPLIED, "SERVER",
+                        "Move applied", new MoveEvent(12, 3, 2, 1, 0));
+            case CHAT:
+                return new Message(Message.MessageType.CHAT, "alice", "good luck, have fun!");
+            default:
+                throw new IllegalArgumentException("No sample for " + type);
+        }
+    }
+
+    @Override
+    public Object newBoard() {
+        return midGameBoard();
+    }
+
+    private static BitboardGameBoard midGameBoard() {
+        BitboardGameBoard board = new BitboardGameBoard();
+        for (int column : new int[] { 3, 3, 2, 4, 4, 2, 5, 1, 0, 6, 6, 5 }) {
+            board.makeMove(column);
+        }
+        return board;
+    }
+
+    @Override
+    public Object snapshot(Object board) {
+        BitboardGameBoard gameBoard = (BitboardGameBoard) board;
+        int[][] copy = new int[GameBoard.getRows()][GameBoard.getCols()];
+        for (int r = 0; r < GameBoard.getRows(); r++) {
+            for (int c = 0; c < GameBoard.getCols(); c++) {
+                copy[r][c] = gameBoard.getCell(r, c);
+            }
+        }
+        BoardState state = new BoardState(copy, gameBoard.getCurrentPlayer(), gameBoard.getWinner(),
+                gameBoard.isGameOver(), gameBoard.getMoveCount());
+        return new Message(Message.MessageType.GAME_STATE, "SERVER", "Game state updated", state);
+    }
+
+    @Override
+    public Loopback loopback(String transport) throws IOException {
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        Properties settings = new Properties();
+        settings.setProperty("connect4.port", Integer.toString(port));
+        settings.setProperty("connect4.transport", transport);
+        settings.setProperty("connect4.match.tickMillis", "1");
+        ServerLog quiet = new ServerLog(LogLevel.WARN, 1024, Collections.singletonList(lines -> { }));
+        Server server = new Server(quiet, new ServerConfig(settings));
+        return new LoopbackGame(server, port);
+    }
+
+    @Override
+    public Mcts mcts(int threads, long playouts) {
+        MctsBot bot = new MctsBot(threads, playouts, null);
+        return new Mcts() {
+            public int chooseMove(String moves) {
+                BitboardGameBoard board = play(moves);
+                int mover = board.getCurrentPlayer();
+                long current = board.getDiscs(mover);
+                return bot.chooseMove(current, current | board.getDiscs(3 - mover), board.getMoveCount(),
+                        Long.MAX_VALUE, Bitboards.CELLS);
+            }
+
+            public long getLastPlayouts() {
+                return bot.getLastPlayouts();
+            }
+
+            public void close() {
+                bot.close();
+            }
+        };
+    }
+
+    @Override
+    public Journal journal(Path directory, long syncMillis, int syncRecords) throws IOException {
+        GameJournal journal = new GameJournal(directory, 64 << 20, syncMillis, syncRecords, line -> { });
+        journal.open();
+        return new Journal() {
+            // Many games in progress at once, each filling its board column by column
+            private static final int GAMES = 1000;
+            private final int[] moves = new int[GAMES];
+            private long nextId;
+            private final long[] ids = new long[GAMES];
+            private int turn;
+
+            public void move() {
+                int slot = turn++ % GAMES;
+                if (moves[slot] == 0) {
+                    ids[slot] = ++nextId;
+                    journal.gameStarted(ids[slot], "player" + slot, "opponent" + slot, 0);
+                }
+                journal.moved(ids[slot], moves[slot] % GameBoard.getCols());
+                if (++moves[slot] == Bitboards.CELLS) {
+                    journal.gameEnded(ids[slot], 3);
+                    moves[slot] = 0;
+                }
+            }
+
+            public long getSyncs() {
+                return journal.getSyncs();
+            }
+
+            public void close() {
+                journal.close();
+            }
+        };
+    }
+
+    @Override
+    public int recoverJournal(Path directory) throws IOException {
+        GameJournal journal = new GameJournal(directory, 64 << 20, 0, 1, line -> { });
+        try {
+            return journal.open().size();
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Override
+    public Search search(int threads) {
+        ParallelSolver solver = new ParallelSolver(threads);
+        return new Search() {
+            private long nodes;
+
+            public int[] search(String moves, int depth) {
+                BitboardGameBoard board = play(moves);
+                int mover = board.getCurrentPlayer();
+                long current = board.getDiscs(mover);
+                Solver.Result result = solver.searchDepth(current, current | board.getDiscs(3 - mover),
+                        board.getMoveCount(), depth);
+                nodes = result.getNodes();
+                return new int[] { result.getColumn(), result.getScore() };
+            }
+
+            public long getNodes() {
+                return nodes;
+            }
+
+            public void reset() {
+                solver.clear();
+            }
+
+            public void close() {
+                solver.shutdown();
+            }
+        };
+    }
+
+    // Two players on one server, replaying a drawn game so every move is legal and none ends early
+    private static final class LoopbackGame implements Loopback {
+        private static final MessageCodec CODEC = WireProtocol.codecFor(WireProtocol.VERSION_MOVE_EVENTS);
+
+        private final Server server;
+        private final Player[] players = new Player[3];  // indexed by player number
+        private final int[] drawnGame = drawnGame();
+        private final BitboardGameBoard board = new BitboardGameBoard();
+
+        LoopbackGame(Server server, int port) throws IOException {
+            this.server = server;
+            Player alice = connect(port, "alice");
+            Player bob = connect(port, "bob");
+            alice.send(new Message(Message.MessageType.GAME_REQUEST, "alice", "Looking for a game"));
+            bob.send(new Message(Message.MessageType.GAME_REQUEST, "bob", "Looking for a game"));
+            for (Player player : new Player[] { alice, bob }) {
+                Message started = player.await(Message.MessageType.GAME_STARTED);
+                players[(Integer) started.getData()] = player;
+                player.await(Message.MessageType.GAME_STATE);
+            }
+        }
+
+        @Override
+        public void move() throws IOException {
+            if (board.isGameOver()) {
+                players[1].send(new Message(Message.MessageType.PLAY_AGAIN, "SERVER", "Play again"));
+                players[1].await(Message.MessageType.GAME_STATE);
+                players[2].await(Message.MessageType.GAME_STATE);
+                board.resetGame();
+            }
+            int column = drawnGame[board.getMoveCount()];
+            players[board.getCurrentPlayer()].send(new Message(Message.MessageType.GAME_MOVE, "SERVER", "Move", column));
+            board.makeMove(column);
+            players[1].await(Message.MessageType.GAME_MOVE_APPLIED);
+            players[2].await(Message.MessageType.GAME_MOVE_APPLIED);
+        }
+
+        @Override
+        public void close() throws IOException {
+            players[1].socket.close();
+            players[2].socket.close();
+            server.stop();
+        }
+
+        private static Player connect(int port, String name) throws IOException {
+            IOException last = null;
+            for (int attempt = 0; attempt < 100; attempt++) {
+                try {
+                    Player player = new Player(new Socket(InetAddress.getLoopbackAddress(), port));
+                    player.send(new Message(Message.MessageType.LOGIN, name, name));
+                    player.await(Message.MessageType.LOGIN_SUCCESS);
+                    return player;
+                } catch (IOException e) {
+                    last = e;  // the server may still be binding its port
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException interrupted) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+            throw last;
+        }
+
+        // Columns of a full game that nobody wins, found by seeded random play
+        private static int[] drawnGame() {
+            Random random = new Random(1);
+            BitboardGameBoard board = new BitboardGameBoard();
+            List<Integer> columns = new ArrayList<>();
+            while (board.getWinner() != 3) {
+                board.resetGame();
+                columns.clear();
+                while (!board.isGameOver()) {
+                    int column = random.nextInt(GameBoard.getCols());
+                    if (board.makeMove(column)) {
+                        columns.add(column);
+                    }
+                }
+            }
+            return columns.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    private static final class Player {
+        final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream out;
+
+        Player(Socket socket) throws IOException {
+            this.socket = socket;
+            socket.setTcpNoDelay(true);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeInt(WireProtocol.MAGIC);
+            out.writeInt(WireProtocol.VERSION_MOVE_EVENTS);
+            out.flush();
+            if (in.readInt() != WireProtocol.MAGIC || in.readInt() != WireProtocol.VERSION_MOVE_EVENTS) {
+                throw new IOException("Handshake failed");
+            }
+        }
+
+        void send(Message message) throws IOException {
+            WireProtocol.writeFrame(out, LoopbackGame.CODEC.encode(message));
+            out.flush();
+        }
+
+        // Reads until a message of the given type arrives, skipping chat and the like
+        Message await(Message.MessageType type) throws IOException {
+            while (true) {
+                byte[] frame = WireProtocol.readFrame(in);
+                Message message = LoopbackGame.CODEC.decode(frame, 0, frame.length);
+                if (message.getType() == type) {
+                    return message;
+                }
+            }
+        }
+    }
+
+    // A board after the given 0-based column digits
+    private static BitboardGameBoard play(String moves) {
+        BitboardGameBoard board = new BitboardGameBoard();
+        for (char column : moves.toCharArray()) {
+            if (!board.makeMove(column - '0')) {
+                throw new IllegalArgumentException("Illegal position: " + moves);
+            }
+        }
+        return board;
+    }
+}
@@ -0,0 +1,58 @@
+package connect4.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Message encode and decode with Java serialization (protocol 1) against
+ * the binary codec (protocols 2 and 3).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    @Param({ "serialized", "binary" })
+    public String codec;
+
+    @Param({ "GAME_MOVE", "GAME_STATE", "GAME_MOVE_APPLIED", "CHAT" })
+    public String message;
+
+    private Targets.Codec wire;
+    private Object sample;
+    private byte[] encoded;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Targets targets = Targets.load();
+        wire = targets.codec(codec);
+        sample = targets.sampleMessage(message);
+        encoded = wire.encode(sample);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return wire.encode(sample);
+    }
+
+    @Benchmark
+    public Object decode() throws IOException {
+        return wire.decode(encoded);
+    }
+}
@@ -0,0 +1,81 @@
+package connect4.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Replays whole games on each engine. "random" games end at the first
+ * four in a row; "adversarial" games fill the board without a winner, so
+ * every move pays for a full win check.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EngineBenchmark {
+    private static final int GAMES = 256;
+    private static final int COLUMNS = 7;
+
+    @Param({ "array", "bitboard" })
+    public String engine;
+
+    @Param({ "random", "adversarial" })
+    public String games;
+
+    private Targets.Engine board;
+    private int[][] sequences;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        board = Targets.load().engine(engine);
+        Random random = new Random(42);
+        sequences = new int[GAMES][];
+        for (int i = 0; i < GAMES; i++) {
+            sequences[i] = generate(random, games.equals("adversarial"));
+        }
+    }
+
+    // A legal game from the start position, optionally retried until it is a draw
+    private int[] generate(Random random, boolean drawOnly) {
+        List<Integer> columns = new ArrayList<>();
+        do {
+            board.reset();
+            columns.clear();
+            while (!board.isGameOver()) {
+                int column = random.nextInt(COLUMNS);
+                if (board.makeMove(column)) {
+                    columns.add(column);
+                }
+            }
+        } while (drawOnly && board.getWinner() != 3);
+        return columns.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    @Benchmark
+    public int playGame() {
+        int[] game = sequences[next++ & (GAMES - 1)];
+        board.reset();
+        for (int column : game) {
+            board.makeMove(column);
+        }
+        return board.getWinner();
+    }
+}
@@ -0,0 +1,59 @@
+package connect4.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Writes a journal of a million moves (by default), then times how long a
+ * restarting server takes to replay it.
+ *
+ * Usage: java -cp target/benchmarks.jar connect4.bench.JournalRecovery [moves] [syncMillis] [syncRecords]
+ */
+public class JournalRecovery {
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        long moves = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+        long syncMillis = args.length > 1 ? Long.parseLong(args[1]) : 10;
+        int syncRecords = args.length > 2 ? Integer.parseInt(args[2]) : 4096;
+        Targets targets = Targets.load();
+
+        for (int round = 0; round <= ROUNDS; round++) {
+            Path directory = Files.createTempDirectory("journal-recovery");
+            try {
+                long start = System.nanoTime();
+                long syncs;
+                try (Targets.Journal journal = targets.journal(directory, syncMillis, syncRecords)) {
+                    for (long i = 0; i < moves; i++) {
+                        journal.move();
+                    }
+                    syncs = journal.getSyncs();
+                }
+                long written = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                int unfinished = targets.recoverJournal(directory);
+                long recovered = System.nanoTime() - start;
+
+                // The first round warms up the JIT
+                if (round > 0) {
+                    System.out.printf("%,d moves written in %.1f ms (%,d moves/s, %d fsyncs); "
+                            + "replayed in %.1f ms, %d unfinished games%n",
+                            moves, written / 1e6, moves * 1_000_000_000L / written, syncs,
+                            recovered / 1e6, unfinished);
+                }
+            } finally {
+                delete(directory);
+            }
+        }
+    }
+
+    static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
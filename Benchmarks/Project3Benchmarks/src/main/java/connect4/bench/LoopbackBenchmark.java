@@ -0,0 +1,52 @@
+package connect4.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One move through a real server over loopback: the mover's GAME_MOVE goes
+ * through the transport, the session handlers and the game's shard, and the
+ * benchmark waits until both players have received GAME_MOVE_APPLIED.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoopbackBenchmark {
+
+    @Param({ "platform", "nio" })
+    public String transport;
+
+    private Targets.Loopback game;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        game = Targets.load().loopback(transport);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        game.close();
+    }
+
+    @Benchmark
+    public void moveRoundTrip() throws IOException {
+        game.move();
+    }
+}
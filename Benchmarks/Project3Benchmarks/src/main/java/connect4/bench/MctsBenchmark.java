@@ -0,0 +1,69 @@
+package connect4.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * MCTS moves with a fixed playout budget. The "rollouts" secondary result
+ * is playouts per second summed over the bot's root-parallel threads.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MctsBenchmark {
+    private static final long PLAYOUTS = 20_000;
+
+    @Param({ "1", "2", "4", "8" })
+    public int threads;
+
+    // Opening, and a middle game where playouts are shorter
+    @Param({ "", "332443211256" })
+    public String position;
+
+    private Targets.Mcts bot;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Rollouts {
+        public long rollouts;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            rollouts = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        bot = Targets.load().mcts(threads, PLAYOUTS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        bot.close();
+    }
+
+    @Benchmark
+    public int chooseMove(Rollouts counters) {
+        int column = bot.chooseMove(position);
+        counters.rollouts += bot.getLastPlayouts();
+        return column;
+    }
+}
@@ -0,0 +1,61 @@
+package connect4.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to search every standard position to the fixed depth, per thread
+ * count. Dividing the 1-thread score by another row gives the speed-up;
+ * SearchSpeedup prints that table directly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParallelSearchBenchmark {
+
+    @Param({ "1", "2", "4", "8", "16", "32" })
+    public int threads;
+
+    private Targets.Search search;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        search = Targets.load().search(threads);
+    }
+
+    // Each shot starts from an empty table
+    @Setup(Level.Iteration)
+    public void clearTable() {
+        search.reset();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        search.close();
+    }
+
+    @Benchmark
+    public int searchPositions() {
+        int columns = 0;
+        for (String position : SearchPositions.ALL) {
+            columns += search.search(position, SearchPositions.DEPTH)[0];
+        }
+        return columns;
+    }
+}
@@ -0,0 +1,24 @@
+package connect4.bench;
+
+/**
+ * The standard positions for search benchmarks: openings through early
+ * middle game, written as 0-based columns in the order they were played.
+ */
+final class SearchPositions {
+    static final String[] ALL = {
+        "",
+        "33",
+        "3323",
+        "332312",
+        "33233422",
+        "3324432112",
+        "332443211256",
+        "33244321125660",
+    };
+
+    // Fixed search depth; deep enough that splitting pays off
+    static final int DEPTH = 16;
+
+    private SearchPositions() {
+    }
+}
@@ -0,0 +1,66 @@
+package connect4.bench;
+
+import java.util.Arrays;
+
+/**
+ * Prints parallel search speed-up versus thread count over the standard
+ * positions, and fails if any thread count picks a different move or score
+ * than the single-threaded search.
+ *
+ * Usage: java -cp target/benchmarks.jar connect4.bench.SearchSpeedup [depth] [threads...]
+ */
+public class SearchSpeedup {
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : SearchPositions.DEPTH;
+        int[] threadCounts = args.length > 1
+                ? Arrays.stream(args, 1, args.length).mapToInt(Integer::parseInt).toArray()
+                : new int[] { 1, 2, 4, 8, 16, 32 };
+        Targets targets = Targets.load();
+
+        System.out.printf("depth %d, %d positions, %d cores%n", depth, SearchPositions.ALL.length,
+                Runtime.getRuntime().availableProcessors());
+        System.out.printf("%8s %12s %14s %10s%n", "threads", "ms", "nodes/s", "speed-up");
+
+        int[][] expected = null;
+        double baseline = 0;
+        for (int threads : threadCounts) {
+            try (Targets.Search search = targets.search(threads)) {
+                int[][] results = new int[SearchPositions.ALL.length][];
+                long best = Long.MAX_VALUE;
+                long nodes = 0;
+                // The first round warms up the JIT; the fastest round counts
+                for (int round = 0; round <= ROUNDS; round++) {
+                    long elapsed = 0;
+                    long roundNodes = 0;
+                    for (int i = 0; i < results.length; i++) {
+                        // Every position starts cold; clearing the table is not timed
+                        search.reset();
+                        long start = System.nanoTime();
+                        results[i] = search.search(SearchPositions.ALL[i], depth);
+                        elapsed += System.nanoTime() - start;
+                        roundNodes += search.getNodes();
+                    }
+                    if (round > 0 && elapsed < best) {
+                        best = elapsed;
+                        nodes = roundNodes;
+                    }
+                }
+
+                if (expected == null) {
+                    expected = results;
+                    baseline = best;
+                }
+                for (int i = 0; i < results.length; i++) {
+                    if (!Arrays.equals(expected[i], results[i])) {
+                        throw new IllegalStateException(threads + " threads chose " + Arrays.toString(results[i])
+                                + " instead of " + Arrays.toString(expected[i]) + " for " + SearchPositions.ALL[i]);
+                    }
+                }
+                System.out.printf("%8d %12.1f %14d %10.2f%n", threads, best / 1e6,
+                        nodes * 1_000_000_000L / best, baseline / best);
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package connect4.bench;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * The server code under test, seen from the benchmarks.
+ *
+ * The server lives in the default package, which named packages cannot
+ * import, and JMH refuses benchmarks in the default package. BenchTargets
+ * (default package) implements this interface and is loaded by name once,
+ * so the measured calls are plain interface calls.
+ */
+public interface Targets {
+
+    // A game engine that benchmarks can replay move sequences on
+    interface Engine {
+        boolean makeMove(int column);
+
+        boolean isGameOver();
+
+        int getWinner();
+
+        void reset();
+    }
+
+    // A message codec plus the sample messages it encodes
+    interface Codec {
+        byte[] encode(Object message) throws IOException;
+
+        Object decode(byte[] payload) throws IOException;
+    }
+
+    // Two framed clients playing each other through a real server over loopback
+    interface Loopback extends AutoCloseable {
+        // Sends the next move and waits until both players have seen it applied
+        void move() throws IOException;
+
+        @Override
+        void close() throws IOException;
+    }
+
+    // A parallel solver searching positions to a fixed depth
+    interface Search extends AutoCloseable {
+        // Best column and score for a position given as a string of 0-based column digits
+        int[] search(String moves, int depth);
+
+        // Nodes visited by the last search
+        long getNodes();
+
+        // Empties the transposition table so the next search starts cold
+        void reset();
+
+        @Override
+        void close();
+    }
+
+    // An MCTS bot choosing moves with a fixed playout budget
+    interface Mcts extends AutoCloseable {
+        // Column chosen for a position given as a string of 0-based column digits
+        int chooseMove(String moves);
+
+        // Playouts in the last search, across all threads
+        long getLastPlayouts();
+
+        @Override
+        void close();
+    }
+
+    // A game journal being written the way the server writes it
+    interface Journal extends AutoCloseable {
+        // Appends one move; games start and end as their boards fill
+        void move();
+
+        // fsync calls so far
+        long getSyncs();
+
+        @Override
+        void close();
+    }
+
+    Engine engine(String kind);
+
+    Codec codec(String kind);
+
+    Object sampleMessage(String type);
+
+    Object newBoard();
+
+    // Copies a board into a GAME_STATE message the way the server does
+    Object snapshot(Object board);
+
+    Loopback loopback(String transport) throws IOException;
+
+    Search search(int threads);
+
+    Mcts mcts(int threads, long playouts);
+
+    // Opens a journal in an empty directory, with the given fsync batching
+    Journal journal(Path directory, long syncMillis, int syncRecords) throws IOException;
+
+    // Replays a journal directory as a restarting server would; returns the unfinished games
+    int recoverJournal(Path directory) throws IOException;
+
+    static Targets load() {
+        try {
+            return (Targets) Class.forName("BenchTargets").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("BenchTargets is missing from the classpath", e);
+        }
+    }
+}
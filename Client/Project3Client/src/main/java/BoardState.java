@@ -7,12 +7,18 @@ public class BoardState implements Serializable {
     private int currentPlayer; // Whose turn is it: 1 or 2
     private int winner; // 0=no winner yet, 1=player1, 2=player2, 3=draw
     private boolean gameOver;
+    private int sequence; // Number of moves played; move events continue from here
     
     public BoardState(int[][] board, int currentPlayer, int winner, boolean gameOver) {
+        this(board, currentPlayer, winner, gameOver, 0);
+    }
+    
+    public BoardState(int[][] board, int currentPlayer, int winner, boolean gameOver, int sequence) {
         this.board = board;
         this.currentPlayer = currentPlayer;
         this.winner = winner;
         this.gameOver = gameOver;
+        this.sequence = sequence;
     }
     
     public int[][] getBoard() {
@@ -30,4 +36,8 @@ public class BoardState implements Serializable {
     public boolean isGameOver() {
         return gameOver;
     }
+    
+    public int getSequence() {
+        return sequence;
+    }
 }
\ No newline at end of file
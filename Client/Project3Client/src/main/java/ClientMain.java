@@ -43,6 +43,9 @@ public class ClientMain extends Application {
     private ListView<String> chatLog;
     private TextField chatField;
     private Button findGameBtn;
+    private Button vsComputerBtn;
+    private Button hintBtn;
+    private Button watchBtn;
     private Button quitGameBtn;
     private Button playAgainBtn;
     
@@ -74,6 +77,12 @@ public class ClientMain extends Application {
         client.start();
     }
     
+    // Once the window is closed there is nothing to reconnect for
+    @Override
+    public void stop() {
+        client.disconnect();
+    }
+    
     private void createHomeScene() {
         BorderPane root = new BorderPane();
         root.setPadding(new Insets(20));
@@ -313,6 +322,29 @@ public class ClientMain extends Application {
         findGameBtn.setPrefHeight(35);
         findGameBtn.setOnAction(e -> client.requestGame());
         
+        vsComputerBtn = new Button("VS COMPUTER");
+        vsComputerBtn.setFont(Font.font("Arial", FontWeight.BOLD, 14));
+        vsComputerBtn.setPrefWidth(140);
+        vsComputerBtn.setPrefHeight(35);
+        vsComputerBtn.setOnAction(e -> client.requestComputerGame());
+        
+        hintBtn = new Button("HINT");
+        hintBtn.setFont(Font.font("Arial", FontWeight.BOLD, 14));
+        hintBtn.setPrefWidth(90);
+        hintBtn.setPrefHeight(35);
+        hintBtn.setOnAction(e -> client.requestAnalysis());
+        hintBtn.setDisable(true);
+        
+        // Watches the player or game id typed in the chat box; with the box empty, lists games instead
+        watchBtn = new Button("WATCH");
+        watchBtn.setFont(Font.font("Arial", FontWeight.BOLD, 14));
+        watchBtn.setPrefWidth(90);
+        watchBtn.setPrefHeight(35);
+        watchBtn.setOnAction(e -> {
+            client.spectate(chatField.getText().trim());
+            chatField.clear();
+        });
+        
         playAgainBtn = new Button("PLAY AGAIN");
         playAgainBtn.setFont(Font.font("Arial", FontWeight.BOLD, 14));
         playAgainBtn.setPrefWidth(140);
@@ -370,10 +402,10 @@ public class ClientMain extends Application {
             }
         });
         
-        buttonBox.getChildren().addAll(findGameBtn, playAgainBtn, quitGameBtn, homeBtn);
+        buttonBox.getChildren().addAll(findGameBtn, vsComputerBtn, hintBtn, watchBtn, playAgainBtn, quitGameBtn, homeBtn);
         gameRoot.setBottom(buttonBox);
         
-        gameScene = new Scene(gameRoot, 700, 600);
+        gameScene = new Scene(gameRoot, 1050, 600);
     }
     
     // Handle incoming messages from server - acts as MessageHandler
@@ -394,6 +426,26 @@ public class ClientMain extends Application {
                 alert.setHeaderText("Login Failed");
                 alert.setContentText(message.getContent());
                 alert.showAndWait();
+                // A session that could not be resumed means logging in again
+                if (primaryStage.getScene() == gameScene) {
+                    primaryStage.setScene(loginScene);
+                }
+                break;
+                
+            case RESUME:
+                // Back on the same session after a dropped connection; missed moves follow
+                chatLog.getItems().add(message.getContent());
+                chatLog.scrollTo(chatLog.getItems().size() - 1);
+                statusText.setText(message.getContent());
+                statusText.setFill(Color.WHITE);
+                if (Integer.valueOf(0).equals(message.getData())) {
+                    findGameBtn.setDisable(false);
+                    vsComputerBtn.setDisable(false);
+                    watchBtn.setDisable(false);
+                    hintBtn.setDisable(true);
+                    quitGameBtn.setDisable(true);
+                    playAgainBtn.setDisable(true);
+                }
                 break;
                 
             case CHAT:
@@ -401,6 +453,11 @@ public class ClientMain extends Application {
                 chatLog.getItems().add(message.toString());
                 // Auto-scroll to bottom
                 chatLog.scrollTo(chatLog.getItems().size() - 1);
+                // The client's own notices are about the connection
+                if ("CLIENT".equals(message.getSender())) {
+                    statusText.setText(message.getContent());
+                    statusText.setFill(Color.GRAY);
+                }
                 break;
                 
             case GAME_STARTED:
@@ -409,6 +466,9 @@ public class ClientMain extends Application {
                                   ", Player Number: " + client.getPlayerNumber());
                 
                 findGameBtn.setDisable(true);
+                vsComputerBtn.setDisable(true);
+                watchBtn.setDisable(true);
+                hintBtn.setDisable(false);
                 quitGameBtn.setDisable(false);
                 playAgainBtn.setDisable(true);
                 
@@ -425,7 +485,8 @@ public class ClientMain extends Application {
                 break;
                 
             case GAME_STATE:
-                System.out.println("Received GAME_STATE message in GUI");
+            case GAME_MOVE_APPLIED:
+                System.out.println("Received " + message.getType() + " message in GUI");
                 
                 try {
                     // Update board display
@@ -435,7 +496,11 @@ public class ClientMain extends Application {
                         
                         // Update status text with current turn
                         if (!client.getGameBoard().isGameOver()) {
-                            if (client.getGameBoard().getCurrentPlayer() == client.getPlayerNumber()) {
+                            if (client.isWatching()) {
+                                boolean red = client.getGameBoard().getCurrentPlayer() == 1;
+                                statusText.setText("Watching - " + (red ? "RED" : "YELLOW") + " to move");
+                                statusText.setFill(red ? Color.RED : Color.YELLOW);
+                            } else if (client.getGameBoard().getCurrentPlayer() == client.getPlayerNumber()) {
                                 statusText.setText("YOUR TURN - Click a column to place your piece");
                                 statusText.setFill(client.getPlayerNumber() == 1 ? Color.RED : Color.YELLOW);
                             } else {
@@ -454,12 +519,40 @@ public class ClientMain extends Application {
                 }
                 break;
                 
+            case SPECTATE:
+                // Confirmation of what we are watching, or the list of games to pick from
+                chatLog.getItems().add(message.getContent());
+                chatLog.scrollTo(chatLog.getItems().size() - 1);
+                if (client.isWatching()) {
+                    statusText.setText("Watching - " + message.getContent());
+                    statusText.setFill(Color.WHITE);
+                    playAgainBtn.setDisable(true);
+                }
+                break;
+                
+            case ANALYZE:
+                // Show the hint in the chat log unless the board has moved on
+                if (message.getData() instanceof PositionAnalysis && client.getGameBoard() != null) {
+                    PositionAnalysis analysis = (PositionAnalysis) message.getData();
+                    if (analysis.getSequence() == client.getGameBoard().getMoveCount()) {
+                        chatLog.getItems().add("HINT: column " + (analysis.getBestColumn() + 1)
+                                + " looks best (" + analysis + ")");
+                        chatLog.scrollTo(chatLog.getItems().size() - 1);
+                    }
+                }
+                break;
+                
             case GAME_OVER:
                 // Update board one last time
                 updateBoardDisplay();
                 
                 // Update status text with game result
                 int winner = (Integer) message.getData();
+                if (client.isWatching()) {
+                    statusText.setText(winner == 3 ? "GAME ENDED IN A DRAW!" : (winner == 1 ? "RED" : "YELLOW") + " WINS!");
+                    statusText.setFill(winner == 1 ? Color.RED : winner == 2 ? Color.YELLOW : Color.WHITE);
+                    break;
+                }
                 if (winner == client.getPlayerNumber()) {
                     statusText.setText("YOU WON! 🎉");
                     statusText.setFill(client.getPlayerNumber() == 1 ? Color.RED : Color.YELLOW);
@@ -489,13 +582,13 @@ public class ClientMain extends Application {
             return;
         }
         
-        int[][] board = client.getGameBoard().getBoard();
+        GameBoard board = client.getGameBoard();
         System.out.println("Board state:");
         
         for (int r = 0; r < GameBoard.getRows(); r++) {
             StringBuilder rowStr = new StringBuilder();
             for (int c = 0; c < GameBoard.getCols(); c++) {
-                rowStr.append(board[r][c]).append(" ");
+                rowStr.append(board.getCell(r, c)).append(" ");
             }
             System.out.println(rowStr.toString());
         }
@@ -517,11 +610,11 @@ public class ClientMain extends Application {
                         // (row 0 is top row, row 5 is bottom row)
                         Circle circle = boardCircles[r][c];
                         
-                        if (board[r][c] == 1) {
+                        if (board.getCell(r, c) == 1) {
                             // Always show player 1's pieces as RED
                             System.out.println("Setting circle at [" + r + "][" + c + "] to RED (Player 1)");
                             circle.setFill(Color.RED);
-                        } else if (board[r][c] == 2) {
+                        } else if (board.getCell(r, c) == 2) {
                             // Always show player 2's pieces as YELLOW
                             System.out.println("Setting circle at [" + r + "][" + c + "] to YELLOW (Player 2)");
                             circle.setFill(Color.YELLOW);
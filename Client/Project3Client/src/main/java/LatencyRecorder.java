@@ -0,0 +1,97 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies counted into log-linear buckets, so percentiles can be read
+ * without keeping every sample. Each power of two is split into 16 buckets,
+ * which keeps a reported percentile within about 6% of the true value.
+ * Any number of threads may record at once: each thread counts into one of
+ * several stripes of buckets, and recording never allocates.
+ */
+public class LatencyRecorder {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+    private static final int STRIPES = Math.min(16,
+            Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)));
+
+    private final AtomicLongArray counts = new AtomicLongArray(STRIPES * BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(stripe() * BUCKETS + bucket(micros));
+        count.increment();
+        sum.add(micros);
+        long seen = max.get();
+        while (micros > seen && !max.compareAndSet(seen, micros)) {
+            seen = max.get();
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    // Total of every latency recorded, in microseconds
+    public long getSumMicros() {
+        return sum.sum();
+    }
+
+    // Largest latency recorded, in microseconds
+    public long getMaxMicros() {
+        return max.get();
+    }
+
+    // Latency in microseconds that the given percentage of samples did not exceed; 0 if none were recorded
+    public long percentileMicros(double percent) {
+        long[] merged = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            long n = counts.get(i);
+            merged[i % BUCKETS] += n;
+            total += n;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percent / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += merged[i];
+            if (seen >= rank) {
+                return Math.min(lowest(i + 1) - 1, max.get());
+            }
+        }
+        return max.get();
+    }
+
+    // Threads spread over the stripes by id, so they rarely share a counter
+    private static int stripe() {
+        long id = Thread.currentThread().getId();
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & (STRIPES - 1);
+    }
+
+    // Values below 16 get a bucket each; above that, 16 buckets per power of two
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // Smallest value that falls into the bucket
+    static long lowest(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+    }
+}
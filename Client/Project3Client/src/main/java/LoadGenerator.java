@@ -0,0 +1,155 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Headless load test for the server: many simulated users, each with its own
+ * NetworkClient, playing as a scenario file describes. No JavaFX is needed.
+ *
+ *   java -cp target/classes LoadGenerator scenarios/default.properties --load.users=2000
+ *
+ * Users run on virtual threads when the JVM has them (Java 21+). At the end it
+ * prints throughput and latency percentiles for connecting, logging in, being
+ * matched and a move's round trip.
+ */
+public class LoadGenerator {
+    private static final long PROGRESS_MILLIS = 5000;
+
+    // Everything the users measure, shared by all of them
+    static final class Results {
+        final LatencyRecorder connect = new LatencyRecorder();
+        final LatencyRecorder login = new LatencyRecorder();
+        final LatencyRecorder match = new LatencyRecorder();          // GAME_REQUEST until GAME_STARTED
+        final LatencyRecorder computerStart = new LatencyRecorder();  // the same against the computer
+        final LatencyRecorder moves = new LatencyRecorder();          // GAME_MOVE until it comes back applied
+        final LatencyRecorder resume = new LatencyRecorder();         // dropping the connection until RESUME
+        final LongAdder games = new LongAdder();
+        final LongAdder rematches = new LongAdder();
+        final LongAdder chats = new LongAdder();
+        final LongAdder abandoned = new LongAdder();    // games the opponent left before the end
+        final LongAdder disconnects = new LongAdder();  // connections dropped on purpose
+        final LongAdder refused = new LongAdder();      // computer games turned down as too busy
+        final LongAdder timeouts = new LongAdder();
+        final LongAdder dropped = new LongAdder();      // connections the server closed
+        final LongAdder errors = new LongAdder();
+    }
+
+    private final LoadScenario scenario;
+    private final Results results = new Results();
+
+    public LoadGenerator(LoadScenario scenario) {
+        this.scenario = scenario;
+    }
+
+    public Results run(PrintStream out) throws InterruptedException {
+        ThreadFactory threads = VirtualThreads.factory("load-");
+        if (threads == null) {
+            out.println("Virtual threads need Java 21 or newer; falling back to platform threads");
+            threads = task -> {
+                Thread thread = new Thread(task);
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+        int count = scenario.getUsers();
+        out.printf("%d users against %s:%d for %d s%n", count, scenario.getHost(), scenario.getPort(),
+                scenario.getDurationMillis() / 1000);
+
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(scenario.getDurationMillis());
+        long ramp = TimeUnit.MILLISECONDS.toNanos(scenario.getRampMillis());
+        long nextProgress = start + TimeUnit.MILLISECONDS.toNanos(PROGRESS_MILLIS);
+        List<Thread> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // Spread the start times evenly over the ramp
+            long startAt = start + ramp * i / count;
+            while (System.nanoTime() - startAt < 0) {
+                TimeUnit.NANOSECONDS.sleep(Math.max(0, startAt - System.nanoTime()));
+            }
+            Thread user = threads.newThread(
+                    new SimulatedUser(scenario.getNamePrefix() + i, scenario, results, threads, deadline));
+            user.start();
+            users.add(user);
+            if (System.nanoTime() - nextProgress >= 0) {
+                progress(out, start);
+                nextProgress += TimeUnit.MILLISECONDS.toNanos(PROGRESS_MILLIS);
+            }
+        }
+
+        while (System.nanoTime() - deadline < 0) {
+            TimeUnit.NANOSECONDS.sleep(Math.max(0, Math.min(deadline, nextProgress) - System.nanoTime()));
+            if (System.nanoTime() - nextProgress >= 0) {
+                progress(out, start);
+                nextProgress += TimeUnit.MILLISECONDS.toNanos(PROGRESS_MILLIS);
+            }
+        }
+
+        // Users finish what they are waiting for; anyone still stuck after that is left behind
+        long joinBy = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(scenario.getReplyTimeoutMillis());
+        for (Thread user : users) {
+            TimeUnit.NANOSECONDS.timedJoin(user, Math.max(1, joinBy - System.nanoTime()));
+        }
+        report(out, System.nanoTime() - start);
+        return results;
+    }
+
+    private void progress(PrintStream out, long start) {
+        long seconds = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start);
+        out.printf(Locale.ROOT, "%4d s  logins %d  games %d  moves %d  p99 move %.2f ms%n", seconds,
+                results.login.getCount(), results.games.sum(), results.moves.getCount(),
+                results.moves.percentileMicros(99) / 1000.0);
+    }
+
+    private void report(PrintStream out, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        out.println();
+        out.printf(Locale.ROOT, "%-14s %9s %9s %9s %9s %9s %9s %9s%n",
+                "", "count", "per sec", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        row(out, "connect", results.connect, seconds);
+        row(out, "login", results.login, seconds);
+        row(out, "match", results.match, seconds);
+        row(out, "vs computer", results.computerStart, seconds);
+        row(out, "move", results.moves, seconds);
+        row(out, "resume", results.resume, seconds);
+        out.println();
+        out.printf(Locale.ROOT, "games %d (%.1f/s)  rematches %d  chats %d  abandoned %d  disconnects %d%n",
+                results.games.sum(), results.games.sum() / seconds, results.rematches.sum(), results.chats.sum(),
+                results.abandoned.sum(), results.disconnects.sum());
+        out.printf("refused %d  timeouts %d  dropped %d  errors %d%n", results.refused.sum(),
+                results.timeouts.sum(), results.dropped.sum(), results.errors.sum());
+    }
+
+    private static void row(PrintStream out, String name, LatencyRecorder recorder, double seconds) {
+        out.printf(Locale.ROOT, "%-14s %9d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n", name, recorder.getCount(),
+                recorder.getCount() / seconds, recorder.percentileMicros(50) / 1000.0,
+                recorder.percentileMicros(90) / 1000.0, recorder.percentileMicros(99) / 1000.0,
+                recorder.percentileMicros(99.9) / 1000.0, recorder.getMaxMicros() / 1000.0);
+    }
+
+    // Arguments are scenario files, read in order, and --key=value settings that override them
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Properties props = new Properties();
+        Properties overrides = new Properties();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                int eq = arg.indexOf('=');
+                overrides.setProperty(arg.substring(2, eq), arg.substring(eq + 1));
+            } else {
+                try (Reader reader = Files.newBufferedReader(Paths.get(arg))) {
+                    props.load(reader);
+                }
+            }
+        }
+        props.putAll(overrides);
+        new LoadGenerator(new LoadScenario(props)).run(System.out);
+    }
+}
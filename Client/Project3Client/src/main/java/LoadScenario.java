@@ -0,0 +1,125 @@
+import java.util.Properties;
+
+/**
+ * What the load generator's simulated users do, read from a properties file
+ * (see scenarios/default.properties) with --key=value overrides. Rates are
+ * chances between 0 and 1.
+ */
+public class LoadScenario {
+    public enum Strategy {
+        RANDOM,     // any open column
+        GREEDY      // take a win, block a loss, otherwise lean towards the centre
+    }
+
+    private final String host;
+    private final int port;
+    private final int users;
+    private final String namePrefix;
+    private final long rampMillis;
+    private final long durationMillis;
+    private final double computerShare;
+    private final Strategy strategy;
+    private final long thinkMinMillis;
+    private final long thinkMaxMillis;
+    private final double chatRate;
+    private final double rematchRate;
+    private final double disconnectRate;
+    private final long reconnectMillis;
+    private final double resumeShare;
+    private final long replyTimeoutMillis;
+
+    public LoadScenario(Properties props) {
+        this.host = props.getProperty("load.host", "127.0.0.1");
+        this.port = Integer.parseInt(props.getProperty("load.port", "5555"));
+        this.users = Integer.parseInt(props.getProperty("load.users", "100"));
+        this.namePrefix = props.getProperty("load.namePrefix", "load");
+        this.rampMillis = Long.parseLong(props.getProperty("load.rampSeconds", "5")) * 1000;
+        this.durationMillis = Long.parseLong(props.getProperty("load.durationSeconds", "60")) * 1000;
+        this.computerShare = Double.parseDouble(props.getProperty("load.computerShare", "0"));
+        this.strategy = Strategy.valueOf(props.getProperty("load.strategy", "random").trim().toUpperCase());
+        this.thinkMinMillis = Long.parseLong(props.getProperty("load.thinkMinMillis", "100"));
+        this.thinkMaxMillis = Long.parseLong(props.getProperty("load.thinkMaxMillis", "500"));
+        this.chatRate = Double.parseDouble(props.getProperty("load.chatRate", "0.05"));
+        this.rematchRate = Double.parseDouble(props.getProperty("load.rematchRate", "0.5"));
+        this.disconnectRate = Double.parseDouble(props.getProperty("load.disconnectRate", "0"));
+        this.reconnectMillis = Long.parseLong(props.getProperty("load.reconnectMillis", "1000"));
+        this.resumeShare = Double.parseDouble(props.getProperty("load.resumeShare", "0.5"));
+        this.replyTimeoutMillis = Long.parseLong(props.getProperty("load.replyTimeoutSeconds", "30")) * 1000;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    // Simulated users, each with its own connection
+    public int getUsers() {
+        return users;
+    }
+
+    // Users log in as prefix0, prefix1, ...
+    public String getNamePrefix() {
+        return namePrefix;
+    }
+
+    // Time over which the users' start times are spread
+    public long getRampMillis() {
+        return rampMillis;
+    }
+
+    // Time from the first user starting until everyone quits
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    // Share of games played against the server's computer opponent instead of a queued human
+    public double getComputerShare() {
+        return computerShare;
+    }
+
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    // Each move waits a random time between these before it is sent
+    public long getThinkMinMillis() {
+        return thinkMinMillis;
+    }
+
+    public long getThinkMaxMillis() {
+        return thinkMaxMillis;
+    }
+
+    // Chance of sending a chat line along with a move
+    public double getChatRate() {
+        return chatRate;
+    }
+
+    // Chance that the player who decides asks for a rematch rather than leaving
+    public double getRematchRate() {
+        return rematchRate;
+    }
+
+    // Chance of dropping the connection instead of making a move
+    public double getDisconnectRate() {
+        return disconnectRate;
+    }
+
+    // Pause before a user that dropped its connection comes back
+    public long getReconnectMillis() {
+        return reconnectMillis;
+    }
+
+    // Share of dropped connections that reconnect and resume their session instead of logging in again
+    public double getResumeShare() {
+        return resumeShare;
+    }
+
+    // Longest wait for an expected reply before the user gives up and reconnects
+    public long getReplyTimeoutMillis() {
+        return replyTimeoutMillis;
+    }
+}
@@ -1,147 +1,306 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 public class NetworkClient extends Thread {
-    private String host = "127.0.0.1";
-    private int port = 5555;
+    private static final long RETRY_MIN_MILLIS = 250;
+    private static final long RETRY_MAX_MILLIS = 4000;
     
-    private Socket socketClient;
-    private ObjectOutputStream out;
-    private ObjectInputStream in;
+    private final String host;
+    private final int port;
+    
+    private volatile Socket socketClient;
+    private DataOutputStream out;
+    private DataInputStream in;
+    private MessageCodec codec;
     
     private String username;
     private boolean isLoggedIn;
     private int playerNumber; // 1 or 2
     private GameBoard gameBoard;
     private boolean inGame;
+    private boolean watching;  // spectating someone else's game
     private String opponent;
     
     private Consumer<Message> messageHandler;
+    private volatile boolean verbose = true;  // print progress and errors to the console
+    private volatile boolean connected;
+    private final CountDownLatch handshakeDone = new CountDownLatch(1);
+    private final Object sendLock = new Object();  // the reader thread sends too, so writes take turns
+    private volatile String resumeToken;  // from LOGIN_SUCCESS; picks the session back up after a drop
+    private volatile long resumeMillis = 30000;  // how long to keep trying to reconnect after a drop
+    private volatile boolean closing;  // disconnect() was called, so the drop is on purpose
+    private volatile boolean reconnecting;
+    private boolean resumePending;  // RESUME sent, reply not yet seen
     
     public NetworkClient(Consumer<Message> messageHandler) {
+        this("127.0.0.1", 5555, messageHandler);
+    }
+    
+    public NetworkClient(String host, int port, Consumer<Message> messageHandler) {
+        this.host = host;
+        this.port = port;
         this.messageHandler = messageHandler;
     }
     
     @Override
     public void run() {
-        try {
-            socketClient = new Socket(host, port);
-            out = new ObjectOutputStream(socketClient.getOutputStream());
-            in = new ObjectInputStream(socketClient.getInputStream());
-            socketClient.setTcpNoDelay(true);
+        long retryUntil = 0;
+        long retryMillis = RETRY_MIN_MILLIS;
+        while (true) {
+            try {
+                connect(retryUntil != 0);
+                retryUntil = 0;
+                retryMillis = RETRY_MIN_MILLIS;
+                readMessages();
+            } catch (IOException | RuntimeException e) {
+                log("Client connection error: " + e.getMessage());
+                if (verbose) {
+                    e.printStackTrace();
+                }
+            } finally {
+                // Retry a dropped connection if the server gave us a session to come back to
+                reconnecting = !closing && resumeToken != null && resumeMillis > 0;
+                connected = false;
+                handshakeDone.countDown();
+                closeSocket();
+            }
+            if (!reconnecting) {
+                return;
+            }
+            if (retryUntil == 0) {
+                retryUntil = System.currentTimeMillis() + resumeMillis;
+                messageHandler.accept(new Message(Message.MessageType.CHAT, "CLIENT", "Connection lost. Reconnecting..."));
+            } else if (System.currentTimeMillis() >= retryUntil) {
+                reconnecting = false;
+                messageHandler.accept(new Message(Message.MessageType.CHAT, "CLIENT", "Could not reconnect to the server."));
+                return;
+            }
+            try {
+                Thread.sleep(retryMillis);
+            } catch (InterruptedException e) {
+                reconnecting = false;
+                return;
+            }
+            retryMillis = Math.min(RETRY_MAX_MILLIS, retryMillis * 2);
+        }
+    }
+    
+    // Open the socket and agree on a protocol; when resuming, RESUME goes out before anything else can
+    private void connect(boolean resume) throws IOException {
+        socketClient = new Socket(host, port);
+        socketClient.setTcpNoDelay(true);
+        in = new DataInputStream(new BufferedInputStream(socketClient.getInputStream()));
+        DataOutputStream handshakeOut = new DataOutputStream(new BufferedOutputStream(socketClient.getOutputStream()));
+        
+        // Offer the newest protocol we speak; the server answers with the one it picked
+        handshakeOut.writeInt(WireProtocol.MAGIC);
+        handshakeOut.writeInt(WireProtocol.HIGHEST_VERSION);
+        handshakeOut.flush();
+        if (in.readInt() != WireProtocol.MAGIC) {
+            throw new IOException("Server does not speak the framed protocol");
+        }
+        int version = in.readInt();
+        synchronized (sendLock) {
+            codec = WireProtocol.codecFor(version);
+            out = handshakeOut;
+            if (resume) {
+                // Say how far through the game we got, so only the missed moves come back
+                resumePending = true;
+                sendLocked(new Message(Message.MessageType.RESUME, username, resumeToken, lastSequence()));
+            }
+        }
+        connected = true;
+        reconnecting = false;
+        handshakeDone.countDown();
+        log("Connected using protocol version " + version);
+    }
+    
+    // Handle incoming messages until the connection drops
+    private void readMessages() throws IOException {
+        while (true) {
+            // Read message from server
+            byte[] frame = WireProtocol.readFrame(in);
+            Message message = codec.decode(frame, 0, frame.length);
             
-            // Handle incoming messages
-            while(true) {
-                try {
-                    // Read message from server
-                    Message message = (Message) in.readObject();
-                    
-                    // Update game state if included in message
-                    if (message.getType() == Message.MessageType.GAME_STATE ||
-                        message.getType() == Message.MessageType.GAME_STARTED) {
-                        if (message.getData() != null) {
-                            // Handle BoardState objects
-                            if (message.getData() instanceof BoardState) {
-                                BoardState boardState = (BoardState) message.getData();
-                                System.out.println("Received BoardState object");
-                                
-                                // If we don't have a game board yet, create one
-                                if (this.gameBoard == null) {
-                                    this.gameBoard = new GameBoard();
-                                }
-                                
-                                // Update the game board with the board state data
-                                this.gameBoard.updateFromBoardState(boardState);
-                                System.out.println("Updated game board from BoardState");
-                            } 
-                            // Handle GameBoard objects (for backward compatibility)
-                            else if (message.getData() instanceof GameBoard) {
-                                this.gameBoard = (GameBoard) message.getData();
-                                System.out.println("Updated game board from GameBoard message");
-                            }
-                        }
-                    }
-                    
-                    // Special handling for GAME_STARTED message
-                    if (message.getType() == Message.MessageType.GAME_STARTED) {
-                        // Set game-in-progress state
-                        this.inGame = true;
+            // Keep the token that lets us resume this session, and forget it once the session is gone
+            if (message.getType() == Message.MessageType.LOGIN_SUCCESS) {
+                this.resumeToken = message.getData() instanceof String ? (String) message.getData() : null;
+            } else if (message.getType() == Message.MessageType.LOGIN_FAILED && resumePending) {
+                resumePending = false;
+                this.resumeToken = null;
+                this.inGame = false;
+                this.watching = false;
+                this.gameBoard = null;
+            }
+            
+            // A resumed session is told whether it is still in a game; missed moves follow
+            if (message.getType() == Message.MessageType.RESUME) {
+                resumePending = false;
+                this.watching = false;
+                if (message.getData() instanceof Integer && (Integer) message.getData() == 0) {
+                    this.inGame = false;
+                    this.gameBoard = null;
+                }
+            }
+            
+            // Update game state if included in message
+            if (message.getType() == Message.MessageType.GAME_STATE ||
+                message.getType() == Message.MessageType.GAME_STARTED) {
+                if (message.getData() != null) {
+                    // Handle BoardState objects
+                    if (message.getData() instanceof BoardState) {
+                        BoardState boardState = (BoardState) message.getData();
+                        log("Received BoardState object");
                         
-                        // Get player number from message data
-                        if (message.getData() instanceof Integer) {
-                            this.playerNumber = (Integer) message.getData();
+                        // If we don't have a game board yet, create one
+                        if (this.gameBoard == null) {
+                            this.gameBoard = new GameBoard();
                         }
                         
-                        // Extract opponent name from the content
-                        try {
-                            String content = message.getContent();
-                            
-                            // Parse out opponent name from message content
-                            if (content.contains("against")) {
-                                int startIndex = content.indexOf("against") + 8;
-                                int endIndex = content.indexOf(".", startIndex);
-                                if (endIndex == -1) endIndex = content.length();
-                                this.opponent = content.substring(startIndex, endIndex).trim();
-                            }
-                            
-                            // IMPORTANT: Create a new game board if one doesn't exist yet
-                            if (this.gameBoard == null) {
-                                this.gameBoard = new GameBoard(); // Player 1 always starts first
-                                System.out.println("Created new game board with player 1 starting");
-                            }
-                        } catch (Exception e) {
-                            System.out.println("Error parsing game start info: " + e.getMessage());
-                        }
+                        // Update the game board with the board state data
+                        this.gameBoard.updateFromBoardState(boardState);
+                        log("Updated game board from BoardState");
+                    } 
+                    // Handle GameBoard objects (for backward compatibility)
+                    else if (message.getData() instanceof GameBoard) {
+                        this.gameBoard = (GameBoard) message.getData();
+                        log("Updated game board from GameBoard message");
                     }
-                    
-                    // Process message with handler
-                    messageHandler.accept(message);
                 }
-                catch(Exception e) {
-                    System.out.println("Error reading from server: " + e.getMessage());
-                    e.printStackTrace();
-                    break;
+            }
+            
+            // Apply single-move updates locally; fall back to a snapshot on a sequence gap
+            if (message.getType() == Message.MessageType.GAME_MOVE_APPLIED &&
+                message.getData() instanceof MoveEvent) {
+                MoveEvent move = (MoveEvent) message.getData();
+                if (this.gameBoard == null || !this.gameBoard.applyMove(move)) {
+                    log("Missed moves before " + move + ", requesting resync");
+                    requestResync();
                 }
             }
-        } catch (IOException e) {
-            System.out.println("Client connection error: " + e.getMessage());
-            e.printStackTrace();
-        } finally {
-            try {
-                if (socketClient != null && !socketClient.isClosed()) {
-                    socketClient.close();
+            
+            // A spectator follows the watched game on a fresh board and never moves
+            if (message.getType() == Message.MessageType.SPECTATE) {
+                this.watching = message.getData() instanceof Integer;
+                if (this.watching) {
+                    this.playerNumber = 0;
+                    this.gameBoard = new GameBoard();
                 }
-            } catch (IOException e) {
-                e.printStackTrace();
             }
+            
+            // Special handling for GAME_STARTED message
+            if (message.getType() == Message.MessageType.GAME_STARTED) {
+                // Set game-in-progress state
+                this.inGame = true;
+                this.watching = false;
+                
+                // Get player number from message data
+                if (message.getData() instanceof Integer) {
+                    this.playerNumber = (Integer) message.getData();
+                }
+                
+                // Extract opponent name from the content
+                try {
+                    String content = message.getContent();
+                    
+                    // Parse out opponent name from message content
+                    if (content.contains("against")) {
+                        int startIndex = content.indexOf("against") + 8;
+                        int endIndex = content.indexOf(".", startIndex);
+                        if (endIndex == -1) endIndex = content.length();
+                        this.opponent = content.substring(startIndex, endIndex).trim();
+                    }
+                    
+                    // IMPORTANT: Create a new game board if one doesn't exist yet
+                    if (this.gameBoard == null) {
+                        this.gameBoard = new GameBoard(); // Player 1 always starts first
+                        log("Created new game board with player 1 starting");
+                    }
+                } catch (Exception e) {
+                    log("Error parsing game start info: " + e.getMessage());
+                }
+            }
+            
+            // Process message with handler
+            messageHandler.accept(message);
         }
     }
     
+    private void closeSocket() {
+        try {
+            if (socketClient != null && !socketClient.isClosed()) {
+                socketClient.close();
+            }
+        } catch (IOException e) {
+            log("Error closing connection: " + e.getMessage());
+        }
+    }
+    
+    // Move sequence our board has reached, or -1 outside a game
+    private int lastSequence() {
+        GameBoard board = gameBoard;
+        return inGame && board != null ? board.getMoveCount() : -1;
+    }
+    
     // Send a message to the server
     private void sendMessage(Message message) {
+        synchronized (sendLock) {
+            sendLocked(message);
+        }
+    }
+    
+    private void sendLocked(Message message) {
         try {
             if (socketClient == null || socketClient.isClosed()) {
-                System.out.println("Cannot send message - socket is closed or null");
+                log("Cannot send message - socket is closed or null");
                 return;
             }
             
             if (out == null) {
-                System.out.println("Cannot send message - output stream is null");
+                log("Cannot send message - output stream is null");
                 return;
             }
             
-            out.writeObject(message);
+            WireProtocol.writeFrame(out, codec.encode(message));
             out.flush();
-            System.out.println("Sent message of type: " + message.getType());
+            log("Sent message of type: " + message.getType());
         } catch (IOException e) {
-            System.out.println("Error sending message to server: " + e.getMessage());
-            e.printStackTrace();
+            log("Error sending message to server: " + e.getMessage());
+            if (verbose) {
+                e.printStackTrace();
+            }
+        }
+    }
+    
+    private void log(String line) {
+        if (verbose) {
+            System.out.println(line);
         }
     }
     
+    // Wait until the handshake has finished; false if it failed or took longer than timeoutMillis
+    public boolean awaitConnected(long timeoutMillis) throws InterruptedException {
+        return handshakeDone.await(timeoutMillis, TimeUnit.MILLISECONDS) && connected;
+    }
+    
+    // Drop the connection without telling the server first, as a crashed client would; no reconnecting
+    public void disconnect() {
+        closing = true;
+        closeSocket();
+    }
+    
+    // Drop the connection as a network fault would; the client reconnects and resumes its session if it can
+    public void dropConnection() {
+        closeSocket();
+    }
+    
     // Login with username
     public void login(String username) {
         this.username = username;
@@ -155,43 +314,67 @@ public class NetworkClient extends Thread {
         sendMessage(requestMsg);
     }
     
+    // Request a game against a computer opponent run by the server
+    public void requestComputerGame() {
+        Message requestMsg = new Message(Message.MessageType.GAME_REQUEST, username, Message.VS_COMPUTER);
+        sendMessage(requestMsg);
+    }
+    
     // Make a move at the specified column
     public void makeMove(int column) {
-        System.out.println("makeMove called for column " + column);
+        log("makeMove called for column " + column);
         
         // If game board doesn't exist, create one
         if (gameBoard == null && inGame) {
             gameBoard = new GameBoard();
-            System.out.println("Created a new game board");
+            log("Created a new game board");
         }
         
         // Only send move if we're in a game and it's our turn
         if (inGame && gameBoard != null && gameBoard.getCurrentPlayer() == playerNumber) {
-            System.out.println("SENDING MOVE: Column " + column);
-            System.out.println("Current player: " + gameBoard.getCurrentPlayer());
-            System.out.println("Your player number: " + playerNumber);
+            log("SENDING MOVE: Column " + column);
+            log("Current player: " + gameBoard.getCurrentPlayer());
+            log("Your player number: " + playerNumber);
             
             // Create and send the move message with column in both content and data
             // Some server implementations might check content, others might check data
             Message moveMsg = new Message(Message.MessageType.GAME_MOVE, username, Integer.toString(column), column);
             sendMessage(moveMsg);
         } else {
-            System.out.println("⚠️ MOVE REJECTED ⚠️");
-            System.out.println("inGame: " + inGame);
+            log("⚠️ MOVE REJECTED ⚠️");
+            log("inGame: " + inGame);
             if (gameBoard != null) {
-                System.out.println("Current player's turn: " + gameBoard.getCurrentPlayer());
-                System.out.println("Your player number: " + playerNumber);
-                System.out.println("Is your turn: " + (gameBoard.getCurrentPlayer() == playerNumber));
+                log("Current player's turn: " + gameBoard.getCurrentPlayer());
+                log("Your player number: " + playerNumber);
+                log("Is your turn: " + (gameBoard.getCurrentPlayer() == playerNumber));
             } else {
-                System.out.println("Game board is null");
+                log("Game board is null");
             }
         }
     }
     
+    // Ask the server for a full snapshot of the current game
+    public void requestResync() {
+        Message resyncMsg = new Message(Message.MessageType.RESYNC_REQUEST, username, "Resync");
+        sendMessage(resyncMsg);
+    }
+    
+    // Ask the server to score every column of the current position
+    public void requestAnalysis() {
+        Message analyzeMsg = new Message(Message.MessageType.ANALYZE, username, "Analyze");
+        sendMessage(analyzeMsg);
+    }
+    
+    // Watch a game by its id or one of its players' names; an empty target stops watching and lists games
+    public void spectate(String target) {
+        Message spectateMsg = new Message(Message.MessageType.SPECTATE, username, target);
+        sendMessage(spectateMsg);
+    }
+    
     // Request to play again after a game ends
     public void playAgain() {
         if (!inGame) {
-            System.out.println("Starting a new game");
+            log("Starting a new game");
             inGame = true;
         }
         
@@ -201,7 +384,7 @@ public class NetworkClient extends Thread {
         // If we have a game board, reset it for the new game
         if (gameBoard != null) {
             gameBoard.resetGame();
-            System.out.println("Reset game board for new game");
+            log("Reset game board for new game");
         }
     }
     
@@ -222,7 +405,7 @@ public class NetworkClient extends Thread {
     // Utility method to create a new game board
     public void createNewBoard() {
         this.gameBoard = new GameBoard();
-        System.out.println("Created new game board");
+        log("Created new game board");
     }
     
     // Getters
@@ -230,9 +413,14 @@ public class NetworkClient extends Thread {
     public int getPlayerNumber() { return playerNumber; }
     public GameBoard getGameBoard() { return gameBoard; }
     public String getOpponent() { return opponent; }
+    public boolean isWatching() { return watching; }
+    public boolean isConnected() { return connected; }
+    public boolean isReconnecting() { return reconnecting; }
     
     // Setters
     public void setPlayerNumber(int playerNumber) { this.playerNumber = playerNumber; }
     public void setInGame(boolean inGame) { this.inGame = inGame; }
     public void setOpponent(String opponent) { this.opponent = opponent; }
+    public void setVerbose(boolean verbose) { this.verbose = verbose; }
+    public void setResumeMillis(long resumeMillis) { this.resumeMillis = resumeMillis; }
 }
\ No newline at end of file
@@ -0,0 +1,70 @@
+import java.io.Serializable;
+
+/**
+ * Scores for every column of one position, from the point of view of the
+ * player to move: positive wins, negative loses, 0 is a draw or a search
+ * that ran out of depth. Full columns score NO_MOVE. The sequence is the
+ * number of moves already played, so a client can drop analyses of
+ * positions it has moved on from.
+ */
+public class PositionAnalysis implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    public static final int NO_MOVE = -128;
+    
+    private int sequence;
+    private int[] scores;
+    private int solvedColumns;  // bit c set when column c's score is exact
+    
+    public PositionAnalysis(int sequence, int[] scores, int solvedColumns) {
+        this.sequence = sequence;
+        this.scores = scores;
+        this.solvedColumns = solvedColumns;
+    }
+    
+    public int getSequence() {
+        return sequence;
+    }
+    
+    public int getScore(int column) {
+        return scores[column];
+    }
+    
+    public boolean isSolved(int column) {
+        return (solvedColumns & (1 << column)) != 0;
+    }
+    
+    public int getSolvedColumns() {
+        return solvedColumns;
+    }
+    
+    // Highest-scoring playable column, nearest the center on ties; -1 if none
+    public int getBestColumn() {
+        int best = -1;
+        int center = scores.length / 2;
+        for (int c = 0; c < scores.length; c++) {
+            if (scores[c] == NO_MOVE) {
+                continue;
+            }
+            if (best < 0 || scores[c] > scores[best]
+                    || (scores[c] == scores[best] && Math.abs(c - center) < Math.abs(best - center))) {
+                best = c;
+            }
+        }
+        return best;
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("Analysis #").append(sequence).append(':');
+        for (int c = 0; c < scores.length; c++) {
+            text.append(' ');
+            if (scores[c] == NO_MOVE) {
+                text.append('-');
+            } else {
+                text.append(scores[c]).append(isSolved(c) ? "" : "?");
+            }
+        }
+        return text.toString();
+    }
+}
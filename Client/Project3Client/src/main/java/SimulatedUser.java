@@ -0,0 +1,384 @@
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One of the load generator's players. It drives a NetworkClient the way a
+ * person at ClientMain would: log in, look for a game, play it with some
+ * thinking time between moves, chat, then rematch or leave, and now and then
+ * drop the connection, either for good or to come back to the same game.
+ * Replies are timestamped on the client's reader thread, so the latencies it
+ * records leave out this user's own scheduling delays.
+ */
+class SimulatedUser implements Runnable {
+    private static final String[] CHAT_LINES = {"gl hf", "nice move", "hmm", "gg"};
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+
+    private enum Outcome {
+        NEXT_GAME,  // still logged in and free to look for another game
+        RECONNECT   // the connection is gone or no longer trusted
+    }
+
+    // A reply and when it arrived
+    private static final class Arrival {
+        final long nanos;
+        final Message message;
+
+        Arrival(long nanos, Message message) {
+            this.nanos = nanos;
+            this.message = message;
+        }
+
+        boolean is(Message.MessageType type) {
+            return message.getType() == type;
+        }
+    }
+
+    private final String name;
+    private final LoadScenario scenario;
+    private final LoadGenerator.Results results;
+    private final ThreadFactory threads;
+    private final long deadline;  // System.nanoTime() at which to wind down
+
+    private final BlockingQueue<Arrival> inbox = new LinkedBlockingQueue<>();
+    private NetworkClient client;
+
+    // The game in progress, as far as the replies handled so far tell
+    private GameBoard position;
+    private int me;
+    private boolean computerGame;
+    private boolean opponentLeft;
+    private long moveSentAt;  // when our pending move was sent, or 0 if none is pending
+
+    SimulatedUser(String name, LoadScenario scenario, LoadGenerator.Results results, ThreadFactory threads,
+            long deadline) {
+        this.name = name;
+        this.scenario = scenario;
+        this.results = results;
+        this.threads = threads;
+        this.deadline = deadline;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!expired()) {
+                if (session() == Outcome.RECONNECT && !expired()) {
+                    Thread.sleep(scenario.getReconnectMillis());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (client != null) {
+                client.disconnect();
+            }
+        }
+    }
+
+    // One connection, from handshake until the run is over or the connection is dropped
+    private Outcome session() throws InterruptedException {
+        inbox.clear();
+        client = new NetworkClient(scenario.getHost(), scenario.getPort(),
+                message -> inbox.add(new Arrival(System.nanoTime(), message)));
+        client.setVerbose(false);
+        long started = System.nanoTime();
+        threads.newThread(client).start();
+        try {
+            if (!client.awaitConnected(scenario.getReplyTimeoutMillis())) {
+                results.errors.increment();
+                return Outcome.RECONNECT;
+            }
+            results.connect.record(System.nanoTime() - started);
+            if (!login()) {
+                return Outcome.RECONNECT;
+            }
+            while (!expired()) {
+                if (!startGame()) {
+                    if (!client.isConnected()) {
+                        return Outcome.RECONNECT;
+                    }
+                    think();
+                } else if (play() == Outcome.RECONNECT) {
+                    return Outcome.RECONNECT;
+                }
+            }
+            client.quitGame();
+            return Outcome.NEXT_GAME;
+        } finally {
+            client.disconnect();
+        }
+    }
+
+    private boolean login() throws InterruptedException {
+        for (int attempt = 0; attempt < 5; attempt++) {
+            long sent = System.nanoTime();
+            client.login(name);
+            Arrival reply = await(Message.MessageType.LOGIN_SUCCESS, Message.MessageType.LOGIN_FAILED);
+            if (reply == null) {
+                return false;
+            }
+            if (reply.is(Message.MessageType.LOGIN_SUCCESS)) {
+                results.login.record(reply.nanos - sent);
+                return true;
+            }
+            // The server may not have noticed our previous connection close yet
+            Thread.sleep(100);
+        }
+        results.errors.increment();
+        return false;
+    }
+
+    // Ask for a game and wait until it starts; false if it did not
+    private boolean startGame() throws InterruptedException {
+        computerGame = chance(scenario.getComputerShare());
+        long sent = System.nanoTime();
+        if (computerGame) {
+            client.requestComputerGame();
+        } else {
+            client.requestGame();
+        }
+        // Waiting for an opponent has no time limit other than the end of the run
+        while (!expired() && client.isConnected()) {
+            Arrival arrival = next(500);
+            if (arrival == null) {
+                continue;
+            }
+            if (arrival.is(Message.MessageType.GAME_STARTED)) {
+                (computerGame ? results.computerStart : results.match).record(arrival.nanos - sent);
+                return true;
+            }
+            if (computerGame && fromServer(arrival, "All computer opponents are busy")) {
+                results.refused.increment();
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private Outcome play() throws InterruptedException {
+        while (true) {
+            if (opponentLeft) {
+                if (!position.isGameOver()) {
+                    results.abandoned.increment();
+                }
+                return Outcome.NEXT_GAME;
+            }
+            if (position.isGameOver()) {
+                // Player 1 decides whether there is a rematch; player 2 waits to hear which
+                if (computerGame || me == 1) {
+                    if (expired() || !chance(scenario.getRematchRate())) {
+                        client.quitGame();
+                        return Outcome.NEXT_GAME;
+                    }
+                    think();
+                    client.playAgain();
+                    position = new GameBoard();
+                    results.rematches.increment();
+                } else if (expired()) {
+                    client.quitGame();
+                    return Outcome.NEXT_GAME;
+                }
+            } else if (position.getCurrentPlayer() == me && moveSentAt == 0) {
+                think();
+                if (chance(scenario.getDisconnectRate())) {
+                    results.disconnects.increment();
+                    if (chance(scenario.getResumeShare())) {
+                        if (!resume()) {
+                            return Outcome.RECONNECT;
+                        }
+                        continue;
+                    }
+                    client.disconnect();
+                    return Outcome.RECONNECT;
+                }
+                if (chance(scenario.getChatRate())) {
+                    client.sendChatMessage(CHAT_LINES[ThreadLocalRandom.current().nextInt(CHAT_LINES.length)]);
+                    results.chats.increment();
+                }
+                moveSentAt = System.nanoTime();
+                client.makeMove(chooseColumn());
+            }
+            if (next(scenario.getReplyTimeoutMillis()) == null) {
+                return Outcome.RECONNECT;
+            }
+        }
+    }
+
+    // Drop the connection and wait for the client to resume the session; false if it could not
+    private boolean resume() throws InterruptedException {
+        long dropped = System.nanoTime();
+        client.dropConnection();
+        Arrival reply = await(Message.MessageType.RESUME, Message.MessageType.LOGIN_FAILED);
+        if (reply == null || !reply.is(Message.MessageType.RESUME)) {
+            results.errors.increment();
+            return false;
+        }
+        results.resume.record(reply.nanos - dropped);
+        // Player number 0: the opponent gave up on us and the game is gone
+        if (Integer.valueOf(0).equals(reply.message.getData())) {
+            opponentLeft = true;
+        }
+        return true;
+    }
+
+    // Update what we know of the game from one reply
+    private void track(Arrival arrival) {
+        Message message = arrival.message;
+        switch (message.getType()) {
+            case GAME_STARTED:
+                position = new GameBoard();
+                me = (Integer) message.getData();
+                opponentLeft = false;
+                moveSentAt = 0;
+                break;
+            case GAME_STATE:
+                if (message.getData() instanceof BoardState) {
+                    if (position == null) {
+                        position = new GameBoard();
+                    }
+                    position.updateFromBoardState((BoardState) message.getData());
+                }
+                break;
+            case GAME_MOVE_APPLIED:
+                MoveEvent move = (MoveEvent) message.getData();
+                // A gap makes the client ask for a snapshot, which lands as GAME_STATE
+                if (position != null) {
+                    position.applyMove(move);
+                }
+                if (move.getPlayer() == me && moveSentAt != 0) {
+                    results.moves.record(arrival.nanos - moveSentAt);
+                    moveSentAt = 0;
+                }
+                break;
+            case GAME_OVER:
+                results.games.increment();
+                moveSentAt = 0;
+                break;
+            case CHAT:
+                if (fromServer(arrival, null) && message.getContent().endsWith("has left the game.")) {
+                    opponentLeft = true;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    // The next reply, or null if none came in time or the connection closed
+    private Arrival next(long timeoutMillis) throws InterruptedException {
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (true) {
+            long left = end - System.nanoTime();
+            Arrival arrival = inbox.poll(Math.min(left, TimeUnit.MILLISECONDS.toNanos(500)), TimeUnit.NANOSECONDS);
+            if (arrival != null) {
+                track(arrival);
+                return arrival;
+            }
+            if (!client.isConnected() && !client.isReconnecting()) {
+                results.dropped.increment();
+                return null;
+            }
+            if (left <= 0) {
+                results.timeouts.increment();
+                return null;
+            }
+        }
+    }
+
+    // Skip replies until one of the given types, or null if none came in time
+    private Arrival await(Message.MessageType... types) throws InterruptedException {
+        while (true) {
+            Arrival arrival = next(scenario.getReplyTimeoutMillis());
+            if (arrival == null) {
+                return null;
+            }
+            for (Message.MessageType type : types) {
+                if (arrival.is(type)) {
+                    return arrival;
+                }
+            }
+        }
+    }
+
+    private int chooseColumn() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (scenario.getStrategy() == LoadScenario.Strategy.GREEDY) {
+            int win = -1;
+            int block = -1;
+            int best = -1;
+            double bestScore = -1;
+            for (int col = 0; col < GameBoard.getCols(); col++) {
+                if (!position.canPlay(col)) {
+                    continue;
+                }
+                if (completesFour(col, me)) {
+                    win = col;
+                } else if (completesFour(col, 3 - me)) {
+                    block = col;
+                }
+                // Centre columns first, with ties broken at random
+                double score = 4 - Math.abs(col - 3) + random.nextDouble() * 2;
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = col;
+                }
+            }
+            return win >= 0 ? win : block >= 0 ? block : best;
+        }
+        int col;
+        do {
+            col = random.nextInt(GameBoard.getCols());
+        } while (!position.canPlay(col));
+        return col;
+    }
+
+    // Whether a disc of the player's dropped into the column would make four in a row
+    private boolean completesFour(int col, int player) {
+        int row = GameBoard.getRows() - 1 - position.getHeight(col);
+        for (int[] direction : DIRECTIONS) {
+            int length = 1 + run(row, col, direction[0], direction[1], player)
+                    + run(row, col, -direction[0], -direction[1], player);
+            if (length >= 4) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The player's discs in an unbroken line from next to (row, col) outward
+    private int run(int row, int col, int dr, int dc, int player) {
+        int length = 0;
+        for (int r = row + dr, c = col + dc; r >= 0 && r < GameBoard.getRows() && c >= 0 && c < GameBoard.getCols()
+                && position.getCell(r, c) == player; r += dr, c += dc) {
+            length++;
+        }
+        return length;
+    }
+
+    private void think() throws InterruptedException {
+        long min = scenario.getThinkMinMillis();
+        long max = scenario.getThinkMaxMillis();
+        long millis = max > min ? ThreadLocalRandom.current().nextLong(min, max + 1) : min;
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+    }
+
+    private static boolean chance(double rate) {
+        return rate > 0 && ThreadLocalRandom.current().nextDouble() < rate;
+    }
+
+    // Whether the reply is a server notice, starting with prefix if one is given
+    private static boolean fromServer(Arrival arrival, String prefix) {
+        Message message = arrival.message;
+        return message.getType() == Message.MessageType.CHAT && "SERVER".equals(message.getSender())
+                && (prefix == null || message.getContent().startsWith(prefix));
+    }
+
+    private boolean expired() {
+        return System.nanoTime() - deadline >= 0;
+    }
+}
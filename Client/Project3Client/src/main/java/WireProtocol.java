@@ -0,0 +1,58 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Constants and helpers for the framed connection protocol.
+ *
+ * A framed client opens with MAGIC followed by the highest protocol version it
+ * speaks; the server answers with MAGIC and the version it picked. After that
+ * every message travels as a 4-byte big-endian length followed by the payload.
+ * Clients that open with a plain Java object stream header are still accepted
+ * as legacy connections.
+ */
+public final class WireProtocol {
+    public static final int MAGIC = 0x43344E50;             // "C4NP"
+    public static final int VERSION_SERIALIZED = 1;         // Java-serialized Message per frame
+    public static final int VERSION_BINARY = 2;             // BinaryMessageCodec
+    public static final int VERSION_MOVE_EVENTS = 3;        // Binary, plus GAME_MOVE_APPLIED deltas
+    public static final int HIGHEST_VERSION = VERSION_MOVE_EVENTS;
+    public static final int MAX_FRAME_LENGTH = 1 << 20;
+    public static final int LEGACY_STREAM_MAGIC = 0xACED;   // ObjectOutputStream header
+
+    private static final MessageCodec SERIALIZED_CODEC = new SerializedMessageCodec();
+    private static final MessageCodec BINARY_CODEC = new BinaryMessageCodec();
+
+    private WireProtocol() {
+    }
+
+    // Picks the version both sides understand
+    public static int negotiate(int requestedVersion) {
+        return Math.max(VERSION_SERIALIZED, Math.min(requestedVersion, HIGHEST_VERSION));
+    }
+
+    // Whether a connection at this version understands GAME_MOVE_APPLIED instead of full snapshots
+    public static boolean supportsMoveEvents(int version) {
+        return version >= VERSION_MOVE_EVENTS;
+    }
+
+    // Returns the codec used for frames of the given protocol version
+    public static MessageCodec codecFor(int version) {
+        return version >= VERSION_BINARY ? BINARY_CODEC : SERIALIZED_CODEC;
+    }
+
+    public static void writeFrame(DataOutputStream out, byte[] payload) throws IOException {
+        out.writeInt(payload.length);
+        out.write(payload);
+    }
+
+    public static byte[] readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_FRAME_LENGTH) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return payload;
+    }
+}
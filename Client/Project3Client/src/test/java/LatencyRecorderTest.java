@@ -0,0 +1,40 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyRecorderTest {
+
+	@Test
+	void smallValuesAreExact() {
+		LatencyRecorder recorder = new LatencyRecorder();
+		for (int micros = 1; micros <= 10; micros++) {
+			recorder.record(micros * 1000L);
+		}
+		assertEquals(10, recorder.getCount());
+		assertEquals(5, recorder.percentileMicros(50));
+		assertEquals(10, recorder.percentileMicros(100));
+		assertEquals(10, recorder.getMaxMicros());
+	}
+
+	@Test
+	void percentilesStayWithinOneBucket() {
+		LatencyRecorder recorder = new LatencyRecorder();
+		for (int micros = 1; micros <= 100_000; micros++) {
+			recorder.record(micros * 1000L);
+		}
+		for (double percent : new double[] {50, 90, 99, 99.9}) {
+			long exact = (long) Math.ceil(percent * 1000);
+			long reported = recorder.percentileMicros(percent);
+			assertTrue(reported >= exact && reported <= exact * 17 / 16, percent + "%: " + reported);
+		}
+	}
+
+	@Test
+	void bucketsCoverEveryValue() {
+		for (long value = 0; value < 1 << 20; value++) {
+			int bucket = LatencyRecorder.bucket(value);
+			assertTrue(LatencyRecorder.lowest(bucket) <= value && value < LatencyRecorder.lowest(bucket + 1));
+		}
+		assertEquals(0, new LatencyRecorder().percentileMicros(99));
+	}
+}
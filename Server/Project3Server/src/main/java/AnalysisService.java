@@ -0,0 +1,230 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Scores every column of a position for ANALYZE requests, sharing results
+ * server-wide.
+ *
+ * Results are cached under the smaller key of the position and its mirror
+ * image, so a position and its reflection cost one search. A request for a
+ * position that is already being analyzed waits on the same future instead
+ * of starting a second search. The cache holds at most capacity positions
+ * and evicts with the CLOCK policy: entries are queued in insertion order,
+ * and an entry read since it last reached the head of the queue gets one
+ * more pass before it is dropped. With more than one search thread, each
+ * worker scores its columns with its own ParallelSolver.
+ */
+public class AnalysisService {
+    private static final int TABLE_BITS = 20;
+    private static final int MAX_PENDING = 1024;
+
+    private static final class Entry {
+        final long key;
+        final CompletableFuture<PositionAnalysis> result = new CompletableFuture<>();
+        volatile boolean referenced;
+
+        Entry(long key) {
+            this.key = key;
+        }
+    }
+
+    private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Entry> clock = new ConcurrentLinkedQueue<>();
+    private final ThreadPoolExecutor workers;
+    private final ThreadLocal<Solver> solvers = ThreadLocal.withInitial(() -> new Solver(TABLE_BITS));
+    private final ThreadLocal<ParallelSolver> parallelSolvers;
+    private final ConcurrentLinkedQueue<ParallelSolver> parallelPools = new ConcurrentLinkedQueue<>();  // to shut down
+    private final int searchThreads;
+    private final int capacity;
+    private final long analysisMillis;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public AnalysisService(int threads, int capacity, long analysisMillis) {
+        this(threads, capacity, analysisMillis, 1);
+    }
+
+    public AnalysisService(int threads, int capacity, long analysisMillis, int searchThreads) {
+        this.capacity = Math.max(1, capacity);
+        this.analysisMillis = analysisMillis;
+        this.searchThreads = Math.max(1, searchThreads);
+        this.parallelSolvers = ThreadLocal.withInitial(() -> {
+            ParallelSolver solver = new ParallelSolver(this.searchThreads, TABLE_BITS);
+            parallelPools.add(solver);
+            return solver;
+        });
+        AtomicInteger count = new AtomicInteger();
+        int size = Math.max(1, threads);
+        workers = new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(MAX_PENDING), task -> {
+                    Thread thread = new Thread(task, "analysis-" + count.getAndIncrement());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                });
+    }
+
+    public void shutdown() {
+        workers.shutdownNow();
+        for (ParallelSolver solver : parallelPools) {
+            solver.shutdown();
+        }
+    }
+
+    // Scores for the player to move; completes exceptionally if the service is overloaded
+    public CompletableFuture<PositionAnalysis> analyze(long current, long mask, int moves) {
+        long key = Bitboards.key(current, mask);
+        long mirroredKey = Bitboards.mirror(key);
+        boolean mirrored = mirroredKey < key;
+        long canonical = mirrored ? mirroredKey : key;
+
+        CompletableFuture<PositionAnalysis> result = lookup(canonical, mirrored ? Bitboards.mirror(current) : current,
+                mirrored ? Bitboards.mirror(mask) : mask, moves);
+        return mirrored ? result.thenApply(AnalysisService::mirror) : result;
+    }
+
+    private CompletableFuture<PositionAnalysis> lookup(long key, long current, long mask, int moves) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            Entry created = new Entry(key);
+            entry = entries.putIfAbsent(key, created);
+            if (entry == null) {
+                misses.incrementAndGet();
+                clock.add(created);
+                submit(created, current, mask, moves);
+                evict();
+                return created.result;
+            }
+        }
+        if (entry.result.isDone()) {
+            hits.incrementAndGet();
+        } else {
+            coalesced.incrementAndGet();
+        }
+        entry.referenced = true;
+        return entry.result;
+    }
+
+    private void submit(Entry entry, long current, long mask, int moves) {
+        try {
+            workers.execute(() -> {
+                try {
+                    entry.result.complete(score(current, mask, moves));
+                } catch (RuntimeException e) {
+                    entries.remove(entry.key, entry);
+                    entry.result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            entries.remove(entry.key, entry);
+            entry.result.completeExceptionally(e);
+        }
+    }
+
+    // CLOCK sweep until the cache is back within capacity
+    private void evict() {
+        int budget = 2 * entries.size() + 1;
+        while (entries.size() > capacity && budget-- > 0) {
+            Entry entry = clock.poll();
+            if (entry == null) {
+                return;
+            }
+            if (entries.get(entry.key) != entry) {
+                continue;  // already gone after a failed search
+            }
+            if (entry.referenced || !entry.result.isDone()) {
+                // Recently read, or still being computed: give it another lap
+                entry.referenced = false;
+                clock.add(entry);
+            } else if (entries.remove(entry.key, entry)) {
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    // Each column searched in turn, sharing the time budget
+    private PositionAnalysis score(long current, long mask, int moves) {
+        Solver solver = searchThreads > 1 ? null : solvers.get();
+        ParallelSolver parallel = searchThreads > 1 ? parallelSolvers.get() : null;
+        int[] scores = new int[Bitboards.COLS];
+        int solvedColumns = 0;
+        int playable = Long.bitCount(Bitboards.possible(mask));
+        long columnMillis = Math.max(1, analysisMillis / Math.max(1, playable));
+        for (int c = 0; c < Bitboards.COLS; c++) {
+            if (!Bitboards.canPlay(mask, c)) {
+                scores[c] = PositionAnalysis.NO_MOVE;
+                continue;
+            }
+            long move = Bitboards.moveBit(mask, c);
+            if (BitboardGameBoard.isWin(current | move)) {
+                scores[c] = (Bitboards.CELLS + 1 - moves) / 2;
+                solvedColumns |= 1 << c;
+                continue;
+            }
+            Solver.Result reply = parallel != null
+                    ? parallel.search(current ^ mask, mask | move, moves + 1, columnMillis, 0, Bitboards.CELLS)
+                    : solver.search(current ^ mask, mask | move, moves + 1, columnMillis, 0);
+            scores[c] = -reply.getScore();
+            if (reply.isSolved()) {
+                solvedColumns |= 1 << c;
+            }
+        }
+        return new PositionAnalysis(moves, scores, solvedColumns);
+    }
+
+    private static PositionAnalysis mirror(PositionAnalysis analysis) {
+        int[] scores = new int[Bitboards.COLS];
+        int solvedColumns = 0;
+        for (int c = 0; c < Bitboards.COLS; c++) {
+            int from = Bitboards.COLS - 1 - c;
+            scores[c] = analysis.getScore(from);
+            if (analysis.isSolved(from)) {
+                solvedColumns |= 1 << c;
+            }
+        }
+        return new PositionAnalysis(analysis.getSequence(), scores, solvedColumns);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getSize() {
+        return entries.size();
+    }
+
+    // Requests answered from a finished cache entry
+    public long getHits() {
+        return hits.get();
+    }
+
+    // Requests that started a new search
+    public long getMisses() {
+        return misses.get();
+    }
+
+    // Requests that joined a search already in progress
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    // Requests turned away because too many searches were queued
+    public long getRejected() {
+        return rejected.get();
+    }
+}
@@ -0,0 +1,168 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * The spectators of one game, and the recent events they are sent.
+ *
+ * The game's shard publishes each event once, as a SharedFrame, so it is
+ * encoded at most once per protocol version however many people watch.
+ * Publishing only records the event and schedules a delivery pass on the
+ * fan-out executor, so the players never wait for the audience. A pass sends
+ * each spectator the events it has not seen yet. A spectator whose
+ * connection already has backlog frames waiting is passed over, and when it
+ * has caught up it gets the latest snapshot instead of what it missed, so a
+ * slow watcher holds at most a bounded number of queued frames.
+ */
+public class Audience {
+    static final int HISTORY = 64;  // recent events kept for spectators that are only a little behind
+
+    private static final class Spectator {
+        final Session session;
+        volatile long seen;          // version of the last event or snapshot sent
+        volatile boolean lagging;    // skipped at least once; catches up with a snapshot
+
+        Spectator(Session session, long seen) {
+            this.session = session;
+            this.seen = seen;
+        }
+    }
+
+    private final ConcurrentHashMap<Session, Spectator> spectators = new ConcurrentHashMap<>();
+    private final Executor fanOut;          // must run one game's passes in order, one at a time
+    private final IntSupplier backlog;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final LongAdder skipped;        // may be shared by every audience on the server
+
+    // Guarded by this; written on the game's shard
+    private final SharedFrame[] history = new SharedFrame[HISTORY];
+    private long version;
+    private SharedFrame snapshot;           // the game as of version
+    private boolean finished;
+
+    public Audience(Executor fanOut, IntSupplier backlog) {
+        this(fanOut, backlog, new LongAdder());
+    }
+
+    public Audience(Executor fanOut, IntSupplier backlog, LongAdder skipped) {
+        this.fanOut = fanOut;
+        this.backlog = backlog;
+        this.skipped = skipped;
+    }
+
+    // Adds a spectator and sends it a snapshot of the game as it is now; call on the game's shard
+    public boolean add(Session session, SharedFrame current) {
+        long at;
+        synchronized (this) {
+            if (finished) {
+                return false;
+            }
+            snapshot = current;
+            at = version;
+        }
+        Spectator spectator = new Spectator(session, at);
+        spectators.put(session, spectator);
+        session.sendFrame(current);
+        return true;
+    }
+
+    public void remove(Session session) {
+        spectators.remove(session);
+    }
+
+    // Has the next pass send this spectator a fresh snapshot
+    public void resync(Session session) {
+        Spectator spectator = spectators.get(session);
+        if (spectator != null) {
+            spectator.lagging = true;
+            spectator.seen = -1;
+            schedule();
+        }
+    }
+
+    public boolean isWatched() {
+        return !spectators.isEmpty();
+    }
+
+    public int size() {
+        return spectators.size();
+    }
+
+    // Records an event and the snapshot of the game after it; call on the game's shard
+    public void publish(SharedFrame event, SharedFrame after) {
+        synchronized (this) {
+            version++;
+            history[(int) (version % HISTORY)] = event;
+            snapshot = after;
+        }
+        schedule();
+    }
+
+    // Publishes a last event; everyone is dropped once it has been delivered
+    public void finish(SharedFrame event) {
+        synchronized (this) {
+            version++;
+            history[(int) (version % HISTORY)] = event;
+            finished = true;
+        }
+        schedule();
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            fanOut.execute(this::deliver);
+        }
+    }
+
+    private void deliver() {
+        // Anything published from here on schedules another pass
+        scheduled.set(false);
+        long latest;
+        SharedFrame current;
+        SharedFrame[] recent;
+        boolean last;
+        synchronized (this) {
+            latest = version;
+            current = snapshot;
+            recent = history.clone();
+            last = finished;
+        }
+
+        int limit = backlog.getAsInt();
+        for (Spectator spectator : spectators.values()) {
+            long seen = spectator.seen;
+            if (seen >= latest) {
+                continue;
+            }
+            Connection connection = spectator.session.getConnection();
+            if (connection.getQueuedFrames() >= limit) {
+                spectator.lagging = true;
+                skipped.increment();
+                continue;
+            }
+            if (spectator.lagging || !connection.supportsMoveEvents() || latest - seen > HISTORY) {
+                // Skip forward rather than replay what was missed
+                spectator.session.sendFrame(current);
+                if (last) {
+                    spectator.session.sendFrame(recent[(int) (latest % HISTORY)]);
+                }
+                spectator.lagging = false;
+            } else {
+                for (long v = seen + 1; v <= latest; v++) {
+                    spectator.session.sendFrame(recent[(int) (v % HISTORY)]);
+                }
+            }
+            spectator.seen = latest;
+        }
+        if (last) {
+            spectators.clear();
+        }
+    }
+
+    // Times a spectator was passed over because its connection was backed up
+    public long getSkipped() {
+        return skipped.sum();
+    }
+}
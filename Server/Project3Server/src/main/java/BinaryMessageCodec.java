@@ -0,0 +1,358 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Compact binary encoding of a Message.
+ *
+ * The first byte is the MessageType ordinal (new types must be appended to the enum).
+ * Hot messages use a fixed layout:
+ *   GAME_MOVE     column
+ *   GAME_STATE    currentPlayer, winner, gameOver, sequence, 42 cells packed 2 bits each
+ *   GAME_MOVE_APPLIED  sequence, column, row, player, outcome
+ *   GAME_STARTED  player number, content
+ *   GAME_OVER     winner, content
+ *   ANALYZE       sequence, solved-column bits, one score byte per column (replies only)
+ *   CHAT          sender, content
+ * Anything that does not fit its fixed layout is sent with GENERIC_FLAG set on the
+ * tag: sender, content, then a one-byte data kind and the data itself.
+ * Strings are UTF-8 prefixed with a varint of (length + 1), where 0 means null.
+ */
+public class BinaryMessageCodec implements MessageCodec {
+    static final int GENERIC_FLAG = 0x80;
+    static final String GAME_STATE_CONTENT = "Game state updated";
+    static final String MOVE_APPLIED_CONTENT = "Move applied";
+    static final String ANALYSIS_CONTENT = "Position analysis";
+
+    private static final int DATA_NONE = 0;
+    private static final int DATA_INT = 1;
+    private static final int DATA_STRING = 2;
+    private static final int DATA_BOARD = 3;
+    private static final int DATA_SERIALIZED = 4;
+
+    private static final int CELLS = GameBoard.getRows() * GameBoard.getCols();
+    private static final int PACKED_CELLS = (CELLS * 2 + 7) / 8;
+
+    private static final Message.MessageType[] TYPES = Message.MessageType.values();
+
+    @Override
+    public byte[] encode(Message message) throws IOException {
+        Writer out = new Writer(32);
+        Message.MessageType type = message.getType();
+        Object data = message.getData();
+
+        switch (type) {
+            case GAME_MOVE:
+                if (data instanceof Integer && fitsByte((Integer) data)) {
+                    out.writeByte(type.ordinal());
+                    out.writeByte((Integer) data);
+                    return out.toByteArray();
+                }
+                break;
+            case GAME_STATE:
+                if (data instanceof BoardState && GAME_STATE_CONTENT.equals(message.getContent())) {
+                    out.writeByte(type.ordinal());
+                    writeBoardState(out, (BoardState) data);
+                    return out.toByteArray();
+                }
+                break;
+            case GAME_MOVE_APPLIED:
+                if (data instanceof MoveEvent && MOVE_APPLIED_CONTENT.equals(message.getContent())) {
+                    MoveEvent move = (MoveEvent) data;
+                    out.writeByte(type.ordinal());
+                    out.writeVarInt(move.getSequence());
+                    out.writeByte(move.getColumn());
+                    out.writeByte(move.getRow());
+                    out.writeByte(move.getPlayer());
+                    out.writeByte(move.getOutcome());
+                    return out.toByteArray();
+                }
+                break;
+            case GAME_STARTED:
+            case GAME_OVER:
+                if (data instanceof Integer && fitsByte((Integer) data)) {
+                    out.writeByte(type.ordinal());
+                    out.writeByte((Integer) data);
+                    out.writeString(message.getContent());
+                    return out.toByteArray();
+                }
+                break;
+            case ANALYZE:
+                if (data instanceof PositionAnalysis && ANALYSIS_CONTENT.equals(message.getContent())) {
+                    PositionAnalysis analysis = (PositionAnalysis) data;
+                    out.writeByte(type.ordinal());
+                    out.writeVarInt(analysis.getSequence());
+                    out.writeByte(analysis.getSolvedColumns());
+                    for (int c = 0; c < GameBoard.getCols(); c++) {
+                        out.writeByte(analysis.getScore(c));
+                    }
+                    return out.toByteArray();
+                }
+                break;
+            case CHAT:
+                if (data == null) {
+                    out.writeByte(type.ordinal());
+                    out.writeString(message.getSender());
+                    out.writeString(message.getContent());
+                    return out.toByteArray();
+                }
+                break;
+            default:
+                break;
+        }
+
+        out.writeByte(type.ordinal() | GENERIC_FLAG);
+        out.writeString(message.getSender());
+        out.writeString(message.getContent());
+        writeData(out, data);
+        return out.toByteArray();
+    }
+
+    @Override
+    public Message decode(byte[] data, int offset, int length) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(data, offset, length);
+        try {
+            int tag = in.get() & 0xFF;
+            int ordinal = tag & ~GENERIC_FLAG;
+            if (ordinal >= TYPES.length) {
+                throw new IOException("Unknown message type: " + ordinal);
+            }
+            Message.MessageType type = TYPES[ordinal];
+
+            if ((tag & GENERIC_FLAG) != 0) {
+                String sender = readString(in);
+                String content = readString(in);
+                return new Message(type, sender, content, readData(in));
+            }
+
+            switch (type) {
+                case GAME_MOVE: {
+                    int column = in.get();
+                    return new Message(type, null, Integer.toString(column), column);
+                }
+                case GAME_STATE:
+                    return new Message(type, "SERVER", GAME_STATE_CONTENT, readBoardState(in));
+                case GAME_MOVE_APPLIED: {
+                    int sequence = readVarInt(in);
+                    MoveEvent move = new MoveEvent(sequence, in.get(), in.get(), in.get(), in.get());
+                    return new Message(type, "SERVER", MOVE_APPLIED_CONTENT, move);
+                }
+                case GAME_STARTED:
+                case GAME_OVER: {
+                    int value = in.get();
+                    return new Message(type, "SERVER", readString(in), value);
+                }
+                case ANALYZE: {
+                    int sequence = readVarInt(in);
+                    int solvedColumns = in.get() & 0xFF;
+                    int[] scores = new int[GameBoard.getCols()];
+                    for (int c = 0; c < scores.length; c++) {
+                        scores[c] = in.get();
+                    }
+                    return new Message(type, "SERVER", ANALYSIS_CONTENT,
+                            new PositionAnalysis(sequence, scores, solvedColumns));
+                }
+                case CHAT: {
+                    String sender = readString(in);
+                    return new Message(type, sender, readString(in));
+                }
+                default:
+                    throw new IOException("No fixed layout for " + type);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated frame", e);
+        }
+    }
+
+    private static boolean fitsByte(int value) {
+        return value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE;
+    }
+
+    private static void writeBoardState(Writer out, BoardState state) {
+        out.writeByte(state.getCurrentPlayer());
+        out.writeByte(state.getWinner());
+        out.writeByte(state.isGameOver() ? 1 : 0);
+        out.writeVarInt(state.getSequence());
+
+        int[][] board = state.getBoard();
+        int packed = 0;
+        int bits = 0;
+        for (int r = 0; r < GameBoard.getRows(); r++) {
+            for (int c = 0; c < GameBoard.getCols(); c++) {
+                packed |= (board[r][c] & 0x3) << bits;
+                bits += 2;
+                if (bits == 8) {
+                    out.writeByte(packed);
+                    packed = 0;
+                    bits = 0;
+                }
+            }
+        }
+        if (bits > 0) {
+            out.writeByte(packed);
+        }
+    }
+
+    private static BoardState readBoardState(ByteBuffer in) throws IOException {
+        int currentPlayer = in.get();
+        int winner = in.get();
+        boolean gameOver = in.get() != 0;
+        int sequence = readVarInt(in);
+
+        int[][] board = new int[GameBoard.getRows()][GameBoard.getCols()];
+        int packed = 0;
+        int bits = 8;
+        for (int r = 0; r < GameBoard.getRows(); r++) {
+            for (int c = 0; c < GameBoard.getCols(); c++) {
+                if (bits == 8) {
+                    packed = in.get() & 0xFF;
+                    bits = 0;
+                }
+                board[r][c] = (packed >>> bits) & 0x3;
+                bits += 2;
+            }
+        }
+        return new BoardState(board, currentPlayer, winner, gameOver, sequence);
+    }
+
+    private static void writeData(Writer out, Object data) throws IOException {
+        if (data == null) {
+            out.writeByte(DATA_NONE);
+        } else if (data instanceof Integer) {
+            out.writeByte(DATA_INT);
+            out.writeInt((Integer) data);
+        } else if (data instanceof String) {
+            out.writeByte(DATA_STRING);
+            out.writeString((String) data);
+        } else if (data instanceof BoardState) {
+            out.writeByte(DATA_BOARD);
+            writeBoardState(out, (BoardState) data);
+        } else {
+            // Rare payloads keep working through plain serialization
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream objects = new ObjectOutputStream(bytes)) {
+                objects.writeObject(data);
+            }
+            out.writeByte(DATA_SERIALIZED);
+            out.writeVarInt(bytes.size());
+            out.writeBytes(bytes.toByteArray());
+        }
+    }
+
+    private static Object readData(ByteBuffer in) throws IOException {
+        int kind = in.get();
+        switch (kind) {
+            case DATA_NONE:
+                return null;
+            case DATA_INT:
+                return in.getInt();
+            case DATA_STRING:
+                return readString(in);
+            case DATA_BOARD:
+                return readBoardState(in);
+            case DATA_SERIALIZED: {
+                int length = readVarInt(in);
+                if (length < 0 || length > in.remaining()) {
+                    throw new IOException("Serialized data longer than frame");
+                }
+                byte[] bytes = new byte[length];
+                in.get(bytes);
+                try (ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                    return objects.readObject();
+                } catch (ClassNotFoundException e) {
+                    throw new IOException("Unknown object in frame: " + e.getMessage(), e);
+                }
+            }
+            default:
+                throw new IOException("Unknown data kind: " + kind);
+        }
+    }
+
+    private static String readString(ByteBuffer in) throws IOException {
+        int length = readVarInt(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.remaining()) {
+            throw new IOException("String longer than frame");
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static int readVarInt(ByteBuffer in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.get() & 0xFF;
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    // Minimal growable byte sink; avoids the synchronization of ByteArrayOutputStream
+    private static final class Writer {
+        private byte[] buf;
+        private int pos;
+
+        Writer(int capacity) {
+            buf = new byte[capacity];
+        }
+
+        void writeByte(int value) {
+            ensure(1);
+            buf[pos++] = (byte) value;
+        }
+
+        void writeInt(int value) {
+            ensure(4);
+            buf[pos++] = (byte) (value >>> 24);
+            buf[pos++] = (byte) (value >>> 16);
+            buf[pos++] = (byte) (value >>> 8);
+            buf[pos++] = (byte) value;
+        }
+
+        void writeVarInt(int value) {
+            while ((value & ~0x7F) != 0) {
+                writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            writeByte(value);
+        }
+
+        void writeBytes(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            pos += bytes.length;
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeVarInt(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length + 1);
+            writeBytes(bytes);
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, pos);
+        }
+
+        private void ensure(int extra) {
+            if (pos + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + extra));
+            }
+        }
+    }
+}
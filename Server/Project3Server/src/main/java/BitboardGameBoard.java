@@ -0,0 +1,157 @@
+import java.util.Arrays;
+
+/**
+ * Connect Four rules on bitboards, with the same public behavior as GameBoard.
+ *
+ * Each player's discs are a 64-bit long. Column c uses bits c*7 (bottom row)
+ * to c*7+5 (top row); bit c*7+6 stays empty so shifted lines never wrap into
+ * the next column. A move sets one bit, and a win check is four shift-and-AND
+ * tests. The int[][] view from getBoard() is kept in step one cell per move.
+ */
+public class BitboardGameBoard {
+    private static final int ROWS = GameBoard.getRows();
+    private static final int COLS = GameBoard.getCols();
+    private static final int COLUMN_BITS = ROWS + 1;
+    private static final int CELLS = ROWS * COLS;
+
+    private final long[] discs = new long[3];  // indexed by player number; slot 0 unused
+    private final int[] heights = new int[COLS];
+    private final int[] history = new int[CELLS];  // column of each move, indexed by move number
+    private int[][] board;  // 0: empty, 1: player 1, 2: player 2; row 0 is the top
+    private int currentPlayer;
+    private boolean gameOver;
+    private int winner;  // 0: no winner yet, 1: player 1, 2: player 2, 3: draw
+    private int moveCount;
+    private int lastRow = -1;
+
+    public BitboardGameBoard() {
+        resetGame();
+    }
+
+    public boolean makeMove(int column) {
+        if (column < 0 || column >= COLS || gameOver || heights[column] == ROWS) {
+            return false;
+        }
+
+        int height = heights[column]++;
+        long player = discs[currentPlayer] |= 1L << (column * COLUMN_BITS + height);
+        lastRow = ROWS - 1 - height;
+        board[lastRow][column] = currentPlayer;
+        history[moveCount++] = column;
+
+        if (isWin(player)) {
+            gameOver = true;
+            winner = currentPlayer;
+            return true;
+        }
+        if (moveCount == CELLS) {
+            gameOver = true;
+            winner = 3;  // Draw
+            return true;
+        }
+
+        currentPlayer = (currentPlayer == 1) ? 2 : 1;
+        return true;
+    }
+
+    // Takes back the most recent move; false if there is none
+    public boolean undoMove() {
+        if (moveCount == 0) {
+            return false;
+        }
+        int column = history[--moveCount];
+        int height = --heights[column];
+        long bit = 1L << (column * COLUMN_BITS + height);
+        currentPlayer = (discs[1] & bit) != 0 ? 1 : 2;
+        discs[currentPlayer] &= ~bit;
+        board[ROWS - 1 - height][column] = 0;
+        gameOver = false;
+        winner = 0;
+        lastRow = (moveCount == 0) ? -1 : ROWS - heights[history[moveCount - 1]];
+        return true;
+    }
+
+    // Whether a player's discs contain four in a row in any direction
+    public static boolean isWin(long discs) {
+        long pairs = discs & (discs >>> COLUMN_BITS);             // horizontal
+        if ((pairs & (pairs >>> (2 * COLUMN_BITS))) != 0) {
+            return true;
+        }
+        pairs = discs & (discs >>> (COLUMN_BITS - 1));             // diagonal, down to the right
+        if ((pairs & (pairs >>> (2 * (COLUMN_BITS - 1)))) != 0) {
+            return true;
+        }
+        pairs = discs & (discs >>> (COLUMN_BITS + 1));             // diagonal, up to the right
+        if ((pairs & (pairs >>> (2 * (COLUMN_BITS + 1)))) != 0) {
+            return true;
+        }
+        pairs = discs & (discs >>> 1);                             // vertical
+        return (pairs & (pairs >>> 2)) != 0;
+    }
+
+    public int[][] getBoard() {
+        return board;
+    }
+
+    // One cell, read from the bitboards: 0 empty, 1 or 2 for a player's disc; row 0 is the top
+    public int getCell(int row, int col) {
+        long bit = 1L << (col * COLUMN_BITS + ROWS - 1 - row);
+        if ((discs[1] & bit) != 0) {
+            return 1;
+        }
+        return (discs[2] & bit) != 0 ? 2 : 0;
+    }
+
+    // Whether a disc can still be dropped into the column
+    public boolean canPlay(int column) {
+        return column >= 0 && column < COLS && heights[column] < ROWS;
+    }
+
+    public int getCurrentPlayer() {
+        return currentPlayer;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    public int getWinner() {
+        return winner;
+    }
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    public int getLastRow() {
+        return lastRow;
+    }
+
+    // Discs of player 1 or 2 in the bit layout described above
+    public long getDiscs(int player) {
+        return discs[player];
+    }
+
+    // Number of discs in a column
+    public int getHeight(int column) {
+        return heights[column];
+    }
+
+    // End the game with the given player losing (e.g. they ran out of time)
+    public void forfeit(int player) {
+        gameOver = true;
+        winner = (player == 1) ? 2 : 1;
+    }
+
+    public void resetGame() {
+        board = new int[ROWS][COLS];
+        discs[1] = 0;
+        discs[2] = 0;
+        Arrays.fill(heights, 0);
+        currentPlayer = 1;
+        gameOver = false;
+        winner = 0;
+        moveCount = 0;
+        lastRow = -1;
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * Bit tricks on the BitboardGameBoard layout for search code.
+ *
+ * A position is two longs: the discs of the player to move, and a mask of
+ * every disc on the board. Column c uses bits c*7 (bottom) to c*7+5 (top);
+ * bit c*7+6 is always clear. Playing a move flips the point of view, so the
+ * search never needs to know which player is which.
+ */
+public final class Bitboards {
+    public static final int ROWS = GameBoard.getRows();
+    public static final int COLS = GameBoard.getCols();
+    public static final int CELLS = ROWS * COLS;
+    public static final int COLUMN_BITS = ROWS + 1;
+
+    // Columns from the center outwards; central columns take part in more lines
+    public static final int[] CENTER_FIRST = { 3, 2, 4, 1, 5, 0, 6 };
+
+    private static final long BOTTOM = repeat(1L);
+    private static final long BOARD = BOTTOM * ((1L << ROWS) - 1);
+
+    private Bitboards() {
+    }
+
+    // One copy of the bit pattern per column
+    private static long repeat(long columnBits) {
+        long result = 0;
+        for (int c = 0; c < COLS; c++) {
+            result |= columnBits << (c * COLUMN_BITS);
+        }
+        return result;
+    }
+
+    public static long bottomMask(int column) {
+        return 1L << (column * COLUMN_BITS);
+    }
+
+    public static long topMask(int column) {
+        return 1L << (ROWS - 1 + column * COLUMN_BITS);
+    }
+
+    public static long columnMask(int column) {
+        return ((1L << ROWS) - 1) << (column * COLUMN_BITS);
+    }
+
+    public static boolean canPlay(long mask, int column) {
+        return (mask & topMask(column)) == 0;
+    }
+
+    // The cell a disc dropped into the column would land on
+    public static long moveBit(long mask, int column) {
+        return (mask + bottomMask(column)) & columnMask(column);
+    }
+
+    // Every cell that can be played right now, one per open column
+    public static long possible(long mask) {
+        return (mask + BOTTOM) & BOARD;
+    }
+
+    // Empty cells that would complete four in a row for the given discs
+    public static long winningCells(long discs, long mask) {
+        // Vertical: three stacked discs
+        long cells = (discs << 1) & (discs << 2) & (discs << 3);
+        cells |= lineCells(discs, COLUMN_BITS);       // horizontal
+        cells |= lineCells(discs, COLUMN_BITS - 1);   // diagonal one way
+        cells |= lineCells(discs, COLUMN_BITS + 1);   // diagonal the other way
+        return cells & (BOARD ^ mask);
+    }
+
+    // Cells that complete a line of four along one direction, given its bit shift
+    private static long lineCells(long discs, int shift) {
+        long pair = (discs << shift) & (discs << (2 * shift));
+        long cells = pair & (discs << (3 * shift));
+        cells |= pair & (discs >>> shift);
+        pair = (discs >>> shift) & (discs >>> (2 * shift));
+        cells |= pair & (discs << shift);
+        cells |= pair & (discs >>> (3 * shift));
+        return cells;
+    }
+
+    public static boolean canWinNext(long current, long mask) {
+        return (winningCells(current, mask) & possible(mask)) != 0;
+    }
+
+    // Moves that do not hand the opponent an immediate win; 0 if every move loses
+    public static long nonLosingMoves(long current, long mask) {
+        long moves = possible(mask);
+        long threats = winningCells(current ^ mask, mask);
+        long forced = moves & threats;
+        if (forced != 0) {
+            if ((forced & (forced - 1)) != 0) {
+                return 0;  // two threats at once cannot both be blocked
+            }
+            moves = forced;
+        }
+        return moves & ~(threats >>> 1);  // never play directly below an opponent's winning cell
+    }
+
+    // Unique key for a position: the mask plus the mover's discs
+    public static long key(long current, long mask) {
+        return current + mask;
+    }
+
+    // The same position reflected across the center column
+    public static long mirror(long bits) {
+        long result = 0;
+        for (int c = 0; c < COLS; c++) {
+            long column = (bits >>> (c * COLUMN_BITS)) & ((1L << COLUMN_BITS) - 1);
+            result |= column << ((COLS - 1 - c) * COLUMN_BITS);
+        }
+        return result;
+    }
+}
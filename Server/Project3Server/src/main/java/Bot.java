@@ -0,0 +1,13 @@
+/**
+ * A computer player. Every BotPool worker owns its own Bot, so an
+ * implementation may keep search state between moves without locking.
+ */
+public interface Bot {
+
+    // Column to play for the player to move, chosen by deadlineNanos (System.nanoTime()) and within maxDepth plies
+    int chooseMove(long current, long mask, int moves, long deadlineNanos, int maxDepth);
+
+    // Releases any threads the bot started; called once its worker is done with it
+    default void close() {
+    }
+}
@@ -0,0 +1,20 @@
+/**
+ * The connection behind a server-run bot's session. Bots read the game
+ * from the board itself, so messages sent to them are simply dropped.
+ */
+public class BotConnection implements Connection {
+
+    @Override
+    public void sendMessage(Message message) {
+    }
+
+    @Override
+    public void sendFrame(SharedFrame frame) {
+    }
+
+    // Never ask the server to build full snapshots for a bot
+    @Override
+    public boolean supportsMoveEvents() {
+        return true;
+    }
+}
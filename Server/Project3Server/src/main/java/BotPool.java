@@ -0,0 +1,260 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Worker threads that choose moves for server-run bots, kept apart from
+ * connection threads and game shards so bot thinking never delays human
+ * games. The number of workers can be changed while the server runs; a
+ * worker that is let go finishes the move it is on first.
+ *
+ * Move requests wait in one FIFO queue. A game only asks for its next bot
+ * move after the human has replied, so each game has at most one request
+ * queued and the queue serves bot games round-robin. Each request carries a
+ * deadline of moveMillis from when it was queued, so time spent waiting comes
+ * out of the bot's thinking time. Under load the search depth is cut as
+ * well: while the backlog stays within one request per worker, bots search
+ * to maxDepth; each time it doubles beyond that the depth halves, down to
+ * minDepth. New bot games are refused once maxGames are running.
+ */
+public class BotPool {
+
+    // One bot move to compute
+    private static final class Job {
+        final long current;
+        final long mask;
+        final int moves;
+        final long deadline;
+        final BooleanSupplier stale;
+        final IntConsumer onMove;
+
+        Job(long current, long mask, int moves, long deadline, BooleanSupplier stale, IntConsumer onMove) {
+            this.current = current;
+            this.mask = mask;
+            this.moves = moves;
+            this.deadline = deadline;
+            this.stale = stale;
+            this.onMove = onMove;
+        }
+    }
+
+    // One worker thread, with the bot it thinks with
+    private final class Worker implements Runnable {
+        final Bot bot;
+        final Thread thread;
+        volatile boolean retired;
+
+        Worker(Bot bot, int id) {
+            this.bot = bot;
+            this.thread = new Thread(this, "bot-" + id);
+            thread.setDaemon(true);
+            // Human games win any contention for the CPU
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+        }
+
+        @Override
+        public void run() {
+            try {
+                work(this);
+            } finally {
+                // Retired or stopped: let go of any threads the bot holds
+                bot.close();
+            }
+        }
+    }
+
+    private final LinkedBlockingQueue<Job> queue = new LinkedBlockingQueue<>();
+    private final Supplier<Bot> bots;
+    private final List<Worker> workers = new ArrayList<>();  // guarded by this
+    private volatile int threads;
+    private int nextWorkerId;                                // guarded by this
+    private boolean started;                                 // guarded by this
+    private final int maxGames;
+    private final AtomicInteger activeGames = new AtomicInteger();
+    private final AtomicLong movesPlayed = new AtomicLong();
+    private final AtomicLong thinkNanos = new AtomicLong();
+    private final AtomicLong lateMoves = new AtomicLong();
+    private final AtomicLong reducedMoves = new AtomicLong();
+    private final Consumer<String> log;
+    private final int maxDepth;
+    private final int minDepth;
+    private volatile long moveMillis;
+    private volatile boolean stopped;
+
+    public BotPool(int threads, Supplier<Bot> bots, long moveMillis, int maxDepth, int minDepth, int maxGames,
+                   Consumer<String> log) {
+        this.moveMillis = moveMillis;
+        this.maxDepth = maxDepth;
+        this.minDepth = Math.min(minDepth, maxDepth);
+        this.maxGames = maxGames;
+        this.log = log;
+        this.bots = bots;
+        setThreads(threads);
+    }
+
+    public synchronized void start() {
+        started = true;
+        for (Worker worker : workers) {
+            worker.thread.start();
+        }
+    }
+
+    public synchronized void stop() {
+        stopped = true;
+        for (Worker worker : workers) {
+            if (started) {
+                worker.thread.interrupt();
+            } else {
+                // Never ran, so nothing else will close its bot
+                worker.bot.close();
+            }
+        }
+        queue.clear();
+    }
+
+    // Grow or shrink the pool; at least one worker is kept
+    public synchronized void setThreads(int count) {
+        count = Math.max(1, count);
+        while (workers.size() < count) {
+            Worker worker = new Worker(bots.get(), nextWorkerId++);
+            workers.add(worker);
+            if (started) {
+                worker.thread.start();
+            }
+        }
+        while (workers.size() > count) {
+            Worker worker = workers.remove(workers.size() - 1);
+            worker.retired = true;
+            if (!started) {
+                worker.bot.close();
+            }
+        }
+        threads = count;
+    }
+
+    // Reserves room for one more bot game; false when the pool is already at maxGames
+    public boolean admitGame() {
+        while (true) {
+            int active = activeGames.get();
+            if (active >= maxGames) {
+                return false;
+            }
+            if (activeGames.compareAndSet(active, active + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void releaseGame() {
+        activeGames.decrementAndGet();
+    }
+
+    // Queue a move for the player to move; onMove runs on a worker unless stale says the request no longer matters
+    public void requestMove(long current, long mask, int moves, BooleanSupplier stale, IntConsumer onMove) {
+        long deadline = System.nanoTime() + moveMillis * 1_000_000L;
+        queue.add(new Job(current, mask, moves, deadline, stale, onMove));
+    }
+
+    // Depth allowed when this many requests, counting the one about to run, are waiting
+    int depthFor(int backlog) {
+        int perWorker = backlog / threads;
+        if (perWorker <= 1) {
+            return maxDepth;
+        }
+        int halvings = 31 - Integer.numberOfLeadingZeros(perWorker);
+        return Math.max(minDepth, maxDepth >> halvings);
+    }
+
+    private void work(Worker worker) {
+        Bot bot = worker.bot;
+        while (!stopped && !worker.retired) {
+            Job job;
+            try {
+                job = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (job == null || job.stale.getAsBoolean()) {
+                continue;
+            }
+
+            int depth = depthFor(queue.size() + 1);
+            if (depth < maxDepth) {
+                reducedMoves.incrementAndGet();
+            }
+            long start = System.nanoTime();
+            int column;
+            try {
+                column = bot.chooseMove(job.current, job.mask, job.moves, job.deadline, depth);
+            } catch (RuntimeException e) {
+                log.accept("Bot failed to choose a move: " + e);
+                column = Long.numberOfTrailingZeros(Bitboards.possible(job.mask)) / Bitboards.COLUMN_BITS;
+            }
+            long end = System.nanoTime();
+            thinkNanos.addAndGet(end - start);
+            movesPlayed.incrementAndGet();
+            if (end > job.deadline) {
+                lateMoves.incrementAndGet();
+            }
+            job.onMove.accept(column);
+        }
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getQueuedMoves() {
+        return queue.size();
+    }
+
+    public int getActiveGames() {
+        return activeGames.get();
+    }
+
+    public int getMaxGames() {
+        return maxGames;
+    }
+
+    public long getMovesPlayed() {
+        return movesPlayed.get();
+    }
+
+    // Moves finished after their deadline
+    public long getLateMoves() {
+        return lateMoves.get();
+    }
+
+    // Moves searched below maxDepth because of the backlog
+    public long getReducedMoves() {
+        return reducedMoves.get();
+    }
+
+    public long getAverageThinkMillis() {
+        long moves = movesPlayed.get();
+        return moves == 0 ? 0 : thinkNanos.get() / moves / 1_000_000L;
+    }
+
+    public long getMoveMillis() {
+        return moveMillis;
+    }
+
+    public void setMoveMillis(long moveMillis) {
+        this.moveMillis = moveMillis;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public int getMinDepth() {
+        return minDepth;
+    }
+}
@@ -0,0 +1,25 @@
+/**
+ * The server's view of one connected client, independent of transport.
+ */
+public interface Connection {
+
+    // Queue a message for delivery to this client
+    void sendMessage(Message message);
+
+    // Queue a message shared with other recipients; transports reuse its encoded bytes
+    default void sendFrame(SharedFrame frame) {
+        sendMessage(frame.getMessage());
+    }
+
+    // Whether this client applies GAME_MOVE_APPLIED events itself
+    boolean supportsMoveEvents();
+
+    // Frames queued for this client but not yet written
+    default int getQueuedFrames() {
+        return 0;
+    }
+
+    // Drop the connection; the usual disconnect cleanup follows
+    default void close() {
+    }
+}
@@ -0,0 +1,124 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One game between two sessions. The game behaves as an actor: every event
+ * that touches the board (move, rematch, quit, disconnect, timeout) runs on
+ * the game's shard of the server's ShardedExecutor, one at a time and in
+ * arrival order, so the board itself needs no locking.
+ */
+public class Game {
+    private final long id;
+    private final Session player1;
+    private final Session player2;
+    private final BitboardGameBoard board = new BitboardGameBoard();
+    private final AtomicBoolean ended = new AtomicBoolean();
+    private volatile Audience audience;  // created on the game's shard by the first spectator
+    
+    // Written only from the game's shard
+    private volatile long eventCount;
+    private volatile long eventNanos;
+    private int turnTimerToken;
+    private final List<MoveEvent> moves = new ArrayList<>();  // this round's moves, for catching up resumed players
+
+    public Game(long id, Session player1, Session player2) {
+        this.id = id;
+        this.player1 = player1;
+        this.player2 = player2;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public Session getPlayer1() {
+        return player1;
+    }
+
+    public Session getPlayer2() {
+        return player2;
+    }
+
+    // Only touch the board from the game's shard
+    public BitboardGameBoard getBoard() {
+        return board;
+    }
+
+    // Spectators of this game, or null if nobody has asked to watch it
+    public Audience getAudience() {
+        return audience;
+    }
+
+    void setAudience(Audience audience) {
+        this.audience = audience;
+    }
+
+    public Session opponentOf(Session session) {
+        return session == player1 ? player2 : player1;
+    }
+
+    // 1 or 2, or 0 if the session is not playing in this game
+    public int playerNumber(Session session) {
+        if (session == player1) {
+            return 1;
+        }
+        return session == player2 ? 2 : 0;
+    }
+
+    // Marks the game finished; only the first caller gets true
+    boolean end() {
+        return ended.compareAndSet(false, true);
+    }
+
+    public boolean isEnded() {
+        return ended.get();
+    }
+
+    // Per-game metrics, recorded after each event the actor processes
+    void recordEvent(long nanos) {
+        eventCount++;
+        eventNanos += nanos;
+    }
+
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    public long getEventNanos() {
+        return eventNanos;
+    }
+
+    // Remember an accepted move so a player who missed it can be sent it again
+    void recordMove(MoveEvent move) {
+        moves.add(move);
+    }
+
+    // Forget the moves of a finished round, when the board is reset or rebuilt
+    void clearMoves() {
+        moves.clear();
+    }
+
+    // The moves after the given sequence number, or null if they are not all known (e.g. after a restart)
+    List<MoveEvent> movesAfter(int sequence) {
+        int count = board.getMoveCount();
+        if (sequence < 0 || sequence > count || moves.size() != count) {
+            return null;
+        }
+        return new ArrayList<>(moves.subList(sequence, count));
+    }
+
+    // Invalidates any pending turn timer and returns the token for the next one
+    int nextTurnTimerToken() {
+        return ++turnTimerToken;
+    }
+
+    boolean isCurrentTurnTimer(int token) {
+        return token == turnTimerToken;
+    }
+
+    @Override
+    public String toString() {
+        return "Game " + id + " (" + player1 + " vs " + player2 + ")";
+    }
+}
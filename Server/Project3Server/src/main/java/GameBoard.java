@@ -12,6 +12,11 @@ public class GameBoard implements Serializable {
     private int currentPlayer;
     private boolean gameOver;
     private int winner;  // 0: no winner yet, 1: player 1, 2: player 2, 3: draw
+    private int moveCount;  // Moves played so far; doubles as the move event sequence
+    private int lastRow = -1;  // Row of the most recent disc
+    private int[] heights = new int[COLS];  // Discs in each column
+    private int[] history = new int[ROWS * COLS];  // Column of each move, indexed by move number
+    private int undoable;  // Moves at the end of history that undoMove can take back
     
     public GameBoard() {
         board = new int[ROWS][COLS];
@@ -21,29 +26,19 @@ public class GameBoard implements Serializable {
     }
     
     public boolean makeMove(int column) {
-        if (column < 0 || column >= COLS || gameOver) {
+        if (gameOver || !canPlay(column)) {
             return false;
         }
         
-        // Find the lowest empty row in the selected column
-        // In Connect 4, row 0 is the top, and row 5 is the bottom
-        // So we scan from the bottom (ROWS-1) to the top (0)
-        // This represents the "dropping" of the token to the bottom
-        int row = -1;
-        for (int r = ROWS - 1; r >= 0; r--) {
-            if (board[r][column] == 0) {
-                row = r;
-                break;
-            }
-        }
-        
-        // If column is full, move is invalid
-        if (row == -1) {
-            return false;
-        }
+        // Row 0 is the top, so a column's next disc lands just above its current stack
+        int row = ROWS - 1 - heights[column];
         
         // Place the piece
         board[row][column] = currentPlayer;
+        heights[column]++;
+        history[moveCount++] = column;
+        undoable++;
+        lastRow = row;
         
         // Check for win
         if (checkWin(row, column)) {
@@ -53,7 +48,7 @@ public class GameBoard implements Serializable {
         }
         
         // Check for draw
-        if (isBoardFull()) {
+        if (moveCount == ROWS * COLS) {
             gameOver = true;
             winner = 3;  // Draw
             return true;
@@ -64,65 +59,59 @@ public class GameBoard implements Serializable {
         return true;
     }
     
-    private boolean isBoardFull() {
-        for (int c = 0; c < COLS; c++) {
-            if (board[0][c] == 0) {
-                return false;
-            }
+    // Whether a disc can still be dropped into the column
+    public boolean canPlay(int column) {
+        return column >= 0 && column < COLS && heights[column] < ROWS;
+    }
+    
+    // Take back the most recent move; false if there is none to take back
+    public boolean undoMove() {
+        if (undoable == 0) {
+            return false;
         }
+        undoable--;
+        int column = history[--moveCount];
+        int row = ROWS - heights[column];
+        currentPlayer = board[row][column];
+        board[row][column] = 0;
+        heights[column]--;
+        gameOver = false;
+        winner = 0;
+        lastRow = (moveCount == 0) ? -1 : ROWS - heights[history[moveCount - 1]];
         return true;
     }
     
+    // Only the four lines through the new disc can have changed
     private boolean checkWin(int row, int col) {
+        return lineLength(row, col, 0, 1) >= 4      // horizontal
+            || lineLength(row, col, 1, 0) >= 4      // vertical
+            || lineLength(row, col, 1, 1) >= 4      // diagonal down-right
+            || lineLength(row, col, 1, -1) >= 4;    // diagonal down-left
+    }
+    
+    // Discs in an unbroken line through (row, col), counting outward both ways
+    private int lineLength(int row, int col, int dr, int dc) {
         int player = board[row][col];
-        
-        // Check horizontal
-        int count = 0;
-        for (int c = 0; c < COLS; c++) {
-            if (board[row][c] == player) {
-                count++;
-                if (count >= 4) return true;
-            } else {
-                count = 0;
-            }
-        }
-        
-        // Check vertical
-        count = 0;
-        for (int r = 0; r < ROWS; r++) {
-            if (board[r][col] == player) {
-                count++;
-                if (count >= 4) return true;
-            } else {
-                count = 0;
-            }
+        int length = 1;
+        for (int r = row + dr, c = col + dc; r >= 0 && r < ROWS && c >= 0 && c < COLS && board[r][c] == player;
+                r += dr, c += dc) {
+            length++;
         }
-        
-        // Check diagonal (down-right)
-        for (int r = 0; r < ROWS - 3; r++) {
-            for (int c = 0; c < COLS - 3; c++) {
-                if (board[r][c] == player && 
-                    board[r+1][c+1] == player && 
-                    board[r+2][c+2] == player && 
-                    board[r+3][c+3] == player) {
-                    return true;
-                }
-            }
-        }
-        
-        // Check diagonal (up-right)
-        for (int r = 3; r < ROWS; r++) {
-            for (int c = 0; c < COLS - 3; c++) {
-                if (board[r][c] == player && 
-                    board[r-1][c+1] == player && 
-                    board[r-2][c+2] == player && 
-                    board[r-3][c+3] == player) {
-                    return true;
-                }
-            }
+        for (int r = row - dr, c = col - dc; r >= 0 && r < ROWS && c >= 0 && c < COLS && board[r][c] == player;
+                r -= dr, c -= dc) {
+            length++;
         }
-        
-        return false;
+        return length;
+    }
+    
+    // One cell, without exposing the array: 0 empty, 1 or 2 for a player's disc
+    public int getCell(int row, int col) {
+        return board[row][col];
+    }
+    
+    // Discs already in the column
+    public int getHeight(int column) {
+        return heights[column];
     }
     
     public int[][] getBoard() {
@@ -141,11 +130,29 @@ public class GameBoard implements Serializable {
         return winner;
     }
     
+    public int getMoveCount() {
+        return moveCount;
+    }
+    
+    public int getLastRow() {
+        return lastRow;
+    }
+    
+    // End the game with the given player losing (e.g. they ran out of time)
+    public void forfeit(int player) {
+        gameOver = true;
+        winner = (player == 1) ? 2 : 1;
+    }
+    
     public void resetGame() {
         board = new int[ROWS][COLS];
+        heights = new int[COLS];
         currentPlayer = 1;
         gameOver = false;
         winner = 0;
+        moveCount = 0;
+        lastRow = -1;
+        undoable = 0;
     }
     
     public static int getRows() {
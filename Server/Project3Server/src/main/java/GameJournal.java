@@ -0,0 +1,538 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of game starts, moves and ends, so that games in
+ * progress survive a server restart.
+ *
+ * Records go into memory-mapped segment files of a fixed size, and a record
+ * that does not fit starts the next segment. Appending is a copy into the
+ * mapping under a lock, so a record survives a crash of the server process
+ * as soon as the append returns. Surviving an OS crash or power loss takes an
+ * fsync, which a background thread issues for everything appended since the
+ * last one (group commit): every syncMillis, or sooner once syncRecords
+ * records are waiting. A segment is deleted once no unfinished game started
+ * in it or before it. Forcing a full segment and deleting old ones are left to
+ * that thread too, so an append that starts a new segment never waits on the
+ * disk; without a sync thread the appending thread does them after letting
+ * go of the lock.
+ *
+ * A record is a varint body length, a type byte, the body, and the low 16
+ * bits of a CRC32 over the type and body. Replay stops at the first record in
+ * a segment that is empty, cut short or fails its checksum, which is where a
+ * crash interrupted writing. After replay the unfinished games are written
+ * again into a fresh segment and the old segments are removed.
+ */
+public class GameJournal {
+    static final int MAGIC = 0x43344A4C;      // "C4JL"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 8;
+    static final byte START = 1;               // id, bot flags, player 1 name, player 2 name
+    static final byte MOVE = 2;                // id, column
+    static final byte END = 3;                 // id, winner
+    private static final int MAX_NAME_BYTES = 1024;
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".log";
+
+    // A game that was still being played when the journal was last written
+    public static final class RecoveredGame {
+        private final long id;
+        private final String player1;
+        private final String player2;
+        private final int bots;
+        private final byte[] columns = new byte[Bitboards.CELLS];
+        private int moveCount;
+
+        RecoveredGame(long id, String player1, String player2, int bots) {
+            this.id = id;
+            this.player1 = player1;
+            this.player2 = player2;
+            this.bots = bots;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getPlayer1() {
+            return player1;
+        }
+
+        public String getPlayer2() {
+            return player2;
+        }
+
+        // Whether player 1 or 2 is a server bot
+        public boolean isBot(int player) {
+            return (bots & player) != 0;
+        }
+
+        int getBots() {
+            return bots;
+        }
+
+        public int getMoveCount() {
+            return moveCount;
+        }
+
+        public int getColumn(int move) {
+            return columns[move];
+        }
+
+        void addMove(int column) {
+            if (moveCount < columns.length) {
+                columns[moveCount++] = (byte) column;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Game " + id + " (" + player1 + " vs " + player2 + ", " + moveCount + " moves)";
+        }
+    }
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final long syncMillis;
+    private final int syncRecords;
+    private final Consumer<String> log;
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong syncs = new AtomicLong();
+
+    // Guarded by this
+    private final byte[] body = new byte[2 * MAX_NAME_BYTES + 32];
+    private final CRC32 crc = new CRC32();
+    private final Map<Long, Integer> liveGames = new HashMap<>();  // game id -> segment of its latest start
+    private MappedByteBuffer segment;                               // null once closed or failed
+    private final List<MappedByteBuffer> retired = new ArrayList<>(); // full segments not yet forced
+    private final List<Integer> dropped = new ArrayList<>();          // segments not yet deleted
+    private int segmentIndex;
+    private int firstSegment;
+    private int unsynced;
+    private boolean closed;
+
+    public GameJournal(Path directory, int segmentBytes, long syncMillis, int syncRecords, Consumer<String> log) {
+        this.directory = directory;
+        this.segmentBytes = Math.max(segmentBytes, 4096);
+        this.syncMillis = syncMillis;
+        this.syncRecords = Math.max(1, syncRecords);
+        this.log = log;
+    }
+
+    // Replays the existing segments, starts a fresh one and returns the games that were unfinished
+    public synchronized List<RecoveredGame> open() throws IOException {
+        Files.createDirectories(directory);
+        List<Integer> existing = listSegments();
+        Map<Long, RecoveredGame> games = new LinkedHashMap<>();
+        for (int index : existing) {
+            replay(segmentPath(index), games);
+        }
+
+        firstSegment = existing.isEmpty() ? 0 : existing.get(0);
+        openSegment(existing.isEmpty() ? 0 : existing.get(existing.size() - 1) + 1);
+        // Carry the unfinished games over so every older segment can go
+        for (RecoveredGame game : games.values()) {
+            gameStarted(game.getId(), game.getPlayer1(), game.getPlayer2(), game.getBots());
+            for (int move = 0; move < game.getMoveCount(); move++) {
+                moved(game.getId(), game.getColumn(move));
+            }
+        }
+        dropOldSegments();
+        // Nothing is appending yet, so the old segments can go before returning
+        writeBack(drain(retired), null, drain(dropped));
+
+        if (syncMillis > 0) {
+            Thread syncer = new Thread(this::syncLoop, "journal-sync");
+            syncer.setDaemon(true);
+            syncer.start();
+        }
+        return new ArrayList<>(games.values());
+    }
+
+    // bots has bit 1 set if player 1 is a server bot and bit 2 if player 2 is
+    public void gameStarted(long id, String player1, String player2, int bots) {
+        byte[] name1 = player1.getBytes(StandardCharsets.UTF_8);
+        byte[] name2 = player2.getBytes(StandardCharsets.UTF_8);
+        if (name1.length > MAX_NAME_BYTES || name2.length > MAX_NAME_BYTES) {
+            log.accept("Not journaling game " + id + ": player name too long");
+            return;
+        }
+        synchronized (this) {
+            int length = putVarLong(body, 0, id);
+            body[length++] = (byte) bots;
+            length = putName(body, length, name1);
+            length = putName(body, length, name2);
+            if (append(START, length)) {
+                liveGames.put(id, segmentIndex);
+            }
+        }
+        writeBackUnlessSyncing();
+    }
+
+    public void moved(long id, int column) {
+        synchronized (this) {
+            if (!liveGames.containsKey(id)) {
+                return;
+            }
+            int length = putVarLong(body, 0, id);
+            body[length++] = (byte) column;
+            append(MOVE, length);
+        }
+        writeBackUnlessSyncing();
+    }
+
+    // winner is 1 or 2, 3 for a draw, or 0 if the game was abandoned
+    public void gameEnded(long id, int winner) {
+        synchronized (this) {
+            if (liveGames.remove(id) == null) {
+                return;
+            }
+            int length = putVarLong(body, 0, id);
+            body[length++] = (byte) winner;
+            append(END, length);
+        }
+        writeBackUnlessSyncing();
+    }
+
+    // Forces everything appended so far to disk
+    public void sync() {
+        MappedByteBuffer target;
+        List<MappedByteBuffer> full;
+        List<Integer> doomed;
+        synchronized (this) {
+            target = segment;
+            unsynced = 0;
+            full = drain(retired);
+            doomed = drain(dropped);
+        }
+        writeBack(full, target, doomed);
+    }
+
+    public void close() {
+        MappedByteBuffer last;
+        List<MappedByteBuffer> full;
+        List<Integer> doomed;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            last = segment;
+            segment = null;
+            full = drain(retired);
+            doomed = drain(dropped);
+            notifyAll();
+        }
+        writeBack(full, last, doomed);
+    }
+
+    private boolean append(byte type, int length) {
+        if (segment == null) {
+            return false;
+        }
+        crc.reset();
+        crc.update(type);
+        crc.update(body, 0, length);
+        int size = varIntSize(length) + 1 + length + 2;
+        try {
+            if (segment.remaining() < size) {
+                roll();
+            }
+        } catch (IOException e) {
+            log.accept("Journal disabled after a write error: " + e);
+            segment = null;
+            return false;
+        }
+        putVarInt(segment, length);
+        segment.put(type);
+        segment.put(body, 0, length);
+        segment.putShort((short) crc.getValue());
+        appended.incrementAndGet();
+        if (++unsynced >= syncRecords) {
+            notifyAll();
+        }
+        return true;
+    }
+
+    // Moves on to the next segment; the full one is queued to be forced ahead of it, so no gap can open behind it
+    private void roll() throws IOException {
+        retired.add(segment);
+        openSegment(segmentIndex + 1);
+        dropOldSegments();
+        notifyAll();
+    }
+
+    private void openSegment(int index) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(index), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+        segment.putInt(MAGIC);
+        segment.putInt(VERSION);
+        segmentIndex = index;
+        unsynced++;
+    }
+
+    private void dropOldSegments() {
+        int keep = segmentIndex;
+        for (int first : liveGames.values()) {
+            keep = Math.min(keep, first);
+        }
+        for (; firstSegment < keep; firstSegment++) {
+            dropped.add(firstSegment);
+        }
+    }
+
+    private static <T> List<T> drain(List<T> pending) {
+        List<T> taken = new ArrayList<>(pending);
+        pending.clear();
+        return taken;
+    }
+
+    // Without a sync thread, an appender does the disk work of a roll itself once it holds no lock
+    private void writeBackUnlessSyncing() {
+        if (syncMillis > 0) {
+            return;
+        }
+        List<MappedByteBuffer> full;
+        List<Integer> doomed;
+        synchronized (this) {
+            if (retired.isEmpty() && dropped.isEmpty()) {
+                return;
+            }
+            full = drain(retired);
+            doomed = drain(dropped);
+        }
+        writeBack(full, null, doomed);
+    }
+
+    // Forces full segments in order, then the live one if given, and only then deletes dropped segments
+    private void writeBack(List<MappedByteBuffer> full, MappedByteBuffer live, List<Integer> doomed) {
+        for (MappedByteBuffer buffer : full) {
+            buffer.force();
+            syncs.incrementAndGet();
+        }
+        if (live != null) {
+            live.force();
+            syncs.incrementAndGet();
+        }
+        for (int index : doomed) {
+            try {
+                Files.deleteIfExists(segmentPath(index));
+            } catch (IOException e) {
+                log.accept("Could not delete journal segment " + index + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // Group commit: one fsync covers every record appended since the last
+    private void syncLoop() {
+        while (true) {
+            MappedByteBuffer target;
+            List<MappedByteBuffer> full;
+            List<Integer> doomed;
+            synchronized (this) {
+                long wake = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(syncMillis);
+                try {
+                    while (!closed && unsynced < syncRecords && retired.isEmpty() && dropped.isEmpty()) {
+                        long left = wake - System.nanoTime();
+                        if (left <= 0) {
+                            break;
+                        }
+                        wait(Math.max(1, TimeUnit.NANOSECONDS.toMillis(left)));
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (closed || segment == null) {
+                    return;
+                }
+                if (unsynced == 0 && retired.isEmpty() && dropped.isEmpty()) {
+                    continue;
+                }
+                target = unsynced > 0 ? segment : null;
+                unsynced = 0;
+                full = drain(retired);
+                doomed = drain(dropped);
+            }
+            writeBack(full, target, doomed);
+        }
+    }
+
+    private void replay(Path path, Map<Long, RecoveredGame> games) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            log.accept("Skipping " + path.getFileName() + ": not a journal segment");
+            return;
+        }
+        while (buffer.hasRemaining()) {
+            int start = buffer.position();
+            int length = readVarInt(buffer);
+            if (length <= 0 || buffer.remaining() < 1 + length + 2) {
+                break;
+            }
+            ByteBuffer record = buffer.duplicate();
+            record.limit(buffer.position() + 1 + length);
+            crc.reset();
+            crc.update(record);
+            byte type = buffer.get();
+            ByteBuffer fields = buffer.slice();
+            fields.limit(length);
+            buffer.position(buffer.position() + length);
+            if (buffer.getShort() != (short) crc.getValue()) {
+                log.accept("Journal " + path.getFileName() + " ends with a damaged record at byte " + start);
+                break;
+            }
+            try {
+                apply(type, fields, games);
+            } catch (RuntimeException e) {
+                log.accept("Journal " + path.getFileName() + " has an unreadable record at byte " + start);
+                break;
+            }
+        }
+    }
+
+    private static void apply(byte type, ByteBuffer fields, Map<Long, RecoveredGame> games) {
+        long id = readVarLong(fields);
+        switch (type) {
+            case START:
+                int bots = fields.get();
+                String player1 = readName(fields);
+                String player2 = readName(fields);
+                games.put(id, new RecoveredGame(id, player1, player2, bots));
+                break;
+            case MOVE:
+                RecoveredGame game = games.get(id);
+                if (game != null) {
+                    game.addMove(fields.get());
+                }
+                break;
+            case END:
+                games.remove(id);
+                break;
+            default:
+                break;  // written by a newer server; nothing to rebuild from it
+        }
+    }
+
+    private List<Integer> listSegments() throws IOException {
+        List<Integer> indexes = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    indexes.add(Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    log.accept("Ignoring " + name + " in the journal directory");
+                }
+            }
+        }
+        Collections.sort(indexes);
+        return indexes;
+    }
+
+    private Path segmentPath(int index) {
+        return directory.resolve(String.format("%s%08d%s", PREFIX, index, SUFFIX));
+    }
+
+    private static int putName(byte[] out, int offset, byte[] name) {
+        offset = putVarLong(out, offset, name.length);
+        System.arraycopy(name, 0, out, offset, name.length);
+        return offset + name.length;
+    }
+
+    private static String readName(ByteBuffer in) {
+        byte[] name = new byte[(int) readVarLong(in)];
+        in.get(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    private static int putVarLong(byte[] out, int offset, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[offset++] = (byte) value;
+        return offset;
+    }
+
+    private static void putVarInt(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static int varIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varint");
+    }
+
+    // -1 if the buffer ends first or the value does not fit
+    private static int readVarInt(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 32 && in.hasRemaining(); shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        return -1;
+    }
+
+    // Records appended since the journal was opened, including those carried over from replay
+    public long getAppended() {
+        return appended.get();
+    }
+
+    // fsync calls, each covering every record appended before it
+    public long getSyncs() {
+        return syncs.get();
+    }
+
+    public synchronized int getLiveGames() {
+        return liveGames.size();
+    }
+
+    public synchronized int getSegmentCount() {
+        return segmentIndex - firstSegment + 1;
+    }
+}
@@ -0,0 +1,53 @@
+import java.util.ArrayList;
+import java.util.List;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+import javafx.scene.control.ListView;
+
+/**
+ * Shows log lines in the server window. Lines that arrive while an update is
+ * already pending join it, so the FX thread gets one runLater per burst, and
+ * only the newest lines are kept so the view stays bounded.
+ */
+public class GuiLogSink implements LogSink {
+    private final ListView<String> view;
+    private final int maxLines;
+    private List<String> pending = new ArrayList<>();  // guarded by this
+
+    public GuiLogSink(ListView<String> view, int maxLines) {
+        this.view = view;
+        this.maxLines = maxLines;
+    }
+
+    @Override
+    public void write(List<String> lines) {
+        boolean schedule;
+        synchronized (this) {
+            schedule = pending.isEmpty();
+            pending.addAll(lines);
+            // Lines that would be trimmed anyway never reach the FX thread
+            if (pending.size() > maxLines) {
+                pending.subList(0, pending.size() - maxLines).clear();
+            }
+        }
+        if (schedule) {
+            Platform.runLater(this::update);
+        }
+    }
+
+    private void update() {
+        List<String> lines;
+        synchronized (this) {
+            lines = pending;
+            pending = new ArrayList<>();
+        }
+        ObservableList<String> items = view.getItems();
+        items.addAll(lines);
+        if (items.size() > maxLines) {
+            items.remove(0, items.size() - maxLines);
+        }
+        // Auto-scroll to bottom
+        view.scrollTo(items.size() - 1);
+    }
+}
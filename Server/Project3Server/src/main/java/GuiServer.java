@@ -1,5 +1,7 @@
+import java.util.Map;
+import java.util.Properties;
+
 import javafx.application.Application;
-import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
 import javafx.scene.control.ListView;
@@ -22,14 +24,16 @@ public class GuiServer extends Application {
     public void start(Stage primaryStage) throws Exception {
         serverLog = new ListView<>();
         
-        // Create server with logger that adds to ListView
-        server = new Server(message -> {
-            Platform.runLater(() -> {
-                serverLog.getItems().add(message);
-                // Auto-scroll to bottom
-                serverLog.scrollTo(serverLog.getItems().size() - 1);
-            });
-        });
+        // Startup settings: system properties, overridden by --connect4.key=value arguments
+        Properties settings = new Properties();
+        settings.putAll(System.getProperties());
+        for (Map.Entry<String, String> arg : getParameters().getNamed().entrySet()) {
+            settings.setProperty(arg.getKey(), arg.getValue());
+        }
+        
+        // Create server with a log that feeds the ListView in batches
+        ServerConfig config = new ServerConfig(settings);
+        server = new Server(ServerLog.create(config, new GuiLogSink(serverLog, config.getGuiLogLines())), config);
         
         // Set up the layout
         BorderPane root = new BorderPane();
@@ -0,0 +1,123 @@
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe registry of sessions and games.
+ *
+ * Sessions and games live in concurrent maps, so login, pairing and cleanup
+ * never need a global lock. Deciding who plays whom is the Matchmaker's job.
+ */
+public class LobbyRegistry {
+
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Game> games = new ConcurrentHashMap<>();
+    private final AtomicLong nextGameId = new AtomicLong();
+    private final SecureRandom tokens = new SecureRandom();
+
+    // Registers a new session with a fresh resume token, or returns null if the name is taken
+    public Session login(String username, Connection connection) {
+        byte[] token = new byte[16];
+        tokens.nextBytes(token);
+        Session session = new Session(username, connection,
+                Base64.getUrlEncoder().withoutPadding().encodeToString(token));
+        return sessions.putIfAbsent(username, session) == null ? session : null;
+    }
+
+    public Session getSession(String username) {
+        return sessions.get(username);
+    }
+
+    // The user's session if the token is the one it was issued, or null
+    public Session findResumable(String username, String token) {
+        Session session = username == null ? null : sessions.get(username);
+        return session != null && !session.isClosed() && session.matchesToken(token) ? session : null;
+    }
+
+    public Collection<Session> getSessions() {
+        return sessions.values();
+    }
+
+    public Game getGame(long id) {
+        return games.get(id);
+    }
+
+    public Collection<Game> getGames() {
+        return games.values();
+    }
+
+    // Starts a game between two sessions, or returns null if either has left or is already playing
+    public Game createGame(Session player1, Session player2) {
+        return register(new Game(nextGameId.incrementAndGet(), player1, player2));
+    }
+
+    // Puts two sessions back into a game recovered after a restart, under its old id
+    public Game restoreGame(long id, Session player1, Session player2) {
+        return register(new Game(id, player1, player2));
+    }
+
+    // Makes sure new games are numbered after the given id
+    public void reserveGameIds(long id) {
+        nextGameId.accumulateAndGet(id, Math::max);
+    }
+
+    // Claims both sessions atomically, so a session paired twice at once ends up in only one game
+    private Game register(Game game) {
+        Session player1 = game.getPlayer1();
+        Session player2 = game.getPlayer2();
+        if (!player1.claimGame(game)) {
+            return null;
+        }
+        if (!player2.claimGame(game)) {
+            player1.releaseGame(game);
+            return null;
+        }
+        if (games.putIfAbsent(game.getId(), game) != null) {
+            // A restored game whose id is already in use
+            player1.releaseGame(game);
+            player2.releaseGame(game);
+            return null;
+        }
+        if (game.isEnded()) {
+            // A player left it between the claims and the put, so leaveGame could not unregister it
+            games.remove(game.getId(), game);
+            return null;
+        }
+        if (player1.isClosed() || player2.isClosed()) {
+            // One of them logged out while we were pairing
+            leaveGame(player1);
+            return null;
+        }
+        return game;
+    }
+
+    // Ends the session's current game for both players; returns it, or null if there was none
+    public Game leaveGame(Session session) {
+        Game game = session.getGame();
+        if (game == null || !game.end()) {
+            return null;
+        }
+        games.remove(game.getId(), game);
+        game.getPlayer1().releaseGame(game);
+        game.getPlayer2().releaseGame(game);
+        return game;
+    }
+
+    // Removes the session entirely; returns the game it was in, if any
+    public Game logout(Session session) {
+        session.close();
+        Game game = leaveGame(session);
+        sessions.remove(session.getUsername(), session);
+        return game;
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    public int getGameCount() {
+        return games.size();
+    }
+}
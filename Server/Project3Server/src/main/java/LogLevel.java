@@ -0,0 +1,14 @@
+/**
+ * Severity of a server log line, from most to least verbose.
+ */
+public enum LogLevel {
+    TRACE,   // board dumps and per-message chatter
+    DEBUG,   // per-move details
+    INFO,
+    WARN,
+    ERROR;
+
+    public static LogLevel parse(String name) {
+        return valueOf(name.trim().toUpperCase());
+    }
+}
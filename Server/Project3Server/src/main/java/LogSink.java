@@ -0,0 +1,66 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Destination for formatted log lines. The log thread hands over whole
+ * batches so sinks can write (or repaint) once per batch, not once per line.
+ * The list is reused after the call returns, so sinks must copy what they keep.
+ */
+public interface LogSink {
+
+    void write(List<String> lines);
+
+    default void close() {
+    }
+
+    // Standard output, one flush per batch
+    static LogSink console() {
+        return lines -> {
+            for (String line : lines) {
+                System.out.println(line);
+            }
+            System.out.flush();
+        };
+    }
+
+    // Feeds each line to an existing line consumer
+    static LogSink of(Consumer<String> consumer) {
+        return lines -> lines.forEach(consumer);
+    }
+
+    // Appends to a file, flushing once per batch
+    static LogSink file(Path path) throws IOException {
+        BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        return new LogSink() {
+            @Override
+            public void write(List<String> lines) {
+                try {
+                    for (String line : lines) {
+                        writer.write(line);
+                        writer.newLine();
+                    }
+                    writer.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public void close() {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    // Nothing left to report it to
+                }
+            }
+        };
+    }
+}
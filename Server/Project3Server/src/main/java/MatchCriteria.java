@@ -0,0 +1,11 @@
+/**
+ * Decides whether two waiting players may be paired. The matchmaker offers
+ * candidates in rating order, so criteria only need to judge one pair at a time.
+ */
+public interface MatchCriteria {
+
+    // Pairs anyone with anyone, in arrival order
+    MatchCriteria ANY = (a, b, nowNanos) -> true;
+
+    boolean canMatch(Matchmaker.Ticket a, Matchmaker.Ticket b, long nowNanos);
+}
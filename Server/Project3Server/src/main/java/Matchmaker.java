@@ -0,0 +1,259 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Pairs waiting players in batches on its own thread.
+ *
+ * Requests only drop a ticket into a lock-free arrival queue, and cancelling
+ * flips the ticket's state, so both are O(1) for the caller. Every tick the
+ * matchmaker moves new arrivals into its pool, sorts it by rating (ties by
+ * arrival) and pairs neighbours that the MatchCriteria accept.
+ */
+public class Matchmaker {
+
+    public enum RequestOutcome {
+        QUEUED,
+        CANCELLED,        // the player was already queued, so the request withdrew them
+        ALREADY_IN_GAME
+    }
+
+    // How far ahead in rating order each ticket looks for a partner
+    private static final int LOOKAHEAD = 8;
+
+    // One player's place in the queue
+    public static final class Ticket {
+        private static final int WAITING = 0;
+        private static final int CANCELLED = 1;
+        private static final int MATCHED = 2;
+
+        private final Session session;
+        private final int rating;
+        private final long enqueuedNanos;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+
+        Ticket(Session session, int rating, long enqueuedNanos) {
+            this.session = session;
+            this.rating = rating;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+
+        public Session getSession() {
+            return session;
+        }
+
+        public int getRating() {
+            return rating;
+        }
+
+        public long getWaitNanos(long nowNanos) {
+            return nowNanos - enqueuedNanos;
+        }
+
+        boolean isWaiting() {
+            return state.get() == WAITING;
+        }
+
+        boolean cancel() {
+            return state.compareAndSet(WAITING, CANCELLED);
+        }
+    }
+
+    private static final Comparator<Ticket> RATING_ORDER = (a, b) -> a.rating != b.rating
+            ? Integer.compare(a.rating, b.rating)
+            : Long.compare(a.enqueuedNanos, b.enqueuedNanos);
+
+    private final LobbyRegistry registry;
+    private final Consumer<Game> onMatched;
+    private final BiConsumer<String, Throwable> onError;
+    private final ConcurrentLinkedQueue<Ticket> arrivals = new ConcurrentLinkedQueue<>();
+    private final ArrayList<Ticket> pool = new ArrayList<>();    // matchmaker thread only
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicLong matchesMade = new AtomicLong();
+    private final LatencyRecorder waitTimes = new LatencyRecorder();  // from request to match
+    private volatile MatchCriteria criteria;
+    private volatile long tickMillis;
+    private volatile long oldestWaitNanos;
+    private Thread thread;
+
+    public Matchmaker(LobbyRegistry registry, MatchCriteria criteria, long tickMillis,
+                      Consumer<Game> onMatched, BiConsumer<String, Throwable> onError) {
+        this.registry = registry;
+        this.criteria = criteria;
+        this.tickMillis = tickMillis;
+        this.onMatched = onMatched;
+        this.onError = onError;
+    }
+
+    public void start() {
+        thread = new Thread(this::run, "matchmaker");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(tickMillis);
+                tick();
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                onError.accept("Matchmaker error", e);
+            }
+        }
+    }
+
+    // Queue the session, or withdraw it if it is already queued
+    public RequestOutcome request(Session session) {
+        if (session.getGame() != null) {
+            return RequestOutcome.ALREADY_IN_GAME;
+        }
+        if (cancel(session)) {
+            return RequestOutcome.CANCELLED;
+        }
+        Ticket ticket = new Ticket(session, session.getRating(), System.nanoTime());
+        session.setTicket(ticket);
+        queueDepth.incrementAndGet();
+        arrivals.add(ticket);
+        return RequestOutcome.QUEUED;
+    }
+
+    // Withdraw the session if it is waiting; the ticket is dropped from the pool on the next tick
+    public boolean cancel(Session session) {
+        Ticket ticket = session.getTicket();
+        if (ticket != null && ticket.cancel()) {
+            queueDepth.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    public boolean isQueued(Session session) {
+        Ticket ticket = session.getTicket();
+        return ticket != null && ticket.isWaiting();
+    }
+
+    // One batch pairing pass; returns the number of games created
+    public int tick() {
+        long now = System.nanoTime();
+
+        Ticket arrival;
+        while ((arrival = arrivals.poll()) != null) {
+            pool.add(arrival);
+        }
+
+        // Forget cancelled tickets and players who left
+        int kept = 0;
+        for (Ticket ticket : pool) {
+            if (ticket.session.isClosed() && ticket.cancel()) {
+                queueDepth.decrementAndGet();
+            }
+            if (ticket.isWaiting()) {
+                pool.set(kept++, ticket);
+            }
+        }
+        pool.subList(kept, pool.size()).clear();
+        pool.sort(RATING_ORDER);
+
+        MatchCriteria rules = criteria;
+        int games = 0;
+        for (int i = 0; i < pool.size(); i++) {
+            Ticket a = pool.get(i);
+            for (int j = i + 1; j < pool.size() && j <= i + LOOKAHEAD && a.isWaiting(); j++) {
+                Ticket b = pool.get(j);
+                if (b.isWaiting() && rules.canMatch(a, b, now) && pair(a, b, now)) {
+                    games++;
+                }
+            }
+        }
+
+        pool.removeIf(ticket -> !ticket.isWaiting());
+        long oldest = 0;
+        for (Ticket ticket : pool) {
+            oldest = Math.max(oldest, ticket.getWaitNanos(now));
+        }
+        oldestWaitNanos = oldest;
+        return games;
+    }
+
+    private boolean pair(Ticket a, Ticket b, long now) {
+        if (!a.state.compareAndSet(Ticket.WAITING, Ticket.MATCHED)) {
+            return false;
+        }
+        if (!b.state.compareAndSet(Ticket.WAITING, Ticket.MATCHED)) {
+            a.state.set(Ticket.WAITING);
+            return false;
+        }
+        queueDepth.addAndGet(-2);
+
+        // The newest requester is player 1 and moves first
+        Ticket older = a.enqueuedNanos <= b.enqueuedNanos ? a : b;
+        Ticket newer = older == a ? b : a;
+        Game game = registry.createGame(newer.session, older.session);
+        if (game == null) {
+            // One of them left or was placed elsewhere meanwhile; the other keeps its place
+            requeue(a);
+            requeue(b);
+            return false;
+        }
+
+        waitTimes.record(now - a.enqueuedNanos);
+        waitTimes.record(now - b.enqueuedNanos);
+        matchesMade.incrementAndGet();
+        onMatched.accept(game);
+        return true;
+    }
+
+    private void requeue(Ticket ticket) {
+        Session session = ticket.session;
+        if (session.isClosed() || session.getGame() != null || session.getTicket() != ticket) {
+            return;
+        }
+        Ticket again = new Ticket(session, ticket.rating, ticket.enqueuedNanos);
+        session.setTicket(again);
+        queueDepth.incrementAndGet();
+        arrivals.add(again);
+    }
+
+    public void setCriteria(MatchCriteria criteria) {
+        this.criteria = criteria;
+    }
+
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    public void setTickMillis(long tickMillis) {
+        this.tickMillis = Math.max(1, tickMillis);
+    }
+
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    public long getMatchesMade() {
+        return matchesMade.get();
+    }
+
+    // Longest wait among players still queued after the last tick
+    public long getOldestWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(oldestWaitNanos);
+    }
+
+    // How long each matched player waited, two samples per match
+    public LatencyRecorder getWaitTimes() {
+        return waitTimes;
+    }
+}
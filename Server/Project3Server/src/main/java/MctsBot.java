@@ -0,0 +1,348 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monte Carlo Tree Search bot: UCT selection over a tree of sampled lines,
+ * with random playouts that take wins and dodge immediate losses.
+ *
+ * Playouts run on two longs per position (see Bitboards), and each tree
+ * lives in preallocated parallel arrays, so a search allocates nothing per
+ * playout. With more than one thread the search is root-parallel: every
+ * thread grows its own tree from the same position and the root visit
+ * counts are summed to pick the move. Strength is set by the playout
+ * budget; the search also stops at the deadline, and under load the pool's
+ * reduced depth scales the budget down in proportion.
+ */
+public class MctsBot implements Bot {
+    private static final double EXPLORATION = 1.4;      // UCT constant
+    private static final int CHECK_INTERVAL = 64;        // playouts between deadline checks
+    private static final int MAX_NODES = 1 << 18;        // per tree
+    private static final byte OPEN = 0;
+    private static final byte WON = 1;                   // the move into this node won
+    private static final byte DRAWN = 2;
+
+    // Playout counts shared by every MctsBot of a server, for reporting
+    public static final class Stats {
+        private final AtomicLong playouts = new AtomicLong();
+        private final AtomicLong nanos = new AtomicLong();
+        private volatile long lastRate;
+
+        void record(long count, long elapsed) {
+            playouts.addAndGet(count);
+            nanos.addAndGet(elapsed);
+            if (elapsed > 0) {
+                lastRate = count * 1_000_000_000L / elapsed;
+            }
+        }
+
+        public long getPlayouts() {
+            return playouts.get();
+        }
+
+        // Average over every search so far
+        public long getRolloutsPerSecond() {
+            long elapsed = nanos.get();
+            return elapsed == 0 ? 0 : playouts.get() * 1_000_000_000L / elapsed;
+        }
+
+        // Rate of the most recent search
+        public long getLastRolloutsPerSecond() {
+            return lastRate;
+        }
+    }
+
+    // One search tree; nodes are indexes into the arrays, and node 0 is the root
+    private static final class Tree implements Runnable {
+        final int[] children;    // COLS slots per node, 0 when not expanded yet
+        final int[] visits;
+        final float[] wins;      // for the player who moved into the node; draws count half
+        final byte[] outcome;
+        final int[] path = new int[Bitboards.CELLS + 1];
+        int size;
+        long random;
+        long playouts;
+
+        // Inputs for the current search
+        long rootCurrent;
+        long rootMask;
+        int rootMoves;
+        long deadline;
+        long budget;
+
+        Tree(int capacity, long seed) {
+            children = new int[capacity * Bitboards.COLS];
+            visits = new int[capacity];
+            wins = new float[capacity];
+            outcome = new byte[capacity];
+            random = seed == 0 ? 1 : seed;
+        }
+
+        @Override
+        public void run() {
+            size = 0;
+            allocate(OPEN);
+            playouts = 0;
+            while (playouts < budget) {
+                iterate();
+                if (++playouts % CHECK_INTERVAL == 0 && System.nanoTime() >= deadline) {
+                    break;
+                }
+            }
+        }
+
+        private int allocate(byte result) {
+            int node = size++;
+            int base = node * Bitboards.COLS;
+            for (int c = 0; c < Bitboards.COLS; c++) {
+                children[base + c] = 0;
+            }
+            visits[node] = 0;
+            wins[node] = 0;
+            outcome[node] = result;
+            return node;
+        }
+
+        // Selection, expansion, playout and backup for one line
+        private void iterate() {
+            long current = rootCurrent;
+            long mask = rootMask;
+            int moves = rootMoves;
+            int node = 0;
+            int depth = 0;
+            path[depth++] = node;
+            double reward;  // for the player who moved into the last node on the path
+
+            while (true) {
+                if (outcome[node] != OPEN) {
+                    reward = outcome[node] == WON ? 1 : 0.5;
+                    break;
+                }
+                long candidates = Bitboards.nonLosingMoves(current, mask);
+                if (candidates == 0) {
+                    candidates = Bitboards.possible(mask);  // lost anyway; any move will do
+                }
+                int base = node * Bitboards.COLS;
+
+                int column = -1;
+                for (int c : Bitboards.CENTER_FIRST) {
+                    if ((candidates & Bitboards.columnMask(c)) != 0 && children[base + c] == 0) {
+                        column = c;
+                        break;
+                    }
+                }
+                if (column >= 0 && size == visits.length) {
+                    // Tree is full: finish this line with a playout from here
+                    reward = 1 - playout(current, mask, moves);
+                    break;
+                }
+
+                if (column < 0) {
+                    column = select(node, base, candidates);
+                }
+                long move = Bitboards.moveBit(mask, column);
+                boolean won = BitboardGameBoard.isWin(current | move);
+                long next = mask | move;
+                current ^= mask;
+                mask = next;
+                moves++;
+
+                int child = children[base + column];
+                if (child == 0) {
+                    child = allocate(won ? WON : moves == Bitboards.CELLS ? DRAWN : OPEN);
+                    children[base + column] = child;
+                    path[depth++] = child;
+                    reward = outcome[child] == WON ? 1 : outcome[child] == DRAWN ? 0.5 : 1 - playout(current, mask, moves);
+                    break;
+                }
+                node = child;
+                path[depth++] = node;
+            }
+
+            // Back up, flipping the point of view at each level
+            for (int i = depth - 1; i >= 0; i--) {
+                int n = path[i];
+                visits[n]++;
+                wins[n] += reward;
+                reward = 1 - reward;
+            }
+        }
+
+        // Child with the best UCT value among the candidate columns
+        private int select(int node, int base, long candidates) {
+            double logVisits = Math.log(Math.max(1, visits[node]));
+            int best = -1;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int c = 0; c < Bitboards.COLS; c++) {
+                int child = children[base + c];
+                if (child == 0 || (candidates & Bitboards.columnMask(c)) == 0) {
+                    continue;
+                }
+                double value = wins[child] / visits[child] + EXPLORATION * Math.sqrt(logVisits / visits[child]);
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = c;
+                }
+            }
+            return best;
+        }
+
+        // Random game to the end; returns 1 if the player to move wins, 0 if they lose, 0.5 for a draw
+        private double playout(long current, long mask, int moves) {
+            int plies = 0;
+            while (moves < Bitboards.CELLS) {
+                if (Bitboards.canWinNext(current, mask)) {
+                    return (plies & 1) == 0 ? 1 : 0;
+                }
+                long options = Bitboards.nonLosingMoves(current, mask);
+                if (options == 0) {
+                    return (plies & 1) == 0 ? 0 : 1;
+                }
+                long move = randomBit(options);
+                long next = mask | move;
+                current ^= mask;
+                mask = next;
+                moves++;
+                plies++;
+            }
+            return 0.5;
+        }
+
+        private long randomBit(long bits) {
+            // xorshift64
+            random ^= random << 13;
+            random ^= random >>> 7;
+            random ^= random << 17;
+            int skip = (int) ((random >>> 1) % Long.bitCount(bits));
+            for (int i = 0; i < skip; i++) {
+                bits &= bits - 1;
+            }
+            return Long.lowestOneBit(bits);
+        }
+    }
+
+    private final Tree[] trees;
+    private final ExecutorService helpers;  // runs every tree but the first; null with one thread
+    private final long playoutBudget;
+    private final Stats stats;
+    private long lastPlayouts;
+
+    public MctsBot(int threads, long playoutBudget, Stats stats) {
+        int count = Math.max(1, threads);
+        this.playoutBudget = Math.max(1, playoutBudget);
+        this.stats = stats;
+        int capacity = (int) Math.min(MAX_NODES, this.playoutBudget / count + 2);
+        trees = new Tree[count];
+        for (int i = 0; i < count; i++) {
+            trees[i] = new Tree(capacity, 0x9E3779B97F4A7C15L * (i + 1) ^ System.nanoTime());
+        }
+        if (count > 1) {
+            AtomicInteger next = new AtomicInteger();
+            helpers = Executors.newFixedThreadPool(count - 1, task -> {
+                Thread thread = new Thread(task, "mcts-" + next.getAndIncrement());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            });
+        } else {
+            helpers = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (helpers != null) {
+            helpers.shutdownNow();
+        }
+    }
+
+    @Override
+    public int chooseMove(long current, long mask, int moves, long deadlineNanos, int maxDepth) {
+        long wins = Bitboards.winningCells(current, mask) & Bitboards.possible(mask);
+        if (wins != 0) {
+            return columnOf(wins);
+        }
+        long candidates = Bitboards.nonLosingMoves(current, mask);
+        if (candidates == 0 || Long.bitCount(candidates) == 1) {
+            // Lost whatever happens, or only one move does not lose at once
+            return columnOf(candidates != 0 ? candidates : Bitboards.possible(mask));
+        }
+
+        // A shallower allowed depth under load means proportionally fewer playouts
+        long budget = Math.max(trees.length, playoutBudget * Math.min(maxDepth, Bitboards.CELLS) / Bitboards.CELLS);
+        long start = System.nanoTime();
+        for (Tree tree : trees) {
+            tree.rootCurrent = current;
+            tree.rootMask = mask;
+            tree.rootMoves = moves;
+            tree.deadline = deadlineNanos;
+            tree.budget = (budget + trees.length - 1) / trees.length;
+        }
+        runTrees();
+
+        int best = -1;
+        long bestVisits = -1;
+        long total = 0;
+        for (int c : Bitboards.CENTER_FIRST) {
+            if ((candidates & Bitboards.columnMask(c)) == 0) {
+                continue;
+            }
+            long visits = 0;
+            for (Tree tree : trees) {
+                int child = tree.children[c];
+                visits += child == 0 ? 0 : tree.visits[child];
+            }
+            if (visits > bestVisits) {
+                bestVisits = visits;
+                best = c;
+            }
+        }
+        for (Tree tree : trees) {
+            total += tree.playouts;
+        }
+        lastPlayouts = total;
+        if (stats != null) {
+            stats.record(total, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private void runTrees() {
+        if (helpers == null) {
+            trees[0].run();
+            return;
+        }
+        List<Future<?>> running = new ArrayList<>(trees.length - 1);
+        for (int i = 1; i < trees.length; i++) {
+            running.add(helpers.submit(trees[i]));
+        }
+        trees[0].run();
+        try {
+            for (Future<?> tree : running) {
+                tree.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Playout thread failed", e.getCause());
+        }
+    }
+
+    // Playouts in the most recent search, across all threads
+    public long getLastPlayouts() {
+        return lastPlayouts;
+    }
+
+    public int getThreads() {
+        return trees.length;
+    }
+
+    private static int columnOf(long bits) {
+        return Long.numberOfTrailingZeros(bits) / Bitboards.COLUMN_BITS;
+    }
+}
@@ -3,6 +3,9 @@ import java.io.Serializable;
 public class Message implements Serializable {
     static final long serialVersionUID = 42L;
 
+    // GAME_REQUEST content that asks for a computer opponent instead of a human
+    public static final String VS_COMPUTER = "computer";
+
     public enum MessageType {
         CHAT,           // Regular chat message
         LOGIN,          // Login with username
@@ -14,7 +17,12 @@ public class Message implements Serializable {
         GAME_STATE,     // Current state of the game
         GAME_OVER,      // Game is over with result
         PLAY_AGAIN,     // Request to play again
-        QUIT            // Quit the game/connection
+        QUIT,           // Quit the game/connection
+        GAME_MOVE_APPLIED, // A single move to apply to the local board (data: MoveEvent)
+        RESYNC_REQUEST, // Client lost track of the game and wants a full snapshot
+        ANALYZE,        // Ask for, or reply with, scores for every column (data: PositionAnalysis)
+        SPECTATE,       // Watch a game by id or player name, or stop watching if empty (reply data: game id)
+        RESUME          // Reattach a dropped session: content is the LOGIN_SUCCESS token, data the last move sequence seen (reply data: player number, 0 if not in a game)
     }
 
     private MessageType type;
@@ -0,0 +1,14 @@
+import java.io.IOException;
+
+/**
+ * Turns a Message into the payload of a single wire frame and back again.
+ * Framing (the length prefix) is handled by the transport, not the codec.
+ */
+public interface MessageCodec {
+
+    // Encode a message into a standalone payload
+    byte[] encode(Message message) throws IOException;
+
+    // Decode a payload previously produced by encode
+    Message decode(byte[] data, int offset, int length) throws IOException;
+}
@@ -0,0 +1,133 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * The server's counters, gauges and latency histograms, exported in the
+ * Prometheus text format. Counters are striped LongAdders and histograms are
+ * LatencyRecorders, so recording on a hot path is cheap and never allocates.
+ * Gauges, and counters kept by other components, are only read on export.
+ * Register everything up front and keep what is returned.
+ */
+public class Metrics {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private enum Kind {
+        COUNTER,
+        GAUGE,
+        SUMMARY     // latency quantiles in seconds, with _sum and _count
+    }
+
+    private static final class Family {
+        final String name;
+        final String help;
+        final Kind kind;
+        final List<Series> series = new ArrayList<>();
+
+        Family(String name, String help, Kind kind) {
+            this.name = name;
+            this.help = help;
+            this.kind = kind;
+        }
+    }
+
+    private static final class Series {
+        final String labels;            // e.g. type="LOGIN", or empty
+        final LongSupplier value;       // counters and gauges
+        final LatencyRecorder recorder; // summaries
+
+        Series(String labels, LongSupplier value, LatencyRecorder recorder) {
+            this.labels = labels;
+            this.value = value;
+            this.recorder = recorder;
+        }
+    }
+
+    private final Map<String, Family> families = new LinkedHashMap<>();  // guarded by this
+
+    // A counter this registry keeps
+    public LongAdder counter(String name, String help) {
+        LongAdder counter = new LongAdder();
+        counter(name, help, counter::sum);
+        return counter;
+    }
+
+    // A counter kept elsewhere, read on export
+    public void counter(String name, String help, LongSupplier total) {
+        add(name, help, Kind.COUNTER, new Series("", total, null));
+    }
+
+    public void gauge(String name, String help, LongSupplier value) {
+        add(name, help, Kind.GAUGE, new Series("", value, null));
+    }
+
+    public LatencyRecorder timer(String name, String help) {
+        return timer(name, help, "");
+    }
+
+    // One series of a labelled timer family, e.g. timer("x_seconds", "...", "type=\"LOGIN\"")
+    public LatencyRecorder timer(String name, String help, String labels) {
+        LatencyRecorder recorder = new LatencyRecorder();
+        add(name, help, Kind.SUMMARY, new Series(labels, null, recorder));
+        return recorder;
+    }
+
+    // A timer kept elsewhere, read on export
+    public void timer(String name, String help, LatencyRecorder recorder) {
+        add(name, help, Kind.SUMMARY, new Series("", null, recorder));
+    }
+
+    private synchronized void add(String name, String help, Kind kind, Series series) {
+        Family family = families.get(name);
+        if (family == null) {
+            family = new Family(name, help, kind);
+            families.put(name, family);
+        } else if (family.kind != kind) {
+            throw new IllegalArgumentException(name + " is already registered as a " + family.kind);
+        }
+        family.series.add(series);
+    }
+
+    // Every metric's current value, in the Prometheus text exposition format
+    public synchronized String export() {
+        StringBuilder out = new StringBuilder(4096);
+        for (Family family : families.values()) {
+            out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(family.name).append(' ')
+                    .append(family.kind.name().toLowerCase()).append('\n');
+            for (Series series : family.series) {
+                if (family.kind != Kind.SUMMARY) {
+                    line(out, family.name, series.labels, null, Long.toString(series.value.getAsLong()));
+                    continue;
+                }
+                LatencyRecorder recorder = series.recorder;
+                for (double quantile : QUANTILES) {
+                    line(out, family.name, series.labels, "quantile=\"" + quantile + "\"",
+                            seconds(recorder.percentileMicros(quantile * 100)));
+                }
+                line(out, family.name + "_sum", series.labels, null, seconds(recorder.getSumMicros()));
+                line(out, family.name + "_count", series.labels, null, Long.toString(recorder.getCount()));
+            }
+        }
+        return out.toString();
+    }
+
+    private static void line(StringBuilder out, String name, String labels, String extra, String value) {
+        out.append(name);
+        if (!labels.isEmpty() || extra != null) {
+            out.append('{').append(labels);
+            if (extra != null) {
+                out.append(labels.isEmpty() ? "" : ",").append(extra);
+            }
+            out.append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static String seconds(long micros) {
+        return Double.toString(micros / 1e6);
+    }
+}
@@ -0,0 +1,106 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Publishes a Metrics registry in the Prometheus text format: over HTTP at
+ * /metrics, and as a file rewritten every few seconds for tools that read
+ * files (e.g. node_exporter's textfile collector). Either may be left off.
+ */
+public class MetricsExporter {
+    private final Metrics metrics;
+    private final String host;
+    private final int port;           // -1 for no HTTP endpoint, 0 for any free port
+    private final Path file;          // null for no snapshot file
+    private final long fileMillis;
+    private final ServerLog log;
+    private HttpServer http;
+    private ExecutorService httpThread;
+    private Thread writer;
+
+    public MetricsExporter(Metrics metrics, String host, int port, Path file, long fileMillis, ServerLog log) {
+        this.metrics = metrics;
+        this.host = host;
+        this.port = port;
+        this.file = file;
+        this.fileMillis = fileMillis;
+        this.log = log;
+    }
+
+    public void start() throws IOException {
+        if (port >= 0) {
+            http = HttpServer.create(new InetSocketAddress(host, port), 0);
+            http.createContext("/metrics", this::serve);
+            httpThread = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "metrics-http");
+                thread.setDaemon(true);
+                return thread;
+            });
+            http.setExecutor(httpThread);
+            http.start();
+            log.info("Metrics available at http://{}:{}/metrics", host, getPort());
+        }
+        if (file != null) {
+            writer = new Thread(this::writeLoop, "metrics-file");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    public void stop() {
+        if (http != null) {
+            http.stop(0);
+            httpThread.shutdownNow();
+        }
+        if (writer != null) {
+            writer.interrupt();
+        }
+    }
+
+    // Port the endpoint listens on, or -1 if it is off
+    public int getPort() {
+        return http == null ? -1 : http.getAddress().getPort();
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        try {
+            byte[] body = metrics.export().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void writeLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(fileMillis);
+                writeSnapshot();
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                log.warn("Could not write metrics to {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    // Readers never see a half-written file: write beside it, then rename over it
+    public void writeSnapshot() throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temp, metrics.export().getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,48 @@
+import java.io.Serializable;
+
+/**
+ * One accepted move, sent instead of a full BoardState so clients can update
+ * their own board. Sequence numbers start at 1 for the first move of a game.
+ */
+public class MoveEvent implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    private int sequence;
+    private int column;
+    private int row;
+    private int player;  // 1 or 2
+    private int outcome; // Winner after the move: 0=game continues, 1=player1, 2=player2, 3=draw
+    
+    public MoveEvent(int sequence, int column, int row, int player, int outcome) {
+        this.sequence = sequence;
+        this.column = column;
+        this.row = row;
+        this.player = player;
+        this.outcome = outcome;
+    }
+    
+    public int getSequence() {
+        return sequence;
+    }
+    
+    public int getColumn() {
+        return column;
+    }
+    
+    public int getRow() {
+        return row;
+    }
+    
+    public int getPlayer() {
+        return player;
+    }
+    
+    public int getOutcome() {
+        return outcome;
+    }
+    
+    @Override
+    public String toString() {
+        return "Move #" + sequence + ": player " + player + " -> (" + row + ", " + column + ")";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,451 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+
+/**
+ * Selector-based transport. One acceptor thread hands new sockets round-robin
+ * to a small set of event loops; each loop owns a Selector and services many
+ * non-blocking channels, so idle connections cost a few small buffers instead
+ * of a thread stack.
+ */
+public class NioTransport {
+
+    // Callbacks from the event loops; all calls for one channel come from the same loop thread
+    public interface Listener {
+        void onOpen(NioChannel channel);
+
+        void onMessage(NioChannel channel, Message message);
+
+        void onClose(NioChannel channel);
+
+        // Client opened with a Java object stream header; the channel is already back in blocking mode
+        void onLegacyConnection(SocketChannel channel, byte[] consumed);
+    }
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final int port;
+    private final Listener listener;
+    private final Consumer<String> log;
+    private final EventLoop[] loops;
+    private final IntSupplier outboundLimit;
+    private final OutboundQueue.OverflowPolicy overflowPolicy;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    private ServerSocketChannel serverChannel;
+    private volatile boolean running = true;
+
+    public NioTransport(int port, int eventLoopThreads, Listener listener, Consumer<String> log,
+                        IntSupplier outboundLimit, OutboundQueue.OverflowPolicy overflowPolicy) throws IOException {
+        this.port = port;
+        this.listener = listener;
+        this.log = log;
+        this.outboundLimit = outboundLimit;
+        this.overflowPolicy = overflowPolicy;
+        this.loops = new EventLoop[Math.max(1, eventLoopThreads)];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop();
+        }
+    }
+
+    public void start() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port), 1024);
+        for (int i = 0; i < loops.length; i++) {
+            Thread loopThread = new Thread(loops[i], "nio-loop-" + i);
+            loopThread.setDaemon(true);
+            loopThread.start();
+        }
+        new Thread(this::acceptLoop, "nio-acceptor").start();
+    }
+
+    // Port the transport listens on; useful when it was started on port 0
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public int getEventLoopCount() {
+        return loops.length;
+    }
+
+    public void close() {
+        running = false;
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            log.accept("Error closing server channel: " + e.getMessage());
+        }
+        for (EventLoop loop : loops) {
+            loop.selector.wakeup();
+        }
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)].register(channel);
+            } catch (IOException e) {
+                if (running) {
+                    log.accept("Error accepting connection: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // One client connection served by an event loop
+    public final class NioChannel {
+        private final SocketChannel socket;
+        private final EventLoop loop;
+        private final OutboundQueue<ByteBuffer> writeQueue = new OutboundQueue<>(outboundLimit, overflowPolicy);
+        private final AtomicBoolean flushScheduled = new AtomicBoolean();
+        private SelectionKey key;
+        private ByteBuffer pending;          // partial inbound frame, null when nothing is buffered
+        private ByteBuffer unsent;           // tail of a write the socket did not accept, null when none
+        private volatile MessageCodec codec; // set once the handshake completes
+        private volatile int protocolVersion;
+        private volatile boolean closed;
+        private volatile Object attachment;
+
+        private NioChannel(SocketChannel socket, EventLoop loop) {
+            this.socket = socket;
+            this.loop = loop;
+        }
+
+        // Encode and queue a message; the owning event loop performs the actual write
+        public void send(Message message) throws IOException {
+            send(new SharedFrame(message));
+        }
+
+        // Queue a frame that may be shared with other channels; it is encoded once per protocol version
+        public void send(SharedFrame frame) throws IOException {
+            if (closed) {
+                throw new IOException("Channel closed");
+            }
+            enqueue(frame.frameFor(protocolVersion), frame.isDroppable());
+        }
+
+        private void enqueue(ByteBuffer frame, boolean droppable) throws IOException {
+            OutboundQueue.Result result = writeQueue.offer(frame, droppable);
+            if (result == OutboundQueue.Result.OVERFLOW) {
+                close();
+                throw new IOException("Outbound queue full; disconnecting slow client");
+            }
+            if (result == OutboundQueue.Result.QUEUED && flushScheduled.compareAndSet(false, true)) {
+                loop.execute(() -> loop.flushOrClose(this));
+            }
+        }
+
+        public int getOutboundQueueSize() {
+            return writeQueue.size();
+        }
+
+        public long getDroppedCount() {
+            return writeQueue.getDroppedCount();
+        }
+
+        public void close() {
+            loop.execute(() -> loop.closeChannel(this));
+        }
+
+        public int getProtocolVersion() {
+            return protocolVersion;
+        }
+
+        public boolean isClosed() {
+            return closed;
+        }
+
+        public String getRemoteAddress() {
+            return String.valueOf(socket.socket().getRemoteSocketAddress());
+        }
+
+        public Object attachment() {
+            return attachment;
+        }
+
+        public void attach(Object attachment) {
+            this.attachment = attachment;
+        }
+    }
+
+    private final class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        // Shared by every channel on this loop; only partial frames are copied per connection
+        private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+
+        EventLoop() throws IOException {
+            selector = Selector.open();
+        }
+
+        void register(SocketChannel socket) {
+            execute(() -> {
+                if (!running) {
+                    // Accepted while the transport was shutting down
+                    try {
+                        socket.close();
+                    } catch (IOException e) {
+                        log.accept("Error closing connection: " + e.getMessage());
+                    }
+                    return;
+                }
+                try {
+                    NioChannel channel = new NioChannel(socket, this);
+                    channel.key = socket.register(selector, SelectionKey.OP_READ, channel);
+                } catch (IOException e) {
+                    log.accept("Error registering connection: " + e.getMessage());
+                }
+            });
+        }
+
+        void execute(Runnable task) {
+            tasks.add(task);
+            if (selector.isOpen()) {
+                selector.wakeup();
+            } else {
+                // The loop has stopped, so nothing else will run it
+                runTasks();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    selector.select();
+                    runTasks();
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        NioChannel channel = (NioChannel) key.attachment();
+                        try {
+                            if (key.isValid() && key.isReadable()) {
+                                read(channel);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                flush(channel);
+                            }
+                        } catch (IOException | CancelledKeyException e) {
+                            closeChannel(channel);
+                        } catch (RuntimeException e) {
+                            log.accept("Error handling connection " + channel.getRemoteAddress() + ": " + e);
+                            closeChannel(channel);
+                        }
+                    }
+                } catch (IOException e) {
+                    log.accept("Event loop error: " + e.getMessage());
+                }
+            }
+            runTasks();
+            for (SelectionKey key : selector.keys()) {
+                closeChannel((NioChannel) key.attachment());
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                log.accept("Error closing selector: " + e.getMessage());
+            }
+            // Anything queued while the selector was closing
+            runTasks();
+        }
+
+        private void runTasks() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+
+        private void read(NioChannel channel) throws IOException {
+            readBuffer.clear();
+            int count = channel.socket.read(readBuffer);
+            if (count < 0) {
+                closeChannel(channel);
+                return;
+            }
+            readBuffer.flip();
+
+            ByteBuffer input = readBuffer;
+            if (channel.pending != null) {
+                channel.pending = ensureCapacity(channel.pending, readBuffer.remaining());
+                channel.pending.put(readBuffer).flip();
+                input = channel.pending;
+            }
+
+            processInput(channel, input);
+            if (channel.closed) {
+                return;
+            }
+
+            // Keep whatever is left of an incomplete frame for the next read
+            if (!input.hasRemaining()) {
+                channel.pending = null;
+            } else if (input == readBuffer) {
+                channel.pending = ByteBuffer.allocate(Math.max(256, input.remaining()));
+                channel.pending.put(input);
+            } else {
+                input.compact();
+            }
+        }
+
+        private ByteBuffer ensureCapacity(ByteBuffer buffer, int extra) {
+            if (buffer.remaining() >= extra) {
+                return buffer;
+            }
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + extra));
+            buffer.flip();
+            grown.put(buffer);
+            return grown;
+        }
+
+        private void processInput(NioChannel channel, ByteBuffer input) throws IOException {
+            if (channel.codec == null) {
+                if (input.remaining() < 2) {
+                    return;
+                }
+                if ((input.getShort(input.position()) & 0xFFFF) == WireProtocol.LEGACY_STREAM_MAGIC) {
+                    handOffLegacy(channel, input);
+                    return;
+                }
+                if (input.remaining() < 8) {
+                    return;
+                }
+                if (input.getInt() != WireProtocol.MAGIC) {
+                    throw new IOException("Unknown protocol");
+                }
+                int version = WireProtocol.negotiate(input.getInt());
+                channel.protocolVersion = version;
+                channel.codec = WireProtocol.codecFor(version);
+
+                ByteBuffer reply = ByteBuffer.allocate(8);
+                reply.putInt(WireProtocol.MAGIC).putInt(version).flip();
+                channel.enqueue(reply, false);
+                listener.onOpen(channel);
+            }
+
+            while (input.remaining() >= 4 && !channel.closed) {
+                int length = input.getInt(input.position());
+                if (length < 0 || length > WireProtocol.MAX_FRAME_LENGTH) {
+                    throw new IOException("Invalid frame length: " + length);
+                }
+                if (input.remaining() < 4 + length) {
+                    return;
+                }
+                input.getInt();
+                byte[] payload = new byte[length];
+                input.get(payload);
+                listener.onMessage(channel, channel.codec.decode(payload, 0, length));
+            }
+        }
+
+        // Legacy clients speak a continuous object stream, which is served by a blocking thread instead
+        private void handOffLegacy(NioChannel channel, ByteBuffer input) {
+            byte[] consumed = new byte[input.remaining()];
+            input.get(consumed);
+            channel.closed = true;
+            channel.key.cancel();
+            // The cancelled key is deregistered by the next select, after which blocking mode is allowed
+            execute(() -> {
+                try {
+                    channel.socket.configureBlocking(true);
+                    listener.onLegacyConnection(channel.socket, consumed);
+                } catch (IOException e) {
+                    log.accept("Error handing off legacy connection: " + e.getMessage());
+                }
+            });
+        }
+
+        private void flushOrClose(NioChannel channel) {
+            try {
+                flush(channel);
+            } catch (IOException | CancelledKeyException e) {
+                closeChannel(channel);
+            }
+        }
+
+        private void flush(NioChannel channel) throws IOException {
+            if (channel.closed) {
+                return;
+            }
+            while (true) {
+                if (channel.unsent != null) {
+                    channel.socket.write(channel.unsent);
+                    if (channel.unsent.hasRemaining()) {
+                        waitForWritable(channel);
+                        return;
+                    }
+                    channel.unsent = null;
+                }
+
+                // Coalesce everything queued so far into one write
+                writeBuffer.clear();
+                ByteBuffer frame;
+                while ((frame = channel.writeQueue.peek()) != null && frame.remaining() <= writeBuffer.remaining()) {
+                    writeBuffer.put(frame.duplicate());
+                    channel.writeQueue.poll();
+                }
+
+                if (writeBuffer.position() > 0) {
+                    writeBuffer.flip();
+                    channel.socket.write(writeBuffer);
+                    if (writeBuffer.hasRemaining()) {
+                        channel.unsent = ByteBuffer.allocate(writeBuffer.remaining());
+                        channel.unsent.put(writeBuffer).flip();
+                        waitForWritable(channel);
+                        return;
+                    }
+                } else if ((frame = channel.writeQueue.poll()) != null) {
+                    // Larger than the shared buffer; write it from its own buffer
+                    channel.unsent = frame.duplicate();
+                } else {
+                    channel.key.interestOps(SelectionKey.OP_READ);
+                    channel.flushScheduled.set(false);
+                    if (channel.writeQueue.isEmpty() || !channel.flushScheduled.compareAndSet(false, true)) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        // Socket buffer is full; resume when the selector reports it writable
+        private void waitForWritable(NioChannel channel) {
+            channel.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+
+        private void closeChannel(NioChannel channel) {
+            if (channel == null || channel.closed) {
+                return;
+            }
+            channel.closed = true;
+            if (channel.key != null) {
+                channel.key.cancel();
+            }
+            try {
+                channel.socket.close();
+            } catch (IOException e) {
+                log.accept("Error closing connection: " + e.getMessage());
+            }
+            channel.writeQueue.clear();
+            if (channel.codec != null) {
+                listener.onClose(channel);
+            }
+        }
+    }
+}
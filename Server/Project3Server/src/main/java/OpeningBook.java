@@ -0,0 +1,123 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only opening book, memory-mapped from a file written by
+ * OpeningBookBuilder. Lookups binary-search the mapped records directly, so
+ * the book never has to fit on the heap and is shared between threads.
+ *
+ * File layout (big-endian): a 16-byte header of MAGIC, VERSION, the deepest
+ * ply stored and the record count, then one long per position sorted
+ * ascending. A record is the position key shifted left 12 bits, with the
+ * score, best column and a solved flag in the low 12 bits. Only one of each
+ * mirror-image pair is stored; the reader reflects the other onto it.
+ */
+public class OpeningBook {
+    public static final int MAGIC = 0x4334424B;  // "C4BK"
+    public static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+
+    private static final int VALUE_BITS = 12;
+    private static final int SCORE_BIAS = 64;
+
+    private final LongBuffer records;
+    private final int maxPly;
+
+    private OpeningBook(ByteBuffer mapped) throws IOException {
+        if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION) {
+            throw new IOException("Not an opening book (version " + VERSION + ")");
+        }
+        maxPly = mapped.getInt(8);
+        int count = mapped.getInt(12);
+        if (mapped.capacity() != HEADER_BYTES + (long) count * Long.BYTES) {
+            throw new IOException("Opening book is truncated");
+        }
+        mapped.position(HEADER_BYTES);
+        records = mapped.slice().asLongBuffer();
+    }
+
+    public static OpeningBook open(Path file) throws IOException {
+        // The mapping stays valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new OpeningBook(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    // Deepest ply with entries; positions after it are never in the book
+    public int getMaxPly() {
+        return maxPly;
+    }
+
+    public int size() {
+        return records.limit();
+    }
+
+    // The book's move for the player to move, or null if the position is not in it
+    public Solver.Result lookup(BitboardGameBoard board) {
+        int mover = board.getCurrentPlayer();
+        long current = board.getDiscs(mover);
+        long mask = current | board.getDiscs(mover == 1 ? 2 : 1);
+        return lookup(current, mask, board.getMoveCount());
+    }
+
+    public Solver.Result lookup(long current, long mask, int moves) {
+        if (moves > maxPly) {
+            return null;
+        }
+        long key = Bitboards.key(current, mask);
+        long mirrored = Bitboards.mirror(key);
+        long record = find(Math.min(key, mirrored));
+        if (record < 0) {
+            return null;
+        }
+        int column = column(record);
+        if (mirrored < key) {
+            column = Bitboards.COLS - 1 - column;
+        }
+        boolean solved = solved(record);
+        return new Solver.Result(column, score(record), solved ? Bitboards.CELLS - moves : 0, solved, 0, 0);
+    }
+
+    // Binary search over the mapped records; -1 if the key is absent
+    private long find(long key) {
+        int low = 0;
+        int high = records.limit() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long record = records.get(middle);
+            long found = record >>> VALUE_BITS;
+            if (found < key) {
+                low = middle + 1;
+            } else if (found > key) {
+                high = middle - 1;
+            } else {
+                return record;
+            }
+        }
+        return -1;
+    }
+
+    static long record(long key, int column, int score, boolean solved) {
+        return (key << VALUE_BITS) | (score + SCORE_BIAS) | (column << 7) | (solved ? 1 << 10 : 0);
+    }
+
+    static int score(long record) {
+        return (int) (record & 0x7F) - SCORE_BIAS;
+    }
+
+    static int column(long record) {
+        return (int) (record >>> 7) & 0x7;
+    }
+
+    static boolean solved(long record) {
+        return (record & (1 << 10)) != 0;
+    }
+
+    static long key(long record) {
+        return record >>> VALUE_BITS;
+    }
+}
@@ -0,0 +1,165 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Offline generator for OpeningBook files. Every position reachable in up to
+ * maxPly moves (games already won are not followed) is folded onto the
+ * smaller key of itself and its mirror image, searched with a per-position
+ * time and node budget, and written as one sorted record.
+ *
+ * Usage: java -cp target/classes OpeningBookBuilder <file> [maxPly] [millisPerPosition] [threads]
+ */
+public class OpeningBookBuilder {
+    private static final int TABLE_BITS = 20;
+
+    private final int maxPly;
+    private final long timeBudgetMillis;
+    private final long nodeBudget;
+    private final int threads;
+    private final Consumer<String> progress;
+
+    public OpeningBookBuilder(int maxPly, long timeBudgetMillis, long nodeBudget, int threads, Consumer<String> progress) {
+        if (maxPly < 0 || maxPly >= Bitboards.CELLS) {
+            throw new IllegalArgumentException("maxPly must be between 0 and " + (Bitboards.CELLS - 1));
+        }
+        this.maxPly = maxPly;
+        this.timeBudgetMillis = timeBudgetMillis;
+        this.nodeBudget = nodeBudget;
+        this.threads = Math.max(1, threads);
+        this.progress = progress;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: OpeningBookBuilder <file> [maxPly] [millisPerPosition] [threads]");
+            System.exit(2);
+        }
+        Path file = Paths.get(args[0]);
+        int maxPly = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        long millis = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+        long start = System.nanoTime();
+        long[] records = new OpeningBookBuilder(maxPly, millis, 0, threads, System.out::println).build();
+        write(file, maxPly, records);
+        long solved = Arrays.stream(records).filter(OpeningBook::solved).count();
+        System.out.printf("Wrote %d positions (%d solved) to %s in %d s%n", records.length, solved, file,
+                (System.nanoTime() - start) / 1_000_000_000L);
+    }
+
+    // Sorted book records for every position up to maxPly
+    public long[] build() throws InterruptedException {
+        List<long[]> positions = enumerate();
+        long[] records = new long[positions.size()];
+        AtomicInteger done = new AtomicInteger();
+        int reportEvery = Math.max(1, records.length / 20);
+
+        // Strided slices keep the cheap late plies and the costly early ones spread across threads
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<Void>> slices = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int first = t;
+                slices.add(() -> {
+                    Solver solver = new Solver(TABLE_BITS);
+                    for (int i = first; i < records.length; i += threads) {
+                        long[] position = positions.get(i);
+                        int moves = Long.bitCount(position[1]);
+                        Solver.Result result = solver.search(position[0], position[1], moves, timeBudgetMillis, nodeBudget);
+                        records[i] = OpeningBook.record(Bitboards.key(position[0], position[1]),
+                                result.getColumn(), result.getScore(), result.isSolved());
+                        int count = done.incrementAndGet();
+                        if (count % reportEvery == 0) {
+                            progress.accept("Searched " + count + " of " + records.length + " positions");
+                        }
+                    }
+                    return null;
+                });
+            }
+            for (Future<Void> slice : pool.invokeAll(slices)) {
+                slice.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Book search failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Arrays.sort(records);
+        return records;
+    }
+
+    // One {current, mask} pair per position and mirror image, shallowest first
+    private List<long[]> enumerate() {
+        List<long[]> all = new ArrayList<>();
+        List<long[]> ply = new ArrayList<>();
+        ply.add(new long[] { 0, 0 });
+        for (int moves = 0; ; moves++) {
+            all.addAll(ply);
+            progress.accept("Ply " + moves + ": " + ply.size() + " positions");
+            if (moves == maxPly) {
+                return all;
+            }
+
+            Set<Long> seen = new HashSet<>();
+            List<long[]> next = new ArrayList<>();
+            for (long[] position : ply) {
+                long current = position[0];
+                long mask = position[1];
+                for (int column = 0; column < Bitboards.COLS; column++) {
+                    if (!Bitboards.canPlay(mask, column)) {
+                        continue;
+                    }
+                    long move = Bitboards.moveBit(mask, column);
+                    if (BitboardGameBoard.isWin(current | move)) {
+                        continue;  // the game is over; nothing to look up
+                    }
+                    // Switch to the opponent's point of view
+                    long opponent = current ^ mask;
+                    long played = mask | move;
+                    long key = Bitboards.key(opponent, played);
+                    long mirrored = Bitboards.mirror(key);
+                    if (mirrored < key) {
+                        opponent = Bitboards.mirror(opponent);
+                        played = Bitboards.mirror(played);
+                        key = mirrored;
+                    }
+                    if (seen.add(key)) {
+                        next.add(new long[] { opponent, played });
+                    }
+                }
+            }
+            ply = next;
+        }
+    }
+
+    public static void write(Path file, int maxPly, long[] records) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file);
+             DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16))) {
+            data.writeInt(OpeningBook.MAGIC);
+            data.writeInt(OpeningBook.VERSION);
+            data.writeInt(maxPly);
+            data.writeInt(records.length);
+            for (long record : records) {
+                data.writeLong(record);
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+import java.util.Collection;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+/**
+ * Bounded queue of frames waiting to be written to one connection.
+ * Senders never block on it; when a receiver falls behind the overflow
+ * policy decides whether to shed chat or give up on the connection.
+ * Senders reserve a slot before adding, so concurrent senders cannot push
+ * the queue past its limit or past the chat threshold.
+ */
+public class OutboundQueue<T> {
+    public enum OverflowPolicy {
+        DROP_CHAT,   // shed chat once the queue is half full, disconnect if game traffic overflows
+        DISCONNECT   // disconnect as soon as anything overflows
+    }
+
+    public enum Result {
+        QUEUED,
+        DROPPED,     // droppable item discarded, connection is fine
+        OVERFLOW     // receiver is too slow and should be disconnected
+    }
+
+    private final LinkedBlockingQueue<T> queue = new LinkedBlockingQueue<>();
+    private final AtomicInteger reserved = new AtomicInteger();  // items queued, or about to be
+    private final IntSupplier limit;
+    private final OverflowPolicy policy;
+    private final AtomicLong dropped = new AtomicLong();
+
+    // The limit is read on every offer so it can be tuned while connections are open
+    public OutboundQueue(IntSupplier limit, OverflowPolicy policy) {
+        this.limit = limit;
+        this.policy = policy;
+    }
+
+    public Result offer(T item, boolean droppable) {
+        int max = limit.getAsInt();
+        boolean shed = droppable && policy == OverflowPolicy.DROP_CHAT;
+        int room = shed ? max / 2 : max;
+        while (true) {
+            int size = reserved.get();
+            if (size >= room) {
+                if (shed) {
+                    dropped.incrementAndGet();
+                    return Result.DROPPED;
+                }
+                return Result.OVERFLOW;
+            }
+            if (reserved.compareAndSet(size, size + 1)) {
+                break;
+            }
+        }
+        queue.add(item);
+        return Result.QUEUED;
+    }
+
+    // Block for the next item, then take whatever else is already waiting (up to max items in total)
+    public void takeBatch(Collection<? super T> batch, int max) throws InterruptedException {
+        batch.add(queue.take());
+        int taken = 1 + queue.drainTo(batch, max - 1);
+        reserved.addAndGet(-taken);
+    }
+
+    public T peek() {
+        return queue.peek();
+    }
+
+    public T poll() {
+        T item = queue.poll();
+        if (item != null) {
+            reserved.decrementAndGet();
+        }
+        return item;
+    }
+
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    public int size() {
+        return reserved.get();
+    }
+
+    // Item by item, so the reservations stay in step with senders still adding
+    public void clear() {
+        while (poll() != null) {
+        }
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+}
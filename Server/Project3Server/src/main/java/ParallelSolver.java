@@ -0,0 +1,383 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Multi-threaded version of Solver using Young Brothers Wait on a ForkJoinPool.
+ *
+ * At nodes with enough depth left, the first (best-ordered) move is searched
+ * alone to set alpha, then its siblings are forked and searched in parallel;
+ * a sibling that fails high cancels the rest. All threads share one
+ * lock-free transposition table.
+ *
+ * For a fixed depth the chosen move is deterministic: table entries are only
+ * used at exactly the depth they were searched to, so every returned score
+ * is the true depth-limited value clamped to its window, whatever order the
+ * threads ran in. At the root the later moves are searched with a window one
+ * point below the first move's score, so ties are seen exactly and broken by
+ * the fixed root order rather than by timing.
+ *
+ * The server uses it for solver bots and hint analysis when
+ * connect4.solver.threads is above 1.
+ */
+public class ParallelSolver {
+    private static final int CHECK_INTERVAL = 1 << 10;  // nodes between budget checks
+    private static final int DEFAULT_SPLIT_DEPTH = 8;
+
+    // A group of sibling moves being searched in parallel; cancelled when one of them fails high
+    private static final class SplitPoint {
+        final SplitPoint parent;
+        volatile boolean cancelled;
+
+        SplitPoint(SplitPoint parent) {
+            this.parent = parent;
+        }
+
+        boolean isCancelled() {
+            for (SplitPoint split = this; split != null; split = split.parent) {
+                if (split.cancelled) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    // Per-thread move ordering buffers and node count; only used below the split depth
+    private static final class Searcher {
+        final int[][] moveOrder = new int[Bitboards.CELLS + 1][Bitboards.COLS];
+        final int[][] moveValue = new int[Bitboards.CELLS + 1][Bitboards.COLS];
+        long nodes;
+        long reported;
+    }
+
+    private final ForkJoinPool pool;
+    private final TranspositionTable table;
+    private final int splitDepth;
+    private final ThreadLocal<Searcher> searchers = ThreadLocal.withInitial(Searcher::new);
+    private final AtomicLong nodes = new AtomicLong();
+    private volatile boolean aborted;
+    private volatile long nodeLimit;
+    private volatile long deadline;
+
+    public ParallelSolver(int threads) {
+        this(threads, 22, DEFAULT_SPLIT_DEPTH);
+    }
+
+    public ParallelSolver(int threads, int tableBits) {
+        this(threads, tableBits, DEFAULT_SPLIT_DEPTH);
+    }
+
+    public ParallelSolver(int threads, int tableBits, int splitDepth) {
+        this.pool = new ForkJoinPool(threads);
+        this.table = new TranspositionTable(tableBits);
+        this.splitDepth = splitDepth;
+    }
+
+    public int getThreads() {
+        return pool.getParallelism();
+    }
+
+    // Iterative deepening under a time and/or node budget, like Solver.search
+    public Solver.Result search(BitboardGameBoard board, long timeBudgetMillis, long nodeBudget) {
+        int mover = board.getCurrentPlayer();
+        long current = board.getDiscs(mover);
+        long mask = current | board.getDiscs(mover == 1 ? 2 : 1);
+        return search(current, mask, board.getMoveCount(), timeBudgetMillis, nodeBudget, Bitboards.CELLS);
+    }
+
+    // A raw position, never deepening past maxDepth plies; the same contract as Solver.search
+    public Solver.Result search(long current, long mask, int moves, long timeBudgetMillis, long nodeBudget,
+                                int maxDepth) {
+        long start = System.nanoTime();
+        begin(start, timeBudgetMillis, nodeBudget);
+        int remaining = Bitboards.CELLS - moves;
+        int lastDepth = Math.min(remaining, Math.max(1, maxDepth));
+        Solver.Result best = null;
+        for (int depth = 1; depth <= lastDepth; depth++) {
+            int[] root = searchRoot(current, mask, moves, depth);
+            if (aborted && best != null) {
+                break;
+            }
+            boolean solved = depth >= remaining || root[1] != 0 || root[2] != 0;
+            best = new Solver.Result(root[0], root[1], depth, solved, flushNodes(), System.nanoTime() - start);
+            if (solved || aborted) {
+                break;
+            }
+        }
+        return new Solver.Result(best.getColumn(), best.getScore(), best.getDepth(), best.isSolved(),
+                flushNodes(), System.nanoTime() - start);
+    }
+
+    // One search to a fixed depth; the column and score do not depend on the thread count
+    public Solver.Result searchDepth(long current, long mask, int moves, int depth) {
+        long start = System.nanoTime();
+        begin(start, 0, 0);
+        int[] root = searchRoot(current, mask, moves, Math.min(depth, Bitboards.CELLS - moves));
+        boolean solved = depth >= Bitboards.CELLS - moves || root[1] != 0 || root[2] != 0;
+        return new Solver.Result(root[0], root[1], depth, solved, flushNodes(), System.nanoTime() - start);
+    }
+
+    // Forget everything learned so far, so the next search starts cold
+    public void clear() {
+        table.clear();
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private void begin(long start, long timeBudgetMillis, long nodeBudget) {
+        aborted = false;
+        nodes.set(0);
+        nodeLimit = nodeBudget > 0 ? nodeBudget : Long.MAX_VALUE;
+        deadline = timeBudgetMillis > 0 ? start + timeBudgetMillis * 1_000_000L : Long.MAX_VALUE;
+    }
+
+    private long flushNodes() {
+        return nodes.get();
+    }
+
+    // Column, score and a flag for a position decided without search
+    private int[] searchRoot(long current, long mask, int moves, int depth) {
+        int remaining = Bitboards.CELLS - moves;
+        long possible = Bitboards.possible(mask);
+        long wins = Bitboards.winningCells(current, mask) & possible;
+        if (wins != 0) {
+            return new int[] { columnOf(wins), (remaining + 1) / 2, 1 };
+        }
+        long candidates = Bitboards.nonLosingMoves(current, mask);
+        if (candidates == 0) {
+            return new int[] { columnOf(possible), -remaining / 2, 1 };
+        }
+
+        // Fixed order at the root (no table move), so ties always resolve the same way
+        int[] order = orderMoves(current, mask, candidates, -1, new int[Bitboards.COLS], new int[Bitboards.COLS]);
+        int first = order[0];
+        int firstScore = pool.invoke(new MoveTask(null, current, mask, moves, first, -Bitboards.CELLS, Bitboards.CELLS, depth));
+
+        List<MoveTask> rest = new ArrayList<>();
+        for (int i = 1; i < order.length && order[i] >= 0; i++) {
+            rest.add(new MoveTask(null, current, mask, moves, order[i], firstScore - 1, Bitboards.CELLS, depth));
+        }
+        if (!rest.isEmpty()) {
+            pool.invoke(new RecursiveTask<Void>() {
+                @Override
+                protected Void compute() {
+                    ForkJoinTask.invokeAll(rest);
+                    return null;
+                }
+            });
+        }
+
+        int bestColumn = first;
+        int bestScore = firstScore;
+        for (MoveTask task : rest) {
+            if (task.getRawResult() > bestScore) {
+                bestScore = task.getRawResult();
+                bestColumn = task.column;
+            }
+        }
+        return new int[] { bestColumn, bestScore, 0 };
+    }
+
+    private static int columnOf(long bits) {
+        return Long.numberOfTrailingZeros(bits) / Bitboards.COLUMN_BITS;
+    }
+
+    // Plays one move and returns its score from the mover's point of view
+    private final class MoveTask extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L;
+
+        final SplitPoint split;
+        final long current;
+        final long mask;
+        final int moves;
+        final int column;
+        final int alpha;
+        final int beta;
+        final int depth;
+
+        MoveTask(SplitPoint split, long current, long mask, int moves, int column, int alpha, int beta, int depth) {
+            this.split = split;
+            this.current = current;
+            this.mask = mask;
+            this.moves = moves;
+            this.column = column;
+            this.alpha = alpha;
+            this.beta = beta;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Integer compute() {
+            long next = mask | (mask + Bitboards.bottomMask(column));
+            Searcher searcher = searchers.get();
+            int score = -negamax(searcher, split, current ^ mask, next, moves + 1, -beta, -alpha, depth - 1);
+            // Report the remainder so node counts are exact once the search returns
+            nodes.addAndGet(searcher.nodes - searcher.reported);
+            searcher.reported = searcher.nodes;
+            if (score >= beta && split != null) {
+                split.cancelled = true;
+            }
+            return score;
+        }
+    }
+
+    private boolean stopped(SplitPoint split) {
+        return aborted || (split != null && split.isCancelled());
+    }
+
+    private void countNode(Searcher searcher) {
+        if ((++searcher.nodes & (CHECK_INTERVAL - 1)) == 0) {
+            long total = nodes.addAndGet(searcher.nodes - searcher.reported);
+            searcher.reported = searcher.nodes;
+            if (total >= nodeLimit || System.nanoTime() >= deadline) {
+                aborted = true;
+            }
+        }
+    }
+
+    // Fail-hard negamax as in Solver, splitting work at nodes with enough depth left
+    private int negamax(Searcher searcher, SplitPoint split, long current, long mask, int moves,
+                        int alpha, int beta, int depth) {
+        countNode(searcher);
+        if (stopped(split)) {
+            return alpha;
+        }
+
+        long candidates = Bitboards.nonLosingMoves(current, mask);
+        if (candidates == 0) {
+            return Math.max(alpha, Math.min(beta, -(Bitboards.CELLS - moves) / 2));
+        }
+        if (moves >= Bitboards.CELLS - 2 || depth == 0) {
+            return Math.max(alpha, Math.min(beta, 0));
+        }
+
+        int remaining = Bitboards.CELLS - moves;
+        int effectiveDepth = Math.min(depth, remaining);
+        int lowest = -(remaining - 2) / 2;
+        if (alpha < lowest) {
+            alpha = lowest;
+            if (alpha >= beta) {
+                return alpha;
+            }
+        }
+        int highest = (remaining - 1) / 2;
+        if (beta > highest) {
+            beta = highest;
+            if (alpha >= beta) {
+                return beta;
+            }
+        }
+
+        long key = Bitboards.key(current, mask);
+        int entry = table.get(key);
+        int hashColumn = -1;
+        if (entry != 0) {
+            hashColumn = TranspositionTable.column(entry);
+            // Only the exact same depth, so results never depend on what other threads stored
+            if (TranspositionTable.depth(entry) == effectiveDepth) {
+                int stored = TranspositionTable.score(entry);
+                switch (TranspositionTable.bound(entry)) {
+                    case TranspositionTable.EXACT:
+                        return Math.max(alpha, Math.min(beta, stored));
+                    case TranspositionTable.LOWER:
+                        if (stored >= beta) {
+                            return beta;
+                        }
+                        break;
+                    default:
+                        if (stored <= alpha) {
+                            return alpha;
+                        }
+                        break;
+                }
+            }
+        }
+
+        boolean parallel = depth >= splitDepth;
+        int[] order = parallel
+                ? orderMoves(current, mask, candidates, hashColumn, new int[Bitboards.COLS], new int[Bitboards.COLS])
+                : orderMoves(current, mask, candidates, hashColumn, searcher.moveOrder[moves], searcher.moveValue[moves]);
+
+        int originalAlpha = alpha;
+        int bestColumn = -1;
+        int first = 0;
+        for (; first < order.length && order[first] >= 0; first++) {
+            int column = order[first];
+            long next = mask | (mask + Bitboards.bottomMask(column));
+            int score = -negamax(searcher, split, current ^ mask, next, moves + 1, -beta, -alpha, depth - 1);
+            if (stopped(split)) {
+                return alpha;
+            }
+            if (score >= beta) {
+                table.put(key, beta, effectiveDepth, TranspositionTable.LOWER, column);
+                return beta;
+            }
+            if (score > alpha) {
+                alpha = score;
+                bestColumn = column;
+            }
+            if (parallel) {
+                first++;
+                break;  // the eldest brother is done; the rest go in parallel
+            }
+        }
+
+        if (parallel && first < order.length && order[first] >= 0) {
+            SplitPoint siblings = new SplitPoint(split);
+            List<MoveTask> tasks = new ArrayList<>(Bitboards.COLS);
+            for (int i = first; i < order.length && order[i] >= 0; i++) {
+                tasks.add(new MoveTask(siblings, current, mask, moves, order[i], alpha, beta, depth));
+            }
+            ForkJoinTask.invokeAll(tasks);
+            if (stopped(split)) {
+                return alpha;
+            }
+            for (MoveTask task : tasks) {
+                int score = task.getRawResult();
+                if (score >= beta) {
+                    table.put(key, beta, effectiveDepth, TranspositionTable.LOWER, task.column);
+                    return beta;
+                }
+                if (score > alpha) {
+                    alpha = score;
+                    bestColumn = task.column;
+                }
+            }
+        }
+
+        table.put(key, alpha, effectiveDepth, alpha > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER,
+                bestColumn >= 0 ? bestColumn : hashColumn);
+        return alpha;
+    }
+
+    // Same ordering as Solver: table move, then threats created, then center first
+    private static int[] orderMoves(long current, long mask, long candidates, int hashColumn, int[] columns, int[] values) {
+        int count = 0;
+        for (int column : Bitboards.CENTER_FIRST) {
+            long move = candidates & Bitboards.columnMask(column);
+            if (move == 0) {
+                continue;
+            }
+            int value = column == hashColumn ? Integer.MAX_VALUE
+                    : Long.bitCount(Bitboards.winningCells(current | move, mask | move));
+            int i = count++;
+            while (i > 0 && values[i - 1] < value) {
+                columns[i] = columns[i - 1];
+                values[i] = values[i - 1];
+                i--;
+            }
+            columns[i] = column;
+            values[i] = value;
+        }
+        for (int i = count; i < columns.length; i++) {
+            columns[i] = -1;
+        }
+        return columns;
+    }
+}
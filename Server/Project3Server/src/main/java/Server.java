@@ -1,118 +1,1190 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.SequenceInputStream;
+import java.lang.management.ManagementFactory;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+
 import javafx.application.Platform;
 import javafx.scene.control.ListView;
 
 public class Server {
-    private final int port = 5555;
-    private ArrayList<ClientThread> clients;
-    private HashMap<String, ClientThread> userClientMap;
-    private HashMap<String, String> playerPairings;  // Maps player to their opponent
-    private HashMap<String, GameBoard> gameBoards;   // Game boards for each pairing
-    private HashMap<String, String> waitingPlayers;  // Players waiting for a match
+    private static final String BOT_NAME = "Computer";
+    private static final String DRAINING_NOTICE = "The server will restart soon, so no new games are starting.";
+    // Messages clients send; each gets its own handling-time histogram
+    private static final Message.MessageType[] HANDLED = {
+        Message.MessageType.LOGIN, Message.MessageType.CHAT, Message.MessageType.GAME_REQUEST,
+        Message.MessageType.GAME_MOVE, Message.MessageType.PLAY_AGAIN, Message.MessageType.QUIT,
+        Message.MessageType.RESYNC_REQUEST, Message.MessageType.ANALYZE, Message.MessageType.SPECTATE,
+        Message.MessageType.RESUME
+    };
+    
+    private final ServerConfig config;
+    private final int port;
+    private Set<ClientConnection> clients;           // Every open connection, logged in or not
+    private LobbyRegistry registry;                  // Sessions and games
+    private Matchmaker matchmaker;                   // Pairs waiting players in batches
+    private ShardedExecutor gameShards;              // Runs each game's events in order
+    private ShardedExecutor spectatorShards;         // Delivers each game's events to its spectators
+    private BotPool botPool;                         // Thinks for computer opponents
+    private AnalysisService analysis;                // Scores positions for ANALYZE, with a shared cache
+    private final MctsBot.Stats mctsStats = new MctsBot.Stats();
+    private GameJournal journal;                     // Records games so they survive a restart; null when off
+    private final Map<String, PendingResume> pendingResumes = new ConcurrentHashMap<>();  // by username
     private TheServer server;
-    private Consumer<String> serverLog;
+    private NioTransport nioTransport;
+    private ThreadFactory connectionThreads;
+    private volatile int outboundQueueLimit;
+    private volatile boolean draining;               // Games in progress carry on, but no new ones start
+    private volatile boolean stopping;               // Set by stop(); dropped sessions are no longer held
+    private ObjectName controlName;                  // ServerControl's JMX name; null when not registered
+    private ServerLog serverLog;                     // Leveled, asynchronous log
+    private final Metrics metrics = new Metrics();   // Counters, gauges and latency histograms
+    private MetricsExporter metricsExporter;         // Serves and saves the metrics; null when both are off
+    private final LatencyRecorder[] handleTimes = new LatencyRecorder[Message.MessageType.values().length];
+    private LatencyRecorder sendTimes;
+    private LatencyRecorder eventTimes;
+    private LongAdder logins;
+    private LongAdder resumes;
+    private LongAdder gamesStarted;
+    private LongAdder gamesFinished;
+    private LongAdder spectatorSkips;
     
     // Constructor with logging capability
     public Server(Consumer<String> logger) {
+        this(logger, ServerConfig.fromSystemProperties());
+    }
+    
+    // Constructor with a line logger and explicit startup settings
+    public Server(Consumer<String> logger, ServerConfig config) {
+        this(ServerLog.create(config, LogSink.of(logger)), config);
+    }
+    
+    // Constructor with a configured log and explicit startup settings
+    public Server(ServerLog logger, ServerConfig config) {
         this.serverLog = logger;
-        clients = new ArrayList<>();
-        userClientMap = new HashMap<>();
-        playerPairings = new HashMap<>();
-        gameBoards = new HashMap<>();
-        waitingPlayers = new HashMap<>();
-        server = new TheServer();
-        server.start();
+        this.config = config;
+        this.port = config.getPort();
+        clients = ConcurrentHashMap.newKeySet();
+        registry = new LobbyRegistry();
+        gameShards = new ShardedExecutor(config.getGameShards(), "game-shard-");
+        spectatorShards = new ShardedExecutor(config.getSpectateThreads(), "spectate-");
+        matchmaker = new Matchmaker(registry, config.getMatchCriteria(), config.getMatchTickMillis(),
+                game -> dispatch(game, () -> startGame(game)), serverLog::error);
+        matchmaker.start();
+        botPool = createBotPool();
+        botPool.start();
+        analysis = new AnalysisService(config.getAnalysisThreads(), config.getAnalysisCacheSize(),
+                config.getAnalysisMillis(), config.getSolverThreads());
+        if (config.getSolverThreads() > 1) {
+            serverLog.info("Solver searches run on {} threads each", config.getSolverThreads());
+        }
+        connectionThreads = createConnectionThreads();
+        outboundQueueLimit = config.getOutboundQueueLimit();
+        openJournal();
+        registerMetrics();
+        
+        if (config.getTransport() == ServerConfig.Transport.NIO) {
+            startNioTransport();
+        } else {
+            server = new TheServer();
+            server.start();
+        }
+        startMetricsExporter();
+        registerControl();
     }
     
     // Constructor for use without a GUI
     public Server() {
-        this(s -> System.out.println(s));
+        this(ServerLog.create(ServerConfig.fromSystemProperties(), LogSink.console()),
+                ServerConfig.fromSystemProperties());
+    }
+    
+    // Stop accepting connections and shut down the background threads
+    public void stop() {
+        stopping = true;
+        if (server != null) {
+            server.close();
+        }
+        if (nioTransport != null) {
+            nioTransport.close();
+        }
+        matchmaker.stop();
+        botPool.stop();
+        analysis.shutdown();
+        gameShards.shutdown();
+        spectatorShards.shutdown();
+        if (journal != null) {
+            journal.close();
+        }
+        if (metricsExporter != null) {
+            metricsExporter.stop();
+        }
+        if (controlName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(controlName);
+            } catch (JMException e) {
+                serverLog.warn("Could not unregister {}: {}", controlName, e.getMessage());
+            }
+        }
+        serverLog.info("Server stopped");
+        serverLog.close();
+    }
+    
+    public ServerLog getLog() {
+        return serverLog;
+    }
+    
+    public Metrics getMetrics() {
+        return metrics;
+    }
+    
+    public LobbyRegistry getRegistry() {
+        return registry;
+    }
+    
+    public Matchmaker getMatchmaker() {
+        return matchmaker;
+    }
+    
+    // Open connections, logged in or not
+    public int getConnectionCount() {
+        return clients.size();
+    }
+    
+    public int getOutboundQueueLimit() {
+        return outboundQueueLimit;
+    }
+    
+    // Applies to every connection straight away, including ones already open
+    public void setOutboundQueueLimit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("The outbound queue limit must be at least 1");
+        }
+        outboundQueueLimit = limit;
+    }
+    
+    // Messages handled so far, by type
+    public Map<String, Long> getMessageCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Message.MessageType type : HANDLED) {
+            counts.put(type.name(), handleTimes[type.ordinal()].getCount());
+        }
+        return counts;
+    }
+    
+    public boolean isDraining() {
+        return draining;
+    }
+    
+    // While draining, games in progress can finish but no new ones start, so the server can be stopped quietly
+    public void setDraining(boolean draining) {
+        if (this.draining == draining) {
+            return;
+        }
+        this.draining = draining;
+        if (!draining) {
+            serverLog.warn("No longer draining; new games can start");
+            return;
+        }
+        for (Session session : registry.getSessions()) {
+            matchmaker.cancel(session);
+        }
+        broadcastMessage(new Message(Message.MessageType.CHAT, "SERVER", 
+                "The server will restart soon. Games in progress can finish, but no new games will start."), null);
+        serverLog.warn("Draining with {} games in progress; no new games will start", registry.getGameCount());
+    }
+    
+    // Log a user out and close their connection, with no chance to resume; false if nobody is logged in with that name
+    public boolean kick(String username) {
+        Session session = registry.getSession(username);
+        if (session == null) {
+            return false;
+        }
+        // Best effort: the notice may not get out before the connection closes
+        session.sendMessage(new Message(Message.MessageType.CHAT, "SERVER", 
+                "You have been disconnected by the server operator."));
+        Connection connection = session.getConnection();
+        endSession(session);
+        connection.close();
+        serverLog.warn("Kicked {}", username);
+        return true;
+    }
+    
+    // Expose live counts and tuning controls over JMX, as connect4:type=Server,port=<port>
+    private void registerControl() {
+        if (!config.isJmxEnabled()) {
+            return;
+        }
+        try {
+            ObjectName name = new ObjectName("connect4:type=Server,port=" + port);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new ServerControl(this), name);
+            controlName = name;
+        } catch (JMException e) {
+            serverLog.warn("Could not register the management bean: {}", e.getMessage());
+        }
+    }
+    
+    // Everything the metrics endpoint and snapshot file report
+    private void registerMetrics() {
+        metrics.gauge("connect4_connected_clients", "Open connections, logged in or not", clients::size);
+        metrics.gauge("connect4_logged_in_users", "Sessions with a username", registry::getSessionCount);
+        metrics.gauge("connect4_active_games", "Games in progress, including computer games",
+                registry::getGameCount);
+        metrics.gauge("connect4_waiting_players", "Players queued for an opponent", matchmaker::getQueueDepth);
+        metrics.gauge("connect4_match_oldest_wait_milliseconds", "How long the longest-waiting player has waited",
+                matchmaker::getOldestWaitMillis);
+        metrics.timer("connect4_match_wait_seconds", "How long matched players waited for an opponent",
+                matchmaker.getWaitTimes());
+        metrics.gauge("connect4_outbound_queued_frames", "Frames waiting to be written, over every connection",
+                this::countQueuedFrames);
+        metrics.gauge("connect4_spectators", "Sessions watching a game", this::countSpectators);
+        logins = metrics.counter("connect4_logins_total", "Successful logins");
+        resumes = metrics.counter("connect4_resumes_total", "Dropped sessions picked up again with their token");
+        metrics.gauge("connect4_detached_sessions", "Sessions waiting for their player to reconnect",
+                this::countDetached);
+        gamesStarted = metrics.counter("connect4_games_started_total", "Games started, rematches included");
+        gamesFinished = metrics.counter("connect4_games_finished_total", "Games played to a result");
+        metrics.counter("connect4_matches_total", "Pairs made by the matchmaker", matchmaker::getMatchesMade);
+        
+        for (Message.MessageType type : HANDLED) {
+            handleTimes[type.ordinal()] = metrics.timer("connect4_handle_seconds",
+                    "Time to handle a message from a client, by type", "type=\"" + type + "\"");
+        }
+        sendTimes = metrics.timer("connect4_send_seconds", "Time to queue a message for a client");
+        eventTimes = metrics.timer("connect4_game_event_seconds", "Time a game shard spends on one event");
+        
+        metrics.counter("connect4_bot_moves_total", "Moves played by computer opponents", botPool::getMovesPlayed);
+        metrics.counter("connect4_bot_late_moves_total", "Computer moves finished after their deadline",
+                botPool::getLateMoves);
+        metrics.counter("connect4_bot_reduced_moves_total", "Computer moves searched shallower because of a backlog",
+                botPool::getReducedMoves);
+        metrics.gauge("connect4_bot_queued_moves", "Computer moves waiting for a worker", botPool::getQueuedMoves);
+        metrics.gauge("connect4_bot_active_games", "Games against the computer", botPool::getActiveGames);
+        metrics.counter("connect4_mcts_playouts_total", "MCTS playouts run", mctsStats::getPlayouts);
+        metrics.gauge("connect4_mcts_playouts_per_second", "Playout rate of the latest MCTS search",
+                mctsStats::getLastRolloutsPerSecond);
+        
+        metrics.counter("connect4_analysis_hits_total", "Hints answered from the cache", analysis::getHits);
+        metrics.counter("connect4_analysis_misses_total", "Hints that needed a search", analysis::getMisses);
+        metrics.counter("connect4_analysis_coalesced_total", "Hints that joined a search already running",
+                analysis::getCoalesced);
+        metrics.counter("connect4_analysis_evictions_total", "Cached analyses evicted", analysis::getEvictions);
+        metrics.counter("connect4_analysis_rejected_total", "Hints refused because the workers were busy",
+                analysis::getRejected);
+        metrics.gauge("connect4_analysis_cache_entries", "Analyses in the cache", analysis::getSize);
+        
+        if (journal != null) {
+            GameJournal games = journal;
+            metrics.counter("connect4_journal_records_total", "Records appended to the journal", games::getAppended);
+            metrics.counter("connect4_journal_syncs_total", "Journal fsyncs", games::getSyncs);
+            metrics.gauge("connect4_journal_live_games", "Unfinished games in the journal", games::getLiveGames);
+            metrics.gauge("connect4_journal_segments", "Journal segment files", games::getSegmentCount);
+        }
+        spectatorSkips = metrics.counter("connect4_spectator_skips_total",
+                "Times a backed-up spectator was passed over");
+        
+        metrics.counter("connect4_log_written_total", "Log lines written", serverLog::getWrittenCount);
+        metrics.counter("connect4_log_dropped_total", "Log events dropped because the buffer was full",
+                serverLog::getDroppedCount);
+        metrics.gauge("connect4_log_queued", "Log events waiting to be written", serverLog::getQueuedCount);
+    }
+    
+    private void startMetricsExporter() {
+        if (config.getMetricsPort() < 0 && config.getMetricsFile() == null) {
+            return;
+        }
+        metricsExporter = new MetricsExporter(metrics, config.getMetricsHost(), config.getMetricsPort(),
+                config.getMetricsFile() == null ? null : Paths.get(config.getMetricsFile()),
+                TimeUnit.SECONDS.toMillis(config.getMetricsFileSeconds()), serverLog);
+        try {
+            metricsExporter.start();
+        } catch (IOException e) {
+            serverLog.error("Could not start the metrics endpoint", e);
+        }
+    }
+    
+    private long countQueuedFrames() {
+        long queued = 0;
+        for (ClientConnection client : clients) {
+            queued += client.getQueuedFrames();
+        }
+        return queued;
+    }
+    
+    private long countDetached() {
+        long detached = 0;
+        for (Session session : registry.getSessions()) {
+            if (session.isDetached()) {
+                detached++;
+            }
+        }
+        return detached;
     }
+    
+    private long countSpectators() {
+        long spectators = 0;
+        for (Game game : registry.getGames()) {
+            Audience audience = game.getAudience();
+            if (audience != null) {
+                spectators += audience.size();
+            }
+        }
+        return spectators;
+    }
+    
+    // Start the selector-based transport instead of a thread per connection
+    private void startNioTransport() {
+        try {
+            nioTransport = new NioTransport(port, config.getEventLoopThreads(), new NioListener(), serverLog::info,
+                    () -> outboundQueueLimit, config.getOverflowPolicy());
+            nioTransport.start();
+            serverLog.info("Server started on port: {} (NIO, {} event loops)", port, nioTransport.getEventLoopCount());
+        } catch (IOException e) {
+            serverLog.error("Error starting server", e);
+        }
+    }
+    
+    // Bot workers, each with its own engine; solver bots share one opening book if configured
+    private BotPool createBotPool() {
+        if (config.getBotEngine() == ServerConfig.BotEngine.MCTS) {
+            serverLog.info("Computer opponents use MCTS with {} playouts per move", config.getBotPlayouts());
+            return new BotPool(config.getBotThreads(),
+                    () -> new MctsBot(config.getBotMctsThreads(), config.getBotPlayouts(), mctsStats),
+                    botMoveMillis(), config.getBotMaxDepth(), config.getBotMinDepth(), config.getBotMaxGames(),
+                    serverLog::warn);
+        }
 
-    // Logs server activity
-    private void log(String message) {
-        serverLog.accept(message);
+        OpeningBook book = null;
+        if (config.getBotBook() != null) {
+            try {
+                book = OpeningBook.open(Paths.get(config.getBotBook()));
+                serverLog.info("Loaded opening book {} ({} positions)", config.getBotBook(), book.size());
+            } catch (IOException e) {
+                serverLog.warn("Could not open opening book {}: {}", config.getBotBook(), e.getMessage());
+            }
+        }
+        OpeningBook bots = book;
+        int searchThreads = config.getSolverThreads();
+        return new BotPool(config.getBotThreads(), () -> new SolverBot(bots, 20, searchThreads), botMoveMillis(),
+                config.getBotMaxDepth(), config.getBotMinDepth(), config.getBotMaxGames(), serverLog::warn);
+    }
+    
+    // A bot should never be the one to run out of time
+    private long botMoveMillis() {
+        long moveMillis = config.getBotMoveMillis();
+        if (config.getTurnTimeoutSeconds() > 0) {
+            moveMillis = Math.min(moveMillis, config.getTurnTimeoutSeconds() * 500L);
+        }
+        return moveMillis;
+    }
+    
+    public BotPool getBotPool() {
+        return botPool;
+    }
+    
+    // Playout totals and rollouts per second for MCTS bots
+    public MctsBot.Stats getMctsStats() {
+        return mctsStats;
+    }
+    
+    public AnalysisService getAnalysis() {
+        return analysis;
+    }
+    
+    // The game journal, or null when journaling is off
+    public GameJournal getJournal() {
+        return journal;
+    }
+    
+    // A game recovered from the journal, waiting for its players to log back in
+    private static final class PendingResume {
+        final GameJournal.RecoveredGame recovered;
+        final Session[] players = new Session[3];  // indexed by player number
+        boolean done;                              // resumed, abandoned or expired
+        
+        PendingResume(GameJournal.RecoveredGame recovered) {
+            this.recovered = recovered;
+        }
+    }
+    
+    // Replay the journal, if one is configured, before any client can connect
+    private void openJournal() {
+        if (config.getJournalDir() == null) {
+            return;
+        }
+        GameJournal opened = new GameJournal(Paths.get(config.getJournalDir()), config.getJournalSegmentBytes(),
+                config.getJournalSyncMillis(), config.getJournalSyncRecords(), serverLog::warn);
+        long start = System.nanoTime();
+        List<GameJournal.RecoveredGame> recovered;
+        try {
+            recovered = opened.open();
+        } catch (IOException e) {
+            serverLog.error("Could not open the game journal in {}; games will not survive a restart",
+                    config.getJournalDir(), e);
+            opened.close();
+            return;
+        }
+        journal = opened;
+        serverLog.info("Journal replayed in {} ms; {} unfinished games can be resumed",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), recovered.size());
+        
+        for (GameJournal.RecoveredGame game : recovered) {
+            registry.reserveGameIds(game.getId());
+            PendingResume pending = new PendingResume(game);
+            for (int player = 1; player <= 2; player++) {
+                if (!game.isBot(player)) {
+                    pendingResumes.put(player == 1 ? game.getPlayer1() : game.getPlayer2(), pending);
+                }
+            }
+            gameShards.schedule(game.getId(), () -> expireRecoveredGame(pending),
+                    config.getJournalResumeSeconds(), TimeUnit.SECONDS);
+        }
+    }
+    
+    // Record a game (re)starting from an empty board
+    private void journalStart(Game game) {
+        if (journal != null) {
+            journal.gameStarted(game.getId(), game.getPlayer1().getUsername(), game.getPlayer2().getUsername(),
+                    (isBot(game.getPlayer1()) ? 1 : 0) | (isBot(game.getPlayer2()) ? 2 : 0));
+        }
+    }
+    
+    // Put a returning player back into their game from before the restart, once every human in it is back
+    private void resumeRecoveredGame(Session session) {
+        PendingResume pending = pendingResumes.get(session.getUsername());
+        if (pending == null) {
+            return;
+        }
+        GameJournal.RecoveredGame recovered = pending.recovered;
+        boolean vsBot;
+        synchronized (pending) {
+            if (pending.done) {
+                return;
+            }
+            pending.players[session.getUsername().equals(recovered.getPlayer1()) ? 1 : 2] = session;
+            vsBot = false;
+            for (int player = 1; player <= 2; player++) {
+                if (pending.players[player] != null && !pending.players[player].isClosed()) {
+                    continue;
+                }
+                if (!recovered.isBot(player)) {
+                    String opponent = player == 1 ? recovered.getPlayer1() : recovered.getPlayer2();
+                    session.sendMessage(new Message(Message.MessageType.CHAT, "SERVER", 
+                            "Your game against " + opponent + " will resume when they log back in."));
+                    return;
+                }
+                pending.players[player] = new Session(BOT_NAME, new BotConnection());
+                vsBot = true;
+            }
+            pending.done = true;
+        }
+        pendingResumes.remove(recovered.getPlayer1(), pending);
+        pendingResumes.remove(recovered.getPlayer2(), pending);
+        
+        Game game = null;
+        if (!vsBot || botPool.admitGame()) {
+            game = registry.restoreGame(recovered.getId(), pending.players[1], pending.players[2]);
+            if (game == null && vsBot) {
+                botPool.releaseGame();
+            }
+        }
+        if (game == null) {
+            journal.gameEnded(recovered.getId(), 0);
+            session.sendMessage(new Message(Message.MessageType.CHAT, "SERVER", 
+                    "Your game from before the server restarted could not be resumed."));
+            return;
+        }
+        Game resumed = game;
+        dispatch(resumed, () -> resumeGame(resumed, recovered));
+    }
+    
+    // Nobody came back for a recovered game in time; runs on the game's shard
+    private void expireRecoveredGame(PendingResume pending) {
+        synchronized (pending) {
+            if (pending.done) {
+                return;
+            }
+            pending.done = true;
+        }
+        pendingResumes.remove(pending.recovered.getPlayer1(), pending);
+        pendingResumes.remove(pending.recovered.getPlayer2(), pending);
+        journal.gameEnded(pending.recovered.getId(), 0);
+        serverLog.info("Gave up waiting to resume {}", pending.recovered);
+    }
+    
+    // Pick platform or virtual threads for blocking connections
+    private ThreadFactory createConnectionThreads() {
+        if (config.getTransport() == ServerConfig.Transport.VIRTUAL) {
+            ThreadFactory virtual = VirtualThreads.factory("client-");
+            if (virtual != null) {
+                serverLog.info("Serving connections on virtual threads");
+                return virtual;
+            }
+            serverLog.warn("Virtual threads need Java 21 or newer; falling back to platform threads");
+        }
+        AtomicInteger count = new AtomicInteger();
+        return task -> new Thread(task, "client-" + count.getAndIncrement());
+    }
+    
+    // Start a blocking thread for a connection
+    private void startClientThread(ClientThread client) {
+        clients.add(client);
+        connectionThreads.newThread(client).start();
+        serverLog.info("Client connected. Total clients: {}", clients.size());
     }
     
     private class TheServer extends Thread {
+        private volatile ServerSocket serverSocket;
+        private volatile boolean closed;
+        
         @Override
         public void run() {
             try (ServerSocket serverSocket = new ServerSocket(port)) {
-                log("Server started on port: " + port);
+                this.serverSocket = serverSocket;
+                serverLog.info("Server started on port: {}", port);
                 
-                while (true) {
+                while (!closed) {
                     Socket clientSocket = serverSocket.accept();
-                    ClientThread client = new ClientThread(clientSocket);
-                    clients.add(client);
-                    client.start();
-                    log("Client connected. Total clients: " + clients.size());
+                    startClientThread(new ClientThread(clientSocket, null));
                 }
             } catch (Exception e) {
-                log("Error starting server: " + e.getMessage());
-                e.printStackTrace();
+                if (!closed) {
+                    serverLog.error("Error starting server", e);
+                }
+            }
+        }
+        
+        void close() {
+            closed = true;
+            try {
+                if (serverSocket != null) {
+                    serverSocket.close();
+                }
+            } catch (IOException e) {
+                serverLog.warn("Error closing server socket: {}", e.getMessage());
             }
         }
     }
 
-    private class ClientThread extends Thread {
-        private Socket connection;
-        private ObjectInputStream in;
-        private ObjectOutputStream out;
-        private String username;
-        private boolean loggedIn = false;
-
-        ClientThread(Socket socket) {
-            this.connection = socket;
-            this.username = "Anonymous";
+    // Run an event on the game's shard; events for one game never overlap and keep their order
+    private void dispatch(Game game, Runnable event) {
+        gameShards.execute(game.getId(), () -> runEvent(game, event));
+    }
+    
+    // Process one game event on its shard and record it in the game's metrics
+    private void runEvent(Game game, Runnable event) {
+        long start = System.nanoTime();
+        try {
+            event.run();
+        } catch (RuntimeException e) {
+            serverLog.error("Error processing event for {}", game, e);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            game.recordEvent(elapsed);
+            eventTimes.record(elapsed);
+        }
+    }
+    
+    // Notify both players that their game has begun
+    private void startGame(Game game) {
+        Session player1 = game.getPlayer1();
+        Session player2 = game.getPlayer2();
+        
+        player1.sendMessage(new Message(Message.MessageType.GAME_STARTED, "SERVER", 
+                "Game started against " + player2.getUsername() + ". You are Player 1 (Red).", 1));
+        player2.sendMessage(new Message(Message.MessageType.GAME_STARTED, "SERVER", 
+                "Game started against " + player1.getUsername() + ". You are Player 2 (Yellow).", 2));
+        
+        serverLog.debug("Player 1: {}, Player 2: {}", player1, player2);
+        gamesStarted.increment();
+        journalStart(game);
+        stopWatching(player1);
+        stopWatching(player2);
+        
+        // Send initial game state
+        sendGameState(game, player1, player2);
+        armTurnTimer(game);
+        requestBotMove(game);
+        
+        serverLog.info("Game started: {}", game);
+    }
+    
+    // Replay a recovered game's moves and hand it back to its players; runs on the game's shard
+    private void resumeGame(Game game, GameJournal.RecoveredGame recovered) {
+        BitboardGameBoard gameBoard = game.getBoard();
+        for (int move = 0; move < recovered.getMoveCount(); move++) {
+            gameBoard.makeMove(recovered.getColumn(move));
+        }
+        Session player1 = game.getPlayer1();
+        Session player2 = game.getPlayer2();
+        stopWatching(player1);
+        stopWatching(player2);
+        player1.sendMessage(new Message(Message.MessageType.GAME_STARTED, "SERVER", 
+                "Game resumed against " + player2.getUsername() + ". You are Player 1 (Red).", 1));
+        player2.sendMessage(new Message(Message.MessageType.GAME_STARTED, "SERVER", 
+                "Game resumed against " + player1.getUsername() + ". You are Player 2 (Yellow).", 2));
+        sendGameState(game, player1, player2);
+        
+        if (gameBoard.isGameOver()) {
+            handleGameOver(game, null);
+        } else {
+            armTurnTimer(game);
+            requestBotMove(game);
+        }
+        serverLog.info("Game resumed after {} moves: {}", recovered.getMoveCount(), game);
+    }
+    
+    // Apply a move; runs on the game's shard
+    private void processMove(Game game, Session player, int column) {
+        BitboardGameBoard gameBoard = game.getBoard();
+        serverLog.debug("Game state - Current player: {}, Player: {}, Opponent: {}",
+                gameBoard.getCurrentPlayer(), player, game.opponentOf(player));
+        
+        int mover = gameBoard.getCurrentPlayer();
+        if (game.isEnded() || game.playerNumber(player) != mover) {
+            serverLog.debug("Move rejected: not {}'s turn", player);
+            return;
+        }
+        
+        // Make the move
+        boolean moveSuccess = gameBoard.makeMove(column);
+        serverLog.debug("Move success: {}", moveSuccess);
+        
+        if (moveSuccess) {
+            if (journal != null) {
+                journal.moved(game.getId(), column);
+            }
+            
+            // Board dumps are only built when tracing
+            if (serverLog.isTraceEnabled()) {
+                serverLog.trace("Board state after move:{}", formatBoard(gameBoard));
+            }
+            
+            // Describe just this move; clients apply it to their own board
+            MoveEvent moveEvent = new MoveEvent(gameBoard.getMoveCount(), column,
+                    gameBoard.getLastRow(), mover, gameBoard.getWinner());
+            game.recordMove(moveEvent);
+            serverLog.debug("Sending {} to {} and {}", moveEvent, game.getPlayer1(), game.getPlayer2());
+            
+            SharedFrame moveMsg = new SharedFrame(new Message(Message.MessageType.GAME_MOVE_APPLIED, "SERVER",
+                "Move applied", moveEvent));
+            SharedFrame stateMsg = null;
+            
+            for (Session recipient : new Session[] { game.getPlayer1(), game.getPlayer2() }) {
+                if (recipient.getConnection().supportsMoveEvents()) {
+                    recipient.sendFrame(moveMsg);
+                } else {
+                    // Older clients still need the whole board after every move
+                    if (stateMsg == null) {
+                        stateMsg = new SharedFrame(createGameStateMessage(gameBoard));
+                    }
+                    recipient.sendFrame(stateMsg);
+                }
+            }
+            
+            serverLog.debug("Move sent to both players. Current player: {}", gameBoard.getCurrentPlayer());
+            publishToAudience(game, moveMsg);
+            
+            // Check if game is over
+            if (gameBoard.isGameOver()) {
+                game.nextTurnTimerToken();
+                handleGameOver(game, null);
+            } else {
+                armTurnTimer(game);
+                requestBotMove(game);
+            }
+        }
+    }
+    
+    // If a bot is to move, think on the bot pool and play the move back on the game's shard
+    private void requestBotMove(Game game) {
+        BitboardGameBoard gameBoard = game.getBoard();
+        if (game.isEnded() || gameBoard.isGameOver()) {
+            return;
+        }
+        int mover = gameBoard.getCurrentPlayer();
+        Session bot = mover == 1 ? game.getPlayer1() : game.getPlayer2();
+        if (!isBot(bot)) {
+            return;
+        }
+        long current = gameBoard.getDiscs(mover);
+        long mask = current | gameBoard.getDiscs(mover == 1 ? 2 : 1);
+        int moves = gameBoard.getMoveCount();
+        botPool.requestMove(current, mask, moves, game::isEnded,
+                column -> dispatch(game, () -> processBotMove(game, bot, moves, column)));
+    }
+    
+    // Apply a bot's move unless the board changed while it was thinking (e.g. a rematch); runs on the game's shard
+    private void processBotMove(Game game, Session bot, int moves, int column) {
+        if (game.getBoard().getMoveCount() != moves) {
+            serverLog.debug("Dropped stale bot move in {}", game);
+            return;
+        }
+        processMove(game, bot, column);
+    }
+    
+    private static boolean isBot(Session session) {
+        return session.getConnection() instanceof BotConnection;
+    }
+    
+    // Reset the board for a rematch; runs on the game's shard
+    private void processPlayAgain(Game game, Session player) {
+        if (game.isEnded()) {
+            return;
+        }
+        Session opponent = game.opponentOf(player);
+        
+        // Reset the game board
+        game.getBoard().resetGame();
+        game.clearMoves();
+        gamesStarted.increment();
+        journalStart(game);
+        
+        // Notify both players
+        SharedFrame newGame = new SharedFrame(new Message(Message.MessageType.CHAT, "SERVER", "New game started!"));
+        player.sendFrame(newGame);
+        opponent.sendFrame(newGame);
+        
+        // Send initial game state
+        sendGameState(game, player, opponent);
+        publishToAudience(game, null);
+        armTurnTimer(game);
+        requestBotMove(game);
+        
+        serverLog.info("New game started between {} and {}", player, opponent);
+    }
+    
+    // Snapshot the position and reply when its analysis is ready; runs on the game's shard
+    private void analyzePosition(Game game, Session player) {
+        BitboardGameBoard gameBoard = game.getBoard();
+        if (gameBoard.isGameOver()) {
+            return;
+        }
+        int mover = gameBoard.getCurrentPlayer();
+        long current = gameBoard.getDiscs(mover);
+        long mask = current | gameBoard.getDiscs(mover == 1 ? 2 : 1);
+        analysis.analyze(current, mask, gameBoard.getMoveCount()).whenComplete((result, error) -> {
+            if (error != null) {
+                player.sendMessage(new Message(Message.MessageType.CHAT, "SERVER", 
+                        "Hints are busy right now. Please try again."));
+            } else {
+                player.sendMessage(new Message(Message.MessageType.ANALYZE, "SERVER", "Position analysis", result));
+            }
+        });
+    }
+    
+    // A player quit or disconnected; runs on the game's shard after the registry has ended the game
+    private void processLeave(Game game, Session player) {
+        game.nextTurnTimerToken();
+        if (journal != null && !game.getBoard().isGameOver()) {
+            journal.gameEnded(game.getId(), 0);
+        }
+        if (isBot(game.opponentOf(player))) {
+            botPool.releaseGame();
+        }
+        
+        // Notify opponent
+        game.opponentOf(player).sendMessage(new Message(Message.MessageType.CHAT, "SERVER", 
+                player + " has left the game."));
+        
+        Audience audience = game.getAudience();
+        if (audience != null) {
+            audience.finish(new SharedFrame(new Message(Message.MessageType.CHAT, "SERVER", 
+                    player + " has left the game. You are no longer watching.")));
+        }
+    }
+    
+    // Subscribe a session to a game's events, starting with a snapshot; runs on the game's shard
+    private void processSpectate(Game game, Session spectator) {
+        if (game.isEnded() || spectator.isClosed() || spectator.getGame() != null) {
+            return;
+        }
+        Audience audience = game.getAudience();
+        if (audience == null) {
+            audience = new Audience(task -> spectatorShards.execute(game.getId(), task),
+                    config::getSpectateBacklog, spectatorSkips);
+            game.setAudience(audience);
+        }
+        spectator.setWatching(game);
+        spectator.sendMessage(new Message(Message.MessageType.SPECTATE, "SERVER", "Watching " 
+                + game.getPlayer1().getUsername() + " (Red) vs " + game.getPlayer2().getUsername() + " (Yellow).",
+                (int) game.getId()));
+        audience.add(spectator, new SharedFrame(createGameStateMessage(game.getBoard())));
+        serverLog.info("{} is watching {} ({} spectators)", spectator, game, audience.size());
+    }
+    
+    // Pass an event on to the game's spectators, if it has any; a null event means the board was reset
+    private void publishToAudience(Game game, SharedFrame event) {
+        Audience audience = game.getAudience();
+        if (audience == null || !audience.isWatched()) {
+            return;
+        }
+        SharedFrame snapshot = new SharedFrame(createGameStateMessage(game.getBoard()));
+        audience.publish(event != null ? event : snapshot, snapshot);
+    }
+    
+    private static void stopWatching(Session session) {
+        Game watched = session.getWatching();
+        if (watched != null) {
+            session.setWatching(null);
+            if (watched.getAudience() != null) {
+                watched.getAudience().remove(session);
+            }
+        }
+    }
+    
+    // One line listing some of the games that can be watched
+    private String describeGames() {
+        StringBuilder games = new StringBuilder();
+        int listed = 0;
+        for (Game game : registry.getGames()) {
+            if (listed == 10) {
+                games.append(", ...");
+                break;
+            }
+            games.append(listed++ == 0 ? "Games in progress: " : ", ").append(game.getId()).append(" (")
+                    .append(game.getPlayer1()).append(" vs ").append(game.getPlayer2()).append(')');
+        }
+        return listed == 0 ? "No games in progress." : games.toString();
+    }
+    
+    // Start the clock for whoever moves next; a later move or game end invalidates it
+    private void armTurnTimer(Game game) {
+        int timeout = config.getTurnTimeoutSeconds();
+        if (timeout <= 0) {
+            return;
+        }
+        int token = game.nextTurnTimerToken();
+        gameShards.schedule(game.getId(), () -> runEvent(game, () -> processTurnTimeout(game, token)),
+                timeout, TimeUnit.SECONDS);
+    }
+    
+    // The player to move ran out of time and forfeits; runs on the game's shard
+    private void processTurnTimeout(Game game, int token) {
+        BitboardGameBoard gameBoard = game.getBoard();
+        if (!game.isCurrentTurnTimer(token) || game.isEnded() || gameBoard.isGameOver()) {
+            return;
+        }
+        
+        int loser = gameBoard.getCurrentPlayer();
+        Session slowPlayer = (loser == 1) ? game.getPlayer1() : game.getPlayer2();
+        gameBoard.forfeit(loser);
+        serverLog.info("{} ran out of time in {}", slowPlayer, game);
+        handleGameOver(game, slowPlayer + " ran out of time. ");
+    }
+    
+    // Send one game state snapshot to the given players
+    private void sendGameState(Game game, Session... players) {
+        try {
+            BitboardGameBoard gameBoard = game.getBoard();
+            if (serverLog.isTraceEnabled()) {
+                serverLog.trace("Sending game state to {}:{}", Arrays.toString(players), formatBoard(gameBoard));
+            }
+            
+            // Send a full snapshot of the board, encoded once for everyone
+            SharedFrame snapshot = new SharedFrame(createGameStateMessage(gameBoard));
+            for (Session player : players) {
+                player.sendFrame(snapshot);
+            }
+            
+        } catch (Exception e) {
+            serverLog.error("Error sending game state", e);
+        }
+    }
+    
+    // Build a GAME_STATE snapshot in its own array so later moves don't alter it
+    private Message createGameStateMessage(BitboardGameBoard gameBoard) {
+        int[][] boardCopy = new int[GameBoard.getRows()][GameBoard.getCols()];
+        for (int r = 0; r < GameBoard.getRows(); r++) {
+            for (int c = 0; c < GameBoard.getCols(); c++) {
+                boardCopy[r][c] = gameBoard.getCell(r, c);
+            }
+        }
+        
+        BoardState boardState = new BoardState(
+            boardCopy,
+            gameBoard.getCurrentPlayer(),
+            gameBoard.getWinner(),
+            gameBoard.isGameOver(),
+            gameBoard.getMoveCount()
+        );
+        return new Message(Message.MessageType.GAME_STATE, "SERVER", "Game state updated", boardState);
+    }
+    
+    // Row-by-row dump of the board for trace logging
+    private static String formatBoard(BitboardGameBoard gameBoard) {
+        StringBuilder dump = new StringBuilder();
+        for (int r = 0; r < GameBoard.getRows(); r++) {
+            dump.append(System.lineSeparator()).append("Row ").append(r).append(":");
+            for (int c = 0; c < GameBoard.getCols(); c++) {
+                dump.append(' ').append(gameBoard.getCell(r, c));
+            }
+        }
+        return dump.toString();
+    }
+    
+    // Handle game over; runs on the game's shard
+    private void handleGameOver(Game game, String reason) {
+        BitboardGameBoard gameBoard = game.getBoard();
+        
+        gamesFinished.increment();
+        if (journal != null) {
+            journal.gameEnded(game.getId(), gameBoard.getWinner());
+        }
+        
+        String resultMessage = describeResult(game);
+        if (reason != null) {
+            resultMessage = reason + resultMessage;
         }
         
+        // Send game over message to both players
+        SharedFrame gameOverMsg = new SharedFrame(
+                new Message(Message.MessageType.GAME_OVER, "SERVER", resultMessage, gameBoard.getWinner()));
+        game.getPlayer1().sendFrame(gameOverMsg);
+        game.getPlayer2().sendFrame(gameOverMsg);
+        publishToAudience(game, gameOverMsg);
+        
+        serverLog.info("Game over: {}", resultMessage);
+    }
+    
+    private static String describeResult(Game game) {
+        int winner = game.getBoard().getWinner();
+        if (winner == 1) {
+            return game.getPlayer1().getUsername() + " wins!";
+        } else if (winner == 2) {
+            return game.getPlayer2().getUsername() + " wins!";
+        }
+        return "Game ended in a draw!";
+    }
+    
+    // End the session's game for both players, if it is in one
+    private void leaveGame(Session session) {
+        Game game = registry.leaveGame(session);
+        if (game != null) {
+            dispatch(game, () -> processLeave(game, session));
+            serverLog.info("{} has quit their game", session);
+        }
+    }
+    
+    // Log a session out for good: end its game and any matchmaking, and tell everyone
+    private void endSession(Session session) {
+        stopWatching(session);
+        leaveGame(session);
+        matchmaker.cancel(session);
+        registry.logout(session);
+        broadcastMessage(new Message(Message.MessageType.CHAT, "SERVER", 
+                session.getUsername() + " has disconnected."), null);
+    }
+    
+    // Keep a dropped player's session, and any game they are in, until they resume it or the grace period is up
+    private void holdSession(Session session, int detachment) {
+        int grace = config.getSessionGraceSeconds();
+        matchmaker.cancel(session);
+        stopWatching(session);
+        Game game = session.getGame();
+        if (game != null) {
+            dispatch(game, () -> {
+                if (!game.isEnded()) {
+                    game.opponentOf(session).sendMessage(new Message(Message.MessageType.CHAT, "SERVER", 
+                            session + " lost their connection. Waiting " + grace + " seconds for them to come back."));
+                }
+            });
+        }
+        gameShards.schedule(game != null ? game.getId() : session.getUsername().hashCode(),
+                () -> expireSession(session, detachment), grace, TimeUnit.SECONDS);
+        serverLog.info("{} dropped; holding their session for {} s", session, grace);
+    }
+    
+    // The grace period is up; ends the session unless it was resumed (or dropped again) meanwhile
+    private void expireSession(Session session, int detachment) {
+        if (session.expire(detachment)) {
+            serverLog.info("{} did not come back in time", session);
+            endSession(session);
+        }
+    }
+    
+    // Send a resumed player the game events they missed: only the moves if we still have them, otherwise a
+    // snapshot; runs on the game's shard
+    private void catchUp(Game game, Session player, int lastSequence) {
+        if (game.isEnded() || player.getGame() != game) {
+            return;
+        }
+        Session opponent = game.opponentOf(player);
+        BitboardGameBoard gameBoard = game.getBoard();
+        List<MoveEvent> missed = player.getConnection().supportsMoveEvents() ? game.movesAfter(lastSequence) : null;
+        if (lastSequence < 0) {
+            // Paired just as the connection dropped, so the client never heard the game start
+            int number = game.playerNumber(player);
+            player.sendMessage(new Message(Message.MessageType.GAME_STARTED, "SERVER", "Game started against " 
+                    + opponent.getUsername() + ". You are Player " + number + (number == 1 ? " (Red)." : " (Yellow)."),
+                    number));
+            sendGameState(game, player);
+        } else if (missed != null) {
+            for (MoveEvent move : missed) {
+                player.sendMessage(new Message(Message.MessageType.GAME_MOVE_APPLIED, "SERVER", "Move applied", move));
+            }
+        } else {
+            sendGameState(game, player);
+        }
+        if (gameBoard.isGameOver()) {
+            // It may have gone out just before the drop; clients take a repeat in their stride
+            player.sendMessage(new Message(Message.MessageType.GAME_OVER, "SERVER", describeResult(game),
+                    gameBoard.getWinner()));
+        }
+        opponent.sendMessage(new Message(Message.MessageType.CHAT, "SERVER", player + " is back."));
+        serverLog.debug("Caught {} up from move {} to move {}", player, lastSequence, gameBoard.getMoveCount());
+    }
+    
+    // Session logic shared by every transport; subclasses only deliver bytes
+    private abstract class ClientConnection implements Connection {
+        protected String username = "Anonymous";
+        protected boolean loggedIn = false;
+        protected Session session;  // set on login
+        
         // Send message to this client
+        @Override
         public void sendMessage(Message message) {
+            sendFrame(new SharedFrame(message));
+        }
+        
+        // Send a message whose encoding may be shared with other clients, timing how long queueing it takes
+        @Override
+        public final void sendFrame(SharedFrame frame) {
+            long start = System.nanoTime();
             try {
-                // Make sure output is properly flushed
-                out.writeObject(message);
-                out.flush();
-                out.reset(); // Reset the cache to avoid reference problems
-                log("Message sent to " + username + ": " + message.getType());
-            } catch (IOException e) {
-                log("Error sending message to client " + username + ": " + e.getMessage());
-                e.printStackTrace();
+                enqueue(frame);
+            } finally {
+                sendTimes.record(System.nanoTime() - start);
             }
         }
         
+        // Hand a frame to the transport
+        protected abstract void enqueue(SharedFrame frame);
+        
+        // Whether this client applies GAME_MOVE_APPLIED events itself
+        @Override
+        public boolean supportsMoveEvents() {
+            return false;
+        }
+        
+        // Greet a freshly connected client
+        protected void sendWelcome() {
+            sendMessage(new Message(Message.MessageType.CHAT, "SERVER", 
+                    "Welcome! Please log in with a unique username."));
+        }
+        
         // Process login request
         private void handleLogin(Message message) {
             String requestedUsername = message.getContent();
             
-            // Check if username is already taken
-            if (userClientMap.containsKey(requestedUsername)) {
+            if (loggedIn) {
+                sendMessage(new Message(Message.MessageType.LOGIN_FAILED, "SERVER", 
+                        "You are already logged in as " + username + "."));
+                return;
+            }
+            if (requestedUsername == null || requestedUsername.trim().isEmpty()) {
+                sendMessage(new Message(Message.MessageType.LOGIN_FAILED, "SERVER", 
+                        "Please choose a username."));
+                return;
+            }
+            
+            // Registration fails atomically if the username is already taken
+            Session newSession = registry.login(requestedUsername, this);
+            Session held = newSession == null ? registry.getSession(requestedUsername) : null;
+            if (held != null && held.expire(-1)) {
+                // A dropped session gives way to a fresh login under its name
+                endSession(held);
+                newSession = registry.login(requestedUsername, this);
+            }
+            if (newSession == null) {
                 sendMessage(new Message(Message.MessageType.LOGIN_FAILED, "SERVER", 
                         "Username already taken. Please choose another."));
             } else {
                 // Username is available, register the client
                 username = requestedUsername;
-                userClientMap.put(username, this);
+                session = newSession;
                 loggedIn = true;
                 
+                // The token lets the client pick this session up again if its connection drops
                 sendMessage(new Message(Message.MessageType.LOGIN_SUCCESS, "SERVER", 
-                        "Login successful. Welcome, " + username + "!"));
+                        "Login successful. Welcome, " + username + "!",
+                        config.getSessionGraceSeconds() > 0 ? session.getResumeToken() : null));
+                logins.increment();
                 
-                log("User logged in: " + username);
+                serverLog.info("User logged in: {}", username);
                 
                 // Broadcast new user to all clients
                 broadcastMessage(new Message(Message.MessageType.CHAT, "SERVER", 
                         username + " has joined the game!"), null);
+                
+                // Pick up a game interrupted by a server restart
+                if (journal != null) {
+                    resumeRecoveredGame(session);
+                }
+            }
+        }
+        
+        // Take over a dropped session and catch up on what happened while it was away
+        private void handleResume(Message message) {
+            if (loggedIn) {
+                sendMessage(new Message(Message.MessageType.LOGIN_FAILED, "SERVER", 
+                        "You are already logged in as " + username + "."));
+                return;
+            }
+            Session resumed = config.getSessionGraceSeconds() > 0
+                    ? registry.findResumable(message.getSender(), message.getContent()) : null;
+            Connection previous = resumed == null ? null : resumed.attach(this);
+            if (previous == null) {
+                sendMessage(new Message(Message.MessageType.LOGIN_FAILED, "SERVER", 
+                        "Your session has expired. Please log in again."));
+                return;
+            }
+            username = resumed.getUsername();
+            session = resumed;
+            loggedIn = true;
+            // The old connection may not have been noticed as dead yet; closing it now leaves the session alone
+            previous.close();
+            resumes.increment();
+            
+            int lastSequence = message.getData() instanceof Integer ? (Integer) message.getData() : -1;
+            Game game = session.getGame();
+            String welcome = "Welcome back, " + username + "!";
+            if (game == null && lastSequence >= 0) {
+                welcome += " Your game ended while you were away.";
+            }
+            sendMessage(new Message(Message.MessageType.RESUME, "SERVER", welcome,
+                    game == null ? 0 : game.playerNumber(session)));
+            if (game != null) {
+                Session player = session;
+                dispatch(game, () -> catchUp(game, player, lastSequence));
             }
+            serverLog.info("{} resumed their session from move {}", username, lastSequence);
         }
         
         // Handle game request
@@ -122,81 +1194,76 @@ public class Server {
                         "You must login first!"));
                 return;
             }
+            if (draining) {
+                sendMessage(new Message(Message.MessageType.CHAT, "SERVER", DRAINING_NOTICE));
+                return;
+            }
+            if (Message.VS_COMPUTER.equals(message.getContent())) {
+                handleComputerGameRequest();
+                return;
+            }
             
-            // If player is already in a game, ignore the request
-            if (playerPairings.containsKey(username)) {
+            switch (matchmaker.request(session)) {
+                case ALREADY_IN_GAME:
+                    // If player is already in a game, ignore the request
+                    sendMessage(new Message(Message.MessageType.CHAT, "SERVER", 
+                            "You are already in a game!"));
+                    break;
+                case CANCELLED:
+                    // Player was waiting, so this request cancels it
+                    sendMessage(new Message(Message.MessageType.CHAT, "SERVER", 
+                            "Game request canceled."));
+                    break;
+                case QUEUED:
+                    // The matchmaker starts the game once it finds an opponent
+                    sendMessage(new Message(Message.MessageType.CHAT, "SERVER", 
+                            "Waiting for an opponent..."));
+                    serverLog.info("{} is waiting for a game", username);
+                    break;
+                default:
+                    break;
+            }
+        }
+        
+        // Start a game against a server bot right away, if the bot pool has room
+        private void handleComputerGameRequest() {
+            if (session.getGame() != null) {
                 sendMessage(new Message(Message.MessageType.CHAT, "SERVER", 
                         "You are already in a game!"));
                 return;
             }
-            
-            // If player is waiting, remove from waiting list (cancel request)
-            if (waitingPlayers.containsValue(username)) {
-                waitingPlayers.remove(username);
+            if (!botPool.admitGame()) {
                 sendMessage(new Message(Message.MessageType.CHAT, "SERVER", 
-                        "Game request canceled."));
+                        "All computer opponents are busy. Please try again later."));
                 return;
             }
             
-            // Check if there are other players waiting
-            if (!waitingPlayers.isEmpty()) {
-                // Get first waiting player
-                String opponent = waitingPlayers.keySet().iterator().next();
-                waitingPlayers.remove(opponent);
-                
-                // Create game pairing
-                playerPairings.put(username, opponent);
-                playerPairings.put(opponent, username);
-                
-                // Create new game board
-                GameBoard gameBoard = new GameBoard();
-                gameBoards.put(username, gameBoard);
-                gameBoards.put(opponent, gameBoard);
-                
-                // Notify both players
-                ClientThread opponentClient = userClientMap.get(opponent);
-                
-                // First player to request is player 1, second player is player 2
-                sendMessage(new Message(Message.MessageType.GAME_STARTED, "SERVER", 
-                        "Game started against " + opponent + ". You are Player 1 (Red).", 1));
-                opponentClient.sendMessage(new Message(Message.MessageType.GAME_STARTED, "SERVER", 
-                        "Game started against " + username + ". You are Player 2 (Yellow).", 2));
-                
-                log("Player 1: " + username + ", Player 2: " + opponent);
-                
-                // Send initial game state
-                sendGameState(username);
-                sendGameState(opponent);
-                
-                log("Game started between " + username + " and " + opponent);
-            } else {
-                // No other players waiting, add to waiting list
-                waitingPlayers.put(username, username);
+            // A computer game replaces any pending request for a human opponent
+            matchmaker.cancel(session);
+            Game game = registry.createGame(session, new Session(BOT_NAME, new BotConnection()));
+            if (game == null) {
+                botPool.releaseGame();
                 sendMessage(new Message(Message.MessageType.CHAT, "SERVER", 
-                        "Waiting for an opponent..."));
-                log(username + " is waiting for a game");
+                        "You are already in a game!"));
+                return;
             }
+            serverLog.info("{} is playing against the computer", username);
+            dispatch(game, () -> startGame(game));
         }
         
         // Handle game move
         private void handleGameMove(Message message) {
-            log("Received game move from " + username);
+            serverLog.debug("Received game move from {}", username);
             
-            if (!loggedIn || !playerPairings.containsKey(username)) {
-                log("Move rejected: User not logged in or not in a game");
+            Game game = loggedIn ? session.getGame() : null;
+            if (game == null) {
+                serverLog.debug("Move rejected: User not logged in or not in a game");
                 return;
             }
             
-            String opponent = playerPairings.get(username);
-            GameBoard gameBoard = gameBoards.get(username);
-            
-            log("Game state - Current player: " + gameBoard.getCurrentPlayer() + 
-                ", Player: " + username + ", Opponent: " + opponent);
-            
             // Extract move (column)
             Object moveData = message.getData();
-            log("Move data type: " + (moveData != null ? moveData.getClass().getName() : "null"));
-            log("Move data: " + moveData);
+            serverLog.trace("Move data: {}", moveData);
             
             Integer column = null;
             try {
@@ -206,199 +1273,115 @@ public class Server {
                     column = Integer.parseInt((String) moveData);
                 }
             } catch (Exception e) {
-                log("Error parsing column: " + e.getMessage());
+                serverLog.debug("Error parsing column: {}", e.getMessage());
             }
             
-            log("Parsed column: " + column);
+            serverLog.trace("Parsed column: {}", column);
             
             if (column == null || column < 0 || column >= GameBoard.getCols()) {
-                log("Invalid column: " + column);
+                serverLog.debug("Invalid column: {}", column);
                 return;
             }
             
-            // Make the move
-            boolean moveSuccess = gameBoard.makeMove(column);
-            log("Move success: " + moveSuccess);
-            
-            if (moveSuccess) {
-                // Get board state after the move
-                log("Board state after move:");
-                int[][] board = gameBoard.getBoard();
-                for (int r = 0; r < GameBoard.getRows(); r++) {
-                    StringBuilder rowStr = new StringBuilder();
-                    for (int c = 0; c < GameBoard.getCols(); c++) {
-                        rowStr.append(board[r][c]).append(" ");
-                    }
-                    log("Row " + r + ": " + rowStr.toString());
-                }
-                
-                // Create a simple BoardState object instead of sending the whole GameBoard
-                int[][] boardCopy = new int[GameBoard.getRows()][GameBoard.getCols()];
-                int[][] originalBoard = gameBoard.getBoard();
-                
-                // Make a deep copy of the board
-                for (int r = 0; r < GameBoard.getRows(); r++) {
-                    for (int c = 0; c < GameBoard.getCols(); c++) {
-                        boardCopy[r][c] = originalBoard[r][c];
-                    }
-                }
-                
-                // Create a BoardState object with the current game state
-                BoardState boardState = new BoardState(
-                    boardCopy,
-                    gameBoard.getCurrentPlayer(),
-                    gameBoard.getWinner(),
-                    gameBoard.isGameOver()
-                );
-                
-                // Get clients for both players
-                ClientThread player1 = userClientMap.get(username);
-                ClientThread player2 = userClientMap.get(opponent);
-                
-                if (player1 != null && player2 != null) {
-                    // Send direct game state updates to both players
-                    log("Sending game state to player 1: " + username);
-                    
-                    try {
-                        Message stateMsg = new Message(Message.MessageType.GAME_STATE, "SERVER", 
-                            "Game state updated", boardState);
-                        player1.sendMessage(stateMsg);
-                        player2.sendMessage(stateMsg);
-                        
-                        log("Game state sent to both players. Current player: " + boardState.getCurrentPlayer());
-                    } catch (Exception e) {
-                        log("Error sending game state: " + e.getMessage());
-                        e.printStackTrace();
-                    }
-                } else {
-                    log("ERROR: One or both players not found in userClientMap!");
-                    if (player1 == null) log("Player 1 (" + username + ") is null");
-                    if (player2 == null) log("Player 2 (" + opponent + ") is null");
-                }
-                
-                // Check if game is over
-                if (gameBoard.isGameOver()) {
-                    handleGameOver(username, opponent, gameBoard);
-                }
-            }
+            // Applied on the game's shard, in order with everything else that happens to the game
+            Session player = session;
+            int move = column;
+            dispatch(game, () -> processMove(game, player, move));
         }
         
-        // Send game state to a player
-        private void sendGameState(String player) {
-            ClientThread playerClient = userClientMap.get(player);
-            GameBoard gameBoard = gameBoards.get(player);
-            
-            if (playerClient != null && gameBoard != null) {
-                try {
-                    log("Sending game state to " + player + ": Current player=" + gameBoard.getCurrentPlayer());
-                    
-                    // Log the current board state
-                    int[][] board = gameBoard.getBoard();
-                    for (int r = 0; r < GameBoard.getRows(); r++) {
-                        StringBuilder row = new StringBuilder();
-                        for (int c = 0; c < GameBoard.getCols(); c++) {
-                            row.append(board[r][c]).append(" ");
-                        }
-                        log("Board row " + r + ": " + row.toString());
-                    }
-                    
-                    // Create a deep copy of the board data
-                    int[][] boardCopy = new int[GameBoard.getRows()][GameBoard.getCols()];
-                    for (int r = 0; r < GameBoard.getRows(); r++) {
-                        for (int c = 0; c < GameBoard.getCols(); c++) {
-                            boardCopy[r][c] = board[r][c];
-                        }
-                    }
-                    
-                    // Create a BoardState with the current state
-                    BoardState boardState = new BoardState(
-                        boardCopy,
-                        gameBoard.getCurrentPlayer(),
-                        gameBoard.getWinner(),
-                        gameBoard.isGameOver()
-                    );
-                    
-                    // Send the BoardState object
-                    playerClient.sendMessage(new Message(Message.MessageType.GAME_STATE, "SERVER", 
-                            "Game state updated", boardState));
-                    
-                    log("Game state sent successfully to " + player);
-                } catch (Exception e) {
-                    log("Error sending game state: " + e.getMessage());
-                    e.printStackTrace();
+        // Send a fresh snapshot to a client that missed move events
+        private void handleResync(Message message) {
+            Game game = loggedIn ? session.getGame() : null;
+            if (game == null) {
+                Game watched = loggedIn ? session.getWatching() : null;
+                if (watched != null && watched.getAudience() != null) {
+                    watched.getAudience().resync(session);
                 }
-            } else {
-                log("Cannot send game state - playerClient or gameBoard is null");
+                return;
             }
+            
+            serverLog.info("Resync requested by {}", username);
+            Session player = session;
+            dispatch(game, () -> sendGameState(game, player));
         }
         
-        // Handle game over
-        private void handleGameOver(String player1, String player2, GameBoard gameBoard) {
-            ClientThread client1 = userClientMap.get(player1);
-            ClientThread client2 = userClientMap.get(player2);
+        // Score every column of the player's current game
+        private void handleAnalyze(Message message) {
+            Game game = loggedIn ? session.getGame() : null;
+            if (game == null) {
+                sendMessage(new Message(Message.MessageType.CHAT, "SERVER", 
+                        "Start a game to get a hint."));
+                return;
+            }
             
-            String resultMessage;
-            if (gameBoard.getWinner() == 1) {
-                resultMessage = player1 + " wins!";
-            } else if (gameBoard.getWinner() == 2) {
-                resultMessage = player2 + " wins!";
-            } else {
-                resultMessage = "Game ended in a draw!";
+            // Read the position on the game's shard; the search itself runs on the analysis threads
+            Session player = session;
+            dispatch(game, () -> analyzePosition(game, player));
+        }
+        
+        // Watch a game named by its id or one of its players; an empty request stops watching
+        private void handleSpectate(Message message) {
+            if (!loggedIn) {
+                sendMessage(new Message(Message.MessageType.CHAT, "SERVER", 
+                        "You must login first!"));
+                return;
             }
+            if (session.getGame() != null) {
+                sendMessage(new Message(Message.MessageType.CHAT, "SERVER", 
+                        "You can't watch a game while playing one."));
+                return;
+            }
+            stopWatching(session);
             
-            // Send game over message to both players
-            Message gameOverMsg = new Message(Message.MessageType.GAME_OVER, "SERVER", resultMessage, gameBoard.getWinner());
-            client1.sendMessage(gameOverMsg);
-            client2.sendMessage(gameOverMsg);
+            String target = message.getContent() == null ? "" : message.getContent().trim();
+            if (target.isEmpty()) {
+                sendMessage(new Message(Message.MessageType.SPECTATE, "SERVER", 
+                        "Not watching any game. " + describeGames()));
+                return;
+            }
+            Game game = null;
+            Session named = registry.getSession(target);
+            if (named != null) {
+                game = named.getGame();
+            } else if (target.chars().allMatch(Character::isDigit) && target.length() < 19) {
+                game = registry.getGame(Long.parseLong(target));
+            }
+            if (game == null) {
+                sendMessage(new Message(Message.MessageType.CHAT, "SERVER", 
+                        "No game found for " + target + ". " + describeGames()));
+                return;
+            }
             
-            log("Game over: " + resultMessage);
+            // The snapshot is taken on the game's shard, in order with its moves
+            Session spectator = session;
+            Game watched = game;
+            dispatch(watched, () -> processSpectate(watched, spectator));
         }
         
         // Handle play again request
         private void handlePlayAgain(Message message) {
-            if (!loggedIn || !playerPairings.containsKey(username)) {
+            Game game = loggedIn ? session.getGame() : null;
+            if (game == null) {
+                return;
+            }
+            if (draining) {
+                sendMessage(new Message(Message.MessageType.CHAT, "SERVER", DRAINING_NOTICE));
                 return;
             }
             
-            String opponent = playerPairings.get(username);
-            GameBoard gameBoard = gameBoards.get(username);
-            
-            // Reset the game board
-            gameBoard.resetGame();
-            
-            // Notify both players
-            ClientThread opponentClient = userClientMap.get(opponent);
-            sendMessage(new Message(Message.MessageType.CHAT, "SERVER", "New game started!"));
-            opponentClient.sendMessage(new Message(Message.MessageType.CHAT, "SERVER", "New game started!"));
-            
-            // Send initial game state
-            sendGameState(username);
-            sendGameState(opponent);
-            
-            log("New game started between " + username + " and " + opponent);
+            Session player = session;
+            dispatch(game, () -> processPlayAgain(game, player));
         }
         
         // Handle quit request
         private void handleQuit(Message message) {
-            if (loggedIn && playerPairings.containsKey(username)) {
-                String opponent = playerPairings.get(username);
-                ClientThread opponentClient = userClientMap.get(opponent);
-                
-                // Notify opponent
-                if (opponentClient != null) {
-                    opponentClient.sendMessage(new Message(Message.MessageType.CHAT, "SERVER", 
-                            username + " has left the game."));
-                    
-                    // Remove game pairings and boards
-                    playerPairings.remove(opponent);
-                    gameBoards.remove(opponent);
-                }
-                
-                playerPairings.remove(username);
-                gameBoards.remove(username);
-                
-                log(username + " has quit their game");
+            if (!loggedIn) {
+                return;
             }
+            stopWatching(session);
+            
+            // Only one of the two players gets to end the game
+            leaveGame(session);
         }
         
         // Handle chat message
@@ -408,94 +1391,325 @@ public class Server {
             }
             
             // If player is in a game, send chat to both the player and their opponent
-            if (playerPairings.containsKey(username)) {
-                String opponent = playerPairings.get(username);
-                ClientThread opponentClient = userClientMap.get(opponent);
-                
+            Game game = session.getGame();
+            if (game != null) {
                 // Send to sender (self) too so they can see their own messages
-                sendMessage(message);
+                SharedFrame frame = new SharedFrame(message);
+                sendFrame(frame);
                 
                 // Send to opponent
-                if (opponentClient != null) {
-                    opponentClient.sendMessage(message);
-                }
+                game.opponentOf(session).sendFrame(frame);
             } else {
                 // Otherwise, broadcast to all including self
                 broadcastMessage(message, null);
             }
             
-            log("Chat: " + message.toString());
+            serverLog.info("Chat: {}", message);
+        }
+
+        // Dispatch one message from this client to its handler
+        protected void handleMessage(Message message) {
+            long start = System.nanoTime();
+            try {
+                switch (message.getType()) {
+                    case LOGIN:
+                        handleLogin(message);
+                        break;
+                    case CHAT:
+                        handleChat(message);
+                        break;
+                    case GAME_REQUEST:
+                        handleGameRequest(message);
+                        break;
+                    case GAME_MOVE:
+                        handleGameMove(message);
+                        break;
+                    case PLAY_AGAIN:
+                        handlePlayAgain(message);
+                        break;
+                    case QUIT:
+                        handleQuit(message);
+                        break;
+                    case RESYNC_REQUEST:
+                        handleResync(message);
+                        break;
+                    case ANALYZE:
+                        handleAnalyze(message);
+                        break;
+                    case SPECTATE:
+                        handleSpectate(message);
+                        break;
+                    case RESUME:
+                        handleResume(message);
+                        break;
+                    default:
+                        break;
+                }
+            } finally {
+                LatencyRecorder timer = handleTimes[message.getType().ordinal()];
+                if (timer != null) {
+                    timer.record(System.nanoTime() - start);
+                }
+            }
+        }
+        
+        // Clean up after the connection is lost
+        protected void handleDisconnect() {
+            // Handle client disconnection
+            serverLog.info("Client disconnected: {}", username);
+            
+            if (loggedIn && config.getSessionGraceSeconds() > 0 && !stopping) {
+                // Hold on to the session in case the player comes back; -1 if another connection took it over
+                int detachment = session.detach(this);
+                if (detachment > 0) {
+                    holdSession(session, detachment);
+                }
+            } else if (loggedIn && !session.isClosed()) {
+                endSession(session);
+            }
+            
+            clients.remove(this);
         }
+    }
+
+    // Serves one socket with blocking reads on its own thread; a second thread drains its outbound queue
+    private class ClientThread extends ClientConnection implements Runnable {
+        private static final int MAX_WRITE_BATCH = 64;
+        
+        private final Socket connection;
+        private final byte[] consumed;       // bytes already read by the NIO transport, if any
+        private final OutboundQueue<Object> outbound =
+                new OutboundQueue<>(() -> outboundQueueLimit, config.getOverflowPolicy());
+        private ObjectInputStream in;
+        private ObjectOutputStream out;
+        private DataOutputStream framedOut;
+        private volatile MessageCodec codec; // null for legacy object-stream clients
+        private volatile boolean ready;      // handshake done, messages may be queued
+        private int protocolVersion;
+        private Thread writer;
 
+        ClientThread(Socket socket, byte[] consumed) {
+            this.connection = socket;
+            this.consumed = consumed;
+        }
+        
+        // Queue a message for this client; the writer thread puts it on the wire
         @Override
-        public void run() {
+        protected void enqueue(SharedFrame frame) {
+            if (!ready) {
+                return; // Still handshaking; nothing can be written yet
+            }
+            Message message = frame.getMessage();
             try {
-                connection.setTcpNoDelay(true);
-                out = new ObjectOutputStream(connection.getOutputStream());
-                in = new ObjectInputStream(connection.getInputStream());
-                
-                sendMessage(new Message(Message.MessageType.CHAT, "SERVER", 
-                        "Welcome! Please log in with a unique username."));
+                // Framed clients reuse the shared bytes; legacy ones are serialized on the writer's object stream
+                Object item = (codec != null) ? frame.frameFor(protocolVersion) : message;
+                OutboundQueue.Result result = outbound.offer(item, frame.isDroppable());
                 
+                if (result == OutboundQueue.Result.OVERFLOW) {
+                    serverLog.warn("Outbound queue full for {}; disconnecting slow client", username);
+                    closeConnection();
+                } else if (result == OutboundQueue.Result.DROPPED) {
+                    serverLog.debug("Dropped {} for slow client {}", message.getType(), username);
+                } else {
+                    serverLog.trace("Message sent to {}: {}", username, message.getType());
+                }
+            } catch (IOException e) {
+                serverLog.error("Error sending message to client {}", username, e);
+            }
+        }
+
+        @Override
+        public boolean supportsMoveEvents() {
+            return codec != null && WireProtocol.supportsMoveEvents(protocolVersion);
+        }
+        
+        @Override
+        public int getQueuedFrames() {
+            return outbound.size();
+        }
+        
+        @Override
+        public void close() {
+            closeConnection();
+        }
+        
+        // Write queued messages, flushing once per batch of whatever piled up meanwhile
+        private void writeLoop() {
+            List<Object> batch = new ArrayList<>(MAX_WRITE_BATCH);
+            try {
                 while (true) {
-                    try {
-                        Message message = (Message) in.readObject();
-                        
-                        switch (message.getType()) {
-                            case LOGIN:
-                                handleLogin(message);
-                                break;
-                            case CHAT:
-                                handleChat(message);
-                                break;
-                            case GAME_REQUEST:
-                                handleGameRequest(message);
-                                break;
-                            case GAME_MOVE:
-                                handleGameMove(message);
-                                break;
-                            case PLAY_AGAIN:
-                                handlePlayAgain(message);
-                                break;
-                            case QUIT:
-                                handleQuit(message);
-                                break;
-                            default:
-                                break;
+                    outbound.takeBatch(batch, MAX_WRITE_BATCH);
+                    if (codec != null) {
+                        for (Object item : batch) {
+                            ByteBuffer frame = (ByteBuffer) item;
+                            framedOut.write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
                         }
-                    } catch (ClassNotFoundException e) {
-                        log("Unknown object received from client: " + e.getMessage());
+                        framedOut.flush();
+                    } else {
+                        for (Object message : batch) {
+                            out.writeObject(message);
+                        }
+                        out.flush();
+                        out.reset(); // Reset the cache to avoid reference problems
                     }
+                    batch.clear();
                 }
+            } catch (InterruptedException e) {
+                // Connection is shutting down
+            } catch (IOException e) {
+                serverLog.warn("Error sending message to client {}: {}", username, e.getMessage());
+                closeConnection();
+            }
+        }
+        
+        // Start the writer once the output stream is ready
+        private void startWriter() {
+            writer = connectionThreads.newThread(this::writeLoop);
+            writer.start();
+            ready = true;
+        }
+        
+        // Closing the socket also ends the blocked read, which runs the normal disconnect cleanup
+        private void closeConnection() {
+            try {
+                connection.close();
             } catch (IOException e) {
-                // Handle client disconnection
-                log("Client disconnected: " + username);
+                serverLog.warn("Error closing connection: {}", e.getMessage());
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                connection.setTcpNoDelay(true);
+                InputStream raw = connection.getInputStream();
+                if (consumed != null) {
+                    raw = new SequenceInputStream(new ByteArrayInputStream(consumed), raw);
+                }
+                BufferedInputStream input = new BufferedInputStream(raw);
+                DataInputStream dataIn = new DataInputStream(input);
                 
-                if (loggedIn) {
-                    // Clean up resources
-                    userClientMap.remove(username);
-                    
-                    // If in a game, notify opponent
-                    handleQuit(new Message(Message.MessageType.QUIT, username, "quit"));
-                    
-                    // If waiting for a game, remove from waiting list
-                    waitingPlayers.remove(username);
+                // Peek at the first bytes to tell legacy object streams from framed clients
+                input.mark(2);
+                int header = dataIn.readUnsignedShort();
+                input.reset();
+                
+                if (header == WireProtocol.LEGACY_STREAM_MAGIC) {
+                    out = new ObjectOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+                    out.flush();
+                    in = new ObjectInputStream(input);
+                    startWriter();
+                    sendWelcome();
                     
-                    // Notify all clients
-                    broadcastMessage(new Message(Message.MessageType.CHAT, "SERVER", 
-                            username + " has disconnected."), null);
+                    while (true) {
+                        try {
+                            handleMessage((Message) in.readObject());
+                        } catch (ClassNotFoundException e) {
+                            serverLog.warn("Unknown object received from client: {}", e.getMessage());
+                        }
+                    }
                 }
                 
-                clients.remove(this);
+                if (dataIn.readInt() != WireProtocol.MAGIC) {
+                    throw new IOException("Unknown protocol");
+                }
+                int version = WireProtocol.negotiate(dataIn.readInt());
+                framedOut = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+                framedOut.writeInt(WireProtocol.MAGIC);
+                framedOut.writeInt(version);
+                framedOut.flush();
+                codec = WireProtocol.codecFor(version);
+                protocolVersion = version;
+                startWriter();
+                sendWelcome();
+                
+                while (true) {
+                    byte[] frame = WireProtocol.readFrame(dataIn);
+                    handleMessage(codec.decode(frame, 0, frame.length));
+                }
+            } catch (IOException e) {
+                // The connection dropped or was closed
+            } catch (RuntimeException e) {
+                serverLog.error("Error handling a message from {}; closing the connection", username, e);
+            } finally {
+                ready = false;
+                handleDisconnect();
+                if (writer != null) {
+                    writer.interrupt();
+                }
+                outbound.clear();
+                closeConnection();
             }
         }
     }
+
+    // Client served by one of the NIO event loops
+    private class NioClient extends ClientConnection {
+        private final NioTransport.NioChannel channel;
+
+        NioClient(NioTransport.NioChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public boolean supportsMoveEvents() {
+            return WireProtocol.supportsMoveEvents(channel.getProtocolVersion());
+        }
+        
+        @Override
+        public int getQueuedFrames() {
+            return channel.getOutboundQueueSize();
+        }
+        
+        @Override
+        public void close() {
+            channel.close();
+        }
+
+        @Override
+        protected void enqueue(SharedFrame frame) {
+            try {
+                channel.send(frame);
+                serverLog.trace("Message sent to {}: {}", username, frame.getMessage().getType());
+            } catch (IOException e) {
+                serverLog.warn("Error sending message to client {}: {}", username, e.getMessage());
+            }
+        }
+    }
+
+    // Bridges event-loop callbacks to the session handlers
+    private class NioListener implements NioTransport.Listener {
+        @Override
+        public void onOpen(NioTransport.NioChannel channel) {
+            NioClient client = new NioClient(channel);
+            channel.attach(client);
+            clients.add(client);
+            client.sendWelcome();
+            serverLog.info("Client connected. Total clients: {}", clients.size());
+        }
+
+        @Override
+        public void onMessage(NioTransport.NioChannel channel, Message message) {
+            ((NioClient) channel.attachment()).handleMessage(message);
+        }
+
+        @Override
+        public void onClose(NioTransport.NioChannel channel) {
+            ((NioClient) channel.attachment()).handleDisconnect();
+        }
+
+        @Override
+        public void onLegacyConnection(SocketChannel channel, byte[] consumed) {
+            startClientThread(new ClientThread(channel.socket(), consumed));
+        }
+    }
     
-    // Broadcast message to all clients except the sender
-    private void broadcastMessage(Message message, ClientThread exclude) {
-        for (ClientThread client : clients) {
+    // Broadcast message to all clients except the sender, encoding it once per protocol version
+    private void broadcastMessage(Message message, ClientConnection exclude) {
+        SharedFrame frame = new SharedFrame(message);
+        for (ClientConnection client : clients) {
             if (client != exclude) {
-                client.sendMessage(message);
+                client.sendFrame(frame);
             }
         }
     }
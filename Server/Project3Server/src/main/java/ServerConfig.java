@@ -0,0 +1,302 @@
+import java.util.Properties;
+
+/**
+ * Startup settings for the server, read from system properties
+ * (e.g. -Dconnect4.transport=nio) or from GuiServer's --key=value arguments.
+ */
+public class ServerConfig {
+    public enum BotEngine {
+        SOLVER,     // alpha-beta search with the opening book
+        MCTS        // Monte Carlo Tree Search, strength set by its playout budget
+    }
+
+    public enum Transport {
+        PLATFORM,   // one platform thread per connection
+        VIRTUAL,    // one virtual thread per connection (Java 21+)
+        NIO         // selector-based event loops
+    }
+
+    private final int port;
+    private final Transport transport;
+    private final int eventLoopThreads;
+    private final int outboundQueueLimit;
+    private final OutboundQueue.OverflowPolicy overflowPolicy;
+    private final int gameShards;
+    private final int turnTimeoutSeconds;
+    private final long matchTickMillis;
+    private final int skillWindow;
+    private final int skillWindowGrowth;
+    private final int skillWindowMax;
+    private final LogLevel logLevel;
+    private final String logFile;
+    private final int logBufferSize;
+    private final int guiLogLines;
+    private final int botThreads;
+    private final long botMoveMillis;
+    private final int botMaxDepth;
+    private final int botMinDepth;
+    private final int botMaxGames;
+    private final String botBook;
+    private final BotEngine botEngine;
+    private final long botPlayouts;
+    private final int botMctsThreads;
+    private final int solverThreads;
+    private final int analysisThreads;
+    private final int analysisCacheSize;
+    private final long analysisMillis;
+    private final int spectateThreads;
+    private final int spectateBacklog;
+    private final String journalDir;
+    private final int journalSegmentBytes;
+    private final long journalSyncMillis;
+    private final int journalSyncRecords;
+    private final int journalResumeSeconds;
+    private final int sessionGraceSeconds;
+    private final String metricsHost;
+    private final int metricsPort;
+    private final String metricsFile;
+    private final long metricsFileSeconds;
+    private final boolean jmxEnabled;
+
+    public ServerConfig(Properties props) {
+        this.port = Integer.parseInt(props.getProperty("connect4.port", "5555"));
+        this.transport = Transport.valueOf(
+                props.getProperty("connect4.transport", "platform").trim().toUpperCase());
+        this.eventLoopThreads = Integer.parseInt(props.getProperty("connect4.eventLoops",
+                Integer.toString(Runtime.getRuntime().availableProcessors())));
+        this.outboundQueueLimit = Integer.parseInt(props.getProperty("connect4.outbound.limit", "1024"));
+        this.overflowPolicy = OutboundQueue.OverflowPolicy.valueOf(
+                props.getProperty("connect4.outbound.overflow", "drop_chat").trim().toUpperCase());
+        this.gameShards = Integer.parseInt(props.getProperty("connect4.game.shards",
+                Integer.toString(Runtime.getRuntime().availableProcessors())));
+        this.turnTimeoutSeconds = Integer.parseInt(props.getProperty("connect4.game.turnTimeout", "0"));
+        this.matchTickMillis = Long.parseLong(props.getProperty("connect4.match.tickMillis", "50"));
+        this.skillWindow = Integer.parseInt(props.getProperty("connect4.match.skillWindow", "-1"));
+        this.skillWindowGrowth = Integer.parseInt(props.getProperty("connect4.match.windowGrowth", "50"));
+        this.skillWindowMax = Integer.parseInt(props.getProperty("connect4.match.maxWindow", "1000"));
+        this.logLevel = LogLevel.parse(props.getProperty("connect4.log.level", "info"));
+        this.logFile = props.getProperty("connect4.log.file");
+        this.logBufferSize = Integer.parseInt(props.getProperty("connect4.log.buffer", "8192"));
+        this.guiLogLines = Integer.parseInt(props.getProperty("connect4.log.guiLines", "2000"));
+        this.botThreads = Integer.parseInt(props.getProperty("connect4.bot.threads",
+                Integer.toString(Math.max(1, Runtime.getRuntime().availableProcessors() / 2))));
+        this.botMoveMillis = Long.parseLong(props.getProperty("connect4.bot.moveMillis", "1000"));
+        this.botMaxDepth = Integer.parseInt(props.getProperty("connect4.bot.maxDepth", "42"));
+        this.botMinDepth = Integer.parseInt(props.getProperty("connect4.bot.minDepth", "4"));
+        this.botMaxGames = Integer.parseInt(props.getProperty("connect4.bot.maxGames", "2000"));
+        this.botBook = props.getProperty("connect4.bot.book");
+        this.botEngine = BotEngine.valueOf(props.getProperty("connect4.bot.engine", "solver").trim().toUpperCase());
+        this.botPlayouts = Long.parseLong(props.getProperty("connect4.bot.playouts", "20000"));
+        this.botMctsThreads = Integer.parseInt(props.getProperty("connect4.bot.mctsThreads", "1"));
+        this.solverThreads = Integer.parseInt(props.getProperty("connect4.solver.threads", "1"));
+        this.analysisThreads = Integer.parseInt(props.getProperty("connect4.analysis.threads", "1"));
+        this.analysisCacheSize = Integer.parseInt(props.getProperty("connect4.analysis.cacheSize", "65536"));
+        this.analysisMillis = Long.parseLong(props.getProperty("connect4.analysis.millis", "500"));
+        this.spectateThreads = Integer.parseInt(props.getProperty("connect4.spectate.threads", "1"));
+        this.spectateBacklog = Integer.parseInt(props.getProperty("connect4.spectate.backlog", "32"));
+        this.journalDir = props.getProperty("connect4.journal.dir");
+        this.journalSegmentBytes = Integer.parseInt(props.getProperty("connect4.journal.segmentBytes", "67108864"));
+        this.journalSyncMillis = Long.parseLong(props.getProperty("connect4.journal.syncMillis", "10"));
+        this.journalSyncRecords = Integer.parseInt(props.getProperty("connect4.journal.syncRecords", "4096"));
+        this.journalResumeSeconds = Integer.parseInt(props.getProperty("connect4.journal.resumeSeconds", "300"));
+        this.sessionGraceSeconds = Integer.parseInt(props.getProperty("connect4.session.graceSeconds", "30"));
+        this.metricsHost = props.getProperty("connect4.metrics.host", "127.0.0.1");
+        this.metricsPort = Integer.parseInt(props.getProperty("connect4.metrics.port", "-1"));
+        this.metricsFile = props.getProperty("connect4.metrics.file");
+        this.metricsFileSeconds = Long.parseLong(props.getProperty("connect4.metrics.fileSeconds", "60"));
+        this.jmxEnabled = Boolean.parseBoolean(props.getProperty("connect4.jmx", "true"));
+    }
+
+    public static ServerConfig fromSystemProperties() {
+        return new ServerConfig(System.getProperties());
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public Transport getTransport() {
+        return transport;
+    }
+
+    public int getEventLoopThreads() {
+        return eventLoopThreads;
+    }
+
+    public int getOutboundQueueLimit() {
+        return outboundQueueLimit;
+    }
+
+    public OutboundQueue.OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public int getGameShards() {
+        return gameShards;
+    }
+
+    // Seconds a player may take per move before forfeiting; 0 disables the limit
+    public int getTurnTimeoutSeconds() {
+        return turnTimeoutSeconds;
+    }
+
+    // How often the matchmaker runs a pairing pass
+    public long getMatchTickMillis() {
+        return matchTickMillis;
+    }
+
+    // Rating window that widens with wait time, or anyone-vs-anyone when no window is set
+    public MatchCriteria getMatchCriteria() {
+        if (skillWindow < 0) {
+            return MatchCriteria.ANY;
+        }
+        return new SkillWindowCriteria(skillWindow, skillWindowGrowth, skillWindowMax);
+    }
+
+    public LogLevel getLogLevel() {
+        return logLevel;
+    }
+
+    // File to append log lines to, or null for none
+    public String getLogFile() {
+        return logFile;
+    }
+
+    // Log events that may be queued before new ones are dropped
+    public int getLogBufferSize() {
+        return logBufferSize;
+    }
+
+    // Lines kept in the server window's log view
+    public int getGuiLogLines() {
+        return guiLogLines;
+    }
+
+    // Worker threads that compute bot moves
+    public int getBotThreads() {
+        return botThreads;
+    }
+
+    // Time a bot may take per move, counted from when the move was requested
+    public long getBotMoveMillis() {
+        return botMoveMillis;
+    }
+
+    // Search depth for bot moves when the pool is keeping up
+    public int getBotMaxDepth() {
+        return botMaxDepth;
+    }
+
+    // Search depth that bot moves never drop below, however busy the pool is
+    public int getBotMinDepth() {
+        return botMinDepth;
+    }
+
+    // Bot games that may run at once; further requests are refused
+    public int getBotMaxGames() {
+        return botMaxGames;
+    }
+
+    // Opening book file for bots, or null for none
+    public String getBotBook() {
+        return botBook;
+    }
+
+    public BotEngine getBotEngine() {
+        return botEngine;
+    }
+
+    // Playouts per move for the MCTS engine; fewer playouts make a weaker opponent
+    public long getBotPlayouts() {
+        return botPlayouts;
+    }
+
+    // Threads each MCTS move is spread over (root-parallel trees)
+    public int getBotMctsThreads() {
+        return botMctsThreads;
+    }
+
+    // Threads each solver bot move and each analysis search is spread over; above 1 the ParallelSolver is used
+    public int getSolverThreads() {
+        return solverThreads;
+    }
+
+    // Worker threads that run ANALYZE searches
+    public int getAnalysisThreads() {
+        return analysisThreads;
+    }
+
+    // Positions whose analysis is kept for reuse
+    public int getAnalysisCacheSize() {
+        return analysisCacheSize;
+    }
+
+    // Search time for one analysis, shared across its columns
+    public long getAnalysisMillis() {
+        return analysisMillis;
+    }
+
+    // Threads that deliver game events to spectators
+    public int getSpectateThreads() {
+        return spectateThreads;
+    }
+
+    // Frames a spectator's connection may have queued before it is skipped forward to the latest snapshot
+    public int getSpectateBacklog() {
+        return spectateBacklog;
+    }
+
+    // Directory for the game journal, or null to keep games in memory only
+    public String getJournalDir() {
+        return journalDir;
+    }
+
+    // Size of each memory-mapped journal segment file
+    public int getJournalSegmentBytes() {
+        return journalSegmentBytes;
+    }
+
+    // Longest time between journal fsyncs; 0 leaves writing back to the OS
+    public long getJournalSyncMillis() {
+        return journalSyncMillis;
+    }
+
+    // Journal records that trigger an fsync before syncMillis is up
+    public int getJournalSyncRecords() {
+        return journalSyncRecords;
+    }
+
+    // How long a game recovered from the journal waits for its players to log back in
+    public int getJournalResumeSeconds() {
+        return journalResumeSeconds;
+    }
+
+    // How long a dropped player's session and game are kept for them to resume; 0 ends them straight away
+    public int getSessionGraceSeconds() {
+        return sessionGraceSeconds;
+    }
+
+    // Address the metrics endpoint listens on
+    public String getMetricsHost() {
+        return metricsHost;
+    }
+
+    // Port of the metrics endpoint; -1 turns it off, 0 picks any free port
+    public int getMetricsPort() {
+        return metricsPort;
+    }
+
+    // File the metrics are written to every fileSeconds, or null for none
+    public String getMetricsFile() {
+        return metricsFile;
+    }
+
+    public long getMetricsFileSeconds() {
+        return metricsFileSeconds;
+    }
+
+    // Whether to register the ServerControl MBean for tuning over JMX
+    public boolean isJmxEnabled() {
+        return jmxEnabled;
+    }
+}
@@ -0,0 +1,149 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMX view of a Server: reads its counts and applies setting changes to the
+ * running components. Every change is logged.
+ */
+public class ServerControl implements ServerControlMXBean {
+    private static final long MIN_RATE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Server server;
+
+    // Counts as of the last rate calculation, and the rates it produced
+    private Map<String, Long> lastCounts = new LinkedHashMap<>();
+    private long lastNanos = System.nanoTime();
+    private Map<String, Double> lastRates;
+
+    public ServerControl(Server server) {
+        this.server = server;
+    }
+
+    @Override
+    public int getConnectedClients() {
+        return server.getConnectionCount();
+    }
+
+    @Override
+    public int getLoggedInUsers() {
+        return server.getRegistry().getSessionCount();
+    }
+
+    @Override
+    public int getActiveGames() {
+        return server.getRegistry().getGameCount();
+    }
+
+    @Override
+    public int getWaitingPlayers() {
+        return server.getMatchmaker().getQueueDepth();
+    }
+
+    @Override
+    public long getOldestWaitMillis() {
+        return server.getMatchmaker().getOldestWaitMillis();
+    }
+
+    @Override
+    public Map<String, Long> getMessageCounts() {
+        return server.getMessageCounts();
+    }
+
+    @Override
+    public synchronized Map<String, Double> getMessageRates() {
+        long now = System.nanoTime();
+        long elapsed = now - lastNanos;
+        if (lastRates != null && elapsed < MIN_RATE_NANOS) {
+            return lastRates;
+        }
+        Map<String, Long> counts = server.getMessageCounts();
+        Map<String, Double> rates = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : counts.entrySet()) {
+            long before = lastCounts.getOrDefault(entry.getKey(), 0L);
+            rates.put(entry.getKey(), (entry.getValue() - before) * 1e9 / Math.max(1, elapsed));
+        }
+        lastCounts = counts;
+        lastNanos = now;
+        lastRates = rates;
+        return rates;
+    }
+
+    @Override
+    public String getLogLevel() {
+        return server.getLog().getLevel().name();
+    }
+
+    @Override
+    public void setLogLevel(String level) {
+        LogLevel parsed = LogLevel.parse(level);
+        server.getLog().setLevel(parsed);
+        changed("log level", parsed);
+    }
+
+    @Override
+    public long getMatchTickMillis() {
+        return server.getMatchmaker().getTickMillis();
+    }
+
+    @Override
+    public void setMatchTickMillis(long millis) {
+        server.getMatchmaker().setTickMillis(millis);
+        changed("matchmaking tick", server.getMatchmaker().getTickMillis() + " ms");
+    }
+
+    @Override
+    public int getOutboundQueueLimit() {
+        return server.getOutboundQueueLimit();
+    }
+
+    @Override
+    public void setOutboundQueueLimit(int limit) {
+        server.setOutboundQueueLimit(limit);
+        changed("outbound queue limit", limit);
+    }
+
+    @Override
+    public int getBotThreads() {
+        return server.getBotPool().getThreads();
+    }
+
+    @Override
+    public void setBotThreads(int threads) {
+        server.getBotPool().setThreads(threads);
+        changed("bot threads", server.getBotPool().getThreads());
+    }
+
+    @Override
+    public long getBotMoveMillis() {
+        return server.getBotPool().getMoveMillis();
+    }
+
+    @Override
+    public void setBotMoveMillis(long millis) {
+        if (millis < 1) {
+            throw new IllegalArgumentException("Bot move time must be at least 1 ms");
+        }
+        server.getBotPool().setMoveMillis(millis);
+        changed("bot move time", millis + " ms");
+    }
+
+    @Override
+    public boolean isDraining() {
+        return server.isDraining();
+    }
+
+    @Override
+    public void setDraining(boolean draining) {
+        server.setDraining(draining);
+    }
+
+    @Override
+    public boolean kick(String username) {
+        return server.kick(username);
+    }
+
+    private void changed(String setting, Object value) {
+        server.getLog().warn("JMX: {} set to {}", setting, value);
+    }
+}
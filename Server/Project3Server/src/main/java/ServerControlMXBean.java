@@ -0,0 +1,53 @@
+import java.util.Map;
+
+/**
+ * Live counts and runtime tuning for a running server, registered over JMX as
+ * connect4:type=Server,port=<port> (see ServerControl). Attributes with a
+ * setter can be changed from jconsole or any JMX client without a restart.
+ */
+public interface ServerControlMXBean {
+
+    int getConnectedClients();
+
+    int getLoggedInUsers();
+
+    int getActiveGames();
+
+    int getWaitingPlayers();
+
+    long getOldestWaitMillis();
+
+    // Messages handled since the server started, by type
+    Map<String, Long> getMessageCounts();
+
+    // Messages per second by type, over the time since the rates were last read (at least a second)
+    Map<String, Double> getMessageRates();
+
+    String getLogLevel();
+
+    void setLogLevel(String level);
+
+    long getMatchTickMillis();
+
+    void setMatchTickMillis(long millis);
+
+    int getOutboundQueueLimit();
+
+    void setOutboundQueueLimit(int limit);
+
+    int getBotThreads();
+
+    void setBotThreads(int threads);
+
+    long getBotMoveMillis();
+
+    void setBotMoveMillis(long millis);
+
+    // While draining, games in progress can finish but no new ones start
+    boolean isDraining();
+
+    void setDraining(boolean draining);
+
+    // Disconnect a logged-in user; false if nobody has that name
+    boolean kick(String username);
+}
@@ -0,0 +1,293 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Leveled, asynchronous server log.
+ *
+ * Callers only check the level and drop a small event into a lock-free ring;
+ * "{}" placeholders are filled in later on the log thread, which drains the
+ * ring in batches into the sinks. When the ring is full the event is dropped
+ * and counted, so game and network threads never wait on logging.
+ */
+public class ServerLog {
+    private static final int MAX_BATCH = 256;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    private static final DateTimeFormatter TIME =
+            DateTimeFormatter.ofPattern("HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    // One pending log call; formatted on the log thread
+    private static final class Event {
+        final LogLevel level;
+        final long timeMillis;
+        final String thread;
+        final String template;
+        final Object a;
+        final Object b;
+        final Object c;
+        final int args;            // how many of a, b and c were passed
+        final Throwable error;
+
+        Event(LogLevel level, String template, int args, Object a, Object b, Object c, Throwable error) {
+            this.level = level;
+            this.timeMillis = System.currentTimeMillis();
+            this.thread = Thread.currentThread().getName();
+            this.template = template;
+            this.a = a;
+            this.b = b;
+            this.c = c;
+            this.args = args;
+            this.error = error;
+        }
+    }
+
+    private final RingBuffer<Event> ring;
+    private final List<LogSink> sinks;
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private volatile LogLevel level;
+    private volatile boolean running = true;
+    private final Thread drainer;
+    private long reportedDrops;  // log thread only
+
+    public ServerLog(LogLevel level, int capacity, List<LogSink> sinks) {
+        this.level = level;
+        this.ring = new RingBuffer<>(capacity);
+        this.sinks = new ArrayList<>(sinks);
+        drainer = new Thread(this::drainLoop, "server-log");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    // The configured level and buffer, writing to the given sink plus the log file if one is set
+    public static ServerLog create(ServerConfig config, LogSink sink) {
+        List<LogSink> sinks = new ArrayList<>();
+        sinks.add(sink);
+        if (config.getLogFile() != null) {
+            try {
+                sinks.add(LogSink.file(Paths.get(config.getLogFile())));
+            } catch (IOException e) {
+                System.err.println("Cannot open log file " + config.getLogFile() + ": " + e.getMessage());
+            }
+        }
+        return new ServerLog(config.getLogLevel(), config.getLogBufferSize(), sinks);
+    }
+
+    public LogLevel getLevel() {
+        return level;
+    }
+
+    public void setLevel(LogLevel level) {
+        this.level = level;
+    }
+
+    public boolean isEnabled(LogLevel candidate) {
+        return candidate.compareTo(level) >= 0;
+    }
+
+    public boolean isTraceEnabled() {
+        return isEnabled(LogLevel.TRACE);
+    }
+
+    public boolean isDebugEnabled() {
+        return isEnabled(LogLevel.DEBUG);
+    }
+
+    // Events discarded because the ring was full
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    // Lines handed to the sinks so far
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    public int getQueuedCount() {
+        return ring.size();
+    }
+
+    public void trace(String template, Object a) {
+        if (isEnabled(LogLevel.TRACE)) {
+            enqueue(LogLevel.TRACE, template, 1, a, null, null, null);
+        }
+    }
+
+    public void trace(String template, Object a, Object b) {
+        if (isEnabled(LogLevel.TRACE)) {
+            enqueue(LogLevel.TRACE, template, 2, a, b, null, null);
+        }
+    }
+
+    public void debug(String message) {
+        if (isEnabled(LogLevel.DEBUG)) {
+            enqueue(LogLevel.DEBUG, message, 0, null, null, null, null);
+        }
+    }
+
+    public void debug(String template, Object a) {
+        if (isEnabled(LogLevel.DEBUG)) {
+            enqueue(LogLevel.DEBUG, template, 1, a, null, null, null);
+        }
+    }
+
+    public void debug(String template, Object a, Object b) {
+        if (isEnabled(LogLevel.DEBUG)) {
+            enqueue(LogLevel.DEBUG, template, 2, a, b, null, null);
+        }
+    }
+
+    public void debug(String template, Object a, Object b, Object c) {
+        if (isEnabled(LogLevel.DEBUG)) {
+            enqueue(LogLevel.DEBUG, template, 3, a, b, c, null);
+        }
+    }
+
+    public void info(String message) {
+        if (isEnabled(LogLevel.INFO)) {
+            enqueue(LogLevel.INFO, message, 0, null, null, null, null);
+        }
+    }
+
+    public void info(String template, Object a) {
+        if (isEnabled(LogLevel.INFO)) {
+            enqueue(LogLevel.INFO, template, 1, a, null, null, null);
+        }
+    }
+
+    public void info(String template, Object a, Object b) {
+        if (isEnabled(LogLevel.INFO)) {
+            enqueue(LogLevel.INFO, template, 2, a, b, null, null);
+        }
+    }
+
+    public void info(String template, Object a, Object b, Object c) {
+        if (isEnabled(LogLevel.INFO)) {
+            enqueue(LogLevel.INFO, template, 3, a, b, c, null);
+        }
+    }
+
+    public void warn(String message) {
+        if (isEnabled(LogLevel.WARN)) {
+            enqueue(LogLevel.WARN, message, 0, null, null, null, null);
+        }
+    }
+
+    public void warn(String template, Object a) {
+        if (isEnabled(LogLevel.WARN)) {
+            enqueue(LogLevel.WARN, template, 1, a, null, null, null);
+        }
+    }
+
+    public void warn(String template, Object a, Object b) {
+        if (isEnabled(LogLevel.WARN)) {
+            enqueue(LogLevel.WARN, template, 2, a, b, null, null);
+        }
+    }
+
+    public void error(String message, Throwable error) {
+        enqueue(LogLevel.ERROR, message, 0, null, null, null, error);
+    }
+
+    public void error(String template, Object a, Throwable error) {
+        enqueue(LogLevel.ERROR, template, 1, a, null, null, error);
+    }
+
+    private void enqueue(LogLevel eventLevel, String template, int args, Object a, Object b, Object c,
+                         Throwable error) {
+        if (!running || !ring.offer(new Event(eventLevel, template, args, a, b, c, error))) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    // Stop accepting events, write out what is queued and close the sinks
+    public void close() {
+        running = false;
+        LockSupport.unpark(drainer);
+        try {
+            drainer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (LogSink sink : sinks) {
+            sink.close();
+        }
+    }
+
+    private void drainLoop() {
+        List<String> batch = new ArrayList<>(MAX_BATCH);
+        StringBuilder line = new StringBuilder(256);
+        while (true) {
+            boolean stopping = !running;
+            Event event;
+            while (batch.size() < MAX_BATCH && (event = ring.poll()) != null) {
+                batch.add(format(event, line));
+            }
+            long drops = dropped.get();
+            if (drops != reportedDrops) {
+                batch.add(TIME.format(Instant.now()) + " WARN  [server-log] Dropped "
+                        + (drops - reportedDrops) + " log messages under load");
+                reportedDrops = drops;
+            }
+
+            if (!batch.isEmpty()) {
+                publish(batch);
+                batch.clear();
+            } else if (stopping) {
+                return;
+            } else {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    private void publish(List<String> batch) {
+        for (LogSink sink : sinks) {
+            try {
+                sink.write(batch);
+            } catch (RuntimeException e) {
+                System.err.println("Log sink failed: " + e);
+            }
+        }
+        written.addAndGet(batch.size());
+    }
+
+    // "HH:mm:ss.SSS LEVEL [thread] message", with {} placeholders replaced in order by the arguments
+    // given; a message logged without arguments is written as it is, braces and all
+    private static String format(Event event, StringBuilder line) {
+        line.setLength(0);
+        TIME.formatTo(Instant.ofEpochMilli(event.timeMillis), line);
+        line.append(' ').append(event.level);
+        for (int pad = event.level.name().length(); pad < 5; pad++) {
+            line.append(' ');
+        }
+        line.append(" [").append(event.thread).append("] ");
+
+        Object[] args = { event.a, event.b, event.c };
+        String template = event.template;
+        int next = 0;
+        int start = 0;
+        int mark;
+        while (next < event.args && (mark = template.indexOf("{}", start)) >= 0) {
+            line.append(template, start, mark).append(args[next++]);
+            start = mark + 2;
+        }
+        line.append(template, start, template.length());
+
+        if (event.error != null) {
+            StringWriter trace = new StringWriter();
+            event.error.printStackTrace(new PrintWriter(trace));
+            line.append(System.lineSeparator()).append(trace.toString().trim());
+        }
+        return line.toString();
+    }
+}
@@ -0,0 +1,156 @@
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A logged-in user. Owned by the LobbyRegistry; the game reference is only
+ * changed through the registry so pairing and cleanup stay atomic.
+ *
+ * A session outlives a dropped connection for a while: it is detached, and
+ * messages to it are lost until a new connection presenting its resume token
+ * attaches to it, or until it expires and is logged out.
+ */
+public class Session {
+    public static final int DEFAULT_RATING = 1000;
+
+    // Stands in for the connection while the session is detached
+    private static final Connection DETACHED = new Connection() {
+        @Override
+        public void sendMessage(Message message) {
+        }
+
+        @Override
+        public boolean supportsMoveEvents() {
+            return true;
+        }
+    };
+
+    private final String username;
+    private final String resumeToken;  // null if the session cannot be resumed
+    private volatile Connection connection;  // swapped only under this session's lock
+    private int detachments;  // guarded by this
+    private final AtomicReference<Game> game = new AtomicReference<>();  // null when not in a game
+    private volatile Game watching;  // game being spectated, if any
+    private volatile boolean closed;
+    private volatile int rating = DEFAULT_RATING;
+    private volatile Matchmaker.Ticket ticket;  // latest matchmaking ticket, possibly spent
+
+    public Session(String username, Connection connection) {
+        this(username, connection, null);
+    }
+
+    public Session(String username, Connection connection, String resumeToken) {
+        this.username = username;
+        this.connection = connection;
+        this.resumeToken = resumeToken;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    public String getResumeToken() {
+        return resumeToken;
+    }
+
+    // Compares in constant time, so the token can't be guessed a character at a time
+    boolean matchesToken(String token) {
+        return resumeToken != null && token != null && MessageDigest.isEqual(
+                resumeToken.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public boolean isDetached() {
+        return connection == DETACHED;
+    }
+
+    // Lets go of a dropped connection if it is still this session's; returns the detachment's number, or -1
+    synchronized int detach(Connection from) {
+        if (closed || connection != from) {
+            return -1;
+        }
+        connection = DETACHED;
+        return ++detachments;
+    }
+
+    // Moves the session onto a new connection; returns the one it replaces, or null if the session has ended
+    synchronized Connection attach(Connection to) {
+        if (closed) {
+            return null;
+        }
+        Connection previous = connection;
+        connection = to;
+        return previous;
+    }
+
+    // Closes the session if it is still detached from the given detachment (-1 for any); true if this call closed it
+    synchronized boolean expire(int detachment) {
+        if (closed || connection != DETACHED || (detachment >= 0 && detachment != detachments)) {
+            return false;
+        }
+        closed = true;
+        return true;
+    }
+
+    public void sendMessage(Message message) {
+        connection.sendMessage(message);
+    }
+
+    public void sendFrame(SharedFrame frame) {
+        connection.sendFrame(frame);
+    }
+
+    public Game getGame() {
+        return game.get();
+    }
+
+    // Puts the session into the game unless it is already in one
+    boolean claimGame(Game game) {
+        return this.game.compareAndSet(null, game);
+    }
+
+    // Takes the session out of the game, if it is still the one it is in
+    void releaseGame(Game game) {
+        this.game.compareAndSet(game, null);
+    }
+
+    public Game getWatching() {
+        return watching;
+    }
+
+    void setWatching(Game watching) {
+        this.watching = watching;
+    }
+
+    public int getRating() {
+        return rating;
+    }
+
+    public void setRating(int rating) {
+        this.rating = rating;
+    }
+
+    Matchmaker.Ticket getTicket() {
+        return ticket;
+    }
+
+    void setTicket(Matchmaker.Ticket ticket) {
+        this.ticket = ticket;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    synchronized void close() {
+        closed = true;
+    }
+
+    @Override
+    public String toString() {
+        return username;
+    }
+}
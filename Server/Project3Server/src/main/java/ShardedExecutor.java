@@ -0,0 +1,49 @@
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A fixed set of single-threaded executors. Tasks with the same key always run
+ * on the same shard, one at a time and in submission order, so state owned by
+ * a key needs no locking while different keys still spread across cores.
+ */
+public class ShardedExecutor {
+    private final ScheduledExecutorService[] shards;
+
+    public ShardedExecutor(int shardCount, String namePrefix) {
+        shards = new ScheduledExecutorService[Math.max(1, shardCount)];
+        for (int i = 0; i < shards.length; i++) {
+            String name = namePrefix + i;
+            shards[i] = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public void execute(long key, Runnable task) {
+        shardFor(key).execute(task);
+    }
+
+    public ScheduledFuture<?> schedule(long key, Runnable task, long delay, TimeUnit unit) {
+        return shardFor(key).schedule(task, delay, unit);
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    public void shutdown() {
+        for (ScheduledExecutorService shard : shards) {
+            shard.shutdownNow();
+        }
+    }
+
+    private ScheduledExecutorService shardFor(long key) {
+        // Spread sequential ids so neighbouring games land on different shards
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        return shards[(int) ((mixed >>> 32) % shards.length)];
+    }
+}
@@ -0,0 +1,41 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A message that is encoded at most once per protocol version, however many
+ * clients receive it. Each cached frame already carries its length prefix and
+ * is never modified after it is built, so every writer works on its own
+ * duplicate() and fan-out costs one copy into the socket buffer per client.
+ */
+public final class SharedFrame {
+    private final Message message;
+    private final AtomicReferenceArray<ByteBuffer> frames =
+            new AtomicReferenceArray<>(WireProtocol.HIGHEST_VERSION + 1);
+
+    public SharedFrame(Message message) {
+        this.message = message;
+    }
+
+    public Message getMessage() {
+        return message;
+    }
+
+    public boolean isDroppable() {
+        return message.getType() == Message.MessageType.CHAT;
+    }
+
+    // The length-prefixed frame for a protocol version; callers must not change its contents
+    public ByteBuffer frameFor(int version) throws IOException {
+        ByteBuffer frame = frames.get(version);
+        if (frame == null) {
+            byte[] payload = WireProtocol.codecFor(version).encode(message);
+            ByteBuffer encoded = ByteBuffer.allocate(4 + payload.length);
+            encoded.putInt(payload.length).put(payload).flip();
+            // If two threads race, both encodings are identical; keep whichever landed first
+            frames.compareAndSet(version, null, encoded);
+            frame = frames.get(version);
+        }
+        return frame.duplicate();
+    }
+}
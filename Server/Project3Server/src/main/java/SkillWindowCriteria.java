@@ -0,0 +1,29 @@
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pairs players whose ratings are within a window that widens the longer
+ * either of them has been waiting, so nobody waits forever for a close match.
+ */
+public class SkillWindowCriteria implements MatchCriteria {
+    private final int baseWindow;
+    private final int growthPerSecond;
+    private final int maxWindow;
+
+    public SkillWindowCriteria(int baseWindow, int growthPerSecond, int maxWindow) {
+        this.baseWindow = baseWindow;
+        this.growthPerSecond = growthPerSecond;
+        this.maxWindow = maxWindow;
+    }
+
+    @Override
+    public boolean canMatch(Matchmaker.Ticket a, Matchmaker.Ticket b, long nowNanos) {
+        long waited = Math.max(a.getWaitNanos(nowNanos), b.getWaitNanos(nowNanos));
+        return Math.abs(a.getRating() - b.getRating()) <= windowAfter(waited);
+    }
+
+    // Allowed rating gap once a player has waited this long
+    public long windowAfter(long waitNanos) {
+        long window = baseWindow + growthPerSecond * TimeUnit.NANOSECONDS.toMillis(waitNanos) / 1000;
+        return Math.min(window, maxWindow);
+    }
+}
@@ -0,0 +1,287 @@
+/**
+ * Negamax alpha-beta search for Connect Four.
+ *
+ * Scores follow the usual solver convention: positive when the player to
+ * move wins, and larger the sooner the win comes (a win with your last disc
+ * still scores 1); 0 is a draw, or "unknown" when the search stopped at its
+ * depth limit. Moves are tried best-guess first: the table's remembered move,
+ * then moves that create the most threats, then center columns first.
+ *
+ * Iterative deepening runs depth 1, 2, ... until the position is solved or
+ * the time or node budget runs out; the last completed depth decides the
+ * move. A Solver is single-threaded and keeps its table between searches.
+ */
+public class Solver {
+    private static final int CHECK_INTERVAL = 1 << 12;  // nodes between budget checks
+
+    // Outcome of one search
+    public static final class Result {
+        private final int column;
+        private final int score;
+        private final int depth;
+        private final boolean solved;
+        private final long nodes;
+        private final long nanos;
+
+        Result(int column, int score, int depth, boolean solved, long nodes, long nanos) {
+            this.column = column;
+            this.score = score;
+            this.depth = depth;
+            this.solved = solved;
+            this.nodes = nodes;
+            this.nanos = nanos;
+        }
+
+        public int getColumn() {
+            return column;
+        }
+
+        public int getScore() {
+            return score;
+        }
+
+        // Deepest fully searched depth, in plies
+        public int getDepth() {
+            return depth;
+        }
+
+        // Whether the score is the game-theoretic value rather than a depth-limited guess
+        public boolean isSolved() {
+            return solved;
+        }
+
+        public long getNodes() {
+            return nodes;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public long getNodesPerSecond() {
+            return nanos == 0 ? 0 : nodes * 1_000_000_000L / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return "column " + column + ", score " + score + (solved ? " (solved)" : "") + ", depth " + depth
+                    + ", " + nodes + " nodes, " + getNodesPerSecond() + " nodes/s";
+        }
+    }
+
+    private final TranspositionTable table;
+    private final int[][] moveOrder = new int[Bitboards.CELLS + 1][Bitboards.COLS];   // one buffer per ply
+    private final int[][] moveValue = new int[Bitboards.CELLS + 1][Bitboards.COLS];
+    private long nodes;
+    private long nodeLimit;
+    private long deadline;
+    private boolean aborted;
+
+    public Solver() {
+        this(22);
+    }
+
+    public Solver(int tableBits) {
+        table = new TranspositionTable(tableBits);
+    }
+
+    // Search the board's position for the player to move
+    public Result search(BitboardGameBoard board, long timeBudgetMillis, long nodeBudget) {
+        int mover = board.getCurrentPlayer();
+        long current = board.getDiscs(mover);
+        long mask = current | board.getDiscs(mover == 1 ? 2 : 1);
+        return search(current, mask, board.getMoveCount(), timeBudgetMillis, nodeBudget);
+    }
+
+    // Search a raw position; budgets of 0 or less mean "no limit"
+    public Result search(long current, long mask, int moves, long timeBudgetMillis, long nodeBudget) {
+        return search(current, mask, moves, timeBudgetMillis, nodeBudget, Bitboards.CELLS);
+    }
+
+    // As above, but never deepening past maxDepth plies
+    public Result search(long current, long mask, int moves, long timeBudgetMillis, long nodeBudget, int maxDepth) {
+        long start = System.nanoTime();
+        nodes = 0;
+        aborted = false;
+        nodeLimit = nodeBudget > 0 ? nodeBudget : Long.MAX_VALUE;
+        deadline = timeBudgetMillis > 0 ? start + timeBudgetMillis * 1_000_000L : Long.MAX_VALUE;
+
+        int remaining = Bitboards.CELLS - moves;
+        long possible = Bitboards.possible(mask);
+        long wins = Bitboards.winningCells(current, mask) & possible;
+        if (wins != 0) {
+            int column = Long.numberOfTrailingZeros(wins) / Bitboards.COLUMN_BITS;
+            return new Result(column, (remaining + 1) / 2, 1, true, 1, System.nanoTime() - start);
+        }
+
+        long nonLosing = Bitboards.nonLosingMoves(current, mask);
+        if (nonLosing == 0) {
+            // Every move loses at once; any legal move will do
+            int column = Long.numberOfTrailingZeros(possible) / Bitboards.COLUMN_BITS;
+            return new Result(column, -remaining / 2, 1, true, 1, System.nanoTime() - start);
+        }
+
+        int bestColumn = Long.numberOfTrailingZeros(nonLosing) / Bitboards.COLUMN_BITS;
+        int bestScore = 0;
+        int completedDepth = 0;
+        boolean solved = false;
+        int lastDepth = Math.min(remaining, Math.max(1, maxDepth));
+        for (int depth = 1; depth <= lastDepth && !solved; depth++) {
+            int[] root = searchRoot(current, mask, moves, nonLosing, depth);
+            if (aborted) {
+                break;
+            }
+            bestColumn = root[0];
+            bestScore = root[1];
+            completedDepth = depth;
+            // Depth-limited leaves score 0, so any other score was proven
+            solved = depth >= remaining || bestScore != 0;
+        }
+        return new Result(bestColumn, bestScore, completedDepth, solved, nodes, System.nanoTime() - start);
+    }
+
+    // Best column and its score at one depth
+    private int[] searchRoot(long current, long mask, int moves, long candidates, int depth) {
+        int alpha = -Bitboards.CELLS;
+        int beta = Bitboards.CELLS;
+        int bestColumn = -1;
+        int[] order = orderMoves(current, mask, moves, candidates,
+                TranspositionTable.column(table.get(Bitboards.key(current, mask))));
+        for (int column : order) {
+            if (column < 0) {
+                break;
+            }
+            long next = mask | (mask + Bitboards.bottomMask(column));
+            int score = -negamax(current ^ mask, next, moves + 1, -beta, -alpha, depth - 1);
+            if (aborted) {
+                break;
+            }
+            if (bestColumn < 0 || score > alpha) {
+                alpha = score;
+                bestColumn = column;
+            }
+        }
+        return new int[] { bestColumn, alpha };
+    }
+
+    // Fail-hard negamax; the player to move can never win immediately here
+    private int negamax(long current, long mask, int moves, int alpha, int beta, int depth) {
+        if ((++nodes & (CHECK_INTERVAL - 1)) == 0 && (nodes >= nodeLimit || System.nanoTime() >= deadline)) {
+            aborted = true;
+        }
+        if (aborted) {
+            return alpha;
+        }
+
+        long candidates = Bitboards.nonLosingMoves(current, mask);
+        if (candidates == 0) {
+            return Math.max(alpha, Math.min(beta, -(Bitboards.CELLS - moves) / 2));
+        }
+        if (moves >= Bitboards.CELLS - 2) {
+            return Math.max(alpha, Math.min(beta, 0));  // neither player can make four any more
+        }
+        if (depth == 0) {
+            return Math.max(alpha, Math.min(beta, 0));
+        }
+
+        // Depths beyond the end of the game are all the same search
+        int remaining = Bitboards.CELLS - moves;
+        int effectiveDepth = Math.min(depth, remaining);
+
+        int lowest = -(remaining - 2) / 2;   // we cannot lose before the opponent's next turn
+        if (alpha < lowest) {
+            alpha = lowest;
+            if (alpha >= beta) {
+                return alpha;
+            }
+        }
+        int highest = (remaining - 1) / 2;   // nor win on this move
+        if (beta > highest) {
+            beta = highest;
+            if (alpha >= beta) {
+                return beta;
+            }
+        }
+
+        long key = Bitboards.key(current, mask);
+        int entry = table.get(key);
+        int hashColumn = -1;
+        if (entry != 0) {
+            hashColumn = TranspositionTable.column(entry);
+            if (TranspositionTable.depth(entry) >= effectiveDepth) {
+                int stored = TranspositionTable.score(entry);
+                switch (TranspositionTable.bound(entry)) {
+                    case TranspositionTable.EXACT:
+                        return Math.max(alpha, Math.min(beta, stored));
+                    case TranspositionTable.LOWER:
+                        if (stored >= beta) {
+                            return beta;
+                        }
+                        break;
+                    default:
+                        if (stored <= alpha) {
+                            return alpha;
+                        }
+                        break;
+                }
+            }
+        }
+
+        int originalAlpha = alpha;
+        int bestColumn = -1;
+        for (int column : orderMoves(current, mask, moves, candidates, hashColumn)) {
+            if (column < 0) {
+                break;
+            }
+            long next = mask | (mask + Bitboards.bottomMask(column));
+            int score = -negamax(current ^ mask, next, moves + 1, -beta, -alpha, depth - 1);
+            if (aborted) {
+                return alpha;
+            }
+            if (score >= beta) {
+                table.put(key, beta, effectiveDepth, TranspositionTable.LOWER, column);
+                return beta;
+            }
+            if (score > alpha) {
+                alpha = score;
+                bestColumn = column;
+            }
+        }
+
+        table.put(key, alpha, effectiveDepth, alpha > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER,
+                bestColumn >= 0 ? bestColumn : hashColumn);
+        return alpha;
+    }
+
+    // Candidate columns, best guess first, padded with -1; reuses this ply's buffer
+    private int[] orderMoves(long current, long mask, int moves, long candidates, int hashColumn) {
+        int[] columns = moveOrder[moves];
+        int[] threats = moveValue[moves];
+        int count = 0;
+        for (int column : Bitboards.CENTER_FIRST) {
+            long move = candidates & Bitboards.columnMask(column);
+            if (move == 0) {
+                continue;
+            }
+            // Hash move first; others by threats created, center first on ties (stable insertion)
+            int value = column == hashColumn ? Integer.MAX_VALUE
+                    : Long.bitCount(Bitboards.winningCells(current | move, mask | move));
+            int i = count++;
+            while (i > 0 && threats[i - 1] < value) {
+                columns[i] = columns[i - 1];
+                threats[i] = threats[i - 1];
+                i--;
+            }
+            columns[i] = column;
+            threats[i] = value;
+        }
+        for (int i = count; i < columns.length; i++) {
+            columns[i] = -1;
+        }
+        return columns;
+    }
+
+    public void clear() {
+        table.clear();
+    }
+}
@@ -0,0 +1,43 @@
+/**
+ * Bot that plays from the opening book when the position is in it, and
+ * otherwise runs the alpha-beta Solver until the deadline or depth limit.
+ * With more than one search thread it runs a ParallelSolver instead.
+ */
+public class SolverBot implements Bot {
+    private final OpeningBook book;  // null when no book is configured
+    private final Solver solver;           // null when searching in parallel
+    private final ParallelSolver parallel; // null with one search thread
+
+    public SolverBot(OpeningBook book, int tableBits) {
+        this(book, tableBits, 1);
+    }
+
+    public SolverBot(OpeningBook book, int tableBits, int searchThreads) {
+        this.book = book;
+        this.solver = searchThreads > 1 ? null : new Solver(tableBits);
+        this.parallel = searchThreads > 1 ? new ParallelSolver(searchThreads, tableBits) : null;
+    }
+
+    @Override
+    public int chooseMove(long current, long mask, int moves, long deadlineNanos, int maxDepth) {
+        if (book != null) {
+            Solver.Result entry = book.lookup(current, mask, moves);
+            if (entry != null) {
+                return entry.getColumn();
+            }
+        }
+        // Even a late move gets a millisecond, enough for a shallow search
+        long millis = Math.max(1, (deadlineNanos - System.nanoTime()) / 1_000_000L);
+        Solver.Result result = parallel != null
+                ? parallel.search(current, mask, moves, millis, 0, maxDepth)
+                : solver.search(current, mask, moves, millis, 0, maxDepth);
+        return result.getColumn();
+    }
+
+    @Override
+    public void close() {
+        if (parallel != null) {
+            parallel.shutdown();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+import java.util.Arrays;
+
+/**
+ * Fixed-size transposition table for the solvers, indexed by a hash of the
+ * position key. Each slot holds one packed int (score, searched depth, bound
+ * type and best column) and the key XORed with that int. A newer entry always
+ * replaces the old one in its slot.
+ *
+ * The XOR lets several search threads share the table without locks: if two
+ * writers interleave, the stored key no longer matches its entry and the
+ * slot simply reads as empty.
+ */
+public class TranspositionTable {
+    public static final int EXACT = 1;
+    public static final int LOWER = 2;   // the true score is at least this
+    public static final int UPPER = 3;   // the true score is at most this
+
+    private static final int SCORE_BIAS = 64;
+
+    private final long[] keys;
+    private final int[] entries;
+    private final int shift;
+
+    // 2^bits slots; each costs 12 bytes
+    public TranspositionTable(int bits) {
+        keys = new long[1 << bits];
+        entries = new int[1 << bits];
+        shift = 64 - bits;
+    }
+
+    private int index(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    public void put(long key, int score, int depth, int bound, int column) {
+        int i = index(key);
+        int entry = (score + SCORE_BIAS) | (depth << 7) | (bound << 13) | ((column + 1) << 15);
+        entries[i] = entry;
+        keys[i] = key ^ entry;
+    }
+
+    // The packed entry for the key, or 0 if it is not in the table
+    public int get(long key) {
+        int i = index(key);
+        int entry = entries[i];
+        return (keys[i] ^ entry) == key ? entry : 0;
+    }
+
+    public static int score(int entry) {
+        return (entry & 0x7F) - SCORE_BIAS;
+    }
+
+    public static int depth(int entry) {
+        return (entry >>> 7) & 0x3F;
+    }
+
+    public static int bound(int entry) {
+        return (entry >>> 13) & 0x3;
+    }
+
+    // Best column found when the entry was stored, or -1 if none
+    public static int column(int entry) {
+        return ((entry >>> 15) & 0xF) - 1;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(entries, 0);
+    }
+
+    public int size() {
+        return keys.length;
+    }
+}
@@ -0,0 +1,25 @@
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to virtual threads (Java 21+) without requiring a newer compile target.
+ * The builder API is looked up reflectively so this still runs on older JVMs.
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    // Returns a factory for virtual threads named prefix0, prefix1, ..., or null if the JVM lacks them
+    public static ThreadFactory factory(String prefix) {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method name = builderType.getMethod("name", String.class, long.class);
+            builder = name.invoke(builder, prefix, 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class AnalysisServiceTest {
+
+	private static BitboardGameBoard play(int... columns) {
+		BitboardGameBoard board = new BitboardGameBoard();
+		for (int column : columns) {
+			assertTrue(board.makeMove(column));
+		}
+		return board;
+	}
+
+	private static PositionAnalysis analyze(AnalysisService service, BitboardGameBoard board) throws Exception {
+		return request(service, board).get(10, TimeUnit.SECONDS);
+	}
+
+	private static CompletableFuture<PositionAnalysis> request(AnalysisService service, BitboardGameBoard board) {
+		int mover = board.getCurrentPlayer();
+		long current = board.getDiscs(mover);
+		long mask = current | board.getDiscs(3 - mover);
+		return service.analyze(current, mask, board.getMoveCount());
+	}
+
+	@Test
+	void scoresWinsLossesAndFullColumns() throws Exception {
+		AnalysisService service = new AnalysisService(1, 16, 200);
+		try {
+			// Both players need column 3 to finish the bottom row; player 1 is to move and column 6 is full
+			PositionAnalysis analysis = analyze(service, play(0, 6, 6, 6, 6, 6, 6, 5, 1, 5, 2, 4));
+			assertEquals(12, analysis.getSequence());
+			assertEquals(3, analysis.getBestColumn());
+			assertTrue(analysis.getScore(3) > 0);
+			assertTrue(analysis.isSolved(3));
+			assertEquals(PositionAnalysis.NO_MOVE, analysis.getScore(6));
+			// Anything else lets player 2 win there instead
+			for (int c = 0; c < 6; c++) {
+				if (c != 3) {
+					assertTrue(analysis.getScore(c) < 0, "column " + c);
+					assertTrue(analysis.isSolved(c), "column " + c);
+				}
+			}
+		} finally {
+			service.shutdown();
+		}
+	}
+
+	@Test
+	void parallelSearchAgreesWithTheSingleThreadedOne() throws Exception {
+		AnalysisService serial = new AnalysisService(1, 16, 200);
+		AnalysisService parallel = new AnalysisService(1, 16, 200, 2);
+		try {
+			BitboardGameBoard board = play(0, 6, 6, 6, 6, 6, 6, 5, 1, 5, 2, 4);
+			PositionAnalysis expected = analyze(serial, board);
+			PositionAnalysis actual = analyze(parallel, board);
+			for (int c = 0; c < GameBoard.getCols(); c++) {
+				assertEquals(expected.getScore(c), actual.getScore(c), "column " + c);
+				assertEquals(expected.isSolved(c), actual.isSolved(c), "column " + c);
+			}
+		} finally {
+			serial.shutdown();
+			parallel.shutdown();
+		}
+	}
+
+	@Test
+	void mirrorImagesShareOneEntry() throws Exception {
+		AnalysisService service = new AnalysisService(1, 16, 100);
+		try {
+			PositionAnalysis left = analyze(service, play(0, 1, 1));
+			PositionAnalysis right = analyze(service, play(6, 5, 5));
+			for (int c = 0; c < GameBoard.getCols(); c++) {
+				assertEquals(left.getScore(c), right.getScore(GameBoard.getCols() - 1 - c));
+				assertEquals(left.isSolved(c), right.isSolved(GameBoard.getCols() - 1 - c));
+			}
+			assertEquals(1, service.getMisses());
+			assertEquals(1, service.getHits());
+			assertEquals(1, service.getSize());
+		} finally {
+			service.shutdown();
+		}
+	}
+
+	@Test
+	void concurrentRequestsShareOneSearch() throws Exception {
+		AnalysisService service = new AnalysisService(2, 16, 300);
+		try {
+			List<CompletableFuture<PositionAnalysis>> requests = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				requests.add(request(service, play(3)));
+			}
+			PositionAnalysis first = requests.get(0).get(10, TimeUnit.SECONDS);
+			for (CompletableFuture<PositionAnalysis> request : requests) {
+				assertSame(first, request.get(10, TimeUnit.SECONDS));
+			}
+			assertEquals(1, service.getMisses());
+			assertEquals(7, service.getCoalesced() + service.getHits());
+			assertTrue(service.getCoalesced() > 0);
+		} finally {
+			service.shutdown();
+		}
+	}
+
+	@Test
+	void evictsEntriesThatWereNotReadAgain() throws Exception {
+		AnalysisService service = new AnalysisService(1, 2, 20);
+		try {
+			analyze(service, play(0));
+			analyze(service, play(1));
+			analyze(service, play(0));  // read again, so it survives the next sweep
+			analyze(service, play(2));
+
+			assertEquals(2, service.getSize());
+			assertEquals(1, service.getEvictions());
+			long hits = service.getHits();
+			analyze(service, play(0));
+			assertEquals(hits + 1, service.getHits());
+			analyze(service, play(1));
+			assertEquals(4, service.getMisses());
+		} finally {
+			service.shutdown();
+		}
+	}
+}
@@ -0,0 +1,146 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import org.junit.jupiter.api.Test;
+
+class AudienceTest {
+
+	// Records what it is sent; queued stands in for frames the transport has not written yet
+	private static final class FakeConnection implements Connection {
+		final List<SharedFrame> frames = new ArrayList<>();
+		final boolean events;
+		int queued;
+
+		FakeConnection(boolean events) {
+			this.events = events;
+		}
+
+		@Override
+		public void sendMessage(Message message) {
+			sendFrame(new SharedFrame(message));
+		}
+
+		@Override
+		public void sendFrame(SharedFrame frame) {
+			frames.add(frame);
+		}
+
+		@Override
+		public boolean supportsMoveEvents() {
+			return events;
+		}
+
+		@Override
+		public int getQueuedFrames() {
+			return queued;
+		}
+	}
+
+	// Runs passes only when asked, so each test decides when delivery happens
+	private final Queue<Runnable> passes = new ArrayDeque<>();
+
+	private void runPasses() {
+		while (!passes.isEmpty()) {
+			passes.poll().run();
+		}
+	}
+
+	private static SharedFrame frame(String content) {
+		return new SharedFrame(new Message(Message.MessageType.CHAT, "server", content));
+	}
+
+	@Test
+	void everySpectatorGetsTheSameFrame() {
+		Audience audience = new Audience(passes::add, () -> 32);
+		FakeConnection first = new FakeConnection(true);
+		FakeConnection second = new FakeConnection(true);
+		SharedFrame start = frame("start");
+		audience.add(new Session("a", first), start);
+		audience.add(new Session("b", second), start);
+
+		SharedFrame move = frame("move");
+		audience.publish(move, frame("after move"));
+		// Nothing is sent on the publishing thread
+		assertEquals(1, first.frames.size());
+		assertEquals(1, passes.size());
+		runPasses();
+
+		assertSame(move, first.frames.get(1));
+		assertSame(move, second.frames.get(1));
+	}
+
+	@Test
+	void publishesCoalesceIntoOnePass() {
+		Audience audience = new Audience(passes::add, () -> 32);
+		FakeConnection connection = new FakeConnection(true);
+		audience.add(new Session("a", connection), frame("start"));
+		SharedFrame[] moves = new SharedFrame[5];
+		for (int i = 0; i < moves.length; i++) {
+			moves[i] = frame("move " + i);
+			audience.publish(moves[i], frame("after " + i));
+		}
+		assertEquals(1, passes.size());
+		runPasses();
+
+		assertEquals(6, connection.frames.size());
+		for (int i = 0; i < moves.length; i++) {
+			assertSame(moves[i], connection.frames.get(i + 1));
+		}
+	}
+
+	@Test
+	void backedUpSpectatorSkipsToTheSnapshot() {
+		Audience audience = new Audience(passes::add, () -> 4);
+		FakeConnection slow = new FakeConnection(true);
+		FakeConnection fast = new FakeConnection(true);
+		audience.add(new Session("slow", slow), frame("start"));
+		audience.add(new Session("fast", fast), frame("start"));
+
+		slow.queued = 4;
+		audience.publish(frame("move 1"), frame("after 1"));
+		runPasses();
+		assertEquals(1, slow.frames.size());
+		assertEquals(2, fast.frames.size());
+		assertEquals(1, audience.getSkipped());
+
+		slow.queued = 0;
+		SharedFrame latest = frame("after 2");
+		audience.publish(frame("move 2"), latest);
+		runPasses();
+		// The missed moves are not replayed, only the game as it is now
+		assertEquals(2, slow.frames.size());
+		assertSame(latest, slow.frames.get(1));
+		assertEquals(3, fast.frames.size());
+	}
+
+	@Test
+	void legacyClientsGetSnapshots() {
+		Audience audience = new Audience(passes::add, () -> 32);
+		FakeConnection legacy = new FakeConnection(false);
+		audience.add(new Session("a", legacy), frame("start"));
+		SharedFrame after = frame("after");
+		audience.publish(frame("move"), after);
+		runPasses();
+		assertSame(after, legacy.frames.get(1));
+	}
+
+	@Test
+	void finishDeliversTheLastEventAndEmptiesTheAudience() {
+		Audience audience = new Audience(passes::add, () -> 32);
+		FakeConnection connection = new FakeConnection(true);
+		Session session = new Session("a", connection);
+		audience.add(session, frame("start"));
+		SharedFrame last = frame("left");
+		audience.finish(last);
+		assertTrue(audience.isWatched());
+		runPasses();
+
+		assertSame(last, connection.frames.get(1));
+		assertFalse(audience.isWatched());
+		assertFalse(audience.add(session, frame("again")));
+	}
+}
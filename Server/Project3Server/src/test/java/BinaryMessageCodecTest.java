@@ -0,0 +1,96 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class BinaryMessageCodecTest {
+
+	private final BinaryMessageCodec codec = new BinaryMessageCodec();
+
+	private Message roundTrip(Message message) throws Exception {
+		byte[] bytes = codec.encode(message);
+		return codec.decode(bytes, 0, bytes.length);
+	}
+
+	@Test
+	void moveUsesTwoBytes() throws Exception {
+		Message move = new Message(Message.MessageType.GAME_MOVE, "alice", "3", 3);
+		assertEquals(2, codec.encode(move).length);
+		assertEquals(3, roundTrip(move).getData());
+	}
+
+	@Test
+	void gameStateRoundTrips() throws Exception {
+		GameBoard board = new GameBoard();
+		board.makeMove(3);
+		board.makeMove(3);
+		board.makeMove(0);
+		BoardState state = new BoardState(board.getBoard(), board.getCurrentPlayer(),
+				board.getWinner(), board.isGameOver());
+
+		Message decoded = roundTrip(new Message(Message.MessageType.GAME_STATE, "SERVER",
+				"Game state updated", state));
+		BoardState copy = (BoardState) decoded.getData();
+
+		assertArrayEquals(board.getBoard(), copy.getBoard());
+		assertEquals(board.getCurrentPlayer(), copy.getCurrentPlayer());
+		assertFalse(copy.isGameOver());
+	}
+
+	@Test
+	void moveEventRoundTrips() throws Exception {
+		Message decoded = roundTrip(new Message(Message.MessageType.GAME_MOVE_APPLIED, "SERVER",
+				"Move applied", new MoveEvent(300, 6, 0, 2, 3)));
+		MoveEvent move = (MoveEvent) decoded.getData();
+
+		assertEquals(300, move.getSequence());
+		assertEquals(6, move.getColumn());
+		assertEquals(0, move.getRow());
+		assertEquals(2, move.getPlayer());
+		assertEquals(3, move.getOutcome());
+	}
+
+	@Test
+	void analysisRoundTrips() throws Exception {
+		int[] scores = { -3, 0, 5, 18, PositionAnalysis.NO_MOVE, -18, 0 };
+		Message decoded = roundTrip(new Message(Message.MessageType.ANALYZE, "SERVER",
+				"Position analysis", new PositionAnalysis(12, scores, 0b0101101)));
+		PositionAnalysis analysis = (PositionAnalysis) decoded.getData();
+
+		assertEquals(12, analysis.getSequence());
+		for (int c = 0; c < scores.length; c++) {
+			assertEquals(scores[c], analysis.getScore(c));
+		}
+		assertTrue(analysis.isSolved(0));
+		assertFalse(analysis.isSolved(1));
+		assertEquals(3, analysis.getBestColumn());
+	}
+
+	@Test
+	void chatKeepsUtf8() throws Exception {
+		Message decoded = roundTrip(new Message(Message.MessageType.CHAT, "bób", "gg 🎉"));
+		assertEquals("bób", decoded.getSender());
+		assertEquals("gg 🎉", decoded.getContent());
+	}
+
+	@Test
+	void otherMessagesUseGenericLayout() throws Exception {
+		Message decoded = roundTrip(new Message(Message.MessageType.LOGIN_FAILED, "SERVER", null, "why"));
+		assertEquals(Message.MessageType.LOGIN_FAILED, decoded.getType());
+		assertNull(decoded.getContent());
+		assertEquals("why", decoded.getData());
+	}
+
+	@Test
+	void truncatedFrameIsRejected() {
+		assertThrows(java.io.IOException.class, () -> codec.decode(new byte[] { 8 }, 0, 1));
+	}
+
+	@Test
+	void serializedLengthMustFitTheFrame() {
+		// Generic CHAT frame, null sender and content, serialized data claiming -1 and then 1000 bytes
+		byte[] negative = { (byte) 0x80, 0, 0, 4, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0f };
+		byte[] tooLong = { (byte) 0x80, 0, 0, 4, (byte) 0xe8, 0x07, 1, 2, 3 };
+		assertThrows(java.io.IOException.class, () -> codec.decode(negative, 0, negative.length));
+		assertThrows(java.io.IOException.class, () -> codec.decode(tooLong, 0, tooLong.length));
+	}
+}
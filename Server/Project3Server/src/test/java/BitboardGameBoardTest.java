@@ -0,0 +1,86 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class BitboardGameBoardTest {
+
+	// Plays the same moves on both engines, then undoes them, checking they agree after every step
+	private void playBoth(int[] columns) {
+		GameBoard reference = new GameBoard();
+		BitboardGameBoard bitboard = new BitboardGameBoard();
+		for (int column : columns) {
+			assertEquals(reference.makeMove(column), bitboard.makeMove(column));
+			assertAgree(reference, bitboard);
+		}
+		// Then take every move back again
+		do {
+			assertAgree(reference, bitboard);
+		} while (reference.undoMove() & bitboard.undoMove());
+		assertEquals(0, bitboard.getMoveCount());
+		assertEquals(0, bitboard.getDiscs(1) | bitboard.getDiscs(2));
+	}
+
+	private void assertAgree(GameBoard reference, BitboardGameBoard bitboard) {
+		assertEquals(reference.getCurrentPlayer(), bitboard.getCurrentPlayer());
+		assertEquals(reference.getWinner(), bitboard.getWinner());
+		assertEquals(reference.isGameOver(), bitboard.isGameOver());
+		assertEquals(reference.getMoveCount(), bitboard.getMoveCount());
+		assertEquals(reference.getLastRow(), bitboard.getLastRow());
+		assertArrayEquals(reference.getBoard(), bitboard.getBoard());
+		for (int c = 0; c < GameBoard.getCols(); c++) {
+			assertEquals(reference.canPlay(c), bitboard.canPlay(c));
+			assertEquals(reference.getHeight(c), bitboard.getHeight(c));
+			for (int r = 0; r < GameBoard.getRows(); r++) {
+				assertEquals(reference.getCell(r, c), bitboard.getCell(r, c));
+			}
+		}
+	}
+
+	@Test
+	void matchesGameBoardOnRandomGames() {
+		Random random = new Random(42);
+		for (int game = 0; game < 5000; game++) {
+			int[] columns = new int[60];
+			for (int i = 0; i < columns.length; i++) {
+				columns[i] = random.nextInt(GameBoard.getCols() + 2) - 1;  // includes off-board columns
+			}
+			playBoth(columns);
+		}
+	}
+
+	@Test
+	void detectsEveryDirection() {
+		playBoth(new int[] { 0, 0, 1, 1, 2, 2, 3 });            // horizontal
+		playBoth(new int[] { 4, 5, 4, 5, 4, 5, 4 });            // vertical
+		playBoth(new int[] { 0, 1, 1, 2, 2, 3, 2, 3, 3, 6, 3 }); // diagonal up to the right
+		playBoth(new int[] { 6, 5, 5, 4, 4, 3, 4, 3, 3, 0, 3 }); // diagonal up to the left
+	}
+
+	@Test
+	void fillsToADraw() {
+		// Random legal games until one fills the board without four in a row
+		Random random = new Random(7);
+		BitboardGameBoard board = new BitboardGameBoard();
+		while (board.getWinner() != 3) {
+			board.resetGame();
+			while (!board.isGameOver()) {
+				board.makeMove(random.nextInt(GameBoard.getCols()));
+			}
+		}
+		assertEquals(GameBoard.getRows() * GameBoard.getCols(), board.getMoveCount());
+		assertFalse(board.makeMove(0));
+	}
+
+	@Test
+	void wrapsAroundColumnsWithoutFalseWins() {
+		// Three at the top of column 0 and one at the bottom of column 1 are not a line
+		long discs = 0;
+		for (int row = 3; row < GameBoard.getRows(); row++) {
+			discs |= 1L << row;
+		}
+		discs |= 1L << (GameBoard.getRows() + 1);
+		assertFalse(BitboardGameBoard.isWin(discs));
+	}
+}
@@ -0,0 +1,212 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class BotPoolTest {
+
+	private static final long EMPTY = 0L;
+
+	@Test
+	void movesArriveOnWorkerThreads() throws Exception {
+		BotPool pool = new BotPool(2, () -> (current, mask, moves, deadline, depth) -> 3, 1000, 42, 4, 10, line -> { });
+		pool.start();
+		try {
+			CountDownLatch done = new CountDownLatch(1);
+			List<String> threads = new CopyOnWriteArrayList<>();
+			AtomicInteger played = new AtomicInteger(-1);
+			pool.requestMove(EMPTY, EMPTY, 0, () -> false, column -> {
+				threads.add(Thread.currentThread().getName());
+				played.set(column);
+				done.countDown();
+			});
+			assertTrue(done.await(5, TimeUnit.SECONDS));
+			assertEquals(3, played.get());
+			assertTrue(threads.get(0).startsWith("bot-"), threads.get(0));
+			assertEquals(1, pool.getMovesPlayed());
+		} finally {
+			pool.stop();
+		}
+	}
+
+	@Test
+	void staleRequestsAreSkipped() throws Exception {
+		BotPool pool = new BotPool(1, () -> (current, mask, moves, deadline, depth) -> 0, 1000, 42, 4, 10, line -> { });
+		pool.start();
+		try {
+			CountDownLatch done = new CountDownLatch(1);
+			AtomicInteger calls = new AtomicInteger();
+			pool.requestMove(EMPTY, EMPTY, 0, () -> true, column -> calls.incrementAndGet());
+			pool.requestMove(EMPTY, EMPTY, 0, () -> false, column -> done.countDown());
+			assertTrue(done.await(5, TimeUnit.SECONDS));
+			assertEquals(0, calls.get());
+			assertEquals(1, pool.getMovesPlayed());
+		} finally {
+			pool.stop();
+		}
+	}
+
+	@Test
+	void depthShrinksAsTheBacklogGrows() {
+		BotPool pool = new BotPool(4, () -> (current, mask, moves, deadline, depth) -> 0, 1000, 40, 6, 10, line -> { });
+		assertEquals(40, pool.depthFor(1));
+		assertEquals(40, pool.depthFor(7));
+		assertEquals(20, pool.depthFor(8));
+		assertEquals(10, pool.depthFor(16));
+		assertEquals(6, pool.depthFor(10_000));
+	}
+
+	@Test
+	void busyPoolSearchesShallower() throws Exception {
+		int requests = 32;
+		List<Integer> depths = new CopyOnWriteArrayList<>();
+		CountDownLatch done = new CountDownLatch(requests);
+		BotPool pool = new BotPool(1, () -> (current, mask, moves, deadline, depth) -> {
+			depths.add(depth);
+			try {
+				Thread.sleep(2);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return 0;
+		}, 1000, 40, 5, 100, line -> { });
+		for (int i = 0; i < requests; i++) {
+			pool.requestMove(EMPTY, EMPTY, 0, () -> false, column -> done.countDown());
+		}
+		pool.start();
+		try {
+			assertTrue(done.await(10, TimeUnit.SECONDS));
+			assertEquals(5, (int) depths.get(0));
+			assertEquals(40, (int) depths.get(requests - 1));
+			assertTrue(pool.getReducedMoves() > 0);
+		} finally {
+			pool.stop();
+		}
+	}
+
+	@Test
+	void resizedPoolKeepsPlaying() throws Exception {
+		AtomicInteger bots = new AtomicInteger();
+		BotPool pool = new BotPool(1, () -> {
+			bots.incrementAndGet();
+			return (current, mask, moves, deadline, depth) -> 2;
+		}, 1000, 40, 4, 10, line -> { });
+		pool.start();
+		try {
+			pool.setThreads(4);
+			assertEquals(4, pool.getThreads());
+			assertEquals(4, bots.get());
+			// The backlog allowance grows with the workers
+			assertEquals(40, pool.depthFor(7));
+
+			pool.setThreads(0);
+			assertEquals(1, pool.getThreads());
+			assertEquals(20, pool.depthFor(2));
+			CountDownLatch done = new CountDownLatch(20);
+			for (int i = 0; i < 20; i++) {
+				pool.requestMove(EMPTY, EMPTY, 0, () -> false, column -> done.countDown());
+			}
+			assertTrue(done.await(5, TimeUnit.SECONDS));
+		} finally {
+			pool.stop();
+		}
+	}
+
+	@Test
+	void retiredAndStoppedWorkersCloseTheirBots() throws Exception {
+		CountDownLatch closed = new CountDownLatch(3);
+		BotPool pool = new BotPool(3, () -> new Bot() {
+			@Override
+			public int chooseMove(long current, long mask, int moves, long deadlineNanos, int maxDepth) {
+				return 0;
+			}
+
+			@Override
+			public void close() {
+				closed.countDown();
+			}
+		}, 1000, 40, 4, 10, line -> { });
+		pool.start();
+		pool.setThreads(1);
+		// The two retired workers notice within one poll
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (closed.getCount() > 1 && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(1, closed.getCount(), "retired workers close their bots");
+		pool.stop();
+		assertTrue(closed.await(5, TimeUnit.SECONDS), "stopping closes the rest");
+
+		// Workers that never started are closed straight away
+		CountDownLatch unstarted = new CountDownLatch(2);
+		BotPool idle = new BotPool(2, () -> new Bot() {
+			@Override
+			public int chooseMove(long current, long mask, int moves, long deadlineNanos, int maxDepth) {
+				return 0;
+			}
+
+			@Override
+			public void close() {
+				unstarted.countDown();
+			}
+		}, 1000, 40, 4, 10, line -> { });
+		idle.setThreads(1);
+		assertEquals(1, unstarted.getCount());
+		idle.stop();
+		assertEquals(0, unstarted.getCount());
+	}
+
+	@Test
+	void admissionStopsAtMaxGames() {
+		BotPool pool = new BotPool(1, () -> (current, mask, moves, deadline, depth) -> 0, 1000, 42, 4, 2, line -> { });
+		assertTrue(pool.admitGame());
+		assertTrue(pool.admitGame());
+		assertFalse(pool.admitGame());
+		pool.releaseGame();
+		assertTrue(pool.admitGame());
+		assertEquals(2, pool.getActiveGames());
+	}
+
+	@Test
+	void solverBotPlaysLegallyPastItsDeadline() {
+		SolverBot bot = new SolverBot(null, 16);
+		BitboardGameBoard board = new BitboardGameBoard();
+		for (int column : new int[] { 3, 3, 2, 2 }) {
+			board.makeMove(column);
+		}
+		long current = board.getDiscs(1);
+		long mask = current | board.getDiscs(2);
+
+		long start = System.nanoTime();
+		int column = bot.chooseMove(current, mask, 4, start - 1_000_000L, 42);
+		assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+		assertTrue(Bitboards.canPlay(mask, column));
+
+		// With time to think it makes an open three on the bottom row
+		column = bot.chooseMove(current, mask, 4, System.nanoTime() + TimeUnit.SECONDS.toNanos(1), 42);
+		assertTrue(column == 1 || column == 4, "played " + column);
+	}
+
+	@Test
+	void parallelSolverBotFindsTheSameThreat() {
+		SolverBot bot = new SolverBot(null, 16, 2);
+		try {
+			BitboardGameBoard board = new BitboardGameBoard();
+			for (int column : new int[] { 3, 3, 2, 2 }) {
+				board.makeMove(column);
+			}
+			long current = board.getDiscs(1);
+			long mask = current | board.getDiscs(2);
+
+			int column = bot.chooseMove(current, mask, 4, System.nanoTime() + TimeUnit.SECONDS.toNanos(1), 42);
+			assertTrue(column == 1 || column == 4, "played " + column);
+		} finally {
+			bot.close();
+		}
+	}
+}
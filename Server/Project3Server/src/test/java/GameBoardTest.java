@@ -0,0 +1,86 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class GameBoardTest {
+
+	private static GameBoard play(int... columns) {
+		GameBoard board = new GameBoard();
+		for (int column : columns) {
+			assertTrue(board.makeMove(column), "column " + column);
+		}
+		return board;
+	}
+
+	@Test
+	void tracksHeightsAndCells() {
+		GameBoard board = play(3, 3, 4);
+		assertEquals(2, board.getHeight(3));
+		assertEquals(1, board.getHeight(4));
+		assertEquals(1, board.getCell(GameBoard.getRows() - 1, 3));
+		assertEquals(2, board.getCell(GameBoard.getRows() - 2, 3));
+		assertEquals(1, board.getCell(GameBoard.getRows() - 1, 4));
+		assertEquals(0, board.getCell(0, 3));
+		assertEquals(3, board.getMoveCount());
+	}
+
+	@Test
+	void fullColumnsCannotBePlayed() {
+		GameBoard board = play(0, 0, 0, 0, 0, 0);
+		assertFalse(board.canPlay(0));
+		assertFalse(board.makeMove(0));
+		assertTrue(board.canPlay(1));
+		assertFalse(board.canPlay(-1));
+		assertFalse(board.canPlay(GameBoard.getCols()));
+	}
+
+	@Test
+	void undoRestoresEveryMove() {
+		Random random = new Random(11);
+		for (int game = 0; game < 500; game++) {
+			GameBoard board = new GameBoard();
+			int plies = 0;
+			while (!board.isGameOver()) {
+				if (board.makeMove(random.nextInt(GameBoard.getCols()))) {
+					plies++;
+				}
+			}
+			for (int i = 0; i < plies; i++) {
+				assertTrue(board.undoMove());
+				assertFalse(board.isGameOver());
+				assertEquals(0, board.getWinner());
+			}
+			assertFalse(board.undoMove());
+			assertEquals(0, board.getMoveCount());
+			assertEquals(1, board.getCurrentPlayer());
+			assertEquals(-1, board.getLastRow());
+			for (int c = 0; c < GameBoard.getCols(); c++) {
+				assertEquals(0, board.getHeight(c));
+			}
+			assertArrayEquals(new GameBoard().getBoard(), board.getBoard());
+		}
+	}
+
+	@Test
+	void undoThenReplayMatchesTheOriginal() {
+		GameBoard board = play(3, 3, 4, 4, 5);
+		assertTrue(board.undoMove());
+		assertEquals(1, board.getCurrentPlayer());
+		assertEquals(GameBoard.getRows() - 2, board.getLastRow());
+		assertTrue(board.makeMove(2));
+		assertTrue(board.makeMove(6));
+		assertTrue(board.makeMove(5));
+		assertEquals(1, board.getWinner());
+	}
+
+	@Test
+	void resetClearsUndoHistory() {
+		GameBoard board = play(3, 2);
+		board.resetGame();
+		assertFalse(board.undoMove());
+		assertTrue(board.canPlay(3));
+		assertEquals(0, board.getHeight(3));
+	}
+}
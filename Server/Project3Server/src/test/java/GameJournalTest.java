@@ -0,0 +1,183 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GameJournalTest {
+
+	@TempDir
+	Path directory;
+
+	private GameJournal journal(int segmentBytes) {
+		return new GameJournal(directory, segmentBytes, 0, 1, line -> { });
+	}
+
+	private long segmentFiles() throws Exception {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.count();
+		}
+	}
+
+	@Test
+	void recoversUnfinishedGames() throws Exception {
+		GameJournal journal = journal(1 << 16);
+		assertTrue(journal.open().isEmpty());
+		journal.gameStarted(1, "alice", "bob", 0);
+		journal.moved(1, 3);
+		journal.gameStarted(2, "carol", "Computer", 2);
+		journal.moved(2, 0);
+		journal.moved(2, 6);
+		journal.moved(1, 4);
+		journal.gameEnded(1, 1);
+		journal.gameStarted(3, "dave", "erin", 0);
+		journal.moved(3, 2);
+		journal.close();
+
+		GameJournal reopened = journal(1 << 16);
+		List<GameJournal.RecoveredGame> games = reopened.open();
+		assertEquals(2, games.size());
+		GameJournal.RecoveredGame carol = games.get(0);
+		assertEquals(2, carol.getId());
+		assertEquals("carol", carol.getPlayer1());
+		assertFalse(carol.isBot(1));
+		assertTrue(carol.isBot(2));
+		assertEquals(2, carol.getMoveCount());
+		assertEquals(0, carol.getColumn(0));
+		assertEquals(6, carol.getColumn(1));
+		assertEquals(3, games.get(1).getId());
+		assertEquals(2, reopened.getLiveGames());
+		reopened.close();
+	}
+
+	@Test
+	void rematchReplacesTheEarlierMoves() throws Exception {
+		GameJournal journal = journal(1 << 16);
+		journal.open();
+		journal.gameStarted(7, "alice", "bob", 0);
+		journal.moved(7, 1);
+		journal.moved(7, 2);
+		journal.gameStarted(7, "alice", "bob", 0);
+		journal.moved(7, 5);
+		journal.close();
+
+		GameJournal reopened = journal(1 << 16);
+		List<GameJournal.RecoveredGame> games = reopened.open();
+		assertEquals(1, games.get(0).getMoveCount());
+		assertEquals(5, games.get(0).getColumn(0));
+		reopened.close();
+	}
+
+	@Test
+	void recoveryCompactsIntoOneSegment() throws Exception {
+		GameJournal journal = journal(4096);
+		journal.open();
+		for (long id = 1; id <= 2000; id++) {
+			journal.gameStarted(id, "player" + id, "opponent" + id, 0);
+			journal.moved(id, (int) (id % 7));
+			if (id % 100 != 0) {
+				journal.gameEnded(id, 3);
+			}
+		}
+		journal.close();
+		assertTrue(segmentFiles() > 1);
+
+		GameJournal reopened = journal(4096);
+		assertEquals(20, reopened.open().size());
+		assertEquals(1, segmentFiles());
+		reopened.close();
+	}
+
+	@Test
+	void finishedSegmentsAreDeletedWhileRunning() throws Exception {
+		GameJournal journal = journal(4096);
+		journal.open();
+		journal.gameStarted(1, "alice", "bob", 0);
+		for (long id = 2; id < 2000; id++) {
+			journal.gameStarted(id, "carol", "dave", 0);
+			journal.gameEnded(id, 3);
+		}
+		// Alice's game pins the first segment
+		assertEquals(journal.getSegmentCount(), segmentFiles());
+		assertTrue(segmentFiles() > 2);
+
+		journal.gameEnded(1, 2);
+		for (long id = 2000; id < 2200; id++) {
+			journal.gameStarted(id, "carol", "dave", 0);
+			journal.gameEnded(id, 3);
+		}
+		assertTrue(segmentFiles() <= 2);
+		journal.close();
+	}
+
+	@Test
+	void syncThreadForcesAndDeletesFullSegments() throws Exception {
+		GameJournal journal = new GameJournal(directory, 4096, 5, 1000, line -> { });
+		journal.open();
+		for (long id = 1; id < 2000; id++) {
+			journal.gameStarted(id, "carol", "dave", 0);
+			journal.gameEnded(id, 3);
+		}
+		assertTrue(journal.getSegmentCount() <= 2);
+		// The appends only queued the work; the sync thread catches up on its own
+		long deadline = System.currentTimeMillis() + 5000;
+		while (segmentFiles() > 2 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertTrue(segmentFiles() <= 2);
+		assertTrue(journal.getSyncs() > 0);
+		journal.close();
+	}
+
+	@Test
+	void replayStopsAtADamagedRecord() throws Exception {
+		GameJournal journal = journal(4096);
+		journal.open();
+		journal.gameStarted(1, "alice", "bob", 0);
+		journal.moved(1, 3);
+		journal.moved(1, 3);
+		journal.moved(1, 4);
+		journal.close();
+
+		// Every record here has a one-byte length: skip to the last one and break its checksum
+		Path segment;
+		try (Stream<Path> files = Files.list(directory)) {
+			segment = files.findFirst().get();
+		}
+		byte[] bytes = Files.readAllBytes(segment);
+		int last = GameJournal.HEADER_BYTES;
+		for (int at = last; bytes[at] != 0; at += bytes[at] + 4) {
+			last = at;
+		}
+		bytes[last + bytes[last] + 2] ^= 1;
+		Files.write(segment, bytes);
+
+		GameJournal reopened = journal(4096);
+		List<GameJournal.RecoveredGame> games = reopened.open();
+		assertEquals(1, games.size());
+		assertEquals(2, games.get(0).getMoveCount());
+		reopened.close();
+	}
+
+	@Test
+	void groupCommitSyncsInBatches() throws Exception {
+		GameJournal journal = new GameJournal(directory, 1 << 16, 5, 1000, line -> { });
+		journal.open();
+		journal.gameStarted(1, "alice", "bob", 0);
+		for (int i = 0; i < 100; i++) {
+			journal.moved(1, i % 7);
+		}
+		long deadline = System.currentTimeMillis() + 5000;
+		while (journal.getSyncs() == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertTrue(journal.getSyncs() > 0);
+		assertTrue(journal.getSyncs() < 100);
+		assertEquals(101, journal.getAppended());
+		journal.close();
+	}
+}
@@ -0,0 +1,208 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class LobbyRegistryStressTest {
+
+	private static final int THREADS = 16;
+
+	private static final Connection NO_OP = new Connection() {
+		@Override
+		public void sendMessage(Message message) {
+		}
+
+		@Override
+		public boolean supportsMoveEvents() {
+			return true;
+		}
+	};
+
+	private final LobbyRegistry registry = new LobbyRegistry();
+	private final Matchmaker matchmaker = new Matchmaker(registry, MatchCriteria.ANY, 1, game -> { }, (message, error) -> { });
+	private final ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+
+	@AfterEach
+	void shutdown() {
+		pool.shutdownNow();
+	}
+
+	// Runs the task on every thread at once and waits for all of them
+	private void hammer(Runnable task) throws Exception {
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			futures.add(pool.submit(() -> {
+				start.await();
+				task.run();
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<?> future : futures) {
+			future.get();
+		}
+	}
+
+	@Test
+	void eachNameIsClaimedOnce() throws Exception {
+		AtomicInteger successes = new AtomicInteger();
+		hammer(() -> {
+			for (int i = 0; i < 500; i++) {
+				if (registry.login("user" + i, NO_OP) != null) {
+					successes.incrementAndGet();
+				}
+			}
+		});
+
+		assertEquals(500, successes.get());
+		assertEquals(500, registry.getSessionCount());
+	}
+
+	@Test
+	void concurrentRequestsPairEveryone() throws Exception {
+		int players = THREADS * 250;
+		AtomicInteger next = new AtomicInteger();
+		hammer(() -> {
+			int i;
+			while ((i = next.getAndIncrement()) < players) {
+				matchmaker.request(registry.login("player" + i, NO_OP));
+			}
+		});
+
+		// One batch pass pairs the whole queue
+		assertEquals(players, matchmaker.getQueueDepth());
+		assertEquals(players / 2, matchmaker.tick());
+		assertEquals(players / 2, registry.getGameCount());
+		assertEquals(0, matchmaker.getQueueDepth());
+		assertEquals(players / 2, matchmaker.getMatchesMade());
+		for (Session session : registry.getSessions()) {
+			Game game = session.getGame();
+			assertNotNull(game, session + " was never paired");
+			assertNotEquals(0, game.playerNumber(session));
+		}
+	}
+
+	@Test
+	void aSessionPairedTwiceAtOnceJoinsOneGame() throws Exception {
+		for (int round = 0; round < 200; round++) {
+			Session contested = registry.login("contested" + round, NO_OP);
+			AtomicInteger created = new AtomicInteger();
+			AtomicInteger opponent = new AtomicInteger();
+			int base = round;
+			hammer(() -> {
+				// Like a computer game request racing the matchmaker for the same player
+				Session other = new Session("other" + base + "-" + opponent.getAndIncrement(), NO_OP);
+				if (registry.createGame(contested, other) != null) {
+					created.incrementAndGet();
+				}
+			});
+			assertEquals(1, created.get());
+			Game game = contested.getGame();
+			assertSame(game, registry.getGame(game.getId()));
+			registry.leaveGame(contested);
+		}
+		assertEquals(0, registry.getGameCount(), "no orphaned games");
+	}
+
+	@Test
+	void restoringAnIdInUseFails() {
+		Session a = registry.login("a", NO_OP);
+		Session b = registry.login("b", NO_OP);
+		Game game = registry.createGame(a, b);
+		Session c = registry.login("c", NO_OP);
+		Session d = registry.login("d", NO_OP);
+
+		assertNull(registry.restoreGame(game.getId(), c, d));
+		assertNull(c.getGame(), "claims are released when the id is taken");
+		assertNull(d.getGame());
+		assertNull(registry.restoreGame(42, c, a), "a is already playing");
+		assertNull(c.getGame());
+		assertNotNull(registry.restoreGame(42, c, d));
+	}
+
+	@Test
+	void randomChurnKeepsGamesConsistent() throws Exception {
+		AtomicBoolean running = new AtomicBoolean(true);
+		Thread ticker = new Thread(() -> {
+			while (running.get()) {
+				matchmaker.tick();
+			}
+		});
+		ticker.start();
+		try {
+			churn();
+		} finally {
+			running.set(false);
+			ticker.join();
+		}
+
+		for (Game game : registry.getGames()) {
+			assertFalse(game.isEnded(), game + " ended but is still registered");
+			assertSame(game, game.getPlayer1().getGame());
+			assertSame(game, game.getPlayer2().getGame());
+			assertNotSame(game.getPlayer1(), game.getPlayer2());
+		}
+		for (Session session : registry.getSessions()) {
+			Game game = session.getGame();
+			if (game != null) {
+				assertSame(game, registry.getGame(game.getId()), session + " points at a dead game");
+			}
+			if (matchmaker.isQueued(session)) {
+				assertNull(game, session + " is waiting while in a game");
+			}
+		}
+	}
+
+	// Logs in, queues, plays, leaves and logs out at random while the matchmaker ticks
+	private void churn() throws Exception {
+		ConcurrentHashMap<String, Session> owned = new ConcurrentHashMap<>();
+		hammer(() -> {
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			for (int i = 0; i < 20000; i++) {
+				String name = "churn" + random.nextInt(200);
+				Session session = owned.remove(name);
+				if (session == null) {
+					session = registry.login(name, NO_OP);
+					if (session == null) {
+						continue; // another thread holds this name right now
+					}
+				}
+
+				switch (random.nextInt(5)) {
+					case 0:
+					case 1:
+						matchmaker.request(session);
+						break;
+					case 2:
+						Game game = session.getGame();
+						if (game != null) {
+							synchronized (game) {
+								game.getBoard().makeMove(random.nextInt(GameBoard.getCols()));
+							}
+						}
+						break;
+					case 3:
+						registry.leaveGame(session);
+						break;
+					default:
+						matchmaker.cancel(session);
+						registry.logout(session);
+						continue;
+				}
+				owned.put(name, session);
+			}
+		});
+	}
+}
@@ -0,0 +1,112 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class MatchmakerTest {
+
+	private static final Connection NO_OP = new Connection() {
+		@Override
+		public void sendMessage(Message message) {
+		}
+
+		@Override
+		public boolean supportsMoveEvents() {
+			return true;
+		}
+	};
+
+	private final LobbyRegistry registry = new LobbyRegistry();
+	private final List<Game> started = new ArrayList<>();
+
+	private Matchmaker matchmaker(MatchCriteria criteria) {
+		return new Matchmaker(registry, criteria, 1, started::add, (message, error) -> { });
+	}
+
+	private Session player(String name, int rating) {
+		Session session = registry.login(name, NO_OP);
+		session.setRating(rating);
+		return session;
+	}
+
+	@Test
+	void pairsInArrivalOrderAndNewestMovesFirst() {
+		Matchmaker matchmaker = matchmaker(MatchCriteria.ANY);
+		Session first = player("first", 1000);
+		Session second = player("second", 1000);
+		Session third = player("third", 1000);
+		matchmaker.request(first);
+		matchmaker.request(second);
+		matchmaker.request(third);
+
+		assertEquals(1, matchmaker.tick());
+		assertEquals(1, started.size());
+		assertSame(second, started.get(0).getPlayer1());
+		assertSame(first, started.get(0).getPlayer2());
+		assertTrue(matchmaker.isQueued(third));
+		assertEquals(1, matchmaker.getQueueDepth());
+		assertEquals(2, matchmaker.getWaitTimes().getCount(), "one wait per matched player");
+	}
+
+	@Test
+	void secondRequestCancelsAndCancelledTicketsAreSkipped() {
+		Matchmaker matchmaker = matchmaker(MatchCriteria.ANY);
+		Session alice = player("alice", 1000);
+		Session bob = player("bob", 1000);
+
+		assertEquals(Matchmaker.RequestOutcome.QUEUED, matchmaker.request(alice));
+		assertEquals(Matchmaker.RequestOutcome.CANCELLED, matchmaker.request(alice));
+		matchmaker.request(bob);
+
+		assertEquals(0, matchmaker.tick());
+		assertEquals(1, matchmaker.getQueueDepth());
+		assertNull(alice.getGame());
+
+		matchmaker.request(alice);
+		assertEquals(1, matchmaker.tick());
+		assertEquals(Matchmaker.RequestOutcome.ALREADY_IN_GAME, matchmaker.request(alice));
+	}
+
+	@Test
+	void closedSessionsAreDroppedAtTheNextTick() {
+		Matchmaker matchmaker = matchmaker(MatchCriteria.ANY);
+		Session gone = player("gone", 1000);
+		Session stays = player("stays", 1000);
+		matchmaker.request(gone);
+		registry.logout(gone);
+		matchmaker.request(stays);
+
+		assertEquals(0, matchmaker.tick());
+		assertEquals(1, matchmaker.getQueueDepth());
+		assertTrue(matchmaker.isQueued(stays));
+	}
+
+	@Test
+	void skillWindowKeepsDistantRatingsApart() {
+		Matchmaker matchmaker = matchmaker(new SkillWindowCriteria(100, 0, 100));
+		matchmaker.request(player("low", 1000));
+		matchmaker.request(player("high", 1500));
+		matchmaker.request(player("near", 1080));
+
+		assertEquals(1, matchmaker.tick());
+		assertEquals(1, matchmaker.getQueueDepth());
+		assertEquals(1080 - 1000, Math.abs(started.get(0).getPlayer1().getRating()
+				- started.get(0).getPlayer2().getRating()));
+	}
+
+	@Test
+	void skillWindowWidensWithWaitTime() {
+		SkillWindowCriteria criteria = new SkillWindowCriteria(100, 50, 400);
+		assertEquals(100, criteria.windowAfter(0));
+		assertEquals(200, criteria.windowAfter(TimeUnit.SECONDS.toNanos(2)));
+		assertEquals(400, criteria.windowAfter(TimeUnit.MINUTES.toNanos(5)));
+
+		Matchmaker.Ticket low = new Matchmaker.Ticket(player("a", 1000), 1000, 0);
+		Matchmaker.Ticket high = new Matchmaker.Ticket(player("b", 1300), 1300, 0);
+		assertFalse(criteria.canMatch(low, high, TimeUnit.SECONDS.toNanos(1)));
+		assertTrue(criteria.canMatch(low, high, TimeUnit.SECONDS.toNanos(4)));
+	}
+}
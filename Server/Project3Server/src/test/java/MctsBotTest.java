@@ -0,0 +1,97 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class MctsBotTest {
+
+	private static final long LATER = TimeUnit.SECONDS.toNanos(30);
+
+	private static BitboardGameBoard play(int... columns) {
+		BitboardGameBoard board = new BitboardGameBoard();
+		for (int column : columns) {
+			assertTrue(board.makeMove(column));
+		}
+		return board;
+	}
+
+	private static int choose(MctsBot bot, BitboardGameBoard board, long deadline) {
+		int mover = board.getCurrentPlayer();
+		long current = board.getDiscs(mover);
+		long mask = current | board.getDiscs(3 - mover);
+		return bot.chooseMove(current, mask, board.getMoveCount(), deadline, Bitboards.CELLS);
+	}
+
+	@Test
+	void takesWinsAndBlocksThreats() {
+		MctsBot bot = new MctsBot(1, 2000, null);
+		assertEquals(3, choose(bot, play(0, 6, 1, 6, 2), System.nanoTime() + LATER));
+		assertEquals(6, choose(bot, play(0, 6, 1, 6, 0, 6), System.nanoTime() + LATER));
+	}
+
+	@Test
+	void stopsAtTheDeadline() {
+		MctsBot bot = new MctsBot(1, Long.MAX_VALUE / 2, null);
+		long start = System.nanoTime();
+		int column = choose(bot, new BitboardGameBoard(), start + TimeUnit.MILLISECONDS.toNanos(100));
+		long elapsed = System.nanoTime() - start;
+		assertTrue(column >= 0 && column < GameBoard.getCols());
+		assertTrue(elapsed < TimeUnit.MILLISECONDS.toNanos(1000), "took " + elapsed / 1_000_000 + " ms");
+		assertTrue(bot.getLastPlayouts() > 0);
+	}
+
+	@Test
+	void rootParallelSearchCountsEveryThread() {
+		MctsBot.Stats stats = new MctsBot.Stats();
+		MctsBot bot = new MctsBot(3, 3000, stats);
+		try {
+			int column = choose(bot, play(3, 3), System.nanoTime() + LATER);
+			assertTrue(column >= 0 && column < GameBoard.getCols());
+			assertTrue(bot.getLastPlayouts() >= 3000, "played " + bot.getLastPlayouts());
+			assertEquals(bot.getLastPlayouts(), stats.getPlayouts());
+			assertTrue(stats.getRolloutsPerSecond() > 0);
+		} finally {
+			bot.close();
+		}
+	}
+
+	@Test
+	void beatsARandomPlayer() {
+		MctsBot bot = new MctsBot(1, 1500, null);
+		Random random = new Random(5);
+		int wins = 0;
+		for (int game = 0; game < 10; game++) {
+			BitboardGameBoard board = new BitboardGameBoard();
+			int botPlayer = game % 2 == 0 ? 1 : 2;
+			while (!board.isGameOver()) {
+				int column;
+				if (board.getCurrentPlayer() == botPlayer) {
+					column = choose(bot, board, System.nanoTime() + LATER);
+				} else {
+					do {
+						column = random.nextInt(GameBoard.getCols());
+					} while (board.getHeight(column) >= GameBoard.getRows());
+				}
+				assertTrue(board.makeMove(column));
+			}
+			if (board.getWinner() == botPlayer) {
+				wins++;
+			}
+		}
+		assertTrue(wins >= 9, "won " + wins + " of 10");
+	}
+
+	@Test
+	void fewerPlayoutsWhenThePoolShedsDepth() {
+		MctsBot bot = new MctsBot(1, 4200, null);
+		BitboardGameBoard board = play(3);
+		long current = board.getDiscs(2);
+		long mask = current | board.getDiscs(1);
+		bot.chooseMove(current, mask, 1, System.nanoTime() + LATER, 42);
+		assertEquals(4200, bot.getLastPlayouts());
+		bot.chooseMove(current, mask, 1, System.nanoTime() + LATER, 4);
+		assertEquals(400, bot.getLastPlayouts());
+	}
+}
@@ -0,0 +1,98 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MetricsTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void exportsThePrometheusTextFormat() {
+		Metrics metrics = new Metrics();
+		LongAdder logins = metrics.counter("test_logins_total", "Logins");
+		metrics.gauge("test_games", "Games", () -> 7);
+		LatencyRecorder move = metrics.timer("test_handle_seconds", "Handling", "type=\"GAME_MOVE\"");
+		metrics.timer("test_handle_seconds", "Handling", "type=\"CHAT\"");
+		logins.add(3);
+		move.record(2_000_000);
+
+		String text = metrics.export();
+		assertTrue(text.contains("# TYPE test_logins_total counter\ntest_logins_total 3\n"), text);
+		assertTrue(text.contains("# TYPE test_games gauge\ntest_games 7\n"), text);
+		assertTrue(text.contains("test_handle_seconds{type=\"GAME_MOVE\",quantile=\"0.99\"} 0.002"), text);
+		assertTrue(text.contains("test_handle_seconds_count{type=\"GAME_MOVE\"} 1\n"), text);
+		assertTrue(text.contains("test_handle_seconds_count{type=\"CHAT\"} 0\n"), text);
+		// One HELP and TYPE header per family, however many series it has
+		assertEquals(text.indexOf("# TYPE test_handle_seconds"), text.lastIndexOf("# TYPE test_handle_seconds"));
+	}
+
+	@Test
+	void concurrentRecordingLosesNothing() throws Exception {
+		Metrics metrics = new Metrics();
+		LongAdder counter = metrics.counter("test_total", "Count");
+		LatencyRecorder timer = metrics.timer("test_seconds", "Time");
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 100_000; i++) {
+					counter.increment();
+					timer.record(i * 1000L);
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(400_000, counter.sum());
+		assertEquals(400_000, timer.getCount());
+		assertEquals(4 * (99_999L * 100_000 / 2), timer.getSumMicros());
+		assertEquals(99_999, timer.getMaxMicros());
+	}
+
+	@Test
+	void servesAndSavesSnapshots() throws Exception {
+		Metrics metrics = new Metrics();
+		metrics.counter("test_total", "Count").add(42);
+		Path file = directory.resolve("metrics.prom");
+		ServerLog log = ServerLog.create(new ServerConfig(new Properties()), LogSink.of(line -> { }));
+		MetricsExporter exporter = new MetricsExporter(metrics, "127.0.0.1", 0, file, 60_000, log);
+		exporter.start();
+		try {
+			URL url = new URL("http://127.0.0.1:" + exporter.getPort() + "/metrics");
+			HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+			assertEquals(200, connection.getResponseCode());
+			try (InputStream in = connection.getInputStream()) {
+				String body = new String(readAll(in), StandardCharsets.UTF_8);
+				assertTrue(body.contains("test_total 42\n"), body);
+			}
+
+			exporter.writeSnapshot();
+			assertTrue(new String(Files.readAllBytes(file), StandardCharsets.UTF_8).contains("test_total 42\n"));
+		} finally {
+			exporter.stop();
+			log.close();
+		}
+	}
+
+	private static byte[] readAll(InputStream in) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		for (int n; (n = in.read(buffer)) > 0; ) {
+			out.write(buffer, 0, n);
+		}
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,169 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.SequenceInputStream;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class NioTransportTest {
+
+	private final BlockingQueue<NioTransport.NioChannel> opened = new LinkedBlockingQueue<>();
+	private final BlockingQueue<Message> received = new LinkedBlockingQueue<>();
+	private final BlockingQueue<SocketChannel> legacy = new LinkedBlockingQueue<>();
+	private final BlockingQueue<byte[]> legacyConsumed = new LinkedBlockingQueue<>();
+	private NioTransport transport;
+
+	@BeforeEach
+	void start() throws Exception {
+		transport = new NioTransport(0, 1, new NioTransport.Listener() {
+			@Override
+			public void onOpen(NioTransport.NioChannel channel) {
+				opened.add(channel);
+			}
+
+			@Override
+			public void onMessage(NioTransport.NioChannel channel, Message message) {
+				received.add(message);
+			}
+
+			@Override
+			public void onClose(NioTransport.NioChannel channel) {
+			}
+
+			@Override
+			public void onLegacyConnection(SocketChannel channel, byte[] consumed) {
+				legacyConsumed.add(consumed);
+				legacy.add(channel);
+			}
+		}, line -> { }, () -> 100, OutboundQueue.OverflowPolicy.DISCONNECT);
+		transport.start();
+	}
+
+	@AfterEach
+	void stop() {
+		transport.close();
+	}
+
+	private static byte[] frame(Message message) throws Exception {
+		byte[] payload = WireProtocol.codecFor(WireProtocol.HIGHEST_VERSION).encode(message);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		WireProtocol.writeFrame(new DataOutputStream(bytes), payload);
+		return bytes.toByteArray();
+	}
+
+	// Sends the bytes in pieces with pauses between them, so the server reads each piece separately
+	private static void writeSlowly(Socket socket, byte[] bytes, int... cuts) throws Exception {
+		int from = 0;
+		for (int cut : cuts) {
+			socket.getOutputStream().write(bytes, from, cut - from);
+			socket.getOutputStream().flush();
+			Thread.sleep(30);
+			from = cut;
+		}
+		socket.getOutputStream().write(bytes, from, bytes.length - from);
+		socket.getOutputStream().flush();
+	}
+
+	private Message next() throws InterruptedException {
+		Message message = received.poll(5, TimeUnit.SECONDS);
+		assertNotNull(message, "no message arrived");
+		return message;
+	}
+
+	@Test
+	void splitAndCoalescedFramesAreReassembled() throws Exception {
+		try (Socket socket = new Socket("127.0.0.1", transport.getPort())) {
+			socket.setTcpNoDelay(true);
+			DataInputStream in = new DataInputStream(socket.getInputStream());
+
+			// The handshake itself arrives in three pieces
+			ByteArrayOutputStream hello = new ByteArrayOutputStream();
+			new DataOutputStream(hello).writeInt(WireProtocol.MAGIC);
+			new DataOutputStream(hello).writeInt(WireProtocol.HIGHEST_VERSION);
+			writeSlowly(socket, hello.toByteArray(), 1, 5);
+			assertEquals(WireProtocol.MAGIC, in.readInt());
+			assertEquals(WireProtocol.HIGHEST_VERSION, in.readInt());
+
+			// One frame cut inside its length prefix and again inside its payload
+			byte[] chat = frame(new Message(Message.MessageType.CHAT, "alice", "split across reads"));
+			writeSlowly(socket, chat, 2, 7);
+			assertEquals("split across reads", next().getContent());
+
+			// Three frames in one write, the last one cut short and finished later
+			ByteArrayOutputStream burst = new ByteArrayOutputStream();
+			for (int column = 0; column < 3; column++) {
+				burst.write(frame(new Message(Message.MessageType.GAME_MOVE, "alice", "" + column, column)));
+			}
+			byte[] bytes = burst.toByteArray();
+			writeSlowly(socket, bytes, bytes.length - 1);
+			for (int column = 0; column < 3; column++) {
+				assertEquals(column, next().getData());
+			}
+			assertTrue(received.isEmpty());
+
+			// Frames queued together come back whole and in order
+			NioTransport.NioChannel channel = opened.poll(5, TimeUnit.SECONDS);
+			assertNotNull(channel);
+			for (int i = 0; i < 3; i++) {
+				channel.send(new Message(Message.MessageType.CHAT, "SERVER", "reply " + i));
+			}
+			MessageCodec codec = WireProtocol.codecFor(WireProtocol.HIGHEST_VERSION);
+			for (int i = 0; i < 3; i++) {
+				byte[] payload = WireProtocol.readFrame(in);
+				assertEquals("reply " + i, codec.decode(payload, 0, payload.length).getContent());
+			}
+		}
+	}
+
+	@Test
+	void closingTheTransportClosesItsConnections() throws Exception {
+		try (Socket socket = new Socket("127.0.0.1", transport.getPort())) {
+			DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+			out.writeInt(WireProtocol.MAGIC);
+			out.writeInt(WireProtocol.HIGHEST_VERSION);
+			out.flush();
+			assertNotNull(opened.poll(5, TimeUnit.SECONDS));
+
+			transport.close();
+			socket.setSoTimeout(5000);
+			DataInputStream in = new DataInputStream(socket.getInputStream());
+			in.readLong();  // the handshake reply
+			assertEquals(-1, in.read(), "the server end was closed");
+		}
+	}
+
+	@Test
+	void objectStreamClientsAreHandedToABlockingSocket() throws Exception {
+		try (Socket socket = new Socket("127.0.0.1", transport.getPort())) {
+			ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
+			out.flush();
+			SocketChannel channel = legacy.poll(5, TimeUnit.SECONDS);
+			assertNotNull(channel, "legacy client was not handed over");
+			assertTrue(channel.isBlocking());
+			byte[] consumed = legacyConsumed.take();
+			assertEquals((byte) 0xAC, consumed[0]);
+			assertEquals((byte) 0xED, consumed[1]);
+			assertTrue(opened.isEmpty(), "a legacy client never opens an NIO channel");
+
+			// Whatever the event loop read is replayed ahead of the rest of the stream
+			out.writeObject(new Message(Message.MessageType.LOGIN, "old", "old"));
+			out.flush();
+			try (ObjectInputStream in = new ObjectInputStream(new SequenceInputStream(
+					new ByteArrayInputStream(consumed), channel.socket().getInputStream()))) {
+				assertEquals("old", ((Message) in.readObject()).getSender());
+			}
+		}
+	}
+}
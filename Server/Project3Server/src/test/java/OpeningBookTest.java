@@ -0,0 +1,94 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OpeningBookTest {
+
+	@TempDir
+	Path dir;
+
+	private OpeningBook build(int maxPly, long nodeBudget) throws Exception {
+		long[] records = new OpeningBookBuilder(maxPly, 0, nodeBudget, 2, line -> { }).build();
+		Path file = dir.resolve("book-" + maxPly + ".bin");
+		OpeningBookBuilder.write(file, maxPly, records);
+		assertEquals(OpeningBook.HEADER_BYTES + 8L * records.length, Files.size(file));
+		return OpeningBook.open(file);
+	}
+
+	// Every position reachable within maxPly moves that is not already decided
+	private static void collect(BitboardGameBoard board, int maxPly, Set<String> seen, StringBuilder moves,
+								OpeningBook book, Solver reference) {
+		if (board.isGameOver() || !seen.add(moves.toString())) {
+			return;
+		}
+		Solver.Result entry = book.lookup(board);
+		assertNotNull(entry, "missing position " + moves);
+		assertTrue(board.getHeight(entry.getColumn()) < GameBoard.getRows(), "full column for " + moves);
+		if (entry.isSolved()) {
+			Solver.Result solved = reference.search(board, 0, 0);
+			assertEquals(solved.getScore(), entry.getScore(), "score for " + moves);
+		}
+		if (board.getMoveCount() == maxPly) {
+			return;
+		}
+		for (int column = 0; column < GameBoard.getCols(); column++) {
+			BitboardGameBoard next = copy(moves.toString() + column);
+			if (next != null) {
+				moves.append(column);
+				collect(next, maxPly, seen, moves, book, reference);
+				moves.setLength(moves.length() - 1);
+			}
+		}
+	}
+
+	private static BitboardGameBoard copy(String moves) {
+		BitboardGameBoard board = new BitboardGameBoard();
+		for (char column : moves.toCharArray()) {
+			if (board.isGameOver() || !board.makeMove(column - '0')) {
+				return null;
+			}
+		}
+		return board;
+	}
+
+	@Test
+	void coversEveryPositionUpToItsDepth() throws Exception {
+		OpeningBook book = build(3, 20_000);
+		assertEquals(3, book.getMaxPly());
+		// 1 + 7 + 49 + 238 positions, with mirror pairs stored once
+		assertTrue(book.size() < 295 && book.size() > 295 / 2, "size " + book.size());
+
+		collect(new BitboardGameBoard(), 3, new HashSet<>(), new StringBuilder(), book, new Solver(20));
+		assertNull(book.lookup(copy("3333")));
+	}
+
+	@Test
+	void mirrorImagesGetMirroredMoves() throws Exception {
+		OpeningBook book = build(4, 20_000);
+		String[] positions = { "0", "01", "1253", "016" };
+		for (String moves : positions) {
+			StringBuilder reflected = new StringBuilder();
+			for (char column : moves.toCharArray()) {
+				reflected.append((char) ('6' - column + '0'));
+			}
+			Solver.Result entry = book.lookup(copy(moves));
+			Solver.Result mirror = book.lookup(copy(reflected.toString()));
+			assertEquals(GameBoard.getCols() - 1 - entry.getColumn(), mirror.getColumn(), moves);
+			assertEquals(entry.getScore(), mirror.getScore(), moves);
+		}
+	}
+
+	@Test
+	void rejectsOtherFiles() throws IOException {
+		Path file = dir.resolve("not-a-book.bin");
+		Files.write(file, new byte[32]);
+		assertThrows(IOException.class, () -> OpeningBook.open(file));
+	}
+}
@@ -0,0 +1,103 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class OutboundQueueTest {
+
+	@Test
+	void dropChatShedsChatFromHalfFull() {
+		OutboundQueue<String> queue = new OutboundQueue<>(() -> 4, OutboundQueue.OverflowPolicy.DROP_CHAT);
+		assertEquals(OutboundQueue.Result.QUEUED, queue.offer("chat 1", true));
+		assertEquals(OutboundQueue.Result.QUEUED, queue.offer("move 1", false));
+
+		// Half full: chat is dropped but game traffic still fits
+		assertEquals(OutboundQueue.Result.DROPPED, queue.offer("chat 2", true));
+		assertEquals(OutboundQueue.Result.QUEUED, queue.offer("move 2", false));
+		assertEquals(OutboundQueue.Result.QUEUED, queue.offer("move 3", false));
+		assertEquals(OutboundQueue.Result.OVERFLOW, queue.offer("move 4", false));
+
+		assertEquals(4, queue.size());
+		assertEquals(1, queue.getDroppedCount());
+	}
+
+	@Test
+	void disconnectPolicyNeverDropsChat() {
+		OutboundQueue<String> queue = new OutboundQueue<>(() -> 2, OutboundQueue.OverflowPolicy.DISCONNECT);
+		assertEquals(OutboundQueue.Result.QUEUED, queue.offer("chat 1", true));
+		assertEquals(OutboundQueue.Result.QUEUED, queue.offer("chat 2", true));
+		assertEquals(OutboundQueue.Result.OVERFLOW, queue.offer("chat 3", true));
+		assertEquals(OutboundQueue.Result.OVERFLOW, queue.offer("move", false));
+		assertEquals(0, queue.getDroppedCount());
+	}
+
+	@Test
+	void limitIsReadOnEveryOffer() {
+		AtomicInteger limit = new AtomicInteger(1);
+		OutboundQueue<String> queue = new OutboundQueue<>(limit::get, OutboundQueue.OverflowPolicy.DISCONNECT);
+		queue.offer("a", false);
+		assertEquals(OutboundQueue.Result.OVERFLOW, queue.offer("b", false));
+		limit.set(2);
+		assertEquals(OutboundQueue.Result.QUEUED, queue.offer("b", false));
+	}
+
+	@Test
+	void concurrentSendersStayWithinTheLimit() throws Exception {
+		OutboundQueue<Integer> chat = new OutboundQueue<>(() -> 100, OutboundQueue.OverflowPolicy.DROP_CHAT);
+		OutboundQueue<Integer> moves = new OutboundQueue<>(() -> 100, OutboundQueue.OverflowPolicy.DROP_CHAT);
+		ExecutorService senders = Executors.newFixedThreadPool(8);
+		try {
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<?>> done = new ArrayList<>();
+			for (int t = 0; t < 8; t++) {
+				done.add(senders.submit(() -> {
+					start.await();
+					for (int i = 0; i < 1000; i++) {
+						chat.offer(i, true);
+						moves.offer(i, false);
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> future : done) {
+				future.get();
+			}
+		} finally {
+			senders.shutdownNow();
+		}
+
+		assertEquals(50, chat.size(), "chat stops at half the limit");
+		assertEquals(8000 - 50, chat.getDroppedCount());
+		assertEquals(100, moves.size());
+		List<Integer> batch = new ArrayList<>();
+		moves.takeBatch(batch, 1000);
+		assertEquals(100, batch.size());
+		assertEquals(0, moves.size());
+	}
+
+	@Test
+	void waitingFramesAreWrittenTogether() throws Exception {
+		OutboundQueue<String> queue = new OutboundQueue<>(() -> 100, OutboundQueue.OverflowPolicy.DROP_CHAT);
+		for (String frame : new String[] { "a", "b", "c", "d", "e" }) {
+			queue.offer(frame, false);
+		}
+
+		// One wakeup takes everything waiting, up to the batch size, in order
+		List<String> batch = new ArrayList<>();
+		queue.takeBatch(batch, 3);
+		assertEquals(Arrays.asList("a", "b", "c"), batch);
+		batch.clear();
+		queue.takeBatch(batch, 3);
+		assertEquals(Arrays.asList("d", "e"), batch);
+		assertTrue(queue.isEmpty());
+	}
+}
@@ -0,0 +1,83 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class ParallelSolverTest {
+
+	private static final String[] POSITIONS = { "", "33", "3323", "332312", "33233422", "3324432112", "332443211256" };
+
+	private static BitboardGameBoard play(String columns) {
+		BitboardGameBoard board = new BitboardGameBoard();
+		for (char column : columns.toCharArray()) {
+			assertTrue(board.makeMove(column - '0'));
+		}
+		return board;
+	}
+
+	private static Solver.Result search(ParallelSolver solver, BitboardGameBoard board, int depth) {
+		int mover = board.getCurrentPlayer();
+		long current = board.getDiscs(mover);
+		return solver.searchDepth(current, current | board.getDiscs(3 - mover), board.getMoveCount(), depth);
+	}
+
+	@Test
+	void sameMoveAndScoreForEveryThreadCount() {
+		ParallelSolver serial = new ParallelSolver(1, 20, 6);
+		ParallelSolver parallel = new ParallelSolver(4, 20, 6);
+		try {
+			for (int depth = 8; depth <= 12; depth += 2) {
+				for (String position : POSITIONS) {
+					Solver.Result expected = search(serial, play(position), depth);
+					for (int run = 0; run < 3; run++) {
+						Solver.Result actual = search(parallel, play(position), depth);
+						assertEquals(expected.getColumn(), actual.getColumn(), position + " at depth " + depth);
+						assertEquals(expected.getScore(), actual.getScore(), position + " at depth " + depth);
+					}
+				}
+			}
+		} finally {
+			serial.shutdown();
+			parallel.shutdown();
+		}
+	}
+
+	@Test
+	void solvesEndgamesLikeTheSerialSolver() {
+		Random random = new Random(5);
+		ParallelSolver parallel = new ParallelSolver(3, 18, 4);
+		try {
+			int checked = 0;
+			while (checked < 20) {
+				BitboardGameBoard board = new BitboardGameBoard();
+				while (!board.isGameOver() && board.getMoveCount() < 26) {
+					board.makeMove(random.nextInt(Bitboards.COLS));
+				}
+				if (board.isGameOver()) {
+					continue;
+				}
+				Solver.Result expected = new Solver(18).search(board, 0, 0);
+				Solver.Result actual = parallel.search(board, 0, 0);
+				assertTrue(actual.isSolved());
+				assertEquals(expected.getScore(), actual.getScore());
+				checked++;
+			}
+		} finally {
+			parallel.shutdown();
+		}
+	}
+
+	@Test
+	void stopsAtTheTimeBudget() {
+		ParallelSolver parallel = new ParallelSolver(2);
+		try {
+			long start = System.nanoTime();
+			Solver.Result result = parallel.search(new BitboardGameBoard(), 100, 0);
+			assertTrue((System.nanoTime() - start) / 1_000_000 < 1000);
+			assertEquals(3, result.getColumn());
+		} finally {
+			parallel.shutdown();
+		}
+	}
+}
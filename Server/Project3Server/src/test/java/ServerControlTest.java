@@ -0,0 +1,75 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ServerControlTest {
+
+	private final MBeanServer beans = ManagementFactory.getPlatformMBeanServer();
+	private Server server;
+	private ObjectName name;
+
+	@BeforeEach
+	void start() throws Exception {
+		Properties props = new Properties();
+		props.setProperty("connect4.port", "0");
+		props.setProperty("connect4.bot.threads", "1");
+		server = new Server(line -> { }, new ServerConfig(props));
+		name = new ObjectName("connect4:type=Server,port=0");
+	}
+
+	@AfterEach
+	void stop() {
+		server.stop();
+	}
+
+	@Test
+	void countsAreReadable() throws Exception {
+		assertEquals(0, beans.getAttribute(name, "ActiveGames"));
+		assertEquals(0, beans.getAttribute(name, "LoggedInUsers"));
+		assertEquals(0, beans.getAttribute(name, "WaitingPlayers"));
+		TabularData counts = (TabularData) beans.getAttribute(name, "MessageCounts");
+		assertEquals(new ServerControl(server).getMessageCounts().size(), counts.size());
+		Map<String, Double> rates = new ServerControl(server).getMessageRates();
+		assertEquals(0.0, rates.get("GAME_MOVE"));
+	}
+
+	@Test
+	void settingsApplyToTheRunningServer() throws Exception {
+		beans.setAttribute(name, new Attribute("LogLevel", "debug"));
+		assertEquals(LogLevel.DEBUG, server.getLog().getLevel());
+		beans.setAttribute(name, new Attribute("MatchTickMillis", 20L));
+		assertEquals(20, server.getMatchmaker().getTickMillis());
+		beans.setAttribute(name, new Attribute("OutboundQueueLimit", 64));
+		assertEquals(64, server.getOutboundQueueLimit());
+		beans.setAttribute(name, new Attribute("BotThreads", 3));
+		assertEquals(3, server.getBotPool().getThreads());
+		beans.setAttribute(name, new Attribute("BotMoveMillis", 250L));
+		assertEquals(250, server.getBotPool().getMoveMillis());
+		beans.setAttribute(name, new Attribute("Draining", true));
+		assertTrue(server.isDraining());
+	}
+
+	@Test
+	void badValuesAreRefused() {
+		assertThrows(Exception.class, () -> beans.setAttribute(name, new Attribute("LogLevel", "loud")));
+		assertThrows(Exception.class, () -> beans.setAttribute(name, new Attribute("OutboundQueueLimit", 0)));
+		assertEquals(LogLevel.INFO, server.getLog().getLevel());
+	}
+
+	@Test
+	void kickingNobodyReportsIt() throws Exception {
+		Object kicked = beans.invoke(name, "kick", new Object[] {"nobody"}, new String[] {String.class.getName()});
+		assertEquals(false, kicked);
+	}
+}
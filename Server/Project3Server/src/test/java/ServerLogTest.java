@@ -0,0 +1,103 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class ServerLogTest {
+
+	private final List<String> lines = Collections.synchronizedList(new ArrayList<>());
+
+	private void awaitLines(ServerLog log, long count) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (log.getWrittenCount() < count && System.nanoTime() < deadline) {
+			Thread.sleep(1);
+		}
+	}
+
+	@Test
+	void formatsPlaceholdersOnTheLogThread() throws Exception {
+		ServerLog log = new ServerLog(LogLevel.INFO, 64, Collections.singletonList(lines::addAll));
+		log.info("{} joined game {}", "alice", 7);
+		log.info("no placeholders", "ignored");
+		awaitLines(log, 2);
+		log.close();
+
+		assertTrue(lines.get(0).endsWith("] alice joined game 7"), lines.get(0));
+		assertTrue(lines.get(0).contains(" INFO  ["), lines.get(0));
+		assertTrue(lines.get(1).endsWith("] no placeholders"), lines.get(1));
+	}
+
+	@Test
+	void messagesWithoutArgumentsKeepTheirBraces() throws Exception {
+		ServerLog log = new ServerLog(LogLevel.INFO, 64, Collections.singletonList(lines::addAll));
+		log.warn("Could not read /tmp/{}/journal: denied");
+		log.info("map {} is {}", "{}");
+		awaitLines(log, 2);
+		log.close();
+
+		assertTrue(lines.get(0).endsWith("] Could not read /tmp/{}/journal: denied"), lines.get(0));
+		assertTrue(lines.get(1).endsWith("] map {} is {}"), lines.get(1));
+	}
+
+	@Test
+	void levelFiltersBeforeQueueing() throws Exception {
+		ServerLog log = new ServerLog(LogLevel.INFO, 64, Collections.singletonList(lines::addAll));
+		log.trace("board {}", "dump");
+		log.debug("move {}", 3);
+		log.warn("slow client {}", "bob");
+		awaitLines(log, 1);
+		assertFalse(log.isTraceEnabled());
+
+		log.setLevel(LogLevel.TRACE);
+		log.trace("board {}", "dump");
+		awaitLines(log, 2);
+		log.close();
+
+		assertEquals(2, lines.size());
+		assertTrue(lines.get(0).contains("WARN"));
+		assertTrue(lines.get(1).endsWith("board dump"));
+	}
+
+	@Test
+	void fullRingDropsInsteadOfBlocking() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		ServerLog log = new ServerLog(LogLevel.INFO, 16, Collections.singletonList(batch -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			lines.addAll(batch);
+		}));
+
+		// The sink is stuck, so the ring fills up and the rest are counted as dropped
+		for (int i = 0; i < 1000; i++) {
+			log.info("line {}", i);
+		}
+		assertTrue(log.getDroppedCount() > 0);
+
+		release.countDown();
+		log.close();
+		assertTrue(lines.stream().anyMatch(line -> line.contains("Dropped")));
+	}
+
+	@Test
+	void ringKeepsOrderAcrossWraparound() {
+		RingBuffer<Integer> ring = new RingBuffer<>(4);
+		for (int round = 0; round < 10; round++) {
+			for (int i = 0; i < 4; i++) {
+				assertTrue(ring.offer(round * 4 + i));
+			}
+			assertFalse(ring.offer(-1));
+			for (int i = 0; i < 4; i++) {
+				assertEquals(round * 4 + i, ring.poll());
+			}
+			assertNull(ring.poll());
+		}
+	}
+}
@@ -0,0 +1,89 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class SessionResumeTest {
+
+	private static final class FakeConnection implements Connection {
+		@Override
+		public void sendMessage(Message message) {
+		}
+
+		@Override
+		public boolean supportsMoveEvents() {
+			return true;
+		}
+	}
+
+	private final LobbyRegistry registry = new LobbyRegistry();
+
+	@Test
+	void onlyTheIssuedTokenFindsTheSession() {
+		Session alice = registry.login("alice", new FakeConnection());
+		Session bob = registry.login("bob", new FakeConnection());
+		assertNotEquals(alice.getResumeToken(), bob.getResumeToken());
+
+		assertSame(alice, registry.findResumable("alice", alice.getResumeToken()));
+		assertNull(registry.findResumable("alice", bob.getResumeToken()));
+		assertNull(registry.findResumable("alice", null));
+		assertNull(registry.findResumable("carol", alice.getResumeToken()));
+	}
+
+	@Test
+	void aDetachedSessionMovesToTheNextConnection() {
+		Connection first = new FakeConnection();
+		Connection second = new FakeConnection();
+		Session alice = registry.login("alice", first);
+
+		assertEquals(-1, alice.detach(second), "only the current connection can let go");
+		int detachment = alice.detach(first);
+		assertTrue(detachment > 0);
+		assertTrue(alice.isDetached());
+
+		assertNotNull(alice.attach(second));
+		assertSame(second, alice.getConnection());
+		assertFalse(alice.expire(detachment), "resumed in time");
+		assertEquals(-1, alice.detach(first), "a stale connection's drop is ignored");
+		assertFalse(alice.isClosed());
+	}
+
+	@Test
+	void anExpiredSessionCannotBeResumed() {
+		Connection first = new FakeConnection();
+		Session alice = registry.login("alice", first);
+		int earlier = alice.detach(first);
+		alice.attach(first);
+		int later = alice.detach(first);
+
+		assertFalse(alice.expire(earlier), "a timer from an earlier drop");
+		assertTrue(alice.expire(later));
+		assertFalse(alice.expire(-1), "only one caller ends it");
+		assertNull(alice.attach(new FakeConnection()));
+		assertNull(registry.findResumable("alice", alice.getResumeToken()));
+	}
+
+	@Test
+	void missedMovesComeFromThisRoundOnly() {
+		Game game = new Game(1, registry.login("alice", new FakeConnection()),
+				registry.login("bob", new FakeConnection()));
+		BitboardGameBoard board = game.getBoard();
+		for (int column : new int[] {3, 3, 4}) {
+			board.makeMove(column);
+			game.recordMove(new MoveEvent(board.getMoveCount(), column, board.getLastRow(), 0, 0));
+		}
+
+		List<MoveEvent> missed = game.movesAfter(1);
+		assertEquals(2, missed.size());
+		assertEquals(2, missed.get(0).getSequence());
+		assertEquals(4, missed.get(1).getColumn());
+		assertTrue(game.movesAfter(3).isEmpty());
+		assertNull(game.movesAfter(4), "ahead of the board, e.g. from before a rematch");
+		assertNull(game.movesAfter(-1));
+
+		// A board rebuilt without its history (as after a restart) can only be sent whole
+		game.clearMoves();
+		assertNull(game.movesAfter(1));
+	}
+}
@@ -0,0 +1,76 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class ShardedExecutorTest {
+
+	@Test
+	void tasksForOneKeyRunInOrderOnOneThread() throws Exception {
+		int keys = 16;
+		int tasksPerKey = 500;
+		ShardedExecutor executor = new ShardedExecutor(4, "test-shard-");
+		try {
+			Map<Long, List<Integer>> seen = new ConcurrentHashMap<>();
+			Map<Long, String> threads = new ConcurrentHashMap<>();
+			List<String> mixedThreads = new ArrayList<>();
+			CountDownLatch done = new CountDownLatch(keys * tasksPerKey);
+			for (int i = 0; i < tasksPerKey; i++) {
+				for (long key = 0; key < keys; key++) {
+					long k = key;
+					int n = i;
+					executor.execute(key, () -> {
+						// Not synchronized: only this key's shard touches this list
+						seen.computeIfAbsent(k, x -> new ArrayList<>()).add(n);
+						String thread = Thread.currentThread().getName();
+						if (!thread.equals(threads.computeIfAbsent(k, x -> thread))) {
+							synchronized (mixedThreads) {
+								mixedThreads.add(k + " ran on " + thread);
+							}
+						}
+						done.countDown();
+					});
+				}
+			}
+			assertTrue(done.await(10, TimeUnit.SECONDS));
+
+			assertTrue(mixedThreads.isEmpty(), mixedThreads.toString());
+			for (long key = 0; key < keys; key++) {
+				List<Integer> order = seen.get(key);
+				assertEquals(tasksPerKey, order.size());
+				for (int i = 0; i < tasksPerKey; i++) {
+					assertEquals(i, (int) order.get(i), "key " + key);
+				}
+			}
+			// Sequential ids spread over more than one shard
+			assertTrue(threads.values().stream().distinct().count() > 1);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	void scheduledTasksRunAfterEarlierOnesForTheKey() throws Exception {
+		ShardedExecutor executor = new ShardedExecutor(2, "test-shard-");
+		try {
+			List<String> order = new ArrayList<>();
+			CountDownLatch done = new CountDownLatch(1);
+			executor.schedule(7, () -> {
+				order.add("later");
+				done.countDown();
+			}, 20, TimeUnit.MILLISECONDS);
+			executor.execute(7, () -> order.add("now"));
+			assertTrue(done.await(5, TimeUnit.SECONDS));
+			assertEquals(2, order.size());
+			assertEquals("now", order.get(0));
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,38 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+class SharedFrameTest {
+
+	@Test
+	void encodesOncePerVersionAndSharesTheBytes() throws Exception {
+		SharedFrame frame = new SharedFrame(new Message(Message.MessageType.CHAT, "SERVER", "bob has joined the game!"));
+
+		ByteBuffer first = frame.frameFor(WireProtocol.VERSION_BINARY);
+		ByteBuffer second = frame.frameFor(WireProtocol.VERSION_BINARY);
+		assertSame(first.array(), second.array());
+		assertNotSame(first, second);
+
+		// Consuming one writer's view leaves the others untouched
+		first.position(first.limit());
+		assertEquals(second.limit(), frame.frameFor(WireProtocol.VERSION_BINARY).remaining());
+
+		ByteBuffer serialized = frame.frameFor(WireProtocol.VERSION_SERIALIZED);
+		assertNotSame(second.array(), serialized.array());
+	}
+
+	@Test
+	void frameIsLengthPrefixedPayload() throws Exception {
+		Message message = new Message(Message.MessageType.GAME_OVER, "SERVER", "alice wins!", 1);
+		ByteBuffer frame = new SharedFrame(message).frameFor(WireProtocol.VERSION_MOVE_EVENTS);
+
+		int length = frame.getInt();
+		assertEquals(frame.remaining(), length);
+		Message decoded = WireProtocol.codecFor(WireProtocol.VERSION_MOVE_EVENTS)
+				.decode(frame.array(), frame.arrayOffset() + frame.position(), length);
+		assertEquals(message.getContent(), decoded.getContent());
+		assertEquals(message.getType(), decoded.getType());
+	}
+}
@@ -0,0 +1,100 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class SolverTest {
+
+	private static BitboardGameBoard play(int... columns) {
+		BitboardGameBoard board = new BitboardGameBoard();
+		for (int column : columns) {
+			assertTrue(board.makeMove(column));
+		}
+		return board;
+	}
+
+	// Plain minimax with the same scoring, for checking the solver on small endgames
+	private static int minimax(long current, long mask, int moves) {
+		if (moves == Bitboards.CELLS) {
+			return 0;
+		}
+		int best = -Bitboards.CELLS;
+		for (int column = 0; column < Bitboards.COLS; column++) {
+			if (!Bitboards.canPlay(mask, column)) {
+				continue;
+			}
+			long move = Bitboards.moveBit(mask, column);
+			if (BitboardGameBoard.isWin(current | move)) {
+				return (Bitboards.CELLS + 1 - moves) / 2;
+			}
+			best = Math.max(best, -minimax(current ^ mask, mask | move, moves + 1));
+		}
+		return best;
+	}
+
+	@Test
+	void takesAnImmediateWin() {
+		Solver.Result result = new Solver(16).search(play(0, 6, 1, 6, 2), 0, 0);
+		assertEquals(3, result.getColumn());
+		assertTrue(result.isSolved());
+		assertTrue(result.getScore() > 0);
+	}
+
+	@Test
+	void blocksTheOpponentsThreat() {
+		Solver.Result result = new Solver(16).search(play(0, 6, 1, 6, 2), 0, 0);
+		assertEquals(3, result.getColumn());
+
+		// Player 2 to move must stop the open three on the bottom row
+		result = new Solver(16).search(play(1, 6, 2, 6, 3), 0, 0);
+		assertTrue(result.getColumn() == 0 || result.getColumn() == 4, "played " + result.getColumn());
+	}
+
+	@Test
+	void agreesWithMinimaxOnEndgames() {
+		Random random = new Random(3);
+		Solver solver = new Solver(16);
+		int checked = 0;
+		while (checked < 25) {
+			BitboardGameBoard board = new BitboardGameBoard();
+			while (!board.isGameOver() && board.getMoveCount() < 34) {
+				board.makeMove(random.nextInt(Bitboards.COLS));
+			}
+			int mover = board.getCurrentPlayer();
+			long current = board.getDiscs(mover);
+			long mask = current | board.getDiscs(3 - mover);
+			if (board.isGameOver() || Bitboards.canWinNext(current, mask)) {
+				continue;
+			}
+
+			Solver.Result result = solver.search(board, 0, 0);
+			assertTrue(result.isSolved());
+			assertEquals(minimax(current, mask, board.getMoveCount()), result.getScore());
+			assertTrue(board.makeMove(result.getColumn()));
+			checked++;
+		}
+	}
+
+	@Test
+	void solvesMidGamePositionsQuickly() {
+		// 16 plies in; the rest of the game is solved outright
+		Solver.Result result = new Solver().search(play(3, 3, 3, 3, 2, 4, 4, 2, 5, 1, 1, 5, 0, 6, 2, 4), 5000, 0);
+		assertTrue(result.isSolved(), result.toString());
+		assertTrue(result.getNodesPerSecond() > 0);
+	}
+
+	@Test
+	void respectsTheBudgetFromAnEmptyBoard() {
+		long start = System.nanoTime();
+		Solver.Result result = new Solver().search(new BitboardGameBoard(), 100, 0);
+		long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+		assertTrue(elapsedMillis < 1000, "took " + elapsedMillis + " ms");
+		assertTrue(result.getDepth() > 0);
+		assertEquals(3, result.getColumn());
+
+		result = new Solver().search(new BitboardGameBoard(), 0, 10_000);
+		assertTrue(result.getNodes() < 20_000);
+	}
+}